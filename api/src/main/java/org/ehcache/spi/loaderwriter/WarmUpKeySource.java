@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.spi.loaderwriter;
+
+/**
+ * Supplies the keys loaded into a {@link org.ehcache.Cache Cache} when it is warmed up.
+ * <P>
+ *   The keys are loaded in batches through {@link CacheLoaderWriter#loadAll(Iterable)}. Keys already mapped in the
+ *   cache by the time their batch is loaded are left untouched.
+ * </P>
+ * <P>
+ *   Implementations configured by class name need a public no argument constructor.
+ * </P>
+ *
+ * @param <K> the key type of the cache
+ */
+public interface WarmUpKeySource<K> {
+
+  /**
+   * Returns the keys to load, hottest first.
+   * <P>
+   *   The returned iterable is iterated once, while loading happens, so it may be backed by a lazily consumed
+   *   result set or file.
+   * </P>
+   *
+   * @return the keys to load
+   *
+   * @throws Exception if the keys cannot be listed
+   */
+  Iterable<? extends K> keys() throws Exception;
+}
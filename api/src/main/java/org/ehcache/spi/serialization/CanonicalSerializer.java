@@ -0,0 +1,36 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.spi.serialization;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Serializer} whose serial form is canonical: two instances are {@link Object#equals(Object) equal} if and
+ * only if their serial forms are identical.
+ * <P>
+ *   Stores holding instances in serial form can then compare a serialized instance with a stored binary directly,
+ *   without deserializing the stored binary, when looking mappings up. As a consequence
+ *   {@link #equals(Object, ByteBuffer)} may not be called for such lookups.
+ * </P>
+ * <P>
+ *   Serializers relying on Java serialization, or on the iteration order of hashed collections, are typically not
+ *   canonical.
+ * </P>
+ *
+ * @param <T> the type of the instances to serialize
+ */
+public interface CanonicalSerializer<T> extends Serializer<T> {
+}
@@ -34,6 +34,10 @@ import java.nio.ByteBuffer;
  * The {@code ClassLoader} value may be {@code null}.  If not {@code null}, the class loader
  * instance provided should be used during deserialization to load classes needed by the deserialized objects.
  * </P>
+ * <P>
+ *   Either constructor may also take the serialized type as an additional first {@code Class<T>} parameter, in which
+ *   case it is preferred and the default serialization provider passes the key or value type of the cache.
+ * </P>
  * <p>
  *   The serialized object's class must be preserved; deserialization of the serial form of an object must
  *   return an object of the same class. The following contract must always be true:
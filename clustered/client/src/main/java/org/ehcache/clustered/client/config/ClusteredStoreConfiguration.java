@@ -0,0 +1,91 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.config;
+
+import org.ehcache.clustered.client.internal.store.ClusteredStore;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} selecting the {@link Consistency} of a clustered cache.
+ * <P>
+ *   Clustered caches with a heap (and optionally offheap) tier cache mappings locally, the server invalidates those
+ *   copies when another client mutates them.  Without this configuration writes are {@link Consistency#EVENTUAL
+ *   eventually} visible to other clients.
+ * </P>
+ * <P>
+ *   Such caches may also be bootstrapped: once connected, the mappings held by the server are streamed into the local
+ *   tiers by background threads, until the local tiers are full.
+ * </P>
+ */
+public class ClusteredStoreConfiguration implements ServiceConfiguration<ClusteredStore.Provider> {
+
+  private final Consistency consistency;
+  private final int bootstrapParallelism;
+
+  /**
+   * Creates a new configuration with the given consistency.
+   *
+   * @param consistency the consistency of the clustered cache
+   */
+  public ClusteredStoreConfiguration(Consistency consistency) {
+    this(consistency, 0);
+  }
+
+  /**
+   * Creates a new configuration with the given consistency, bootstrapping the local tiers with the given number of
+   * threads.
+   *
+   * @param consistency the consistency of the clustered cache
+   * @param bootstrapParallelism the number of bootstrap threads, {@code 0} to disable bootstrapping
+   */
+  public ClusteredStoreConfiguration(Consistency consistency, int bootstrapParallelism) {
+    if (consistency == null) {
+      throw new NullPointerException("Consistency cannot be null");
+    }
+    if (bootstrapParallelism < 0) {
+      throw new IllegalArgumentException("Bootstrap parallelism cannot be negative : " + bootstrapParallelism);
+    }
+    this.consistency = consistency;
+    this.bootstrapParallelism = bootstrapParallelism;
+  }
+
+  /**
+   * Returns the consistency of the clustered cache.
+   *
+   * @return the consistency
+   */
+  public Consistency getConsistency() {
+    return consistency;
+  }
+
+  /**
+   * Returns the number of threads bootstrapping the local tiers of the clustered cache.
+   *
+   * @return the bootstrap parallelism, {@code 0} if bootstrapping is disabled
+   */
+  public int getBootstrapParallelism() {
+    return bootstrapParallelism;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<ClusteredStore.Provider> getServiceType() {
+    return ClusteredStore.Provider.class;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.config.builders;
+
+import org.ehcache.clustered.client.config.ClusteredStoreConfiguration;
+import org.ehcache.clustered.common.Consistency;
+
+/**
+ * Constructs the {@link ClusteredStoreConfiguration} of a clustered cache.
+ */
+public final class ClusteredStoreConfigurationBuilder {
+
+  /** Private, niladic constructor to prevent instantiation. */
+  private ClusteredStoreConfigurationBuilder() {
+  }
+
+  /**
+   * Creates a new clustered store configuration with the given consistency.
+   *
+   * @param consistency the consistency of the clustered cache
+   */
+  public static ClusteredStoreConfiguration withConsistency(Consistency consistency) {
+    return new ClusteredStoreConfiguration(consistency);
+  }
+
+  /**
+   * Creates a new clustered store configuration with the given consistency, whose local tiers are bootstrapped from
+   * the server when the cache is created.
+   *
+   * @param consistency the consistency of the clustered cache
+   * @param parallelism the number of threads streaming mappings from the server
+   */
+  public static ClusteredStoreConfiguration withBootstrap(Consistency consistency, int parallelism) {
+    return new ClusteredStoreConfiguration(consistency, parallelism);
+  }
+}
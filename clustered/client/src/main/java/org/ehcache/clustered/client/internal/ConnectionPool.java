@@ -0,0 +1,104 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.clustered.client.internal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.terracotta.connection.Connection;
+import org.terracotta.connection.ConnectionException;
+import org.terracotta.connection.ConnectionFactory;
+
+/**
+ * Shares connections to a cluster between the clustering services of a JVM.
+ * <P>
+ *   Connections are keyed by cluster URI and reference counted: the first {@link #acquire(URI, Properties)} of a URI
+ *   connects, and the matching last {@link #release(URI)} closes the connection.  Each cache manager fetches its own
+ *   entity over the shared connection, so many cache managers cost a single connection, and a single reconnection on
+ *   fail-over, per cluster.
+ * </P>
+ */
+public final class ConnectionPool {
+
+  private static final ConnectionPool SHARED = new ConnectionPool();
+
+  private final Map<URI, PooledConnection> connections = new HashMap<URI, PooledConnection>();
+
+  ConnectionPool() {
+  }
+
+  public static ConnectionPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the connection to {@code clusterUri}, connecting if no connection to it is currently acquired.
+   * <P>
+   *   The properties are only used when connecting: later acquirers share the connection as it was opened.
+   * </P>
+   *
+   * @param clusterUri the cluster URI
+   * @param properties the connection properties
+   * @return the shared connection
+   * @throws ConnectionException if connecting failed
+   */
+  public synchronized Connection acquire(URI clusterUri, Properties properties) throws ConnectionException {
+    PooledConnection pooled = connections.get(clusterUri);
+    if (pooled == null) {
+      pooled = new PooledConnection(ConnectionFactory.connect(clusterUri, properties));
+      connections.put(clusterUri, pooled);
+    }
+    pooled.references++;
+    return pooled.connection;
+  }
+
+  /**
+   * Releases a connection obtained from {@link #acquire(URI, Properties)}, closing it if it is no longer acquired.
+   *
+   * @param clusterUri the cluster URI
+   * @throws IOException if closing the connection failed
+   * @throws IllegalStateException if no connection to {@code clusterUri} is acquired
+   */
+  public synchronized void release(URI clusterUri) throws IOException {
+    PooledConnection pooled = connections.get(clusterUri);
+    if (pooled == null) {
+      throw new IllegalStateException("No connection to " + clusterUri + " acquired");
+    }
+    if (--pooled.references == 0) {
+      connections.remove(clusterUri);
+      pooled.connection.close();
+    }
+  }
+
+  synchronized int getReferenceCount(URI clusterUri) {
+    PooledConnection pooled = connections.get(clusterUri);
+    return pooled == null ? 0 : pooled.references;
+  }
+
+  private static final class PooledConnection {
+
+    private final Connection connection;
+    private int references;
+
+    PooledConnection(Connection connection) {
+      this.connection = connection;
+    }
+  }
+}
@@ -16,15 +16,29 @@
 
 package org.ehcache.clustered.client.internal;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
 import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
 import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
 import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
 import org.ehcache.clustered.common.messages.EhcacheEntityResponse.Failure;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.PoolOccupancyResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.StatisticsResponse;
 import org.ehcache.clustered.common.messages.EhcacheEntityResponse.Type;
+import org.ehcache.clustered.common.messages.ReconnectData;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
 import org.terracotta.connection.entity.Entity;
+import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
+import org.terracotta.entity.EntityResponse;
 import org.terracotta.entity.InvokeFuture;
 
 /**
@@ -33,10 +47,95 @@ import org.terracotta.entity.InvokeFuture;
  */
 public class EhcacheClientEntity implements Entity {
 
+  /**
+   * Receives the responses of a given type the server pushes to this client outside of any invocation.
+   */
+  public interface ResponseListener<T extends EhcacheEntityResponse> {
+    void onResponse(T response);
+  }
+
+  /**
+   * Notified when this client reconnects to a server, typically a passive promoted after the failure of the active.
+   * <P>
+   *   Operations in flight at the time of the failure are resent by the connection, but the new active knows
+   *   nothing of the mappings this client cached locally or of the invalidations it was waiting for.  Listeners either
+   *   drop their local copies or report the hashes they keep in the {@link ReconnectData} sent to the new active.
+   * </P>
+   */
+  public interface ReconnectListener {
+    void onReconnect(ReconnectData reconnectData);
+  }
+
   private final EntityClientEndpoint<EhcacheEntityMessage, EhcacheEntityResponse> endpoint;
+  private final ConcurrentMap<Class<? extends EhcacheEntityResponse>, List<ResponseListener<? extends EhcacheEntityResponse>>> responseListeners =
+      new ConcurrentHashMap<Class<? extends EhcacheEntityResponse>, List<ResponseListener<? extends EhcacheEntityResponse>>>();
+  private final List<ReconnectListener> reconnectListeners = new CopyOnWriteArrayList<ReconnectListener>();
 
   public EhcacheClientEntity(EntityClientEndpoint<EhcacheEntityMessage, EhcacheEntityResponse> endpoint) {
     this.endpoint = endpoint;
+    endpoint.setDelegate(new EndpointDelegate() {
+      @Override
+      public void handleMessage(EntityResponse messageFromServer) {
+        if (messageFromServer instanceof EhcacheEntityResponse) {
+          fireResponseEvent((EhcacheEntityResponse) messageFromServer);
+        }
+      }
+
+      @Override
+      public byte[] createExtendedReconnectData() {
+        ReconnectData reconnectData = new ReconnectData();
+        fireReconnectEvent(reconnectData);
+        return reconnectData.encode();
+      }
+
+      @Override
+      public void didDisconnectUnexpectedly() {
+        //nothing to do
+      }
+    });
+  }
+
+  public <T extends EhcacheEntityResponse> void addResponseListener(Class<T> responseType, ResponseListener<T> responseListener) {
+    List<ResponseListener<? extends EhcacheEntityResponse>> listeners = responseListeners.get(responseType);
+    if (listeners == null) {
+      List<ResponseListener<? extends EhcacheEntityResponse>> newListeners = new CopyOnWriteArrayList<ResponseListener<? extends EhcacheEntityResponse>>();
+      listeners = responseListeners.putIfAbsent(responseType, newListeners);
+      if (listeners == null) {
+        listeners = newListeners;
+      }
+    }
+    listeners.add(responseListener);
+  }
+
+  public <T extends EhcacheEntityResponse> void removeResponseListener(Class<T> responseType, ResponseListener<T> responseListener) {
+    List<ResponseListener<? extends EhcacheEntityResponse>> listeners = responseListeners.get(responseType);
+    if (listeners != null) {
+      listeners.remove(responseListener);
+    }
+  }
+
+  public void addReconnectListener(ReconnectListener reconnectListener) {
+    reconnectListeners.add(reconnectListener);
+  }
+
+  public void removeReconnectListener(ReconnectListener reconnectListener) {
+    reconnectListeners.remove(reconnectListener);
+  }
+
+  private void fireReconnectEvent(ReconnectData reconnectData) {
+    for (ReconnectListener listener : reconnectListeners) {
+      listener.onReconnect(reconnectData);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void fireResponseEvent(EhcacheEntityResponse response) {
+    List<ResponseListener<? extends EhcacheEntityResponse>> listeners = responseListeners.get(response.getClass());
+    if (listeners != null) {
+      for (ResponseListener<? extends EhcacheEntityResponse> listener : listeners) {
+        ((ResponseListener<EhcacheEntityResponse>) listener).onResponse(response);
+      }
+    }
   }
 
   public UUID identity() {
@@ -68,8 +167,118 @@ public class EhcacheClientEntity implements Entity {
     }
   }
 
+  public void createServerStore(String name, ServerStoreConfiguration serverStoreConfiguration) throws IllegalStateException {
+    try {
+      invoke(EhcacheEntityMessage.createServerStore(name, serverStoreConfiguration));
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void destroyServerStore(String name) throws IllegalStateException {
+    try {
+      invoke(EhcacheEntityMessage.destroyServerStore(name));
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns the operation counters of every server store, keyed by store name then counter name.
+   *
+   * @return the server store statistics
+   */
+  public Map<String, Map<String, Long>> getStatistics() {
+    try {
+      return ((StatisticsResponse) invoke(EhcacheEntityMessage.getStatistics())).getStatistics();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns how the shared pools are split between their server stores.
+   *
+   * @return the pool sizes, and the occupancy and fair share of each store
+   */
+  public PoolOccupancyResponse getPoolOccupancy() {
+    try {
+      return (PoolOccupancyResponse) invoke(EhcacheEntityMessage.getPoolOccupancy());
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public EhcacheEntityResponse invokeServerStoreOperation(ServerStoreOpMessage message) throws IllegalStateException {
+    try {
+      return invoke(message);
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sends a sequence of server store operations without waiting for the response to each before sending the next.
+   * <P>
+   *   All operations are put on the wire before the first response is awaited, so the round trip latency is paid
+   *   once for the whole sequence rather than once per operation.  Responses are returned in the order of the
+   *   operations.
+   * </P>
+   *
+   * @param messages the operations to send
+   * @return the responses, one per operation
+   * @throws IllegalStateException if the server rejected one of the operations
+   */
+  public List<EhcacheEntityResponse> invokeServerStoreOperations(List<? extends ServerStoreOpMessage> messages) throws IllegalStateException {
+    try {
+      List<InvokeFuture<EhcacheEntityResponse>> results = new ArrayList<InvokeFuture<EhcacheEntityResponse>>(messages.size());
+      for (ServerStoreOpMessage message : messages) {
+        results.add(endpoint.beginInvoke().message(message).invoke());
+      }
+      List<EhcacheEntityResponse> responses = new ArrayList<EhcacheEntityResponse>(results.size());
+      for (InvokeFuture<EhcacheEntityResponse> result : results) {
+        responses.add(waitFor(result));
+      }
+      return responses;
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Sends a server store operation without waiting for its response.
+   *
+   * @param message the operation to send
+   */
+  public void invokeServerStoreOperationAsync(ServerStoreOpMessage message) {
+    try {
+      endpoint.beginInvoke().message(message).invoke();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   private EhcacheEntityResponse invoke(EhcacheEntityMessage message) throws Throwable {
-    InvokeFuture<EhcacheEntityResponse> result = endpoint.beginInvoke().message(message).invoke();
+    return waitFor(endpoint.beginInvoke().message(message).invoke());
+  }
+
+  private static EhcacheEntityResponse waitFor(InvokeFuture<EhcacheEntityResponse> result) throws Throwable {
     boolean interrupted = false;
     try {
       while (true) {
@@ -130,6 +130,22 @@ public class EhcacheClientEntityFactory {
     }
   }
 
+  /**
+   * Fetches an existing entity without validating its configuration, for tools observing a cache manager they do not
+   * hold the configuration of.
+   *
+   * @param identifier the entity identifier
+   * @return the entity
+   * @throws EntityNotFoundException if no such entity exists
+   */
+  public EhcacheClientEntity retrieve(String identifier) throws EntityNotFoundException {
+    try {
+      return getEntityRef(identifier).fetchEntity();
+    } catch (EntityVersionMismatchException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   public void destroy(final String identifier) throws EntityNotFoundException {
     throw new UnsupportedOperationException("Destroy implementation waiting on fix for Terracotta-OSS/terracotta-apis#27");
   }
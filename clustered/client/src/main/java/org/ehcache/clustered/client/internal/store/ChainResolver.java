@@ -0,0 +1,271 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.ValueSupplier;
+import org.ehcache.clustered.client.internal.store.operations.InstallOperation;
+import org.ehcache.clustered.client.internal.store.operations.Operation;
+import org.ehcache.clustered.client.internal.store.operations.OperationsCodec;
+import org.ehcache.clustered.client.internal.store.operations.Result;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expiry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the {@link Operation}s of a server-side chain to find the value of a key.
+ * <P>
+ *   A chain holds the operations of every key sharing a hash.  All of them are replayed so that the same pass also
+ *   produces the compacted form of the chain: one {@link InstallOperation} per live key.  Expiry is applied during the
+ *   replay using the timestamp of each operation, so every client resolving the same chain reaches the same result.
+ * </P>
+ * <P>
+ *   Reads resolve with {@link #resolveAccess(Chain, Object, long)}, which also applies the expiry for access to the
+ *   read key.  An access that changes the expiration time of the mapping is recorded in the compacted chain only, which
+ *   the caller installs on the server in place of the resolved chain.  So that a read does not cost a server rewrite
+ *   each time, an access that would only push the expiration time further is recorded once less than
+ *   {@code 1/}{@link #ACCESS_REFRESH_DIVISOR} of the expiry for access is left: a mapping read steadily then expires
+ *   between half of and the full expiry for access after its last read.
+ * </P>
+ */
+class ChainResolver<K, V> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ChainResolver.class);
+
+  /**
+   * Fraction of the expiry for access that must remain on a mapping for an access not to extend its expiration time.
+   */
+  static final int ACCESS_REFRESH_DIVISOR = 2;
+
+  private final OperationsCodec<K, V> codec;
+  private final Expiry<? super K, ? super V> expiry;
+
+  ChainResolver(OperationsCodec<K, V> codec, Expiry<? super K, ? super V> expiry) {
+    this.codec = codec;
+    this.expiry = expiry;
+  }
+
+  ResolvedChain<K, V> resolve(Chain chain, K key, long now) {
+    return resolve(chain, key, now, false);
+  }
+
+  /**
+   * Resolves the chain of a key being read, applying the expiry for access to its mapping.
+   *
+   * @return the resolved chain, {@link ResolvedChain#isTouched() touched} if the access changed the expiration time
+   */
+  ResolvedChain<K, V> resolveAccess(Chain chain, K key, long now) {
+    return resolve(chain, key, now, true);
+  }
+
+  /**
+   * Resolves every key with an operation in {@code chain} in a single replay.
+   *
+   * @return the value holder of each key with a live mapping
+   */
+  Map<K, Store.ValueHolder<V>> resolveAll(Chain chain, long now) {
+    Map<K, Mapping<V>> mappings = new LinkedHashMap<K, Mapping<V>>();
+    replay(chain, mappings);
+    Map<K, Store.ValueHolder<V>> valueHolders = new HashMap<K, Store.ValueHolder<V>>();
+    for (Map.Entry<K, Mapping<V>> entry : mappings.entrySet()) {
+      Mapping<V> mapping = entry.getValue();
+      if (!mapping.isExpired(now)) {
+        valueHolders.put(entry.getKey(),
+            new ClusteredValueHolder<V>(mapping.result.getValue(), mapping.creationTime, mapping.expirationTime));
+      }
+    }
+    return valueHolders;
+  }
+
+  private ResolvedChain<K, V> resolve(Chain chain, K key, long now, boolean access) {
+    Map<K, Mapping<V>> mappings = new LinkedHashMap<K, Mapping<V>>();
+    int chainLength = replay(chain, mappings);
+
+    ClusteredValueHolder<V> valueHolder = null;
+    boolean touched = false;
+    List<ByteBuffer> compacted = new ArrayList<ByteBuffer>(mappings.size());
+    for (Map.Entry<K, Mapping<V>> entry : mappings.entrySet()) {
+      Mapping<V> mapping = entry.getValue();
+      if (mapping.isExpired(now)) {
+        continue;
+      }
+      V value = mapping.result.getValue();
+      long expirationTime = mapping.expirationTime;
+      if (entry.getKey().equals(key)) {
+        valueHolder = new ClusteredValueHolder<V>(value, mapping.creationTime, expirationTime);
+        if (access) {
+          Duration duration = expiryForAccess(key, valueHolder);
+          if (duration != null) {
+            if (duration.equals(Duration.ZERO)) {
+              // the value is still returned to this reader, but expires with this access
+              touched = true;
+              continue;
+            }
+            long accessExpirationTime = expirationTime(now, duration);
+            if (isRecordedAccess(now, expirationTime, accessExpirationTime)) {
+              touched = true;
+              expirationTime = accessExpirationTime;
+            }
+          }
+        }
+      }
+      compacted.add(codec.encode(new InstallOperation<K, V>(entry.getKey(), value, mapping.creationTime, expirationTime)));
+    }
+    return new ResolvedChain<K, V>(valueHolder, new PayloadChain(compacted), chainLength, compacted.size(), touched);
+  }
+
+  /**
+   * Replays the operations of {@code chain} into {@code mappings}, which ends up holding the mapping of every key not
+   * removed by the chain, expired or not.
+   *
+   * @return the number of elements in the chain
+   */
+  private int replay(Chain chain, Map<K, Mapping<V>> mappings) {
+    int chainLength = 0;
+    for (Element element : chain) {
+      chainLength++;
+      Operation<K, V> operation = codec.decode(element.getPayload());
+      K operationKey = operation.getKey();
+      Mapping<V> current = mappings.get(operationKey);
+      if (current != null && current.isExpired(operation.timeStamp())) {
+        current = null;
+      }
+      Mapping<V> next = apply(operation, current);
+      if (next == null) {
+        mappings.remove(operationKey);
+      } else {
+        mappings.put(operationKey, next);
+      }
+    }
+    return chainLength;
+  }
+
+  private Mapping<V> apply(Operation<K, V> operation, Mapping<V> current) {
+    if (operation instanceof InstallOperation) {
+      InstallOperation<K, V> install = (InstallOperation<K, V>) operation;
+      return new Mapping<V>(install, install.timeStamp(), install.expirationTime());
+    }
+
+    final Result<V> previous = current == null ? null : current.result;
+    Result<V> next = operation.apply(previous);
+    long timeStamp = operation.timeStamp();
+    if (next == null) {
+      return null;
+    } else if (previous == null) {
+      Duration duration = expiryForCreation(operation.getKey(), next.getValue());
+      return duration.equals(Duration.ZERO) ? null : new Mapping<V>(next, timeStamp, expirationTime(timeStamp, duration));
+    } else if (next != previous) {
+      Duration duration = expiryForUpdate(operation.getKey(), previous, next.getValue());
+      if (duration == null) {
+        return new Mapping<V>(next, current.creationTime, current.expirationTime);
+      } else if (duration.equals(Duration.ZERO)) {
+        return null;
+      } else {
+        return new Mapping<V>(next, current.creationTime, expirationTime(timeStamp, duration));
+      }
+    } else {
+      return current;
+    }
+  }
+
+  private Duration expiryForCreation(K key, V value) {
+    try {
+      Duration duration = expiry.getExpiryForCreation(key, value);
+      return duration == null ? Duration.ZERO : duration;
+    } catch (RuntimeException re) {
+      LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
+      return Duration.ZERO;
+    }
+  }
+
+  private Duration expiryForUpdate(K key, final Result<V> previous, V value) {
+    try {
+      return expiry.getExpiryForUpdate(key, new ValueSupplier<V>() {
+        @Override
+        public V value() {
+          return previous.getValue();
+        }
+      }, value);
+    } catch (RuntimeException re) {
+      LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
+      return Duration.ZERO;
+    }
+  }
+
+  private Duration expiryForAccess(K key, ValueSupplier<V> valueSupplier) {
+    try {
+      return expiry.getExpiryForAccess(key, valueSupplier);
+    } catch (RuntimeException re) {
+      LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
+      return Duration.ZERO;
+    }
+  }
+
+  /**
+   * Tells whether an access moving the expiration time of a mapping from {@code expirationTime} to
+   * {@code accessExpirationTime} must be recorded on the server.
+   */
+  private static boolean isRecordedAccess(long now, long expirationTime, long accessExpirationTime) {
+    if (accessExpirationTime == expirationTime) {
+      return false;
+    } else if (expirationTime == Store.ValueHolder.NO_EXPIRE || accessExpirationTime == Store.ValueHolder.NO_EXPIRE
+               || accessExpirationTime < expirationTime) {
+      return true;
+    } else {
+      return expirationTime - now < (accessExpirationTime - now) / ACCESS_REFRESH_DIVISOR;
+    }
+  }
+
+  private static long expirationTime(long now, Duration duration) {
+    if (duration.isInfinite()) {
+      return Store.ValueHolder.NO_EXPIRE;
+    }
+    long millis = TimeUnit.MILLISECONDS.convert(duration.getLength(), duration.getTimeUnit());
+    if (millis == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    long expirationTime = now + millis;
+    return expirationTime < 0 ? Long.MAX_VALUE : expirationTime;
+  }
+
+  private static final class Mapping<V> {
+
+    private final Result<V> result;
+    private final long creationTime;
+    private final long expirationTime;
+
+    Mapping(Result<V> result, long creationTime, long expirationTime) {
+      this.result = result;
+      this.creationTime = creationTime;
+      this.expirationTime = expirationTime;
+    }
+
+    boolean isExpired(long now) {
+      return expirationTime != Store.ValueHolder.NO_EXPIRE && expirationTime <= now;
+    }
+  }
+}
@@ -17,11 +17,28 @@
 package org.ehcache.clustered.client.internal.store;
 
 import org.ehcache.Cache;
+import org.ehcache.clustered.client.config.ClusteredResourcePool;
 import org.ehcache.clustered.client.config.ClusteredResourceType;
-import org.ehcache.clustered.client.config.ClusteringServiceConfiguration;
+import org.ehcache.clustered.client.config.ClusteredStoreConfiguration;
+import org.ehcache.clustered.client.internal.store.operations.ConditionalRemoveOperation;
+import org.ehcache.clustered.client.internal.store.operations.ConditionalReplaceOperation;
+import org.ehcache.clustered.client.internal.store.operations.Operation;
+import org.ehcache.clustered.client.internal.store.operations.OperationsCodec;
+import org.ehcache.clustered.client.internal.store.operations.PutIfAbsentOperation;
+import org.ehcache.clustered.client.internal.store.operations.PutOperation;
+import org.ehcache.clustered.client.internal.store.operations.RemoveOperation;
+import org.ehcache.clustered.client.internal.store.operations.ReplaceOperation;
 import org.ehcache.clustered.client.service.ClusteringService;
+import org.ehcache.clustered.client.service.ClusteringService.ClusteredCacheIdentifier;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.ServerStore;
+import org.ehcache.config.ResourcePool;
+import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourceType;
 import org.ehcache.core.CacheConfigurationChangeListener;
+import org.ehcache.core.events.StoreEventDispatcher;
+import org.ehcache.core.events.StoreEventSink;
 import org.ehcache.core.internal.store.StoreSupport;
 import org.ehcache.core.internal.util.ConcurrentWeakIdentityHashMap;
 import org.ehcache.core.spi.function.BiFunction;
@@ -30,144 +47,848 @@ import org.ehcache.core.spi.function.NullaryFunction;
 import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.events.StoreEventSource;
 import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.core.spi.store.tiering.AuthoritativeTier;
+import org.ehcache.core.spi.store.tiering.CachingTier;
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.core.spi.time.TimeSourceService;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.internal.events.ScopedStoreEventDispatcher;
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.impl.internal.store.offheap.OffHeapStore;
+import org.ehcache.impl.internal.store.tiering.CompoundCachingTier;
+import org.ehcache.impl.internal.store.tiering.CompoundCachingTierServiceConfiguration;
+import org.ehcache.impl.internal.store.tiering.TieredStore;
+import org.ehcache.impl.internal.util.ThreadFactoryUtil;
 import org.ehcache.spi.service.ServiceProvider;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.spi.service.ServiceDependencies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.ehcache.config.ResourceType.Core.HEAP;
+import static org.ehcache.config.ResourceType.Core.OFFHEAP;
+import static org.ehcache.core.exceptions.StorePassThroughException.handleRuntimeException;
+import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
 
 /**
  * Supports a {@link Store} in a clustered environment.
+ * <P>
+ *   Mutations are not applied in place: each one is encoded as an {@link Operation} and appended to the server-side
+ *   chain of the key's hash with a single {@link ServerStore#getAndAppend(long, ByteBuffer)}.  The chain returned by
+ *   the append is everything that preceded the operation, so replaying it locally tells the caller exactly what its
+ *   operation did.  Reads replay the whole chain the same way.  Chains that have grown past
+ *   {@link #COMPACTION_THRESHOLD} elements are rewritten in their resolved form through
+ *   {@link ServerStore#replaceAtHead(long, Chain, Chain)}.  Chains in which every mapping has expired are removed the
+ *   same way whatever their length: the server cannot evaluate expiry itself, so this is what frees the capacity they
+ *   hold before the server has to evict live chains.  Reads for which the expiry for access moves the expiration time
+ *   of the read mapping also rewrite its chain, recording the new expiration time, though an extension is only
+ *   recorded once most of the previous one has elapsed, see {@link ChainResolver}.  The server may also ask for a chain
+ *   to be compacted once it grows past its own thresholds, for instance through appends that were never resolved: such
+ *   requests are served in the background by a single worker of this store, which reads the chain without registering
+ *   this client as holding a copy of it.
+ * </P>
+ * <P>
+ *   When the cache also has a heap resource, the provider fronts this store with a local caching tier inside a
+ *   {@link TieredStore}.  The server invalidates the mappings cached by other clients whenever a hash is mutated.
+ *   The caching tier can be bootstrapped with the mappings held by the server, see {@link StoreBootstrap}.
+ * </P>
+ * <P>
+ *   Store events are fired from the outcome of the operations of this store only: mutations made by other clients,
+ *   expiries and evictions by the server are not observed by this client and so are not reported.
+ * </P>
  */
-// *********************************************************************************************
-// *********************************************************************************************
-// *                                                                                           *
-// * This is a shell of an implementation that is a placeholder for a real implementation.     *
-// * The methods in this class are, at this point, not expected to function "properly".        *
-// *                                                                                           *
-// * In its present form, the cache configuration must provide some 'core' resource in         *
-// * addition to the clustered resources.                                                      *
-// *                                                                                           *
-// *********************************************************************************************
-// *********************************************************************************************
-public class ClusteredStore<K, V> implements Store<K, V> {
+public class ClusteredStore<K, V> implements AuthoritativeTier<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusteredStore.class);
+
+  /**
+   * Number of elements a chain must have before a resolving client compacts it.
+   */
+  static final int COMPACTION_THRESHOLD = 4;
+
+  /**
+   * Number of counters over which the mutations made through this store are counted by key hash.
+   */
+  private static final int MUTATION_STRIPES = 1024;
+
+  /**
+   * Seconds after which an idle compaction worker thread terminates.
+   */
+  private static final long COMPACTION_KEEP_ALIVE = 10;
+
+  private static final NullaryFunction<Boolean> REPLACE_EQUALS_TRUE = new NullaryFunction<Boolean>() {
+    @Override
+    public Boolean apply() {
+      return Boolean.TRUE;
+    }
+  };
+
+  private final OperationsCodec<K, V> codec;
+  private final ChainResolver<K, V> resolver;
+  private final TimeSource timeSource;
+  private final StoreEventDispatcher<K, V> storeEventDispatcher;
+  private final Set<Long> pendingCompactions = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+  private final AtomicLongArray mutationCounts = new AtomicLongArray(MUTATION_STRIPES);
+  private final ThreadPoolExecutor compactionExecutor = new ThreadPoolExecutor(0, 1, COMPACTION_KEEP_ALIVE, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(), ThreadFactoryUtil.threadFactory("clustered store compaction"));
+
+  private volatile ServerStore storeProxy;
+
+  ClusteredStore(final OperationsCodec<K, V> codec, final ChainResolver<K, V> resolver, final TimeSource timeSource,
+                 final StoreEventDispatcher<K, V> storeEventDispatcher) {
+    this.codec = codec;
+    this.resolver = resolver;
+    this.timeSource = timeSource;
+    this.storeEventDispatcher = storeEventDispatcher;
+  }
+
+  /**
+   * For tests.
+   */
+  ClusteredStore(final OperationsCodec<K, V> codec, final ChainResolver<K, V> resolver, final ServerStore serverStore, final TimeSource timeSource) {
+    this(codec, resolver, serverStore, timeSource, NullStoreEventDispatcher.<K, V>nullStoreEventDispatcher());
+  }
+
+  /**
+   * For tests.
+   */
+  ClusteredStore(final OperationsCodec<K, V> codec, final ChainResolver<K, V> resolver, final ServerStore serverStore,
+                 final TimeSource timeSource, final StoreEventDispatcher<K, V> storeEventDispatcher) {
+    this(codec, resolver, timeSource, storeEventDispatcher);
+    this.storeProxy = serverStore;
+  }
+
+  private static long extractLongKey(Object key) {
+    return key.hashCode();
+  }
+
+  private ResolvedChain<K, V> resolve(long hash, Chain chain, K key, long now) {
+    return resolve(hash, chain, key, now, false);
+  }
+
+  /**
+   * Resolves {@code chain} for {@code key}, compacting it on the server when it holds enough redundant elements or when
+   * an {@code access} to the key changed its expiration time.
+   */
+  private ResolvedChain<K, V> resolve(long hash, Chain chain, K key, long now, boolean access) {
+    ResolvedChain<K, V> resolved = access ? resolver.resolveAccess(chain, key, now) : resolver.resolve(chain, key, now);
+    int redundant = resolved.getRedundantElements();
+    if (resolved.isTouched()
+        || (redundant > 0 && (redundant == resolved.getChainLength() || resolved.getChainLength() >= COMPACTION_THRESHOLD))) {
+      storeProxy.replaceAtHead(hash, chain, resolved.getCompactedChain());
+    }
+    return resolved;
+  }
+
+  /**
+   * Appends {@code operation} to the chain of its key.
+   *
+   * @return the resolution of the chain that preceded the operation
+   */
+  private ResolvedChain<K, V> append(Operation<K, V> operation) {
+    long hash = extractLongKey(operation.getKey());
+    Chain chain = getAndAppend(hash, codec.encode(operation));
+    pendingCompactions.remove(hash);
+    return resolve(hash, chain, operation.getKey(), operation.timeStamp());
+  }
+
+  /**
+   * Appends {@code payload} to the chain of {@code hash}, counting the mutation once the server has applied it.
+   */
+  private Chain getAndAppend(long hash, ByteBuffer payload) {
+    try {
+      return storeProxy.getAndAppend(hash, payload);
+    } finally {
+      mutated(hash);
+    }
+  }
+
+  private void mutated(long hash) {
+    mutationCounts.incrementAndGet(mutationStripe(hash));
+  }
+
+  private static int mutationStripe(long hash) {
+    return ((int) (hash ^ (hash >>> 32))) & (MUTATION_STRIPES - 1);
+  }
+
+  /**
+   * Returns the number of mutations made through this store to {@code hash}, or to hashes sharing its counter.
+   * Comparing two values tells whether a chain read in between may have been made stale by this client, which the
+   * server does not invalidate.
+   *
+   * @param hash the key hash
+   * @return the mutation count
+   */
+  long getMutationCount(long hash) {
+    return mutationCounts.get(mutationStripe(hash));
+  }
+
+  private ResolvedChain<K, V> read(K key, long now, boolean access) {
+    long hash = extractLongKey(key);
+    return resolve(hash, storeProxy.get(hash), key, now, access);
+  }
 
-  private final Store<K, V> underlyingStore;
+  /**
+   * Resolves every key with an operation in {@code chain}, for installing chains read in bulk into a caching tier.
+   *
+   * @param chain the chain of a key hash
+   * @return the value holder of each key with a live mapping
+   */
+  Map<K, ValueHolder<V>> resolveAll(Chain chain) {
+    return resolver.resolveAll(chain, timeSource.getTimeMillis());
+  }
+
+  /**
+   * Queues the compaction of a chain the server reported as too long.  Requests for a chain already queued, or that an
+   * operation of this store resolves before the worker gets to it, are only served once.
+   *
+   * @param hash the key hash of the chain
+   */
+  void requestCompaction(final long hash) {
+    if (pendingCompactions.add(hash)) {
+      try {
+        compactionExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            compact(hash);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        pendingCompactions.remove(hash);
+      }
+    }
+  }
 
-  ClusteredStore(final Configuration<K, V> storeConfig, final ClusteringServiceConfiguration clusteringConfig, final Store<K, V> underlyingStore) {
-    this.underlyingStore = underlyingStore;
+  private void compact(long hash) {
+    ServerStore proxy = storeProxy;
+    if (!pendingCompactions.remove(hash) || proxy == null) {
+      return;
+    }
+    try {
+      Chain chain = proxy.getUntracked(hash);
+      ResolvedChain<K, V> resolved = resolver.resolve(chain, null, timeSource.getTimeMillis());
+      if (resolved.getRedundantElements() > 0) {
+        proxy.replaceAtHead(hash, chain, resolved.getCompactedChain());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.debug("Compaction of chain {} failed, it is left to the next operation resolving it", hash, e);
+    }
+  }
+
+  /**
+   * Stops serving compaction requests, dropping the queued ones.
+   */
+  void shutdownCompaction() {
+    compactionExecutor.shutdownNow();
+    pendingCompactions.clear();
   }
 
   @Override
   public ValueHolder<V> get(final K key) throws StoreAccessException {
-    return underlyingStore.get(key);
+    checkKey(key);
+    try {
+      return read(key, timeSource.getTimeMillis(), true).getValueHolder();
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public boolean containsKey(final K key) throws StoreAccessException {
-    return underlyingStore.containsKey(key);
+    return get(key) != null;
   }
 
   @Override
   public PutStatus put(final K key, final V value) throws StoreAccessException {
-    return underlyingStore.put(key, value);
+    checkKey(key);
+    checkValue(value);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new PutOperation<K, V>(key, value, timeSource.getTimeMillis())).getValueHolder();
+      PutStatus status;
+      if (previous == null) {
+        eventSink.created(key, value);
+        status = PutStatus.PUT;
+      } else {
+        eventSink.updated(key, previous, value);
+        status = PutStatus.UPDATE;
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return status;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public ValueHolder<V> putIfAbsent(final K key, final V value) throws StoreAccessException {
-    return underlyingStore.putIfAbsent(key, value);
+    checkKey(key);
+    checkValue(value);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new PutIfAbsentOperation<K, V>(key, value, timeSource.getTimeMillis())).getValueHolder();
+      if (previous == null) {
+        eventSink.created(key, value);
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return previous;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public boolean remove(final K key) throws StoreAccessException {
-    return underlyingStore.remove(key);
+    checkKey(key);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new RemoveOperation<K, V>(key, timeSource.getTimeMillis())).getValueHolder();
+      if (previous != null) {
+        eventSink.removed(key, previous);
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return previous != null;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return false;
+    }
   }
 
   @Override
   public RemoveStatus remove(final K key, final V value) throws StoreAccessException {
-    return underlyingStore.remove(key, value);
+    checkKey(key);
+    checkValue(value);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new ConditionalRemoveOperation<K, V>(key, value, timeSource.getTimeMillis())).getValueHolder();
+      RemoveStatus status;
+      if (previous == null) {
+        status = RemoveStatus.KEY_MISSING;
+      } else if (previous.value().equals(value)) {
+        eventSink.removed(key, previous);
+        status = RemoveStatus.REMOVED;
+      } else {
+        status = RemoveStatus.KEY_PRESENT;
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return status;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public ValueHolder<V> replace(final K key, final V value) throws StoreAccessException {
-    return underlyingStore.replace(key, value);
+    checkKey(key);
+    checkValue(value);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new ReplaceOperation<K, V>(key, value, timeSource.getTimeMillis())).getValueHolder();
+      if (previous != null) {
+        eventSink.updated(key, previous, value);
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return previous;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public ReplaceStatus replace(final K key, final V oldValue, final V newValue) throws StoreAccessException {
-    return underlyingStore.replace(key, oldValue, newValue);
+    checkKey(key);
+    checkValue(oldValue);
+    checkValue(newValue);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      ValueHolder<V> previous = append(new ConditionalReplaceOperation<K, V>(key, oldValue, newValue, timeSource.getTimeMillis())).getValueHolder();
+      ReplaceStatus status;
+      if (previous == null) {
+        status = ReplaceStatus.MISS_NOT_PRESENT;
+      } else if (previous.value().equals(oldValue)) {
+        eventSink.updated(key, previous, newValue);
+        status = ReplaceStatus.HIT;
+      } else {
+        status = ReplaceStatus.MISS_PRESENT;
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return status;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public void clear() throws StoreAccessException {
-    underlyingStore.clear();
+    try {
+      storeProxy.clear();
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+    } finally {
+      for (int i = 0; i < MUTATION_STRIPES; i++) {
+        mutationCounts.incrementAndGet(i);
+      }
+    }
   }
 
   @Override
   public StoreEventSource<K, V> getStoreEventSource() {
-    return underlyingStore.getStoreEventSource();
+    return storeEventDispatcher;
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The key space of the server store is walked stripe by stripe, the chains of each stripe being read in batches of
+   *   at most {@link ServerStoreProxy#MAX_BATCH_SIZE} keys and resolved locally.  The iteration is weakly consistent:
+   *   mutations of a stripe already read are not reflected.  Reading the chains registers this client as a holder of
+   *   their hashes, like any other read.
+   * </P>
+   */
   @Override
   public Iterator<Cache.Entry<K, ValueHolder<V>>> iterator() {
-    return underlyingStore.iterator();
+    return new ClusteredStoreIterator();
   }
 
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction)
       throws StoreAccessException {
-    return underlyingStore.compute(key, mappingFunction);
+    return compute(key, mappingFunction, REPLACE_EQUALS_TRUE);
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The function is applied to a locally resolved value and its result installed with a conditional operation,
+   *   so a concurrent mutation from any client makes the installation fail and the computation start over.  The failed
+   *   operation left the mapping untouched, so the chain returned by its append is the current state of the key and
+   *   the computation restarts from it: each retry costs a single round trip.
+   * </P>
+   */
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction, final NullaryFunction<Boolean> replaceEqual)
       throws StoreAccessException {
-    return underlyingStore.compute(key, mappingFunction, replaceEqual);
+    checkKey(key);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      long hash = extractLongKey(key);
+      long now = timeSource.getTimeMillis();
+      ResolvedChain<K, V> current = read(key, now, false);
+      while (true) {
+        V oldValue = current.getValue();
+        V newValue = mappingFunction.apply(key, oldValue);
+
+        Operation<K, V> operation;
+        if (newValue == null) {
+          if (oldValue == null) {
+            storeEventDispatcher.releaseEventSink(eventSink);
+            return null;
+          }
+          operation = new ConditionalRemoveOperation<K, V>(key, oldValue, now);
+        } else if (oldValue == null) {
+          operation = new PutIfAbsentOperation<K, V>(key, newValue, now);
+        } else if (newValue.equals(oldValue) && !replaceEqual.apply()) {
+          storeEventDispatcher.releaseEventSink(eventSink);
+          return current.getValueHolder();
+        } else {
+          operation = new ConditionalReplaceOperation<K, V>(key, oldValue, newValue, now);
+        }
+
+        ByteBuffer payload = codec.encode(operation);
+        Chain chain = getAndAppend(hash, payload);
+        ResolvedChain<K, V> previous = resolve(hash, chain, key, now);
+        if (oldValue == null ? previous.getValue() == null : oldValue.equals(previous.getValue())) {
+          if (newValue == null) {
+            eventSink.removed(key, previous.getValueHolder());
+          } else if (oldValue == null) {
+            eventSink.created(key, newValue);
+          } else {
+            eventSink.updated(key, previous.getValueHolder(), newValue);
+          }
+          ValueHolder<V> computed = resolver.resolve(PayloadChain.append(chain, payload), key, now).getValueHolder();
+          storeEventDispatcher.releaseEventSink(eventSink);
+          return computed;
+        }
+        now = timeSource.getTimeMillis();
+        current = resolver.resolve(PayloadChain.append(chain, payload), key, now);
+      }
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public ValueHolder<V> computeIfAbsent(final K key, final Function<? super K, ? extends V> mappingFunction)
       throws StoreAccessException {
-    return underlyingStore.computeIfAbsent(key, mappingFunction);
+    checkKey(key);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      long now = timeSource.getTimeMillis();
+      ResolvedChain<K, V> current = read(key, now, true);
+      if (current.getValueHolder() != null) {
+        storeEventDispatcher.releaseEventSink(eventSink);
+        return current.getValueHolder();
+      }
+      V value = mappingFunction.apply(key);
+      if (value == null) {
+        storeEventDispatcher.releaseEventSink(eventSink);
+        return null;
+      }
+
+      ByteBuffer payload = codec.encode(new PutIfAbsentOperation<K, V>(key, value, now));
+      long hash = extractLongKey(key);
+      Chain chain = getAndAppend(hash, payload);
+      ResolvedChain<K, V> previous = resolve(hash, chain, key, now);
+      ValueHolder<V> result;
+      if (previous.getValueHolder() != null) {
+        result = previous.getValueHolder();
+      } else {
+        eventSink.created(key, value);
+        result = resolver.resolve(PayloadChain.append(chain, payload), key, now).getValueHolder();
+      }
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return result;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
   @Override
   public Map<K, ValueHolder<V>> bulkCompute(final Set<? extends K> keys, final Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction)
       throws StoreAccessException {
-    return underlyingStore.bulkCompute(keys, remappingFunction);
+    return bulkCompute(keys, remappingFunction, REPLACE_EQUALS_TRUE);
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   All chains are read in one batched request and the function is applied once to the resolved values.  The
+   *   remapped values are then installed unconditionally in a second batched request, so a concurrent mutation of one
+   *   of the keys between the two requests is overwritten.  Keys the function does not return are left untouched.
+   * </P>
+   */
   @Override
   public Map<K, ValueHolder<V>> bulkCompute(final Set<? extends K> keys, final Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction, final NullaryFunction<Boolean> replaceEqual)
       throws StoreAccessException {
-    return underlyingStore.bulkCompute(keys, remappingFunction, replaceEqual);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      long now = timeSource.getTimeMillis();
+      Map<K, ResolvedChain<K, V>> current = readAll(keys, now);
+
+      List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>(current.size());
+      for (Map.Entry<K, ResolvedChain<K, V>> entry : current.entrySet()) {
+        entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.getValue().getValue()));
+      }
+
+      Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+      List<Operation<K, V>> operations = new ArrayList<Operation<K, V>>();
+      for (Map.Entry<? extends K, ? extends V> remapped : remappingFunction.apply(entries)) {
+        K key = remapped.getKey();
+        ResolvedChain<K, V> resolved = current.get(key);
+        if (resolved == null) {
+          continue;
+        }
+        V oldValue = resolved.getValue();
+        V newValue = remapped.getValue();
+        if (newValue == null) {
+          if (oldValue == null) {
+            result.put(key, null);
+          } else {
+            operations.add(new RemoveOperation<K, V>(key, now));
+          }
+        } else if (newValue.equals(oldValue) && !replaceEqual.apply()) {
+          result.put(key, resolved.getValueHolder());
+        } else {
+          operations.add(new PutOperation<K, V>(key, newValue, now));
+        }
+      }
+      for (K key : current.keySet()) {
+        if (!result.containsKey(key)) {
+          result.put(key, current.get(key).getValueHolder());
+        }
+      }
+      result.putAll(appendAll(operations, now, eventSink));
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return result;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   All chains are read in one batched request and the function is applied once to all absent keys.  The loaded
+   *   values are installed with {@link PutIfAbsentOperation}s in a second batched request, so a value installed
+   *   concurrently by another client wins over the loaded one.
+   * </P>
+   */
   @Override
   public Map<K, ValueHolder<V>> bulkComputeIfAbsent(final Set<? extends K> keys, final Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction)
       throws StoreAccessException {
-    return underlyingStore.bulkComputeIfAbsent(keys, mappingFunction);
+    StoreEventSink<K, V> eventSink = storeEventDispatcher.eventSink();
+    try {
+      long now = timeSource.getTimeMillis();
+      Map<K, ResolvedChain<K, V>> current = readAll(keys, now);
+
+      Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+      Set<K> missing = new HashSet<K>();
+      for (Map.Entry<K, ResolvedChain<K, V>> entry : current.entrySet()) {
+        ValueHolder<V> valueHolder = entry.getValue().getValueHolder();
+        if (valueHolder == null) {
+          missing.add(entry.getKey());
+        }
+        result.put(entry.getKey(), valueHolder);
+      }
+      if (missing.isEmpty()) {
+        storeEventDispatcher.releaseEventSink(eventSink);
+        return result;
+      }
+
+      List<Operation<K, V>> operations = new ArrayList<Operation<K, V>>(missing.size());
+      for (Map.Entry<? extends K, ? extends V> mapped : mappingFunction.apply(missing)) {
+        if (mapped != null && mapped.getValue() != null && missing.remove(mapped.getKey())) {
+          operations.add(new PutIfAbsentOperation<K, V>(mapped.getKey(), mapped.getValue(), now));
+        }
+      }
+      result.putAll(appendAll(operations, now, eventSink));
+      storeEventDispatcher.releaseEventSink(eventSink);
+      return result;
+    } catch (RuntimeException re) {
+      storeEventDispatcher.releaseEventSinkAfterFailure(eventSink, re);
+      handleRuntimeException(re);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the chains of all {@code keys} in one batched request.
+   *
+   * @return the resolved chain of each key
+   */
+  private Map<K, ResolvedChain<K, V>> readAll(Set<? extends K> keys, long now) {
+    List<K> keyList = new ArrayList<K>(keys.size());
+    long[] hashes = new long[keys.size()];
+    for (K key : keys) {
+      checkKey(key);
+      hashes[keyList.size()] = extractLongKey(key);
+      keyList.add(key);
+    }
+    Chain[] chains = storeProxy.getAll(hashes);
+    Map<K, ResolvedChain<K, V>> resolved = new HashMap<K, ResolvedChain<K, V>>();
+    for (int i = 0; i < chains.length; i++) {
+      resolved.put(keyList.get(i), resolve(hashes[i], chains[i], keyList.get(i), now));
+    }
+    return resolved;
+  }
+
+  /**
+   * Appends all {@code operations} to the chains of their keys in one batched request, recording the resulting events
+   * in {@code eventSink}.
+   *
+   * @return the value held by each key once its operation is applied
+   */
+  private Map<K, ValueHolder<V>> appendAll(List<Operation<K, V>> operations, long now, StoreEventSink<K, V> eventSink) {
+    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    if (operations.isEmpty()) {
+      return result;
+    }
+    long[] hashes = new long[operations.size()];
+    ByteBuffer[] payloads = new ByteBuffer[operations.size()];
+    for (int i = 0; i < hashes.length; i++) {
+      Operation<K, V> operation = operations.get(i);
+      hashes[i] = extractLongKey(operation.getKey());
+      payloads[i] = codec.encode(operation);
+    }
+    Chain[] chains;
+    try {
+      chains = storeProxy.getAndAppendAll(hashes, payloads);
+    } finally {
+      for (long hash : hashes) {
+        mutated(hash);
+      }
+    }
+    for (int i = 0; i < chains.length; i++) {
+      Operation<K, V> operation = operations.get(i);
+      K key = operation.getKey();
+      ValueHolder<V> previous = resolver.resolve(chains[i], key, now).getValueHolder();
+      ValueHolder<V> next = resolver.resolve(PayloadChain.append(chains[i], payloads[i]), key, now).getValueHolder();
+      if (previous == null) {
+        if (next != null) {
+          eventSink.created(key, next.value());
+        }
+      } else if (operation instanceof RemoveOperation) {
+        eventSink.removed(key, previous);
+      } else if (!(operation instanceof PutIfAbsentOperation)) {
+        eventSink.updated(key, previous, next.value());
+      }
+      result.put(key, next);
+    }
+    return result;
   }
 
   @Override
   public List<CacheConfigurationChangeListener> getConfigurationChangeListeners() {
-    return underlyingStore.getConfigurationChangeListeners();
+    return Collections.emptyList();
+  }
+
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   Mappings are never evicted from the server because of a client fault, this is a plain {@link #get(Object)}.
+   * </P>
+   */
+  @Override
+  public ValueHolder<V> getAndFault(K key) throws StoreAccessException {
+    return get(key);
+  }
+
+  @Override
+  public ValueHolder<V> computeIfAbsentAndFault(K key, Function<? super K, ? extends V> mappingFunction) throws StoreAccessException {
+    return computeIfAbsent(key, mappingFunction);
+  }
+
+  @Override
+  public boolean flush(K key, ValueHolder<V> valueHolder) {
+    // nothing was pinned by the fault
+    return true;
+  }
+
+  /**
+   * Iterates over the live mappings of the server store, one batch of chains at a time.
+   * <P>
+   *   {@link #hasNext()} cannot fail, so a failure to read the server store is reported by the next call to
+   *   {@link #next()}, which then ends the iteration.
+   * </P>
+   */
+  private final class ClusteredStoreIterator implements Iterator<Cache.Entry<K, ValueHolder<V>>> {
+
+    private final Deque<Cache.Entry<K, ValueHolder<V>>> entries = new ArrayDeque<Cache.Entry<K, ValueHolder<V>>>();
+    private long[] stripeKeys = new long[0];
+    private int nextStripe = 0;
+    private int nextKey = 0;
+    private RuntimeException failure;
+
+    @Override
+    public boolean hasNext() {
+      while (entries.isEmpty() && failure == null && (nextKey < stripeKeys.length || nextStripe < StoreBootstrap.STRIPE_COUNT)) {
+        try {
+          fetch();
+        } catch (RuntimeException re) {
+          failure = re;
+          nextStripe = StoreBootstrap.STRIPE_COUNT;
+          nextKey = stripeKeys.length;
+        }
+      }
+      return !entries.isEmpty() || failure != null;
+    }
+
+    @Override
+    public Cache.Entry<K, ValueHolder<V>> next() throws StoreAccessException {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if (failure != null) {
+        RuntimeException re = failure;
+        failure = null;
+        throw new StoreAccessException(re);
+      }
+      return entries.poll();
+    }
+
+    private void fetch() {
+      if (nextKey == stripeKeys.length) {
+        stripeKeys = storeProxy.getStripeKeys(nextStripe++, StoreBootstrap.STRIPE_COUNT);
+        nextKey = 0;
+        return;
+      }
+      int to = Math.min(stripeKeys.length, nextKey + ServerStoreProxy.MAX_BATCH_SIZE);
+      long[] hashes = Arrays.copyOfRange(stripeKeys, nextKey, to);
+      nextKey = to;
+      for (Chain chain : storeProxy.getAll(hashes)) {
+        for (Map.Entry<K, ValueHolder<V>> mapping : resolveAll(chain).entrySet()) {
+          entries.add(entry(mapping.getKey(), mapping.getValue()));
+        }
+      }
+    }
+  }
+
+  private static <K, V> Cache.Entry<K, ValueHolder<V>> entry(final K key, final ValueHolder<V> valueHolder) {
+    return new Cache.Entry<K, ValueHolder<V>>() {
+      @Override
+      public K getKey() {
+        return key;
+      }
+
+      @Override
+      public ValueHolder<V> getValue() {
+        return valueHolder;
+      }
+    };
+  }
+
+  private static void checkKey(Object key) {
+    if (key == null) {
+      throw new NullPointerException("Key can not be null");
+    }
+  }
+
+  private static void checkValue(Object value) {
+    if (value == null) {
+      throw new NullPointerException("Value can not be null");
+    }
   }
 
 
   /**
    * Provider of {@link ClusteredStore} instances.
    */
-  @ServiceDependencies({ClusteringService.class})
+  @ServiceDependencies({ClusteringService.class, TimeSourceService.class,
+      OnHeapStore.Provider.class, OffHeapStore.Provider.class, CompoundCachingTier.Provider.class})
   public static class Provider implements Store.Provider {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Provider.class);
+
     private static final Set<ResourceType<?>> CLUSTER_RESOURCES;
     static {
       Set<ResourceType<?>> resourceTypes = new HashSet<ResourceType<?>>();
@@ -178,7 +899,7 @@ public class ClusteredStore<K, V> implements Store<K, V> {
 
     private volatile ServiceProvider<Service> serviceProvider;
     private volatile ClusteringService clusteringService;
-    private final Map<Store<?, ?>, Store.Provider> createdStores = new ConcurrentWeakIdentityHashMap<Store<?, ?>, Store.Provider>();
+    private final Map<Store<?, ?>, StoreConfig> createdStores = new ConcurrentWeakIdentityHashMap<Store<?, ?>, StoreConfig>();
 
     @Override
     public <K, V> Store<K, V> createStore(final Configuration<K, V> storeConfig, final ServiceConfiguration<?>... serviceConfigs) {
@@ -188,37 +909,148 @@ public class ClusteredStore<K, V> implements Store<K, V> {
       if (Collections.disjoint(storeConfig.getResourcePools().getResourceTypeSet(), CLUSTER_RESOURCES)) {
         throw new IllegalStateException("ClusteredStoreProvider.createStore called without ClusteredResourcePools");
       }
+      ClusteredCacheIdentifier cacheIdentifier = findSingletonAmongst(ClusteredCacheIdentifier.class, (Object[]) serviceConfigs);
+      if (cacheIdentifier == null) {
+        throw new IllegalStateException("ClusteredStore.Provider.createStore called without ClusteredCacheIdentifier");
+      }
+      if (storeConfig.getKeySerializer() == null || storeConfig.getValueSerializer() == null) {
+        throw new IllegalStateException("ClusteredStore.Provider.createStore called without serializers");
+      }
 
       // TODO: Create tiered configuration ala org.ehcache.impl.internal.store.tiering.TieredStore.Provider
-      final ClusteringServiceConfiguration clusterConfiguration = clusteringService.getConfiguration();
-      final Store.Provider underlyingStoreProvider =
-          selectProvider(storeConfig.getResourcePools().getResourceTypeSet(), Arrays.asList(serviceConfigs));
+      ClusteredResourcePool resourcePool = null;
+      for (ResourceType<?> resourceType : CLUSTER_RESOURCES) {
+        ResourcePool pool = storeConfig.getResourcePools().getPoolForResource(resourceType);
+        if (pool != null) {
+          resourcePool = (ClusteredResourcePool) pool;
+          break;
+        }
+      }
+
+      OperationsCodec<K, V> codec = new OperationsCodec<K, V>(storeConfig.getKeySerializer(), storeConfig.getValueSerializer());
+      ChainResolver<K, V> resolver = new ChainResolver<K, V>(codec, storeConfig.getExpiry());
+      TimeSource timeSource = serviceProvider.getService(TimeSourceService.class).getTimeSource();
+      ClusteredStore<K, V> clusteredStore = new ClusteredStore<K, V>(codec, resolver, timeSource,
+          new ScopedStoreEventDispatcher<K, V>(storeConfig.getDispatcherConcurrency()));
 
-      final Store<K, V> underlyingStore = underlyingStoreProvider.createStore(storeConfig, serviceConfigs);
-      Store<K, V> store = new ClusteredStore<K, V>(storeConfig, clusterConfiguration, underlyingStore);
+      ClusteredStoreConfiguration clusteredStoreConfiguration = findSingletonAmongst(ClusteredStoreConfiguration.class, (Object[]) serviceConfigs);
+      Consistency consistency = (clusteredStoreConfiguration == null ? Consistency.EVENTUAL : clusteredStoreConfiguration.getConsistency());
+      StoreConfig config = new StoreConfig(cacheIdentifier, resourcePool, consistency, clusteredStore);
 
-      createdStores.put(store, underlyingStoreProvider);
+      List<ServiceConfiguration<?>> enhancedServiceConfigs = new ArrayList<ServiceConfiguration<?>>(Arrays.asList(serviceConfigs));
+      CachingTier.Provider cachingTierProvider = selectCachingTierProvider(storeConfig.getResourcePools(), enhancedServiceConfigs);
+      if (cachingTierProvider == null) {
+        createdStores.put(clusteredStore, config);
+        return clusteredStore;
+      }
+
+      CachingTier<K, V> cachingTier = cachingTierProvider.createCachingTier(storeConfig,
+          enhancedServiceConfigs.toArray(new ServiceConfiguration<?>[enhancedServiceConfigs.size()]));
+      config.cachingTierProvider = cachingTierProvider;
+      config.cachingTier = cachingTier;
+      if (clusteredStoreConfiguration != null && clusteredStoreConfiguration.getBootstrapParallelism() > 0) {
+        ResourcePools resourcePools = storeConfig.getResourcePools();
+        config.bootstrap = new StoreBootstrap<K, V>(cacheIdentifier.getId(), cachingTier, clusteredStore,
+            clusteredStoreConfiguration.getBootstrapParallelism(),
+            StoreBootstrap.mappingBudget(resourcePools), StoreBootstrap.byteBudget(resourcePools));
+      }
+      TieredStore<K, V> store = new TieredStore<K, V>(cachingTier, clusteredStore);
+      createdStores.put(store, config);
       return store;
     }
 
+    /**
+     * Selects the provider of the local caching tier fronting the clustered store, mirroring the caching tiers used by
+     * {@link TieredStore.Provider}.
+     *
+     * @return the caching tier provider, or {@code null} if the cache has no heap resource
+     */
+    private CachingTier.Provider selectCachingTierProvider(ResourcePools resourcePools, List<ServiceConfiguration<?>> enhancedServiceConfigs) {
+      if (resourcePools.getPoolForResource(HEAP) == null) {
+        return null;
+      }
+      Class<? extends CachingTier.Provider> providerClass;
+      if (resourcePools.getPoolForResource(OFFHEAP) == null) {
+        providerClass = OnHeapStore.Provider.class;
+      } else {
+        enhancedServiceConfigs.add(new CompoundCachingTierServiceConfiguration().higherProvider(OnHeapStore.Provider.class)
+            .lowerProvider(OffHeapStore.Provider.class));
+        providerClass = CompoundCachingTier.Provider.class;
+      }
+      CachingTier.Provider provider = serviceProvider.getService(providerClass);
+      if (provider == null) {
+        throw new IllegalArgumentException("No registered service for caching tier provider " + providerClass.getName());
+      }
+      return provider;
+    }
+
     @Override
     public void releaseStore(final Store<?, ?> resource) {
-      Store.Provider underlyingStoreProvider = createdStores.remove(resource);
-      if (underlyingStoreProvider == null) {
+      StoreConfig storeConfig = createdStores.remove(resource);
+      if (storeConfig == null) {
         throw new IllegalArgumentException("Given store is not managed by this provider: " + resource);
       }
-
-      underlyingStoreProvider.releaseStore(((ClusteredStore)resource).underlyingStore);
+      if (storeConfig.bootstrap != null) {
+        storeConfig.bootstrap.cancel();
+      }
+      if (storeConfig.cachingTier != null) {
+        storeConfig.cachingTierProvider.releaseCachingTier(storeConfig.cachingTier);
+      }
+      ServerStoreProxy proxy = storeConfig.proxy;
+      if (proxy != null) {
+        proxy.setInvalidationListener(null);
+        proxy.setCompactionListener(null);
+        storeConfig.clusteredStore.shutdownCompaction();
+        clusteringService.releaseServerStoreProxy(proxy);
+        storeConfig.proxy = null;
+        storeConfig.clusteredStore.storeProxy = null;
+      }
     }
 
     @Override
     public void initStore(final Store<?, ?> resource) {
-      Store.Provider underlyingStoreProvider = createdStores.get(resource);
-      if (underlyingStoreProvider == null) {
+      StoreConfig storeConfig = createdStores.get(resource);
+      if (storeConfig == null) {
         throw new IllegalArgumentException("Given store is not managed by this provider: " + resource);
       }
+      ServerStoreProxy proxy = clusteringService.getServerStoreProxy(storeConfig.getCacheIdentifier(),
+          storeConfig.getResourcePool(), storeConfig.getConsistency());
+      storeConfig.proxy = proxy;
+      storeConfig.clusteredStore.storeProxy = proxy;
+      final ClusteredStore<?, ?> clusteredStore = storeConfig.clusteredStore;
+      proxy.setCompactionListener(new ServerStoreProxy.CompactionListener() {
+        @Override
+        public void onCompactionRequest(long hash) {
+          clusteredStore.requestCompaction(hash);
+        }
+      });
+
+      final CachingTier<?, ?> cachingTier = storeConfig.cachingTier;
+      if (cachingTier != null) {
+        storeConfig.cachingTierProvider.initCachingTier(cachingTier);
+        proxy.setInvalidationListener(new ServerStoreProxy.InvalidationListener() {
+          @Override
+          public void onInvalidateHash(long hash) {
+            try {
+              cachingTier.invalidateAllWithHash(hash);
+            } catch (StoreAccessException e) {
+              LOGGER.error("Error invalidating hash {} in the caching tier of {}", hash, cachingTier, e);
+            }
+          }
 
-      underlyingStoreProvider.initStore(((ClusteredStore)resource).underlyingStore);
+          @Override
+          public void onInvalidateAll() {
+            try {
+              cachingTier.clear();
+            } catch (StoreAccessException e) {
+              LOGGER.error("Error clearing the caching tier of {}", cachingTier, e);
+            }
+          }
+        });
+        if (storeConfig.bootstrap != null) {
+          storeConfig.bootstrap.start(proxy);
+        }
+      }
     }
 
     @Override
@@ -265,6 +1097,39 @@ public class ClusteredStore<K, V> implements Store<K, V> {
     }
   }
 
+  private static final class StoreConfig {
+
+    private final ClusteredCacheIdentifier cacheIdentifier;
+    private final ClusteredResourcePool resourcePool;
+    private final Consistency consistency;
+    private final ClusteredStore<?, ?> clusteredStore;
+
+    private CachingTier.Provider cachingTierProvider;
+    private CachingTier<?, ?> cachingTier;
+    private StoreBootstrap<?, ?> bootstrap;
+    private volatile ServerStoreProxy proxy;
+
+    StoreConfig(ClusteredCacheIdentifier cacheIdentifier, ClusteredResourcePool resourcePool, Consistency consistency,
+                ClusteredStore<?, ?> clusteredStore) {
+      this.cacheIdentifier = cacheIdentifier;
+      this.resourcePool = resourcePool;
+      this.consistency = consistency;
+      this.clusteredStore = clusteredStore;
+    }
+
+    ClusteredCacheIdentifier getCacheIdentifier() {
+      return cacheIdentifier;
+    }
+
+    ClusteredResourcePool getResourcePool() {
+      return resourcePool;
+    }
+
+    Consistency getConsistency() {
+      return consistency;
+    }
+  }
+
   /**
    * Nested {@link Store.Provider} implementation
    * used when a {@link ClusteredStore} has no tiered co-stores.
@@ -0,0 +1,94 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * A client-built {@link Chain} of plain payloads.
+ */
+class PayloadChain implements Chain {
+
+  private final List<Element> elements;
+
+  PayloadChain(List<ByteBuffer> payloads) {
+    List<Element> list = new ArrayList<Element>(payloads.size());
+    for (final ByteBuffer payload : payloads) {
+      list.add(new Element() {
+        @Override
+        public ByteBuffer getPayload() {
+          return payload.duplicate();
+        }
+      });
+    }
+    this.elements = Collections.unmodifiableList(list);
+  }
+
+  /**
+   * Returns a chain made of the elements of {@code chain} followed by {@code payload}.
+   *
+   * @param chain the leading chain
+   * @param payload the trailing payload
+   * @return the extended chain
+   */
+  static PayloadChain append(Chain chain, ByteBuffer payload) {
+    List<ByteBuffer> payloads = new ArrayList<ByteBuffer>();
+    for (Element element : chain) {
+      payloads.add(element.getPayload());
+    }
+    payloads.add(payload);
+    return new PayloadChain(payloads);
+  }
+
+  @Override
+  public Iterator<Element> iterator() {
+    return elements.iterator();
+  }
+
+  @Override
+  public Iterator<Element> reverseIterator() {
+    final ListIterator<Element> it = elements.listIterator(elements.size());
+    return new Iterator<Element>() {
+      @Override
+      public boolean hasNext() {
+        return it.hasPrevious();
+      }
+
+      @Override
+      public Element next() {
+        return it.previous();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Remove operation is not supported");
+      }
+    };
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return elements.isEmpty();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.common.store.Chain;
+
+/**
+ * The outcome of replaying a server-side chain for one key.
+ */
+class ResolvedChain<K, V> {
+
+  private final ClusteredValueHolder<V> valueHolder;
+  private final Chain compactedChain;
+  private final int chainLength;
+  private final int compactedLength;
+  private final boolean touched;
+
+  ResolvedChain(ClusteredValueHolder<V> valueHolder, Chain compactedChain, int chainLength, int compactedLength) {
+    this(valueHolder, compactedChain, chainLength, compactedLength, false);
+  }
+
+  ResolvedChain(ClusteredValueHolder<V> valueHolder, Chain compactedChain, int chainLength, int compactedLength, boolean touched) {
+    this.valueHolder = valueHolder;
+    this.compactedChain = compactedChain;
+    this.chainLength = chainLength;
+    this.compactedLength = compactedLength;
+    this.touched = touched;
+  }
+
+  /**
+   * The value the key resolves to.
+   *
+   * @return the value holder, {@code null} if the key is absent or expired
+   */
+  ClusteredValueHolder<V> getValueHolder() {
+    return valueHolder;
+  }
+
+  V getValue() {
+    return valueHolder == null ? null : valueHolder.value();
+  }
+
+  /**
+   * A chain equivalent to the resolved one, holding a single element per live key.
+   *
+   * @return the compacted chain
+   */
+  Chain getCompactedChain() {
+    return compactedChain;
+  }
+
+  /**
+   * The number of elements of the resolved chain.
+   *
+   * @return the chain length
+   */
+  int getChainLength() {
+    return chainLength;
+  }
+
+  /**
+   * The number of elements compaction would remove from the resolved chain.
+   *
+   * @return the number of redundant elements
+   */
+  int getRedundantElements() {
+    return chainLength - compactedLength;
+  }
+
+  /**
+   * Whether reading the key changed the expiration time of its mapping, in which case only the compacted chain records
+   * the change.
+   *
+   * @return {@code true} if the compacted chain must be installed
+   */
+  boolean isTouched() {
+    return touched;
+  }
+}
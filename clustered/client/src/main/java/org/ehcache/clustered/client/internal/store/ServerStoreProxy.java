@@ -0,0 +1,514 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.client.internal.EhcacheClientEntity;
+import org.ehcache.clustered.client.internal.EhcacheClientEntity.ReconnectListener;
+import org.ehcache.clustered.client.internal.EhcacheClientEntity.ResponseListener;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.AllInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.CompactChain;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.HashInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateAll;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateHash;
+import org.ehcache.clustered.common.messages.ReconnectData;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.ServerStore;
+import org.ehcache.core.spi.function.NullaryFunction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Client-side {@link ServerStore} forwarding every operation to a server-side store through the clustered entity.
+ * <P>
+ *   The invalidations the server pushes for this store are passed on to the {@link InvalidationListener}.  With
+ *   {@link Consistency#STRONG strong} consistency mutations only return once the server reports that all other clients
+ *   dropped their copies of the mutated hash, and mutations of the same hash from this client are serialized.
+ * </P>
+ * <P>
+ *   When the client fails over to a new active server, which does not know what this client holds, pending strong
+ *   invalidations are considered complete.  A strongly consistent store then drops all its local copies, as
+ *   invalidations lost with the failed server cannot be told apart.  An eventually consistent store instead keeps
+ *   track of the hashes it may hold copies of and reports them to the new active, so its local copies survive the
+ *   fail-over.  The new active invalidates again the reported hashes mutated shortly before the failure, whose
+ *   invalidation may have been lost; a copy can only stay stale if the failed server lost an invalidation for an
+ *   older mutation.
+ * </P>
+ * <P>
+ *   The bulk operations group their keys in batches of at most {@link #MAX_BATCH_SIZE} keys and pipeline the batches,
+ *   so a bulk operation costs roughly one round trip instead of one per key.
+ * </P>
+ */
+public class ServerStoreProxy implements ServerStore {
+
+  /**
+   * Drops the local copies of this store's mappings targeted by a server invalidation.
+   */
+  public interface InvalidationListener {
+
+    void onInvalidateHash(long hash);
+
+    void onInvalidateAll();
+  }
+
+  /**
+   * Compacts the chains the server reports as grown past its compaction thresholds.
+   */
+  public interface CompactionListener {
+
+    void onCompactionRequest(long hash);
+  }
+
+  static final int MAX_BATCH_SIZE = 256;
+
+  private final String cacheId;
+  private final EhcacheClientEntity entity;
+  private final Consistency consistency;
+
+  private final ConcurrentMap<Long, CountDownLatch> hashInvalidationsInProgress = new ConcurrentHashMap<Long, CountDownLatch>();
+  private final AtomicReference<CountDownLatch> allInvalidationInProgress = new AtomicReference<CountDownLatch>();
+  // hashes the server registered this client as a holder of, only kept when eventually consistent
+  private final Set<Long> heldHashes;
+  private final AtomicLong invalidationCount = new AtomicLong();
+  private volatile InvalidationListener invalidationListener;
+  private volatile CompactionListener compactionListener;
+
+  private final ResponseListener<InvalidateHash> invalidateHashListener = new ResponseListener<InvalidateHash>() {
+    @Override
+    public void onResponse(InvalidateHash response) {
+      if (cacheId.equals(response.getCacheId())) {
+        try {
+          invalidationCount.incrementAndGet();
+          release(response.getKey());
+          InvalidationListener listener = invalidationListener;
+          if (listener != null) {
+            listener.onInvalidateHash(response.getKey());
+          }
+        } finally {
+          acknowledge(response.getInvalidationId());
+        }
+      }
+    }
+  };
+  private final ResponseListener<InvalidateAll> invalidateAllListener = new ResponseListener<InvalidateAll>() {
+    @Override
+    public void onResponse(InvalidateAll response) {
+      if (cacheId.equals(response.getCacheId())) {
+        try {
+          invalidationCount.incrementAndGet();
+          releaseAll();
+          InvalidationListener listener = invalidationListener;
+          if (listener != null) {
+            listener.onInvalidateAll();
+          }
+        } finally {
+          acknowledge(response.getInvalidationId());
+        }
+      }
+    }
+  };
+  private final ResponseListener<CompactChain> compactChainListener = new ResponseListener<CompactChain>() {
+    @Override
+    public void onResponse(CompactChain response) {
+      if (cacheId.equals(response.getCacheId())) {
+        CompactionListener listener = compactionListener;
+        if (listener != null) {
+          listener.onCompactionRequest(response.getKey());
+        }
+      }
+    }
+  };
+  private final ResponseListener<HashInvalidationDone> hashInvalidationDoneListener = new ResponseListener<HashInvalidationDone>() {
+    @Override
+    public void onResponse(HashInvalidationDone response) {
+      if (cacheId.equals(response.getCacheId())) {
+        CountDownLatch latch = hashInvalidationsInProgress.get(response.getKey());
+        if (latch != null) {
+          latch.countDown();
+        }
+      }
+    }
+  };
+  private final ResponseListener<AllInvalidationDone> allInvalidationDoneListener = new ResponseListener<AllInvalidationDone>() {
+    @Override
+    public void onResponse(AllInvalidationDone response) {
+      if (cacheId.equals(response.getCacheId())) {
+        CountDownLatch latch = allInvalidationInProgress.get();
+        if (latch != null) {
+          latch.countDown();
+        }
+      }
+    }
+  };
+
+  private final ReconnectListener reconnectListener = new ReconnectListener() {
+    @Override
+    public void onReconnect(ReconnectData reconnectData) {
+      if (heldHashes == null) {
+        invalidationCount.incrementAndGet();
+        InvalidationListener listener = invalidationListener;
+        if (listener != null) {
+          listener.onInvalidateAll();
+        }
+      } else {
+        reconnectData.add(cacheId, new ArrayList<Long>(heldHashes));
+      }
+      for (CountDownLatch latch : hashInvalidationsInProgress.values()) {
+        latch.countDown();
+      }
+      CountDownLatch latch = allInvalidationInProgress.get();
+      if (latch != null) {
+        latch.countDown();
+      }
+    }
+  };
+
+  public ServerStoreProxy(String cacheId, EhcacheClientEntity entity) {
+    this(cacheId, entity, Consistency.EVENTUAL);
+  }
+
+  public ServerStoreProxy(String cacheId, EhcacheClientEntity entity, Consistency consistency) {
+    this.cacheId = cacheId;
+    this.entity = entity;
+    this.consistency = consistency;
+    this.heldHashes = consistency == Consistency.STRONG ? null : Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    entity.addResponseListener(InvalidateHash.class, invalidateHashListener);
+    entity.addResponseListener(InvalidateAll.class, invalidateAllListener);
+    entity.addResponseListener(CompactChain.class, compactChainListener);
+    entity.addReconnectListener(reconnectListener);
+    if (consistency == Consistency.STRONG) {
+      entity.addResponseListener(HashInvalidationDone.class, hashInvalidationDoneListener);
+      entity.addResponseListener(AllInvalidationDone.class, allInvalidationDoneListener);
+    }
+  }
+
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  public Consistency getConsistency() {
+    return consistency;
+  }
+
+  public void setInvalidationListener(InvalidationListener invalidationListener) {
+    this.invalidationListener = invalidationListener;
+  }
+
+  /**
+   * Sets the listener the compaction requests of the server are passed to.  Requests arrive on the thread delivering
+   * server messages, so the listener must not call back into the server.
+   *
+   * @param compactionListener the listener, {@code null} to ignore requests
+   */
+  public void setCompactionListener(CompactionListener compactionListener) {
+    this.compactionListener = compactionListener;
+  }
+
+  /**
+   * Stops listening to the invalidations and compaction requests of this store.
+   */
+  public void close() {
+    entity.removeResponseListener(InvalidateHash.class, invalidateHashListener);
+    entity.removeResponseListener(InvalidateAll.class, invalidateAllListener);
+    entity.removeResponseListener(CompactChain.class, compactChainListener);
+    entity.removeResponseListener(HashInvalidationDone.class, hashInvalidationDoneListener);
+    entity.removeResponseListener(AllInvalidationDone.class, allInvalidationDoneListener);
+    entity.removeReconnectListener(reconnectListener);
+  }
+
+  @Override
+  public Chain get(long key) {
+    Chain chain = chainFrom(entity.invokeServerStoreOperation(ServerStoreOpMessage.getOperation(cacheId, key)));
+    hold(key);
+    return chain;
+  }
+
+  @Override
+  public Chain getUntracked(long key) {
+    return chainFrom(entity.invokeServerStoreOperation(ServerStoreOpMessage.getUntrackedOperation(cacheId, key)));
+  }
+
+  @Override
+  public void append(final long key, final ByteBuffer payLoad) {
+    invalidatingHash(key, new NullaryFunction<EhcacheEntityResponse>() {
+      @Override
+      public EhcacheEntityResponse apply() {
+        return entity.invokeServerStoreOperation(ServerStoreOpMessage.appendOperation(cacheId, key, payLoad));
+      }
+    });
+    hold(key);
+  }
+
+  @Override
+  public Chain getAndAppend(final long key, final ByteBuffer payLoad) {
+    Chain chain = chainFrom(invalidatingHash(key, new NullaryFunction<EhcacheEntityResponse>() {
+      @Override
+      public EhcacheEntityResponse apply() {
+        return entity.invokeServerStoreOperation(ServerStoreOpMessage.getAndAppendOperation(cacheId, key, payLoad));
+      }
+    }));
+    hold(key);
+    return chain;
+  }
+
+  @Override
+  public Chain[] getAll(long[] keys) {
+    List<ServerStoreOpMessage> batches = new ArrayList<ServerStoreOpMessage>();
+    for (int from = 0; from < keys.length; from += MAX_BATCH_SIZE) {
+      batches.add(ServerStoreOpMessage.getAllOperation(cacheId, Arrays.copyOfRange(keys, from, Math.min(keys.length, from + MAX_BATCH_SIZE))));
+    }
+    Chain[] chains = chainsFrom(entity.invokeServerStoreOperations(batches), keys.length);
+    hold(keys);
+    return chains;
+  }
+
+  @Override
+  public Chain[] getAndAppendAll(final long[] keys, final ByteBuffer[] payLoads) {
+    if (keys.length != payLoads.length) {
+      throw new IllegalArgumentException("Expected one payload per key : " + keys.length + " keys, " + payLoads.length + " payloads");
+    }
+    Chain[] chains = invalidatingHashes(keys, new NullaryFunction<Chain[]>() {
+      @Override
+      public Chain[] apply() {
+        List<ServerStoreOpMessage> batches = new ArrayList<ServerStoreOpMessage>();
+        for (int from = 0; from < keys.length; from += MAX_BATCH_SIZE) {
+          int to = Math.min(keys.length, from + MAX_BATCH_SIZE);
+          batches.add(ServerStoreOpMessage.getAndAppendAllOperation(cacheId,
+              Arrays.copyOfRange(keys, from, to), Arrays.copyOfRange(payLoads, from, to)));
+        }
+        return chainsFrom(entity.invokeServerStoreOperations(batches), keys.length);
+      }
+    });
+    hold(keys);
+    return chains;
+  }
+
+  /**
+   * Lists the keys of the chains the server currently holds in one stripe of this store.  The keys are not tracked
+   * as held by this client: reading their chains does.
+   *
+   * @param stripe the stripe index
+   * @param stripeCount the number of stripes, a power of two
+   * @return the key hashes of the stripe
+   */
+  @Override
+  public long[] getStripeKeys(int stripe, int stripeCount) {
+    EhcacheEntityResponse response = entity.invokeServerStoreOperation(ServerStoreOpMessage.getStripeKeysOperation(cacheId, stripe, stripeCount));
+    if (response.getType() == EhcacheEntityResponse.Type.KEYS_RESPONSE) {
+      return ((EhcacheEntityResponse.KeysResponse) response).getKeys();
+    } else {
+      throw new IllegalStateException("Unexpected response to a key listing : " + response.getType());
+    }
+  }
+
+  /**
+   * Returns the number of invalidations received so far.  Comparing two values tells whether local copies may have
+   * been invalidated in between, for instance while installing mappings read in bulk.
+   *
+   * @return the invalidation count
+   */
+  public long getInvalidationCount() {
+    return invalidationCount.get();
+  }
+
+  @Override
+  public void replaceAtHead(long key, Chain expect, Chain update) {
+    // a compacted chain resolves to the same mappings, so other clients' copies are still valid
+    entity.invokeServerStoreOperation(ServerStoreOpMessage.replaceAtHeadOperation(cacheId, key, expect, update));
+  }
+
+  @Override
+  public void clear() {
+    if (consistency == Consistency.STRONG) {
+      CountDownLatch latch = new CountDownLatch(1);
+      while (!allInvalidationInProgress.compareAndSet(null, latch)) {
+        CountDownLatch existing = allInvalidationInProgress.get();
+        if (existing != null) {
+          awaitUninterruptibly(existing);
+        }
+      }
+      try {
+        entity.invokeServerStoreOperation(ServerStoreOpMessage.clearOperation(cacheId));
+        awaitUninterruptibly(latch);
+      } finally {
+        allInvalidationInProgress.compareAndSet(latch, null);
+        latch.countDown();
+      }
+    } else {
+      entity.invokeServerStoreOperation(ServerStoreOpMessage.clearOperation(cacheId));
+    }
+    // the server forgets every holder on clear, the clearing client included
+    releaseAll();
+  }
+
+  /**
+   * Performs a mutation of the given hash, waiting for the server to report the invalidation of the other clients'
+   * copies when strongly consistent.
+   */
+  private EhcacheEntityResponse invalidatingHash(long key, NullaryFunction<EhcacheEntityResponse> mutation) {
+    if (consistency != Consistency.STRONG) {
+      return mutation.apply();
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    while (true) {
+      CountDownLatch existing = hashInvalidationsInProgress.putIfAbsent(key, latch);
+      if (existing == null) {
+        break;
+      }
+      awaitUninterruptibly(existing);
+    }
+    try {
+      EhcacheEntityResponse response = mutation.apply();
+      awaitUninterruptibly(latch);
+      return response;
+    } finally {
+      hashInvalidationsInProgress.remove(key, latch);
+      latch.countDown();
+    }
+  }
+
+  /**
+   * Performs a mutation of many hashes, waiting for the server to report the invalidation of each of them when
+   * strongly consistent.  Hashes are claimed in ascending order so that concurrent bulk mutations cannot deadlock.
+   */
+  private <T> T invalidatingHashes(long[] keys, NullaryFunction<T> mutation) {
+    if (consistency != Consistency.STRONG) {
+      return mutation.apply();
+    }
+    long[] sorted = keys.clone();
+    Arrays.sort(sorted);
+    List<Long> claimed = new ArrayList<Long>(sorted.length);
+    List<CountDownLatch> latches = new ArrayList<CountDownLatch>(sorted.length);
+    try {
+      for (int i = 0; i < sorted.length; i++) {
+        if (i > 0 && sorted[i] == sorted[i - 1]) {
+          continue;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        while (true) {
+          CountDownLatch existing = hashInvalidationsInProgress.putIfAbsent(sorted[i], latch);
+          if (existing == null) {
+            break;
+          }
+          awaitUninterruptibly(existing);
+        }
+        claimed.add(sorted[i]);
+        latches.add(latch);
+      }
+      T result = mutation.apply();
+      for (CountDownLatch latch : latches) {
+        awaitUninterruptibly(latch);
+      }
+      return result;
+    } finally {
+      for (int i = 0; i < claimed.size(); i++) {
+        hashInvalidationsInProgress.remove(claimed.get(i), latches.get(i));
+        latches.get(i).countDown();
+      }
+    }
+  }
+
+  /**
+   * Records that the server now considers this client a holder of {@code key}, which it is until invalidated.
+   */
+  private void hold(long key) {
+    if (heldHashes != null) {
+      heldHashes.add(key);
+    }
+  }
+
+  private void hold(long[] keys) {
+    if (heldHashes != null) {
+      for (long key : keys) {
+        heldHashes.add(key);
+      }
+    }
+  }
+
+  private void release(long key) {
+    if (heldHashes != null) {
+      heldHashes.remove(key);
+    }
+  }
+
+  private void releaseAll() {
+    if (heldHashes != null) {
+      heldHashes.clear();
+    }
+  }
+
+  private void acknowledge(int invalidationId) {
+    if (invalidationId != EhcacheEntityResponse.NO_ACK) {
+      entity.invokeServerStoreOperationAsync(ServerStoreOpMessage.clientInvalidationAck(cacheId, invalidationId));
+    }
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          latch.await();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static Chain[] chainsFrom(List<EhcacheEntityResponse> responses, int count) {
+    Chain[] chains = new Chain[count];
+    int offset = 0;
+    for (EhcacheEntityResponse response : responses) {
+      if (response.getType() == EhcacheEntityResponse.Type.GET_ALL_RESPONSE) {
+        Chain[] batch = ((EhcacheEntityResponse.GetAllResponse) response).getChains();
+        System.arraycopy(batch, 0, chains, offset, batch.length);
+        offset += batch.length;
+      } else {
+        throw new IllegalStateException("Unexpected response to a bulk chain read : " + response.getType());
+      }
+    }
+    if (offset != count) {
+      throw new IllegalStateException("Expected " + count + " chains, received " + offset);
+    }
+    return chains;
+  }
+
+  private static Chain chainFrom(EhcacheEntityResponse response) {
+    if (response.getType() == EhcacheEntityResponse.Type.GET_RESPONSE) {
+      return ((EhcacheEntityResponse.GetResponse) response).getChain();
+    } else {
+      throw new IllegalStateException("Unexpected response to a chain read : " + response.getType());
+    }
+  }
+}
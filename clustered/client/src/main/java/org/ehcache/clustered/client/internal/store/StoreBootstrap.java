@@ -0,0 +1,283 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.spi.function.Function;
+import org.ehcache.core.spi.store.Store.ValueHolder;
+import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.core.spi.store.tiering.CachingTier;
+import org.ehcache.impl.internal.util.ThreadFactoryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.ehcache.config.ResourceType.Core.HEAP;
+import static org.ehcache.config.ResourceType.Core.OFFHEAP;
+
+/**
+ * Warms the caching tier of a clustered cache by streaming the chains held by the server into it.
+ * <P>
+ *   The key space is split in {@link #STRIPE_COUNT} stripes, which a pool of worker threads list and read in batches
+ *   of at most {@link ServerStoreProxy#MAX_BATCH_SIZE} keys.  Chains are resolved locally and their live mappings
+ *   installed in the caching tier unless already present.  Loading stops once all stripes are read, the budget derived
+ *   from the local resource pools is spent, or the bootstrap is cancelled.  Byte budgets are charged the serialized
+ *   size of the chains, which only approximates their footprint in the local tiers.
+ * </P>
+ * <P>
+ *   Reading a chain registers this client as a holder of its hash, so installed mappings are invalidated like any
+ *   other.  An invalidation may however be processed before the mapping it targets is installed: the hashes of a
+ *   batch during which any invalidation arrived are dropped from the caching tier again.  Mutations made by this client
+ *   are not invalidated by the server, and the caching tier may discard its copy before a stale mapping read earlier
+ *   is installed: hashes mutated through the {@link ClusteredStore} while their batch was loading are dropped as well.
+ * </P>
+ */
+class StoreBootstrap<K, V> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StoreBootstrap.class);
+
+  static final int STRIPE_COUNT = 64;
+
+  private static final Set<String> STATISTICS_TAGS = Collections.singleton("clustered");
+
+  private final String alias;
+  private final CachingTier<K, V> cachingTier;
+  private final ClusteredStore<K, V> store;
+  private final int parallelism;
+  private final AtomicLong remainingMappings;
+  private final AtomicLong remainingBytes;
+
+  private final AtomicInteger nextStripe = new AtomicInteger();
+  private final AtomicInteger completedStripes = new AtomicInteger();
+  private final AtomicLong loadedMappings = new AtomicLong();
+  private final AtomicLong loadedBytes = new AtomicLong();
+
+  private volatile ServerStoreProxy proxy;
+  private volatile boolean cancelled;
+  private ExecutorService executor;
+
+  StoreBootstrap(String alias, CachingTier<K, V> cachingTier, ClusteredStore<K, V> store, int parallelism,
+                 long maxMappings, long maxBytes) {
+    this.alias = alias;
+    this.cachingTier = cachingTier;
+    this.store = store;
+    this.parallelism = parallelism;
+    this.remainingMappings = new AtomicLong(maxMappings);
+    this.remainingBytes = new AtomicLong(maxBytes);
+  }
+
+  /**
+   * Returns the number of mappings the local tiers can hold, or {@link Long#MAX_VALUE} if they are sized in bytes.
+   */
+  static long mappingBudget(ResourcePools resourcePools) {
+    SizedResourcePool heap = resourcePools.getPoolForResource(HEAP);
+    if (resourcePools.getPoolForResource(OFFHEAP) == null && heap.getUnit() instanceof EntryUnit) {
+      return heap.getSize();
+    } else {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Returns the number of bytes the local tiers can hold, or {@link Long#MAX_VALUE} if they are sized in mappings.
+   */
+  static long byteBudget(ResourcePools resourcePools) {
+    SizedResourcePool heap = resourcePools.getPoolForResource(HEAP);
+    SizedResourcePool offheap = resourcePools.getPoolForResource(OFFHEAP);
+    long bytes = 0;
+    if (heap.getUnit() instanceof MemoryUnit) {
+      bytes += ((MemoryUnit) heap.getUnit()).toBytes(heap.getSize());
+    } else if (offheap == null) {
+      return Long.MAX_VALUE;
+    }
+    if (offheap != null) {
+      bytes += ((MemoryUnit) offheap.getUnit()).toBytes(offheap.getSize());
+    }
+    return bytes;
+  }
+
+  /**
+   * Starts loading through {@code proxy} in the background.
+   *
+   * @param proxy the proxy of the bootstrapped store
+   */
+  synchronized void start(ServerStoreProxy proxy) {
+    if (executor != null) {
+      throw new IllegalStateException("Bootstrap of " + alias + " already started");
+    }
+    this.proxy = proxy;
+    registerStatistics();
+    executor = Executors.newFixedThreadPool(parallelism, ThreadFactoryUtil.threadFactory(alias + " bootstrap"));
+    for (int i = 0; i < parallelism; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          load();
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Stops loading, waiting for the batches being installed to complete.
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    if (executor != null) {
+      awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Waits for the bootstrap to complete, successfully or not.
+   *
+   * @return {@code true} if the bootstrap completed in time
+   */
+  boolean awaitTermination(long timeout, TimeUnit unit) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  long getLoadedMappings() {
+    return loadedMappings.get();
+  }
+
+  long getLoadedBytes() {
+    return loadedBytes.get();
+  }
+
+  int getCompletedStripes() {
+    return completedStripes.get();
+  }
+
+  private void registerStatistics() {
+    StatisticsManager.createPassThroughStatistic(store, "bootstrapLoadedMappings", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getLoadedMappings();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(store, "bootstrapLoadedBytes", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getLoadedBytes();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(store, "bootstrapCompletedStripes", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getCompletedStripes();
+      }
+    });
+  }
+
+  private void load() {
+    try {
+      for (int stripe = nextStripe.getAndIncrement(); stripe < STRIPE_COUNT && !exhausted(); stripe = nextStripe.getAndIncrement()) {
+        long[] keys = proxy.getStripeKeys(stripe, STRIPE_COUNT);
+        for (int from = 0; from < keys.length && !exhausted(); from += ServerStoreProxy.MAX_BATCH_SIZE) {
+          loadBatch(Arrays.copyOfRange(keys, from, Math.min(keys.length, from + ServerStoreProxy.MAX_BATCH_SIZE)));
+        }
+        if (!exhausted()) {
+          completedStripes.incrementAndGet();
+        }
+      }
+    } catch (RuntimeException e) {
+      LOGGER.warn("Bootstrap of {} failed, its caching tier is only partially loaded", alias, e);
+    } catch (StoreAccessException e) {
+      LOGGER.warn("Bootstrap of {} failed, its caching tier is only partially loaded", alias, e);
+    }
+  }
+
+  private boolean exhausted() {
+    return cancelled || remainingMappings.get() <= 0 || remainingBytes.get() <= 0;
+  }
+
+  private void loadBatch(long[] hashes) throws StoreAccessException {
+    long invalidations = proxy.getInvalidationCount();
+    long[] mutations = new long[hashes.length];
+    for (int i = 0; i < hashes.length; i++) {
+      mutations[i] = store.getMutationCount(hashes[i]);
+    }
+    Chain[] chains = proxy.getAll(hashes);
+    for (Chain chain : chains) {
+      if (exhausted()) {
+        break;
+      }
+      for (Map.Entry<K, ValueHolder<V>> mapping : store.resolveAll(chain).entrySet()) {
+        if (remainingMappings.getAndDecrement() > 0) {
+          install(mapping.getKey(), mapping.getValue());
+          loadedMappings.incrementAndGet();
+        }
+      }
+      long size = size(chain);
+      remainingBytes.addAndGet(-size);
+      loadedBytes.addAndGet(size);
+    }
+    boolean invalidated = proxy.getInvalidationCount() != invalidations;
+    for (int i = 0; i < hashes.length; i++) {
+      if (invalidated || store.getMutationCount(hashes[i]) != mutations[i]) {
+        cachingTier.invalidateAllWithHash(hashes[i]);
+      }
+    }
+  }
+
+  private void install(K key, final ValueHolder<V> valueHolder) throws StoreAccessException {
+    cachingTier.getOrComputeIfAbsent(key, new Function<K, ValueHolder<V>>() {
+      @Override
+      public ValueHolder<V> apply(K key) {
+        return valueHolder;
+      }
+    });
+  }
+
+  private static long size(Chain chain) {
+    long size = 0;
+    for (Element element : chain) {
+      size += element.getPayload().remaining();
+    }
+    return size;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Common encoding of operations: an opcode, a timestamp and the serialized key, followed by the
+ * operation specific fields.
+ */
+abstract class BaseOperation<K, V> implements Operation<K, V> {
+
+  static final int HEADER_SIZE = 1 + 8 + 4;
+
+  private final K key;
+  private final long timeStamp;
+
+  BaseOperation(K key, long timeStamp) {
+    if (key == null) {
+      throw new NullPointerException("Key can not be null");
+    }
+    this.key = key;
+    this.timeStamp = timeStamp;
+  }
+
+  BaseOperation(ByteBuffer buffer, Serializer<K> keySerializer) {
+    buffer.get(); //skip the operation code
+    this.timeStamp = buffer.getLong();
+    this.key = read(buffer, keySerializer);
+  }
+
+  @Override
+  public K getKey() {
+    return key;
+  }
+
+  @Override
+  public long timeStamp() {
+    return timeStamp;
+  }
+
+  @Override
+  public ByteBuffer encode(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    ByteBuffer keyBuffer = keySerializer.serialize(key);
+    ByteBuffer[] fields = encodeFields(valueSerializer);
+    int size = HEADER_SIZE + keyBuffer.remaining();
+    for (ByteBuffer field : fields) {
+      size += 4 + field.remaining();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.put(getOpCode().getValue());
+    buffer.putLong(timeStamp);
+    buffer.putInt(keyBuffer.remaining());
+    buffer.put(keyBuffer);
+    for (ByteBuffer field : fields) {
+      buffer.putInt(field.remaining());
+      buffer.put(field);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Serializes the fields following the key, each of which is written length prefixed.
+   *
+   * @param valueSerializer the value serializer
+   * @return the serialized fields
+   */
+  abstract ByteBuffer[] encodeFields(Serializer<V> valueSerializer);
+
+  static <T> T read(ByteBuffer buffer, Serializer<T> serializer) {
+    int length = buffer.getInt();
+    ByteBuffer field = buffer.slice();
+    field.limit(length);
+    buffer.position(buffer.position() + length);
+    try {
+      return serializer.read(field);
+    } catch (ClassNotFoundException e) {
+      throw new SerializerException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getOpCode() + "{key=" + key + ", timeStamp=" + timeStamp + "}";
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Maps the key to a new value only if it is currently mapped to an equal old value.
+ */
+public class ConditionalReplaceOperation<K, V> extends BaseOperation<K, V> implements Result<V> {
+
+  private final V oldValue;
+  private final V newValue;
+
+  public ConditionalReplaceOperation(K key, V oldValue, V newValue, long timeStamp) {
+    super(key, timeStamp);
+    if (oldValue == null || newValue == null) {
+      throw new NullPointerException("Values can not be null");
+    }
+    this.oldValue = oldValue;
+    this.newValue = newValue;
+  }
+
+  ConditionalReplaceOperation(ByteBuffer buffer, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    super(buffer, keySerializer);
+    this.oldValue = read(buffer, valueSerializer);
+    this.newValue = read(buffer, valueSerializer);
+  }
+
+  @Override
+  public OperationCode getOpCode() {
+    return OperationCode.REPLACE_CONDITIONAL;
+  }
+
+  public V getOldValue() {
+    return oldValue;
+  }
+
+  @Override
+  public V getValue() {
+    return newValue;
+  }
+
+  @Override
+  public Result<V> apply(Result<V> previousResult) {
+    if (previousResult != null && oldValue.equals(previousResult.getValue())) {
+      return this;
+    } else {
+      return previousResult;
+    }
+  }
+
+  @Override
+  ByteBuffer[] encodeFields(Serializer<V> valueSerializer) {
+    return new ByteBuffer[] {valueSerializer.serialize(oldValue), valueSerializer.serialize(newValue)};
+  }
+}
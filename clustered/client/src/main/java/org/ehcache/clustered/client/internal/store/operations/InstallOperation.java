@@ -0,0 +1,64 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The compacted form of all the operations on a key: its resolved value together with the creation and expiration
+ * times it had reached.
+ * <P>
+ *   Installs are only ever written by chain compaction and therefore always head the operations on their key.
+ * </P>
+ */
+public class InstallOperation<K, V> extends PutOperation<K, V> {
+
+  private final long expirationTime;
+
+  public InstallOperation(K key, V value, long creationTime, long expirationTime) {
+    super(key, value, creationTime);
+    this.expirationTime = expirationTime;
+  }
+
+  InstallOperation(ByteBuffer buffer, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    super(buffer, keySerializer, valueSerializer);
+    this.expirationTime = buffer.getLong();
+  }
+
+  @Override
+  public OperationCode getOpCode() {
+    return OperationCode.INSTALL;
+  }
+
+  /**
+   * The expiration time of the installed value, in milliseconds.
+   *
+   * @return the expiration time, {@code Store.ValueHolder.NO_EXPIRE} for none
+   */
+  public long expirationTime() {
+    return expirationTime;
+  }
+
+  @Override
+  public ByteBuffer encode(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    ByteBuffer encoded = super.encode(keySerializer, valueSerializer);
+    ByteBuffer buffer = ByteBuffer.allocate(encoded.remaining() + 8);
+    buffer.put(encoded).putLong(expirationTime).flip();
+    return buffer;
+  }
+}
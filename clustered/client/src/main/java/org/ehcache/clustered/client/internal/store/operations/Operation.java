@@ -0,0 +1,53 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cache mutation as recorded in a server-side chain.
+ * <P>
+ *   The state of a key is obtained by applying, in chain order, every operation recorded against it.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public interface Operation<K, V> {
+
+  OperationCode getOpCode();
+
+  K getKey();
+
+  /**
+   * The time at which the operation was issued, in milliseconds.
+   *
+   * @return the operation timestamp
+   */
+  long timeStamp();
+
+  /**
+   * Applies this operation to the result of the preceding operations on the same key.
+   *
+   * @param previousResult the current result, {@code null} if the key is absent
+   * @return the new result, {@code null} if the key is absent afterwards
+   */
+  Result<V> apply(Result<V> previousResult);
+
+  ByteBuffer encode(Serializer<K> keySerializer, Serializer<V> valueSerializer);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+/**
+ * The kinds of cache operation appended to a server-side chain, identified by their first encoded byte.
+ */
+public enum OperationCode {
+
+  PUT((byte) 1),
+  REMOVE((byte) 2),
+  PUT_IF_ABSENT((byte) 3),
+  REPLACE((byte) 4),
+  REPLACE_CONDITIONAL((byte) 5),
+  REMOVE_CONDITIONAL((byte) 6),
+  INSTALL((byte) 7);
+
+  private final byte value;
+
+  OperationCode(byte value) {
+    this.value = value;
+  }
+
+  public byte getValue() {
+    return value;
+  }
+
+  public static OperationCode valueOf(byte value) {
+    for (OperationCode code : values()) {
+      if (code.value == value) {
+        return code;
+      }
+    }
+    throw new IllegalArgumentException("Unknown operation code " + value);
+  }
+}
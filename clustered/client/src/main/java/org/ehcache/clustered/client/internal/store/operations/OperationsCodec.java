@@ -0,0 +1,61 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts {@link Operation}s to and from chain element payloads.
+ */
+public class OperationsCodec<K, V> {
+
+  private final Serializer<K> keySerializer;
+  private final Serializer<V> valueSerializer;
+
+  public OperationsCodec(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+  }
+
+  public ByteBuffer encode(Operation<K, V> operation) {
+    return operation.encode(keySerializer, valueSerializer);
+  }
+
+  public Operation<K, V> decode(ByteBuffer payload) {
+    ByteBuffer buffer = payload.duplicate();
+    OperationCode code = OperationCode.valueOf(buffer.get(buffer.position()));
+    switch (code) {
+      case PUT:
+        return new PutOperation<K, V>(buffer, keySerializer, valueSerializer);
+      case REMOVE:
+        return new RemoveOperation<K, V>(buffer, keySerializer);
+      case PUT_IF_ABSENT:
+        return new PutIfAbsentOperation<K, V>(buffer, keySerializer, valueSerializer);
+      case REPLACE:
+        return new ReplaceOperation<K, V>(buffer, keySerializer, valueSerializer);
+      case REPLACE_CONDITIONAL:
+        return new ConditionalReplaceOperation<K, V>(buffer, keySerializer, valueSerializer);
+      case REMOVE_CONDITIONAL:
+        return new ConditionalRemoveOperation<K, V>(buffer, keySerializer, valueSerializer);
+      case INSTALL:
+        return new InstallOperation<K, V>(buffer, keySerializer, valueSerializer);
+      default:
+        throw new IllegalArgumentException("Unknown operation code " + code);
+    }
+  }
+}
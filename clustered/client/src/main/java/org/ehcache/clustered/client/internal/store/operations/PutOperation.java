@@ -0,0 +1,61 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unconditionally maps the key to a value.
+ */
+public class PutOperation<K, V> extends BaseOperation<K, V> implements Result<V> {
+
+  private final V value;
+
+  public PutOperation(K key, V value, long timeStamp) {
+    super(key, timeStamp);
+    if (value == null) {
+      throw new NullPointerException("Value can not be null");
+    }
+    this.value = value;
+  }
+
+  PutOperation(ByteBuffer buffer, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+    super(buffer, keySerializer);
+    this.value = read(buffer, valueSerializer);
+  }
+
+  @Override
+  public OperationCode getOpCode() {
+    return OperationCode.PUT;
+  }
+
+  @Override
+  public V getValue() {
+    return value;
+  }
+
+  @Override
+  public Result<V> apply(Result<V> previousResult) {
+    return this;
+  }
+
+  @Override
+  ByteBuffer[] encodeFields(Serializer<V> valueSerializer) {
+    return new ByteBuffer[] {valueSerializer.serialize(value)};
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store.operations;
+
+import org.ehcache.spi.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unconditionally removes the key.
+ */
+public class RemoveOperation<K, V> extends BaseOperation<K, V> {
+
+  public RemoveOperation(K key, long timeStamp) {
+    super(key, timeStamp);
+  }
+
+  RemoveOperation(ByteBuffer buffer, Serializer<K> keySerializer) {
+    super(buffer, keySerializer);
+  }
+
+  @Override
+  public OperationCode getOpCode() {
+    return OperationCode.REMOVE;
+  }
+
+  @Override
+  public Result<V> apply(Result<V> previousResult) {
+    return null;
+  }
+
+  @Override
+  ByteBuffer[] encodeFields(Serializer<V> valueSerializer) {
+    return new ByteBuffer[0];
+  }
+}
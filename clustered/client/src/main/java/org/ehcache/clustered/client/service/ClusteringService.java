@@ -16,8 +16,12 @@
 
 package org.ehcache.clustered.client.service;
 
+import org.ehcache.clustered.client.config.ClusteredResourcePool;
 import org.ehcache.clustered.client.config.ClusteringServiceConfiguration;
+import org.ehcache.clustered.client.internal.store.ServerStoreProxy;
+import org.ehcache.clustered.common.Consistency;
 import org.ehcache.spi.service.PersistableResourceService;
+import org.ehcache.spi.service.ServiceConfiguration;
 
 /**
  * @author Clifford W. Johnson
@@ -27,4 +31,35 @@ public interface ClusteringService extends PersistableResourceService {
   ClusteringServiceConfiguration getConfiguration();
 
   void connect();
+
+  /**
+   * Gets a {@link ServerStoreProxy} through which the identified cache reaches its clustered storage.
+   * The server-side store is created from {@code resourcePool} and {@code consistency} if it does not exist yet.
+   *
+   * @param cacheIdentifier the identifier of the cache
+   * @param resourcePool the clustered resource pool of the cache
+   * @param consistency the consistency of the cache
+   * @return a proxy to the server-side store
+   */
+  ServerStoreProxy getServerStoreProxy(ClusteredCacheIdentifier cacheIdentifier, ClusteredResourcePool resourcePool, Consistency consistency);
+
+  /**
+   * Releases a proxy obtained from {@link #getServerStoreProxy(ClusteredCacheIdentifier, ClusteredResourcePool, Consistency)}.
+   *
+   * @param serverStoreProxy the proxy to release
+   */
+  void releaseServerStoreProxy(ServerStoreProxy serverStoreProxy);
+
+  /**
+   * Identifies the server-side store of a clustered cache.
+   */
+  interface ClusteredCacheIdentifier extends ServiceConfiguration<ClusteringService> {
+
+    /**
+     * The identifier of the clustered cache, unique within its cache manager.
+     *
+     * @return the cache identifier
+     */
+    String getId();
+  }
 }
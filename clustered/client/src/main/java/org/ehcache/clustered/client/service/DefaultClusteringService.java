@@ -20,13 +20,24 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
 import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.client.internal.ConnectionPool;
 import org.ehcache.clustered.client.internal.EhcacheClientEntity;
 
 import org.ehcache.clustered.client.internal.EhcacheClientEntityFactory;
+import org.ehcache.clustered.client.internal.store.ServerStoreProxy;
+import org.ehcache.clustered.client.config.ClusteredResourcePool;
 import org.ehcache.clustered.client.config.ClusteredResourceType;
 import org.ehcache.clustered.client.config.ClusteringServiceConfiguration;
+import org.ehcache.clustered.client.config.FixedClusteredResourcePool;
+import org.ehcache.clustered.client.config.SharedClusteredResourcePool;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceType;
 import org.ehcache.CachePersistenceException;
@@ -40,12 +51,14 @@ import org.terracotta.connection.ConnectionException;
 import org.terracotta.connection.ConnectionFactory;
 import org.terracotta.exception.EntityAlreadyExistsException;
 import org.terracotta.exception.EntityNotFoundException;
-import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
-
-import static java.util.Collections.emptyList;
 
 /**
  * Provides support for accessing server-based cluster services.
+ * <P>
+ *   Services connecting to the same cluster share a single connection through the {@link ConnectionPool}.
+ *   Leadership is tracked per connection, so anything that needs it - entity creation and maintenance - runs on a
+ *   dedicated connection instead, keeping the cluster-wide lease of one service out of reach of the others.
+ * </P>
  */
 public class DefaultClusteringService implements ClusteringService {
 
@@ -58,9 +71,9 @@ public class DefaultClusteringService implements ClusteringService {
 
   private Connection clusterConnection;
   private EhcacheClientEntityFactory entityFactory;
+  private boolean inMaintenance;
 
-  @FindbugsSuppressWarnings("URF_UNREAD_FIELD")
-  private EhcacheClientEntity entity;
+  private volatile EhcacheClientEntity entity;
 
   public DefaultClusteringService(final ClusteringServiceConfiguration configuration) {
     this.configuration = configuration;
@@ -86,7 +99,7 @@ public class DefaultClusteringService implements ClusteringService {
   @Override
   public void start(final ServiceProvider<Service> serviceProvider) {
     try {
-      clusterConnection = ConnectionFactory.connect(clusterUri, new Properties());
+      clusterConnection = ConnectionPool.shared().acquire(clusterUri, new Properties());
     } catch (ConnectionException ex) {
       throw new RuntimeException(ex);
     }
@@ -103,25 +116,59 @@ public class DefaultClusteringService implements ClusteringService {
 
   @Override
   public void startForMaintenance(ServiceProvider<MaintainableService> serviceProvider) {
+    Connection connection = openDedicatedConnection();
+    EhcacheClientEntityFactory factory = new EhcacheClientEntityFactory(connection);
+    if (!factory.acquireLeadership(entityIdentifier)) {
+      closeDedicatedConnection(connection);
+      throw new IllegalStateException("Couldn't acquire cluster-wide maintenance lease");
+    }
+    clusterConnection = connection;
+    entityFactory = factory;
+    inMaintenance = true;
+  }
+
+  private Connection openDedicatedConnection() {
     try {
-      clusterConnection = ConnectionFactory.connect(clusterUri, new Properties());
+      return ConnectionFactory.connect(clusterUri, new Properties());
     } catch (ConnectionException ex) {
       throw new RuntimeException(ex);
     }
-    entityFactory = new EhcacheClientEntityFactory(clusterConnection);
-    if (!entityFactory.acquireLeadership(entityIdentifier)) {
-      throw new IllegalStateException("Couldn't acquire cluster-wide maintenance lease");
+  }
+
+  private static void closeDedicatedConnection(Connection connection) {
+    try {
+      connection.close();
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   Outside of maintenance the connection is shared with the other clustering services of the same cluster, so the
+   *   entity is closed explicitly rather than with the connection.
+   * </P>
+   */
   @Override
   public void stop() {
-    entityFactory.abandonLeadership(entityIdentifier);
-    entityFactory = null;
+    if (entity != null) {
+      entity.close();
+      entity = null;
+    }
     try {
-      clusterConnection.close();
+      if (inMaintenance) {
+        entityFactory.abandonLeadership(entityIdentifier);
+        inMaintenance = false;
+        clusterConnection.close();
+      } else {
+        ConnectionPool.shared().release(clusterUri);
+      }
     } catch (IOException ex) {
       throw new RuntimeException(ex);
+    } finally {
+      entityFactory = null;
+      clusterConnection = null;
     }
   }
 
@@ -136,8 +183,26 @@ public class DefaultClusteringService implements ClusteringService {
 
   @Override
   public void create() {
+    if (inMaintenance) {
+      create(entityFactory);
+    } else {
+      Connection connection = openDedicatedConnection();
+      try {
+        EhcacheClientEntityFactory factory = new EhcacheClientEntityFactory(connection);
+        try {
+          create(factory);
+        } finally {
+          factory.abandonLeadership(entityIdentifier);
+        }
+      } finally {
+        closeDedicatedConnection(connection);
+      }
+    }
+  }
+
+  private void create(EhcacheClientEntityFactory factory) {
     try {
-      entityFactory.create(entityIdentifier, new ServerSideConfiguration(0));
+      factory.create(entityIdentifier, serverSideConfiguration());
     } catch (EntityAlreadyExistsException e) {
       throw new IllegalStateException(e);
     }
@@ -146,7 +211,7 @@ public class DefaultClusteringService implements ClusteringService {
   @Override
   public void connect() {
     try {
-      entity = entityFactory.retrieve(entityIdentifier, new ServerSideConfiguration(0));
+      entity = entityFactory.retrieve(entityIdentifier, serverSideConfiguration());
     } catch (EntityNotFoundException ex) {
       throw new IllegalStateException(ex);
     }
@@ -159,11 +224,78 @@ public class DefaultClusteringService implements ClusteringService {
 
   @Override
   public Collection<ServiceConfiguration<?>> additionalConfigurationsForPool(String alias, ResourcePool pool) throws CachePersistenceException {
-    return emptyList();
+    return Collections.<ServiceConfiguration<?>>singleton(new DefaultClusteredCacheIdentifier(alias));
   }
 
   @Override
   public void destroy(String name) throws CachePersistenceException {
-    //no caches yet - nothing to destroy
+    try {
+      entity.destroyServerStore(name);
+    } catch (IllegalStateException e) {
+      //no server store for this cache - nothing to destroy
+    }
+  }
+
+  @Override
+  public ServerStoreProxy getServerStoreProxy(ClusteredCacheIdentifier cacheIdentifier, ClusteredResourcePool resourcePool, Consistency consistency) {
+    String cacheId = cacheIdentifier.getId();
+    try {
+      entity.createServerStore(cacheId, new ServerStoreConfiguration(poolAllocation(resourcePool), consistency));
+    } catch (IllegalStateException e) {
+      //server store already exists - attach to it
+    }
+    return new ServerStoreProxy(cacheId, entity, consistency);
+  }
+
+  @Override
+  public void releaseServerStoreProxy(ServerStoreProxy serverStoreProxy) {
+    //the server store outlives its proxies - only stop listening to its invalidations
+    serverStoreProxy.close();
+  }
+
+  private PoolAllocation poolAllocation(ClusteredResourcePool resourcePool) {
+    if (resourcePool instanceof FixedClusteredResourcePool) {
+      FixedClusteredResourcePool fixedPool = (FixedClusteredResourcePool) resourcePool;
+      String fromResource = fixedPool.getFromResource() == null ? configuration.getDefaultServerResource() : fixedPool.getFromResource();
+      return new PoolAllocation.Fixed(fromResource, fixedPool.getUnit().toBytes(fixedPool.getSize()));
+    } else if (resourcePool instanceof SharedClusteredResourcePool) {
+      return new PoolAllocation.Shared(((SharedClusteredResourcePool) resourcePool).getSharedResource());
+    } else {
+      throw new IllegalArgumentException("Unsupported clustered resource pool " + resourcePool);
+    }
+  }
+
+  private ServerSideConfiguration serverSideConfiguration() {
+    Map<String, ServerSideConfiguration.Pool> pools = new HashMap<String, ServerSideConfiguration.Pool>();
+    for (Map.Entry<String, ClusteringServiceConfiguration.PoolDefinition> pool : configuration.getPools().entrySet()) {
+      ClusteringServiceConfiguration.PoolDefinition definition = pool.getValue();
+      String serverResource = definition.getServerResource() == null ? configuration.getDefaultServerResource() : definition.getServerResource();
+      pools.put(pool.getKey(), new ServerSideConfiguration.Pool(serverResource, definition.getUnit().toBytes(definition.getSize())));
+    }
+    return new ServerSideConfiguration(0, pools);
+  }
+
+  private static final class DefaultClusteredCacheIdentifier implements ClusteredCacheIdentifier {
+
+    private final String id;
+
+    DefaultClusteredCacheIdentifier(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public Class<ClusteringService> getServiceType() {
+      return ClusteringService.class;
+    }
+
+    @Override
+    public String toString() {
+      return "ClusteredCacheIdentifier{" + id + "}";
+    }
   }
 }
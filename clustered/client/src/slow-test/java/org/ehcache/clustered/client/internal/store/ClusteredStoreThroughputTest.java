@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.client.internal.store.operations.OperationsCodec;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the throughput of the {@link ClusteredStore} data path against an in-process {@link OffHeapServerStore}
+ * standing in for the server.
+ * <P>
+ *   No network is involved, so the figures isolate the client-side cost of encoding operations and resolving chains
+ *   plus the server-side cost of maintaining them.
+ * </P>
+ */
+public class ClusteredStoreThroughputTest {
+
+  private static final int KEYS = 10000;
+  private static final long DURATION_MILLIS = 5000;
+
+  @Test
+  public void testReadMostlyThroughput() throws Exception {
+    runBenchmark("90% get / 10% put", 0.9f);
+  }
+
+  @Test
+  public void testWriteHeavyThroughput() throws Exception {
+    runBenchmark("50% get / 50% put", 0.5f);
+  }
+
+  private void runBenchmark(String name, final float readRatio) throws Exception {
+    OffHeapServerStore serverStore = new OffHeapServerStore(64 * 1024 * 1024);
+    try {
+      OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+      final ClusteredStore<Long, String> store = new ClusteredStore<Long, String>(codec,
+          new ChainResolver<Long, String>(codec, Expirations.noExpiration()), serverStore, SystemTimeSource.INSTANCE);
+      for (long i = 0; i < KEYS; i++) {
+        store.put(i, value(i));
+      }
+
+      int threads = Runtime.getRuntime().availableProcessors();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (int t = 0; t < threads; t++) {
+          final long seed = t;
+          results.add(executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws StoreAccessException {
+              Random random = new Random(seed);
+              long operations = 0;
+              while (System.nanoTime() < end) {
+                long key = random.nextInt(KEYS);
+                if (random.nextFloat() < readRatio) {
+                  assertThat(store.get(key).value(), is(value(key)));
+                } else {
+                  store.put(key, value(key));
+                }
+                operations++;
+              }
+              return operations;
+            }
+          }));
+        }
+        long operations = 0;
+        for (Future<Long> result : results) {
+          operations += result.get();
+        }
+        System.out.println(String.format("%s with %d threads: %,d ops/s", name, threads, operations * 1000 / DURATION_MILLIS));
+      } finally {
+        executor.shutdown();
+      }
+    } finally {
+      serverStore.destroy();
+    }
+  }
+
+  private static String value(long key) {
+    return "value-" + key;
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.load;
+
+import org.HdrHistogram.Histogram;
+import org.ehcache.Cache;
+import org.ehcache.PersistentCacheManager;
+import org.ehcache.clustered.client.config.builders.ClusteredResourcePoolBuilder;
+import org.ehcache.clustered.client.config.builders.ClusteredStoreConfigurationBuilder;
+import org.ehcache.clustered.client.config.builders.ClusteringServiceConfigurationBuilder;
+import org.ehcache.clustered.client.internal.UnitTestConnectionService;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives clustered caches with a configurable load and measures the latency of every operation.
+ * <P>
+ *   Each client is a separate cache manager connected to the in-process passthrough server of
+ *   {@link UnitTestConnectionService}, so the whole client path is exercised - {@code DefaultClusteringService},
+ *   {@code ClusteredStore}, the near cache when configured, the entity codec and the server entity - without a network.
+ *   Figures are only meaningful relative to each other, to compare two versions of the code on the same machine.
+ * </P>
+ * <P>
+ *   Keys are drawn from a Zipf distribution: a skew of {@code 0} is uniform, higher values concentrate the load on the
+ *   first keys.
+ * </P>
+ */
+public class ClusteredLoadGenerator {
+
+  private static final URI CLUSTER_URI = URI.create("http://example.com:9540/load-generator");
+  private static final long HIGHEST_LATENCY = TimeUnit.SECONDS.toNanos(10);
+
+  private int clients = 1;
+  private int threadsPerClient = 2;
+  private int keys = 10000;
+  private double skew = 0.0;
+  private int valueSize = 128;
+  private float readRatio = 0.9f;
+  private long warmUpMillis = 1000;
+  private long durationMillis = 5000;
+  private long nearCacheEntries = 0;
+  private Consistency consistency = Consistency.EVENTUAL;
+
+  public ClusteredLoadGenerator clients(int clients) {
+    this.clients = clients;
+    return this;
+  }
+
+  public ClusteredLoadGenerator threadsPerClient(int threadsPerClient) {
+    this.threadsPerClient = threadsPerClient;
+    return this;
+  }
+
+  public ClusteredLoadGenerator keys(int keys) {
+    this.keys = keys;
+    return this;
+  }
+
+  public ClusteredLoadGenerator skew(double skew) {
+    this.skew = skew;
+    return this;
+  }
+
+  public ClusteredLoadGenerator valueSize(int valueSize) {
+    this.valueSize = valueSize;
+    return this;
+  }
+
+  public ClusteredLoadGenerator readRatio(float readRatio) {
+    this.readRatio = readRatio;
+    return this;
+  }
+
+  public ClusteredLoadGenerator duration(long warmUp, long measured, TimeUnit unit) {
+    this.warmUpMillis = unit.toMillis(warmUp);
+    this.durationMillis = unit.toMillis(measured);
+    return this;
+  }
+
+  public ClusteredLoadGenerator nearCache(long entries) {
+    this.nearCacheEntries = entries;
+    return this;
+  }
+
+  public ClusteredLoadGenerator consistency(Consistency consistency) {
+    this.consistency = consistency;
+    return this;
+  }
+
+  /**
+   * Runs the load: preloads all keys, warms up, then measures.
+   *
+   * @return the measured operations
+   */
+  public Report run() throws Exception {
+    UnitTestConnectionService.reset();
+    List<PersistentCacheManager> cacheManagers = new ArrayList<PersistentCacheManager>();
+    try {
+      for (int i = 0; i < clients; i++) {
+        cacheManagers.add(cacheManager(i == 0 ? URI.create(CLUSTER_URI + "?auto-create") : CLUSTER_URI));
+      }
+      final String value = value(valueSize);
+      Cache<Long, String> loader = cacheManagers.get(0).getCache("load", Long.class, String.class);
+      for (long key = 0; key < keys; key++) {
+        loader.put(key, value);
+      }
+
+      final KeyDistribution distribution = new KeyDistribution(keys, skew);
+      ExecutorService executor = Executors.newFixedThreadPool(clients * threadsPerClient);
+      try {
+        long start = System.nanoTime();
+        final long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(warmUpMillis);
+        final long end = measureFrom + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        List<Future<Histogram[]>> results = new ArrayList<Future<Histogram[]>>();
+        int seed = 0;
+        for (PersistentCacheManager cacheManager : cacheManagers) {
+          final Cache<Long, String> cache = cacheManager.getCache("load", Long.class, String.class);
+          for (int t = 0; t < threadsPerClient; t++) {
+            final Random random = new Random(seed++);
+            results.add(executor.submit(new Callable<Histogram[]>() {
+              @Override
+              public Histogram[] call() {
+                Histogram reads = new Histogram(HIGHEST_LATENCY, 3);
+                Histogram writes = new Histogram(HIGHEST_LATENCY, 3);
+                long now = System.nanoTime();
+                while (now < end) {
+                  long key = distribution.next(random);
+                  Histogram histogram;
+                  if (random.nextFloat() < readRatio) {
+                    cache.get(key);
+                    histogram = reads;
+                  } else {
+                    cache.put(key, value);
+                    histogram = writes;
+                  }
+                  long completed = System.nanoTime();
+                  if (now >= measureFrom) {
+                    histogram.recordValue(Math.min(completed - now, HIGHEST_LATENCY));
+                  }
+                  now = completed;
+                }
+                return new Histogram[] {reads, writes};
+              }
+            }));
+          }
+        }
+
+        Histogram reads = new Histogram(HIGHEST_LATENCY, 3);
+        Histogram writes = new Histogram(HIGHEST_LATENCY, 3);
+        for (Future<Histogram[]> result : results) {
+          Histogram[] histograms = result.get();
+          reads.add(histograms[0]);
+          writes.add(histograms[1]);
+        }
+        return new Report(describe(), durationMillis, reads, writes);
+      } finally {
+        executor.shutdown();
+      }
+    } finally {
+      for (PersistentCacheManager cacheManager : cacheManagers) {
+        cacheManager.close();
+      }
+    }
+  }
+
+  private PersistentCacheManager cacheManager(URI clusterUri) {
+    ResourcePoolsBuilder resources = ResourcePoolsBuilder.newResourcePoolsBuilder();
+    if (nearCacheEntries > 0) {
+      resources = resources.heap(nearCacheEntries, EntryUnit.ENTRIES);
+    }
+    long storeSize = Math.max(64, 4L * keys * (valueSize + 64) / (1024 * 1024));
+    return CacheManagerBuilder.newCacheManagerBuilder()
+        .with(ClusteringServiceConfigurationBuilder.cluster(clusterUri)
+            .defaultServerResource("primary-server-resource"))
+        .withCache("load", CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, String.class,
+            resources.with(ClusteredResourcePoolBuilder.fixed(storeSize, MemoryUnit.MB)))
+            .add(ClusteredStoreConfigurationBuilder.withConsistency(consistency)))
+        .build(true);
+  }
+
+  private String describe() {
+    return String.format("%d client(s) x %d thread(s), %d keys (skew %.2f), %d byte values, %.0f%% reads, %s%s",
+        clients, threadsPerClient, keys, skew, valueSize, readRatio * 100, consistency,
+        nearCacheEntries > 0 ? ", near cache of " + nearCacheEntries : "");
+  }
+
+  private static String value(int size) {
+    char[] chars = new char[size];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+
+  /**
+   * A Zipf distribution over {@code [0, keys)}, sampled by binary search of its cumulative distribution.
+   */
+  static final class KeyDistribution {
+
+    private final double[] cumulative;
+
+    KeyDistribution(int keys, double skew) {
+      cumulative = new double[keys];
+      double total = 0;
+      for (int i = 0; i < keys; i++) {
+        total += 1.0 / Math.pow(i + 1, skew);
+        cumulative[i] = total;
+      }
+      for (int i = 0; i < keys; i++) {
+        cumulative[i] /= total;
+      }
+    }
+
+    long next(Random random) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble());
+      return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+  }
+
+  /**
+   * The latencies measured for each kind of operation.
+   */
+  public static final class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final String description;
+    private final long durationMillis;
+    private final Histogram reads;
+    private final Histogram writes;
+
+    Report(String description, long durationMillis, Histogram reads, Histogram writes) {
+      this.description = description;
+      this.durationMillis = durationMillis;
+      this.reads = reads;
+      this.writes = writes;
+    }
+
+    public Histogram getReads() {
+      return reads;
+    }
+
+    public Histogram getWrites() {
+      return writes;
+    }
+
+    public long getOperationCount() {
+      return reads.getTotalCount() + writes.getTotalCount();
+    }
+
+    public void print(PrintStream out) {
+      out.println(description);
+      print(out, "get", reads);
+      print(out, "put", writes);
+    }
+
+    private void print(PrintStream out, String operation, Histogram histogram) {
+      StringBuilder sb = new StringBuilder(String.format("  %s : %,d ops/s", operation,
+          histogram.getTotalCount() * 1000 / Math.max(durationMillis, 1)));
+      for (double percentile : PERCENTILES) {
+        sb.append(String.format(" - p%s %,dus", percentile, TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(percentile))));
+      }
+      sb.append(String.format(" - max %,dus", TimeUnit.NANOSECONDS.toMicros(histogram.getMaxValue())));
+      out.println(sb);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.load;
+
+import org.ehcache.clustered.common.Consistency;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Reference load scenarios for clustered caches, run through {@link ClusteredLoadGenerator}.
+ */
+public class ClusteredLoadTest {
+
+  @Test
+  public void testReadMostlyUniform() throws Exception {
+    run(new ClusteredLoadGenerator().readRatio(0.9f));
+  }
+
+  @Test
+  public void testWriteHeavySkewed() throws Exception {
+    run(new ClusteredLoadGenerator().readRatio(0.5f).skew(1.0));
+  }
+
+  @Test
+  public void testLargeValues() throws Exception {
+    run(new ClusteredLoadGenerator().keys(1000).valueSize(16 * 1024));
+  }
+
+  @Test
+  public void testMultipleClientsWithNearCache() throws Exception {
+    run(new ClusteredLoadGenerator().clients(4).skew(1.0).nearCache(1000));
+  }
+
+  @Test
+  public void testMultipleClientsWithStrongNearCache() throws Exception {
+    run(new ClusteredLoadGenerator().clients(4).skew(1.0).nearCache(1000).consistency(Consistency.STRONG));
+  }
+
+  private static void run(ClusteredLoadGenerator generator) throws Exception {
+    ClusteredLoadGenerator.Report report = generator.run();
+    report.print(System.out);
+    assertThat(report.getOperationCount(), greaterThan(0L));
+  }
+}
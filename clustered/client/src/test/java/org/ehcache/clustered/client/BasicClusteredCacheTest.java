@@ -20,7 +20,9 @@ import org.ehcache.Cache;
 import org.ehcache.PersistentCacheManager;
 import org.ehcache.clustered.client.internal.UnitTestConnectionService;
 import org.ehcache.clustered.client.config.builders.ClusteredResourcePoolBuilder;
+import org.ehcache.clustered.client.config.builders.ClusteredStoreConfigurationBuilder;
 import org.ehcache.clustered.client.config.builders.ClusteringServiceConfigurationBuilder;
+import org.ehcache.clustered.common.Consistency;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.CacheManagerBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
@@ -30,8 +32,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -52,12 +56,12 @@ public class BasicClusteredCacheTest {
         CacheManagerBuilder.newCacheManagerBuilder()
             .with(ClusteringServiceConfigurationBuilder.cluster(URI.create("http://example.com:9540/my-application?auto-create"))
                 .defaultServerResource("primary-server-resource")
-                .resourcePool("resource-pool-a", 128, MemoryUnit.GB)
-                .resourcePool("resource-pool-b", 128, MemoryUnit.GB, "secondary-server-resource"))
+                .resourcePool("resource-pool-a", 32, MemoryUnit.MB)
+                .resourcePool("resource-pool-b", 32, MemoryUnit.MB, "secondary-server-resource"))
             .withCache("clustered-cache", CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, String.class,
                 ResourcePoolsBuilder.newResourcePoolsBuilder()
                     .heap(10, EntryUnit.ENTRIES)
-                    .with(ClusteredResourcePoolBuilder.fixed("resource-pool-a", 32, MemoryUnit.GB))));
+                    .with(ClusteredResourcePoolBuilder.fixed("resource-pool-a", 8, MemoryUnit.MB))));
     final PersistentCacheManager cacheManager = clusteredCacheManagerBuilder.build(true);
 
     final Cache<Long, String> cache = cacheManager.getCache("clustered-cache", Long.class, String.class);
@@ -68,4 +72,85 @@ public class BasicClusteredCacheTest {
 
     cacheManager.close();
   }
+
+  @Test
+  public void clusteredCacheSharesStateAcrossCacheManagers() throws Exception {
+    final PersistentCacheManager cacheManager1 = clusteredCacheManager(URI.create("http://example.com:9540/my-application?auto-create"));
+    final PersistentCacheManager cacheManager2 = clusteredCacheManager(URI.create("http://example.com:9540/my-application"));
+
+    final Cache<Long, String> cache1 = cacheManager1.getCache("clustered-cache", Long.class, String.class);
+    final Cache<Long, String> cache2 = cacheManager2.getCache("clustered-cache", Long.class, String.class);
+
+    cache1.put(1L, "value");
+    assertThat(cache2.get(1L), is("value"));
+    assertThat(cache2.replace(1L, "value", "other"), is(true));
+    assertThat(cache1.get(1L), is("other"));
+    cache2.remove(1L);
+    assertThat(cache1.containsKey(1L), is(false));
+
+    cacheManager2.close();
+    cacheManager1.close();
+  }
+
+  @Test
+  public void strongNearCacheIsInvalidatedBeforeWriteReturns() throws Exception {
+    final PersistentCacheManager cacheManager1 = clusteredCacheManager(URI.create("http://example.com:9540/my-application?auto-create"), Consistency.STRONG);
+    final PersistentCacheManager cacheManager2 = clusteredCacheManager(URI.create("http://example.com:9540/my-application"), Consistency.STRONG);
+
+    final Cache<Long, String> cache1 = cacheManager1.getCache("clustered-cache", Long.class, String.class);
+    final Cache<Long, String> cache2 = cacheManager2.getCache("clustered-cache", Long.class, String.class);
+
+    cache1.put(1L, "value");
+    assertThat(cache2.get(1L), is("value"));
+    assertThat(cache1.get(1L), is("value"));
+
+    cache1.put(1L, "other");
+    assertThat(cache2.get(1L), is("other"));
+    cache2.put(1L, "again");
+    assertThat(cache1.get(1L), is("again"));
+
+    cache2.clear();
+    assertThat(cache1.get(1L), nullValue());
+
+    cacheManager2.close();
+    cacheManager1.close();
+  }
+
+  @Test
+  public void eventualNearCacheIsInvalidated() throws Exception {
+    final PersistentCacheManager cacheManager1 = clusteredCacheManager(URI.create("http://example.com:9540/my-application?auto-create"));
+    final PersistentCacheManager cacheManager2 = clusteredCacheManager(URI.create("http://example.com:9540/my-application"));
+
+    final Cache<Long, String> cache1 = cacheManager1.getCache("clustered-cache", Long.class, String.class);
+    final Cache<Long, String> cache2 = cacheManager2.getCache("clustered-cache", Long.class, String.class);
+
+    cache1.put(1L, "value");
+    assertThat(cache2.get(1L), is("value"));
+
+    cache1.put(1L, "other");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!"other".equals(cache2.get(1L)) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(cache2.get(1L), is("other"));
+
+    cacheManager2.close();
+    cacheManager1.close();
+  }
+
+  private static PersistentCacheManager clusteredCacheManager(URI clusterUri) {
+    return clusteredCacheManager(clusterUri, Consistency.EVENTUAL);
+  }
+
+  private static PersistentCacheManager clusteredCacheManager(URI clusterUri, Consistency consistency) {
+    return CacheManagerBuilder.newCacheManagerBuilder()
+        .with(ClusteringServiceConfigurationBuilder.cluster(clusterUri)
+            .defaultServerResource("primary-server-resource"))
+        .withCache("clustered-cache", CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, String.class,
+            ResourcePoolsBuilder.newResourcePoolsBuilder()
+                .heap(10, EntryUnit.ENTRIES)
+                .with(ClusteredResourcePoolBuilder.fixed(8, MemoryUnit.MB)))
+            .add(ClusteredStoreConfigurationBuilder.withConsistency(consistency)))
+        .build(true);
+  }
 }
@@ -65,12 +65,12 @@ public class GettingStarted {
         CacheManagerBuilder.newCacheManagerBuilder()
             .with(ClusteringServiceConfigurationBuilder.cluster(URI.create("http://example.com:9540/my-application?auto-create"))
                 .defaultServerResource("primary-server-resource")
-                .resourcePool("resource-pool-a", 128, MemoryUnit.GB)
-                .resourcePool("resource-pool-b", 128, MemoryUnit.GB, "secondary-server-resource"))
+                .resourcePool("resource-pool-a", 32, MemoryUnit.MB)
+                .resourcePool("resource-pool-b", 32, MemoryUnit.MB, "secondary-server-resource"))
             .withCache("clustered-cache", CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, String.class,
                 ResourcePoolsBuilder.newResourcePoolsBuilder()
                     .heap(10, EntryUnit.ENTRIES)
-                    .with(ClusteredResourcePoolBuilder.fixed("resource-pool-a", 32, MemoryUnit.GB))));
+                    .with(ClusteredResourcePoolBuilder.fixed("resource-pool-a", 8, MemoryUnit.MB))));
     final PersistentCacheManager cacheManager = clusteredCacheManagerBuilder.build(true);
 
     cacheManager.close();
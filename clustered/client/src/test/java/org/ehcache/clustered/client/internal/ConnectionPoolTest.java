@@ -0,0 +1,67 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.clustered.client.internal;
+
+import java.net.URI;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.terracotta.connection.Connection;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ConnectionPoolTest {
+
+  private static final URI CLUSTER = URI.create("http://example.com:9540");
+  private static final URI OTHER_CLUSTER = URI.create("http://other.example.com:9540");
+
+  @Test
+  public void testSameClusterSharesConnection() throws Exception {
+    ConnectionPool pool = new ConnectionPool();
+    Connection first = pool.acquire(CLUSTER, new Properties());
+    Connection second = pool.acquire(CLUSTER, new Properties());
+    Connection other = pool.acquire(OTHER_CLUSTER, new Properties());
+
+    assertThat(second, sameInstance(first));
+    assertThat(other, not(sameInstance(first)));
+    assertThat(pool.getReferenceCount(CLUSTER), is(2));
+
+    pool.release(CLUSTER);
+    pool.release(CLUSTER);
+    pool.release(OTHER_CLUSTER);
+    assertThat(pool.getReferenceCount(CLUSTER), is(0));
+  }
+
+  @Test
+  public void testConnectionIsReopenedOnceFullyReleased() throws Exception {
+    ConnectionPool pool = new ConnectionPool();
+    Connection first = pool.acquire(CLUSTER, new Properties());
+    pool.release(CLUSTER);
+
+    Connection second = pool.acquire(CLUSTER, new Properties());
+    assertThat(second, not(sameInstance(first)));
+    pool.release(CLUSTER);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReleaseWithoutAcquire() throws Exception {
+    new ConnectionPool().release(CLUSTER);
+  }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.Cache;
+import org.ehcache.ValueSupplier;
+import org.ehcache.clustered.client.internal.store.operations.OperationsCodec;
+import org.ehcache.clustered.client.internal.store.operations.PutOperation;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.ServerStore;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.ehcache.core.exceptions.StorePassThroughException;
+import org.ehcache.core.spi.function.BiFunction;
+import org.ehcache.core.spi.function.Function;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.core.spi.store.events.StoreEvent;
+import org.ehcache.core.spi.store.events.StoreEventListener;
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
+import org.ehcache.impl.internal.events.ScopedStoreEventDispatcher;
+import org.ehcache.impl.serialization.CompactJavaSerializer;
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link ClusteredStore} against an in-process {@link OffHeapServerStore}.
+ */
+public class ClusteredStoreTest {
+
+  private final TestTimeSource timeSource = new TestTimeSource();
+  private OffHeapServerStore serverStore;
+  private ClusteredStore<Long, String> store;
+
+  @Before
+  public void setUp() {
+    serverStore = new OffHeapServerStore(4 * 1024 * 1024);
+    store = newStore(serverStore, Expirations.noExpiration());
+  }
+
+  @After
+  public void tearDown() {
+    serverStore.destroy();
+  }
+
+  private ClusteredStore<Long, String> newStore(ServerStore serverStore, Expiry<Object, Object> expiry) {
+    OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+    return new ClusteredStore<Long, String>(codec, new ChainResolver<Long, String>(codec, expiry), serverStore, timeSource);
+  }
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    assertThat(store.put(1L, "one"), is(Store.PutStatus.PUT));
+    assertThat(store.put(1L, "uno"), is(Store.PutStatus.UPDATE));
+    assertThat(store.get(1L).value(), is("uno"));
+    assertThat(store.get(2L), nullValue());
+  }
+
+  @Test
+  public void testStoresShareServerState() throws Exception {
+    ClusteredStore<Long, String> other = newStore(serverStore, Expirations.noExpiration());
+    store.put(1L, "one");
+    assertThat(other.get(1L).value(), is("one"));
+    assertThat(other.remove(1L), is(true));
+    assertThat(store.containsKey(1L), is(false));
+  }
+
+  @Test
+  public void testConditionalOperations() throws Exception {
+    assertThat(store.putIfAbsent(1L, "one"), nullValue());
+    assertThat(store.putIfAbsent(1L, "uno").value(), is("one"));
+    assertThat(store.replace(1L, "eins", "ein"), is(Store.ReplaceStatus.MISS_PRESENT));
+    assertThat(store.replace(1L, "one", "eins"), is(Store.ReplaceStatus.HIT));
+    assertThat(store.replace(2L, "one", "eins"), is(Store.ReplaceStatus.MISS_NOT_PRESENT));
+    assertThat(store.replace(1L, "un").value(), is("eins"));
+    assertThat(store.replace(2L, "deux"), nullValue());
+    assertThat(store.remove(1L, "one"), is(Store.RemoveStatus.KEY_PRESENT));
+    assertThat(store.remove(1L, "un"), is(Store.RemoveStatus.REMOVED));
+    assertThat(store.remove(1L, "un"), is(Store.RemoveStatus.KEY_MISSING));
+    assertThat(store.get(1L), nullValue());
+    assertThat(store.get(2L), nullValue());
+  }
+
+  @Test
+  public void testCompute() throws Exception {
+    store.put(1L, "one");
+    Store.ValueHolder<String> computed = store.compute(1L, new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String value) {
+        return value + "!";
+      }
+    });
+    assertThat(computed.value(), is("one!"));
+    assertThat(store.get(1L).value(), is("one!"));
+
+    assertThat(store.compute(1L, new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String value) {
+        return null;
+      }
+    }), nullValue());
+    assertThat(store.get(1L), nullValue());
+  }
+
+  @Test
+  public void testContendedComputeRetriesWithoutRereading() throws Exception {
+    final ClusteredStore<Long, String> other = newStore(serverStore, Expirations.noExpiration());
+    final AtomicInteger applied = new AtomicInteger();
+    store.put(1L, "one");
+    long gets = serverStore.getStatistics().getGets();
+
+    Store.ValueHolder<String> computed = store.compute(1L, new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String value) {
+        if (applied.getAndIncrement() == 0) {
+          try {
+            other.put(key, "uno");
+          } catch (StoreAccessException e) {
+            throw new AssertionError(e);
+          }
+        }
+        return value + "!";
+      }
+    });
+
+    assertThat(computed.value(), is("uno!"));
+    assertThat(applied.get(), is(2));
+    assertThat(serverStore.getStatistics().getGets(), is(gets + 1));
+    assertThat(other.get(1L).value(), is("uno!"));
+  }
+
+  @Test
+  public void testComputeIfAbsent() throws Exception {
+    Function<Long, String> function = new Function<Long, String>() {
+      @Override
+      public String apply(Long key) {
+        return "value-" + key;
+      }
+    };
+    assertThat(store.computeIfAbsent(1L, function).value(), is("value-1"));
+    store.put(1L, "one");
+    assertThat(store.computeIfAbsent(1L, function).value(), is("one"));
+  }
+
+  @Test
+  public void testComputeLetsPassThroughExceptionsEscape() throws Exception {
+    final IllegalStateException failure = new IllegalStateException("writer failed");
+    store.put(1L, "one");
+    try {
+      store.compute(1L, new BiFunction<Long, String, String>() {
+        @Override
+        public String apply(Long key, String value) {
+          throw new StorePassThroughException(failure);
+        }
+      });
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e, sameInstance(failure));
+    }
+    assertThat(store.get(1L).value(), is("one"));
+  }
+
+  @Test
+  public void testBulkComputeIfAbsentLoadsMissingKeysInOneCall() throws Exception {
+    store.put(1L, "one");
+    final AtomicInteger calls = new AtomicInteger();
+    Map<Long, Store.ValueHolder<String>> result = store.bulkComputeIfAbsent(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)),
+        new Function<Iterable<? extends Long>, Iterable<? extends Map.Entry<? extends Long, ? extends String>>>() {
+          @Override
+          public Iterable<? extends Map.Entry<? extends Long, ? extends String>> apply(Iterable<? extends Long> keys) {
+            calls.incrementAndGet();
+            List<Map.Entry<Long, String>> loaded = new ArrayList<Map.Entry<Long, String>>();
+            for (Long key : keys) {
+              assertThat(key == 1L, is(false));
+              loaded.add(new AbstractMap.SimpleEntry<Long, String>(key, key == 3L ? null : "value-" + key));
+            }
+            return loaded;
+          }
+        });
+
+    assertThat(calls.get(), is(1));
+    assertThat(result.size(), is(3));
+    assertThat(result.get(1L).value(), is("one"));
+    assertThat(result.get(2L).value(), is("value-2"));
+    assertThat(result.get(3L), nullValue());
+    assertThat(store.get(2L).value(), is("value-2"));
+    assertThat(store.get(3L), nullValue());
+  }
+
+  @Test
+  public void testBulkComputeRemapsAllKeysInOneCall() throws Exception {
+    store.put(1L, "one");
+    store.put(2L, "two");
+    final AtomicInteger calls = new AtomicInteger();
+    Map<Long, Store.ValueHolder<String>> result = store.bulkCompute(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)),
+        new Function<Iterable<? extends Map.Entry<? extends Long, ? extends String>>, Iterable<? extends Map.Entry<? extends Long, ? extends String>>>() {
+          @Override
+          public Iterable<? extends Map.Entry<? extends Long, ? extends String>> apply(Iterable<? extends Map.Entry<? extends Long, ? extends String>> entries) {
+            calls.incrementAndGet();
+            List<Map.Entry<Long, String>> remapped = new ArrayList<Map.Entry<Long, String>>();
+            for (Map.Entry<? extends Long, ? extends String> entry : entries) {
+              if (entry.getKey() == 1L) {
+                remapped.add(new AbstractMap.SimpleEntry<Long, String>(1L, null));
+              } else {
+                remapped.add(new AbstractMap.SimpleEntry<Long, String>(entry.getKey(), entry.getValue() + "!"));
+              }
+            }
+            return remapped;
+          }
+        });
+
+    assertThat(calls.get(), is(1));
+    assertThat(result.get(1L), nullValue());
+    assertThat(result.get(2L).value(), is("two!"));
+    assertThat(result.get(3L).value(), is("null!"));
+    assertThat(store.get(1L), nullValue());
+    assertThat(store.get(2L).value(), is("two!"));
+    assertThat(store.get(3L).value(), is("null!"));
+  }
+
+  @Test
+  public void testCollidingKeysResolveIndependently() throws Exception {
+    ServerStore collidingStore = new OffHeapServerStore(1024 * 1024);
+    OperationsCodec<CollidingKey, String> codec = new OperationsCodec<CollidingKey, String>(
+        new CompactJavaSerializer<CollidingKey>(getClass().getClassLoader()), new StringSerializer());
+    ClusteredStore<CollidingKey, String> colliding = new ClusteredStore<CollidingKey, String>(codec,
+        new ChainResolver<CollidingKey, String>(codec, Expirations.noExpiration()), collidingStore, timeSource);
+
+    colliding.put(new CollidingKey(1), "one");
+    colliding.put(new CollidingKey(2), "two");
+    colliding.remove(new CollidingKey(1));
+    assertThat(colliding.get(new CollidingKey(1)), nullValue());
+    assertThat(colliding.get(new CollidingKey(2)).value(), is("two"));
+  }
+
+  @Test
+  public void testResolveAllReturnsTheLiveMappingsOfAChain() throws Exception {
+    ServerStore collidingStore = new OffHeapServerStore(1024 * 1024);
+    OperationsCodec<CollidingKey, String> codec = new OperationsCodec<CollidingKey, String>(
+        new CompactJavaSerializer<CollidingKey>(getClass().getClassLoader()), new StringSerializer());
+    ClusteredStore<CollidingKey, String> colliding = new ClusteredStore<CollidingKey, String>(codec,
+        new ChainResolver<CollidingKey, String>(codec, Expirations.noExpiration()), collidingStore, timeSource);
+
+    colliding.put(new CollidingKey(1), "one");
+    colliding.put(new CollidingKey(2), "two");
+    colliding.put(new CollidingKey(3), "three");
+    colliding.remove(new CollidingKey(1));
+    Map<CollidingKey, Store.ValueHolder<String>> resolved = colliding.resolveAll(collidingStore.get(42L));
+    assertThat(resolved.size(), is(2));
+    assertThat(resolved.get(new CollidingKey(2)).value(), is("two"));
+    assertThat(resolved.get(new CollidingKey(3)).value(), is("three"));
+  }
+
+  @Test
+  public void testLongChainsAreCompacted() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      store.put(1L, "value-" + i);
+    }
+    assertThat(store.get(1L).value(), is("value-99"));
+    int length = 0;
+    for (Element element : serverStore.get(1L)) {
+      length++;
+    }
+    assertThat(length, lessThan(ClusteredStore.COMPACTION_THRESHOLD + 1));
+  }
+
+  @Test
+  public void testRequestedCompactionIsServedInTheBackground() throws Exception {
+    OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+    for (int i = 0; i < 10; i++) {
+      serverStore.append(1L, codec.encode(new PutOperation<Long, String>(1L, "value-" + i, timeSource.getTimeMillis())));
+    }
+    store.requestCompaction(1L);
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (chainLength(serverStore.get(1L)) > 1 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(chainLength(serverStore.get(1L)), is(1));
+    assertThat(store.get(1L).value(), is("value-9"));
+  }
+
+  @Test
+  public void testRequestedCompactionReadsUntracked() throws Exception {
+    OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+    for (int i = 0; i < 10; i++) {
+      serverStore.append(1L, codec.encode(new PutOperation<Long, String>(1L, "value-" + i, timeSource.getTimeMillis())));
+    }
+    ServerStore proxy = mock(ServerStore.class);
+    when(proxy.getUntracked(1L)).thenReturn(serverStore.get(1L));
+    newStore(proxy, Expirations.noExpiration()).requestCompaction(1L);
+
+    verify(proxy, timeout(10000)).replaceAtHead(eq(1L), any(Chain.class), any(Chain.class));
+    verify(proxy, never()).get(anyLong());
+  }
+
+  @Test
+  public void testExpiryIsAppliedOnResolution() throws Exception {
+    ClusteredStore<Long, String> expiring = newStore(serverStore, Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    expiring.put(1L, "one");
+    timeSource.advanceTime(999);
+    assertThat(expiring.get(1L).value(), is("one"));
+    timeSource.advanceTime(1);
+    assertThat(expiring.get(1L), nullValue());
+    assertThat(expiring.putIfAbsent(1L, "uno"), nullValue());
+  }
+
+  @Test
+  public void testExpiredChainsAreRemovedFromTheServer() throws Exception {
+    ClusteredStore<Long, String> expiring = newStore(serverStore, Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    expiring.put(1L, "one");
+    assertThat(serverStore.get(1L).isEmpty(), is(false));
+    timeSource.advanceTime(1000);
+    assertThat(expiring.get(1L), nullValue());
+    assertThat(serverStore.get(1L).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testAccessExpiryIsAppliedOnReads() throws Exception {
+    ClusteredStore<Long, String> idle = newStore(serverStore, Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.SECONDS)));
+    ClusteredStore<Long, String> other = newStore(serverStore, Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.SECONDS)));
+    idle.put(1L, "one");
+    timeSource.advanceTime(900);
+    assertThat(idle.get(1L).value(), is("one"));
+    timeSource.advanceTime(900);
+    assertThat(other.get(1L).value(), is("one"));
+    timeSource.advanceTime(999);
+    assertThat(idle.get(1L).value(), is("one"));
+    timeSource.advanceTime(1000);
+    assertThat(idle.get(1L), nullValue());
+  }
+
+  @Test
+  public void testAccessExpiryIsOnlyRecordedOnceHalfElapsed() throws Exception {
+    ClusteredStore<Long, String> idle = newStore(serverStore, Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.SECONDS)));
+    idle.put(1L, "one");
+    long replaces = serverStore.getStatistics().getReplaceSuccesses();
+    timeSource.advanceTime(400);
+    assertThat(idle.get(1L).value(), is("one"));
+    assertThat(serverStore.getStatistics().getReplaceSuccesses(), is(replaces));
+    timeSource.advanceTime(200);
+    assertThat(idle.get(1L).value(), is("one"));
+    assertThat(serverStore.getStatistics().getReplaceSuccesses(), is(replaces + 1));
+    timeSource.advanceTime(999);
+    assertThat(idle.get(1L).value(), is("one"));
+  }
+
+  @Test
+  public void testZeroAccessExpiryExpiresOnRead() throws Exception {
+    ClusteredStore<Long, String> expiring = newStore(serverStore, new Expiry<Object, Object>() {
+      @Override
+      public Duration getExpiryForCreation(Object key, Object value) {
+        return Duration.INFINITE;
+      }
+
+      @Override
+      public Duration getExpiryForAccess(Object key, ValueSupplier<?> value) {
+        return Duration.ZERO;
+      }
+
+      @Override
+      public Duration getExpiryForUpdate(Object key, ValueSupplier<?> oldValue, Object newValue) {
+        return null;
+      }
+    });
+    expiring.put(1L, "one");
+    assertThat(expiring.get(1L).value(), is("one"));
+    assertThat(expiring.get(1L), nullValue());
+    assertThat(serverStore.get(1L).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testExpiryIsPreservedByCompaction() throws Exception {
+    ClusteredStore<Long, String> expiring = newStore(serverStore, Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    expiring.put(1L, "one");
+    for (int i = 0; i < 10; i++) {
+      timeSource.advanceTime(10);
+      expiring.putIfAbsent(1L, "uno");
+    }
+    assertThat(expiring.get(1L).value(), is("one"));
+    timeSource.advanceTime(900);
+    assertThat(expiring.get(1L), nullValue());
+  }
+
+  @Test
+  public void testMutationsFireEvents() throws Exception {
+    final List<String> events = new ArrayList<String>();
+    ScopedStoreEventDispatcher<Long, String> dispatcher = new ScopedStoreEventDispatcher<Long, String>(1);
+    dispatcher.addEventListener(new StoreEventListener<Long, String>() {
+      @Override
+      public void onEvent(StoreEvent<Long, String> event) {
+        events.add(event.getType() + " " + event.getKey() + " " + event.getOldValue() + " " + event.getNewValue());
+      }
+    });
+    OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+    ClusteredStore<Long, String> observed = new ClusteredStore<Long, String>(codec,
+        new ChainResolver<Long, String>(codec, Expirations.noExpiration()), serverStore, timeSource, dispatcher);
+
+    observed.put(1L, "one");
+    observed.put(1L, "uno");
+    observed.putIfAbsent(1L, "eins");
+    observed.replace(1L, "eins", "un");
+    observed.replace(1L, "uno", "un");
+    observed.remove(1L, "uno");
+    observed.remove(1L);
+    observed.remove(1L);
+    observed.computeIfAbsent(2L, new Function<Long, String>() {
+      @Override
+      public String apply(Long key) {
+        return "two";
+      }
+    });
+    observed.compute(2L, new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String value) {
+        return null;
+      }
+    });
+    store.put(3L, "three");
+
+    assertThat(events, is(Arrays.asList(
+        "CREATED 1 null one",
+        "UPDATED 1 one uno",
+        "UPDATED 1 uno un",
+        "REMOVED 1 un null",
+        "CREATED 2 null two",
+        "REMOVED 2 two null")));
+  }
+
+  @Test
+  public void testIterationReturnsAllLiveMappings() throws Exception {
+    Set<Long> expected = new HashSet<Long>();
+    for (long key = 0; key < 300; key++) {
+      store.put(key, "value-" + key);
+      expected.add(key);
+    }
+    store.remove(7L);
+    expected.remove(7L);
+
+    ClusteredStore<Long, String> iterating = newStore(serverStore, Expirations.noExpiration());
+    Set<Long> keys = new HashSet<Long>();
+    Store.Iterator<Cache.Entry<Long, Store.ValueHolder<String>>> iterator = iterating.iterator();
+    while (iterator.hasNext()) {
+      Cache.Entry<Long, Store.ValueHolder<String>> entry = iterator.next();
+      assertThat(entry.getValue().value(), is("value-" + entry.getKey()));
+      assertThat(keys.add(entry.getKey()), is(true));
+    }
+    assertThat(keys, is(expected));
+  }
+
+  @Test
+  public void testIterationSkipsExpiredMappings() throws Exception {
+    ClusteredStore<Long, String> expiring = newStore(serverStore, Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.SECONDS)));
+    expiring.put(1L, "one");
+    timeSource.advanceTime(500);
+    expiring.put(2L, "two");
+    timeSource.advanceTime(500);
+
+    Store.Iterator<Cache.Entry<Long, Store.ValueHolder<String>>> iterator = expiring.iterator();
+    assertThat(iterator.hasNext(), is(true));
+    assertThat(iterator.next().getKey(), is(2L));
+    assertThat(iterator.hasNext(), is(false));
+  }
+
+  @Test
+  public void testIterationFailureIsReportedByNext() throws Exception {
+    ServerStore failing = mock(ServerStore.class);
+    when(failing.getStripeKeys(anyInt(), anyInt())).thenThrow(new IllegalStateException("disconnected"));
+    Store.Iterator<Cache.Entry<Long, Store.ValueHolder<String>>> iterator = newStore(failing, Expirations.noExpiration()).iterator();
+
+    assertThat(iterator.hasNext(), is(true));
+    try {
+      iterator.next();
+      fail("Expected StoreAccessException");
+    } catch (StoreAccessException e) {
+      assertThat(e.getCause().getMessage(), is("disconnected"));
+    }
+    assertThat(iterator.hasNext(), is(false));
+  }
+
+  private static int chainLength(Chain chain) {
+    int length = 0;
+    for (Element element : chain) {
+      length++;
+    }
+    return length;
+  }
+
+  private static final class CollidingKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
+
+    CollidingKey(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 42;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof CollidingKey && ((CollidingKey) obj).id == id;
+    }
+  }
+
+  private static class TestTimeSource implements TimeSource {
+
+    private long time = 1;
+
+    @Override
+    public long getTimeMillis() {
+      return time;
+    }
+
+    void advanceTime(long delta) {
+      time += delta;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.client.internal.store;
+
+import org.ehcache.clustered.client.internal.store.operations.OperationsCodec;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.ehcache.core.spi.function.Function;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.store.tiering.CachingTier;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.StringSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link StoreBootstrap} against an in-process {@link OffHeapServerStore}, with the key listing stubbed so that
+ * all keys fall in the first stripe.
+ */
+public class StoreBootstrapTest {
+
+  private static final long[] KEYS = {1L, 2L, 3L, 4L, 5L};
+
+  private OffHeapServerStore serverStore;
+  private ClusteredStore<Long, String> store;
+  private ServerStoreProxy proxy;
+  private CachingTier<Long, String> cachingTier;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    serverStore = new OffHeapServerStore(4 * 1024 * 1024);
+    OperationsCodec<Long, String> codec = new OperationsCodec<Long, String>(new LongSerializer(), new StringSerializer());
+    store = new ClusteredStore<Long, String>(codec, new ChainResolver<Long, String>(codec, Expirations.noExpiration()),
+        serverStore, SystemTimeSource.INSTANCE);
+    for (long key : KEYS) {
+      store.put(key, "value-" + key);
+    }
+
+    proxy = mock(ServerStoreProxy.class);
+    when(proxy.getStripeKeys(anyInt(), eq(StoreBootstrap.STRIPE_COUNT))).thenReturn(new long[0]);
+    when(proxy.getStripeKeys(0, StoreBootstrap.STRIPE_COUNT)).thenReturn(KEYS);
+    when(proxy.getAll(any(long[].class))).thenAnswer(new Answer<Chain[]>() {
+      @Override
+      public Chain[] answer(InvocationOnMock invocation) throws Throwable {
+        long[] hashes = (long[]) invocation.getArguments()[0];
+        Chain[] chains = new Chain[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+          chains[i] = serverStore.get(hashes[i]);
+        }
+        return chains;
+      }
+    });
+    cachingTier = mock(CachingTier.class);
+  }
+
+  @After
+  public void tearDown() {
+    serverStore.destroy();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testAllMappingsAreInstalled() throws Exception {
+    StoreBootstrap<Long, String> bootstrap = newBootstrap(2, Long.MAX_VALUE, Long.MAX_VALUE);
+    bootstrap.start(proxy);
+    assertThat(bootstrap.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    for (long key : KEYS) {
+      verify(cachingTier).getOrComputeIfAbsent(eq(key), any(Function.class));
+    }
+    assertThat(bootstrap.getLoadedMappings(), is((long) KEYS.length));
+    assertThat(bootstrap.getCompletedStripes(), is(StoreBootstrap.STRIPE_COUNT));
+    verify(cachingTier, never()).invalidateAllWithHash(anyLong());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testMappingBudgetLimitsInstalls() throws Exception {
+    StoreBootstrap<Long, String> bootstrap = newBootstrap(1, 2, Long.MAX_VALUE);
+    bootstrap.start(proxy);
+    assertThat(bootstrap.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    verify(cachingTier, times(2)).getOrComputeIfAbsent(any(Long.class), any(Function.class));
+    assertThat(bootstrap.getLoadedMappings(), is(2L));
+    assertThat(bootstrap.getCompletedStripes(), is(0));
+  }
+
+  @Test
+  public void testConcurrentInvalidationDropsTheBatch() throws Exception {
+    when(proxy.getInvalidationCount()).thenReturn(0L, 1L);
+    StoreBootstrap<Long, String> bootstrap = newBootstrap(1, Long.MAX_VALUE, Long.MAX_VALUE);
+    bootstrap.start(proxy);
+    assertThat(bootstrap.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    for (long key : KEYS) {
+      verify(cachingTier).invalidateAllWithHash(key);
+    }
+  }
+
+  @Test
+  public void testInterleavedLocalMutationDropsItsHash() throws Exception {
+    when(proxy.getAll(any(long[].class))).thenAnswer(new Answer<Chain[]>() {
+      @Override
+      public Chain[] answer(InvocationOnMock invocation) throws Throwable {
+        long[] hashes = (long[]) invocation.getArguments()[0];
+        Chain[] chains = new Chain[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+          chains[i] = serverStore.get(hashes[i]);
+        }
+        store.put(3L, "three");
+        return chains;
+      }
+    });
+    StoreBootstrap<Long, String> bootstrap = newBootstrap(1, Long.MAX_VALUE, Long.MAX_VALUE);
+    bootstrap.start(proxy);
+    assertThat(bootstrap.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    verify(cachingTier).invalidateAllWithHash(3L);
+    verify(cachingTier, times(1)).invalidateAllWithHash(anyLong());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCancelledBootstrapInstallsNothing() throws Exception {
+    StoreBootstrap<Long, String> bootstrap = newBootstrap(1, Long.MAX_VALUE, Long.MAX_VALUE);
+    bootstrap.cancel();
+    bootstrap.start(proxy);
+    assertThat(bootstrap.awaitTermination(10, TimeUnit.SECONDS), is(true));
+
+    verify(cachingTier, never()).getOrComputeIfAbsent(any(Long.class), any(Function.class));
+    verify(proxy, never()).getStripeKeys(anyInt(), anyInt());
+  }
+
+  private StoreBootstrap<Long, String> newBootstrap(int parallelism, long maxMappings, long maxBytes) {
+    return new StoreBootstrap<Long, String>("cache", cachingTier, store, parallelism, maxMappings, maxBytes);
+  }
+}
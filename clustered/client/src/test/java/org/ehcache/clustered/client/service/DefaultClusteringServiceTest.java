@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.clustered.client.service;
+
+import java.net.URI;
+
+import org.ehcache.clustered.client.config.builders.ClusteringServiceConfigurationBuilder;
+import org.ehcache.clustered.client.internal.UnitTestConnectionService;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.fail;
+
+public class DefaultClusteringServiceTest {
+
+  private static final URI CACHE_MANAGER = URI.create("http://example.com:9540/my-application");
+  private static final URI AUTO_CREATE_CACHE_MANAGER = URI.create("http://example.com:9540/my-application?auto-create");
+
+  @Before
+  public void resetServer() {
+    UnitTestConnectionService.reset();
+  }
+
+  @Test
+  public void testMaintenanceLeaseIsExclusiveBetweenServicesOfOneCluster() {
+    DefaultClusteringService first = service(CACHE_MANAGER);
+    first.startForMaintenance(null);
+    DefaultClusteringService second = service(CACHE_MANAGER);
+    assertMaintenanceRefused(second);
+
+    first.stop();
+    second.startForMaintenance(null);
+    second.stop();
+  }
+
+  @Test
+  public void testStoppingAServiceKeepsTheMaintenanceLeaseOfAnother() {
+    DefaultClusteringService creator = service(AUTO_CREATE_CACHE_MANAGER);
+    creator.start(null);
+    DefaultClusteringService maintainer = service(CACHE_MANAGER);
+    maintainer.startForMaintenance(null);
+    try {
+      creator.stop();
+      DefaultClusteringService user = service(CACHE_MANAGER);
+      user.start(null);
+      user.stop();
+
+      assertMaintenanceRefused(service(CACHE_MANAGER));
+    } finally {
+      maintainer.stop();
+    }
+  }
+
+  private static void assertMaintenanceRefused(DefaultClusteringService service) {
+    try {
+      service.startForMaintenance(null);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+  }
+
+  private static DefaultClusteringService service(URI clusterUri) {
+    return new DefaultClusteringService(ClusteringServiceConfigurationBuilder.cluster(clusterUri).build());
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common;
+
+/**
+ * Defines how writes to a clustered store are made visible to the clients caching its mappings locally.
+ */
+public enum Consistency {
+
+  /**
+   * Writes return as soon as the server has applied them, stale local copies held by other clients are invalidated
+   * asynchronously.
+   */
+  EVENTUAL,
+
+  /**
+   * Writes only return once every other client holding a local copy of the mapping has acknowledged its invalidation.
+   */
+  STRONG
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common;
+
+import java.io.Serializable;
+
+/**
+ * Describes where the server-side storage of a clustered cache comes from.
+ */
+public abstract class PoolAllocation implements Serializable {
+
+  private static final long serialVersionUID = 6441437420307573834L;
+
+  PoolAllocation() {
+    // only the nested implementations
+  }
+
+  /**
+   * Storage dedicated to a single cache.
+   */
+  public static final class Fixed extends PoolAllocation {
+
+    private static final long serialVersionUID = -5430733547393283433L;
+
+    private final String resourceName;
+    private final long size;
+
+    /**
+     * Creates a fixed allocation.
+     *
+     * @param resourceName the server-side resource the storage is reserved from; may be {@code null}
+     * @param size the storage size in bytes
+     */
+    public Fixed(String resourceName, long size) {
+      if (size <= 0) {
+        throw new IllegalArgumentException("Fixed pool size must be positive : " + size);
+      }
+      this.resourceName = resourceName;
+      this.size = size;
+    }
+
+    public String getResourceName() {
+      return resourceName;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return "Fixed{resource=" + resourceName + ", size=" + size + "}";
+    }
+  }
+
+  /**
+   * Storage shared with the other caches using the same shared pool.
+   */
+  public static final class Shared extends PoolAllocation {
+
+    private static final long serialVersionUID = 7541393925712469413L;
+
+    private final String resourcePoolName;
+
+    /**
+     * Creates a shared allocation.
+     *
+     * @param resourcePoolName the name of a shared pool defined in the {@link ServerSideConfiguration}
+     */
+    public Shared(String resourcePoolName) {
+      if (resourcePoolName == null) {
+        throw new NullPointerException("Shared pool name cannot be null");
+      }
+      this.resourcePoolName = resourcePoolName;
+    }
+
+    public String getResourcePoolName() {
+      return resourcePoolName;
+    }
+
+    @Override
+    public String toString() {
+      return "Shared{pool=" + resourcePoolName + "}";
+    }
+  }
+}
@@ -17,6 +17,9 @@
 package org.ehcache.clustered.common;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  *
@@ -25,12 +28,65 @@ import java.io.Serializable;
 public class ServerSideConfiguration implements Serializable {
 
   private final int magic;
+  private final Map<String, Pool> resourcePools;
 
   public ServerSideConfiguration(int magic) {
+    this(magic, Collections.<String, Pool>emptyMap());
+  }
+
+  public ServerSideConfiguration(int magic, Map<String, Pool> resourcePools) {
     this.magic = magic;
+    this.resourcePools = Collections.unmodifiableMap(new HashMap<String, Pool>(resourcePools));
   }
 
   public int getMagic() {
     return magic;
   }
+
+  /**
+   * Returns the shared pools caches can allocate their server-side storage from, keyed by name.
+   *
+   * @return the shared pools
+   */
+  public Map<String, Pool> getResourcePools() {
+    return resourcePools;
+  }
+
+  /**
+   * A shared pool of server-side storage.
+   */
+  public static final class Pool implements Serializable {
+
+    private static final long serialVersionUID = 3920576607695314256L;
+
+    private final String serverResource;
+    private final long size;
+
+    /**
+     * Creates a pool.
+     *
+     * @param serverResource the server-side resource the pool is reserved from; may be {@code null}
+     * @param size the pool size in bytes
+     */
+    public Pool(String serverResource, long size) {
+      if (size <= 0) {
+        throw new IllegalArgumentException("Pool size must be positive : " + size);
+      }
+      this.serverResource = serverResource;
+      this.size = size;
+    }
+
+    public String getServerResource() {
+      return serverResource;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return "Pool{resource=" + serverResource + ", size=" + size + "}";
+    }
+  }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common;
+
+import java.io.Serializable;
+
+/**
+ * Configuration of the server-side store backing a clustered cache.
+ */
+public class ServerStoreConfiguration implements Serializable {
+
+  private static final long serialVersionUID = -1287932716271545385L;
+
+  private final PoolAllocation poolAllocation;
+  private final Consistency consistency;
+
+  public ServerStoreConfiguration(PoolAllocation poolAllocation) {
+    this(poolAllocation, Consistency.EVENTUAL);
+  }
+
+  public ServerStoreConfiguration(PoolAllocation poolAllocation, Consistency consistency) {
+    if (poolAllocation == null) {
+      throw new NullPointerException("Pool allocation cannot be null");
+    }
+    if (consistency == null) {
+      throw new NullPointerException("Consistency cannot be null");
+    }
+    this.poolAllocation = poolAllocation;
+    this.consistency = consistency;
+  }
+
+  public PoolAllocation getPoolAllocation() {
+    return poolAllocation;
+  }
+
+  public Consistency getConsistency() {
+    return consistency;
+  }
+}
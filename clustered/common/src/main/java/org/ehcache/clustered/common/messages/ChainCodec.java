@@ -0,0 +1,127 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.SequencedElement;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Writes {@link Chain}s into, and reads them back out of, entity messages.
+ * <P>
+ *   Sequence numbers survive the round trip so that a chain read by a client can be handed back to the server as the
+ *   expected head of a {@code replaceAtHead}.  Elements without a sequence number are encoded with {@code -1}.  Decoded
+ *   element payloads are slices of the message rather than copies.
+ * </P>
+ */
+final class ChainCodec {
+
+  private static final long NO_SEQUENCE = -1L;
+
+  private ChainCodec() {
+    //static utility
+  }
+
+  static void encode(Chain chain, MessageEncoder encoder) {
+    int count = 0;
+    for (Iterator<Element> it = chain.iterator(); it.hasNext(); it.next()) {
+      count++;
+    }
+    encoder.putVarInt(count);
+    for (Element element : chain) {
+      encoder.putVarLong(element instanceof SequencedElement ? ((SequencedElement) element).getSequenceNumber() : NO_SEQUENCE);
+      encoder.putBuffer(element.getPayload());
+    }
+  }
+
+  static Chain decode(MessageDecoder decoder) {
+    int count = decoder.getVarInt();
+    List<Element> elements = new ArrayList<Element>(count);
+    for (int i = 0; i < count; i++) {
+      long sequenceNumber = decoder.getVarLong();
+      elements.add(new DecodedElement(sequenceNumber, decoder.getBuffer()));
+    }
+    return new DecodedChain(elements);
+  }
+
+  private static final class DecodedElement implements SequencedElement {
+
+    private final long sequenceNumber;
+    private final ByteBuffer payload;
+
+    DecodedElement(long sequenceNumber, ByteBuffer payload) {
+      this.sequenceNumber = sequenceNumber;
+      this.payload = payload;
+    }
+
+    @Override
+    public long getSequenceNumber() {
+      return sequenceNumber;
+    }
+
+    @Override
+    public ByteBuffer getPayload() {
+      return payload.duplicate();
+    }
+  }
+
+  private static final class DecodedChain implements Chain {
+
+    private final List<Element> elements;
+
+    DecodedChain(List<Element> elements) {
+      this.elements = Collections.unmodifiableList(elements);
+    }
+
+    @Override
+    public Iterator<Element> iterator() {
+      return elements.iterator();
+    }
+
+    @Override
+    public Iterator<Element> reverseIterator() {
+      final ListIterator<Element> it = elements.listIterator(elements.size());
+      return new Iterator<Element>() {
+        @Override
+        public boolean hasNext() {
+          return it.hasPrevious();
+        }
+
+        @Override
+        public Element next() {
+          return it.previous();
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException("Remove operation is not supported");
+        }
+      };
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return elements.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+/**
+ * A message that only touches the server-side state of a single key, and so may be executed concurrently with messages
+ * for other keys.
+ */
+public interface ConcurrentEntityMessage {
+
+  /**
+   * Returns a hash of the key this message operates on.  Messages returning different values may be executed in
+   * parallel, messages returning the same value are executed in order.
+   *
+   * @return the key hash
+   */
+  int concurrencyKey();
+}
@@ -20,15 +20,90 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ConfigureCacheManager;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.CreateServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.DestroyServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ValidateCacheManager;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.AllInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.CompactChain;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.Failure;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetAllResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.HashInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateAll;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateHash;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.KeysResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.PoolOccupancyResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.StatisticsResponse;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.AppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ClientInvalidationAck;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetStripeKeysMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.KeyBasedServerStoreOpMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ReplaceAtHeadMessage;
+import org.ehcache.clustered.common.store.Chain;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
 /**
+ * Binary codec for the messages exchanged between the clustered client and server entities.
+ * <P>
+ *   Every encoded message starts with a {@link #WIRE_VERSION} byte and an opcode byte identifying the message type.
+ *   Names and payloads are length prefixed using varints, keys and sequence numbers are zig-zag varints, and chain
+ *   element payloads are decoded as slices of the received array.  Only the cause carried by a failure response is
+ *   still written using Java serialization.
+ * </P>
  *
  * @author cdennis
  */
 public class EhcacheCodec implements MessageCodec<EhcacheEntityMessage, EhcacheEntityResponse> {
 
+  static final byte WIRE_VERSION = 1;
+
+  private static final byte CONFIGURE_OP = 1;
+  private static final byte VALIDATE_OP = 2;
+  private static final byte CREATE_SERVER_STORE_OP = 3;
+  private static final byte DESTROY_SERVER_STORE_OP = 4;
+  private static final byte GET_STATISTICS_OP = 5;
+  private static final byte GET_POOL_OCCUPANCY_OP = 6;
+  private static final byte GET_OP = 16;
+  private static final byte APPEND_OP = 17;
+  private static final byte GET_AND_APPEND_OP = 18;
+  private static final byte REPLACE_OP = 19;
+  private static final byte CLEAR_OP = 20;
+  private static final byte CLIENT_INVALIDATION_ACK_OP = 21;
+  private static final byte GET_ALL_OP = 22;
+  private static final byte GET_AND_APPEND_ALL_OP = 23;
+  private static final byte GET_STRIPE_KEYS_OP = 24;
+  private static final byte GET_UNTRACKED_OP = 25;
+
+  private static final byte SUCCESS_OP = 1;
+  private static final byte FAILURE_OP = 2;
+  private static final byte GET_RESPONSE_OP = 3;
+  private static final byte INVALIDATE_HASH_OP = 4;
+  private static final byte INVALIDATE_ALL_OP = 5;
+  private static final byte HASH_INVALIDATION_DONE_OP = 6;
+  private static final byte ALL_INVALIDATION_DONE_OP = 7;
+  private static final byte GET_ALL_RESPONSE_OP = 8;
+  private static final byte COMPACT_CHAIN_OP = 9;
+  private static final byte KEYS_RESPONSE_OP = 10;
+  private static final byte STATISTICS_RESPONSE_OP = 11;
+  private static final byte POOL_OCCUPANCY_RESPONSE_OP = 12;
+
+  private static final byte FIXED_ALLOCATION = 1;
+  private static final byte SHARED_ALLOCATION = 2;
+
   private static final MessageCodec<EhcacheEntityMessage, EhcacheEntityResponse> SERVER_INSTANCE = new EhcacheCodec();
 
   public static MessageCodec<EhcacheEntityMessage, EhcacheEntityResponse> messageCodec() {
@@ -37,25 +112,430 @@ public class EhcacheCodec implements MessageCodec<EhcacheEntityMessage, EhcacheE
 
   @Override
   public byte[] encodeMessage(EhcacheEntityMessage message) {
-    return marshall(message);
+    MessageEncoder encoder = MessageEncoder.encoder().putByte(WIRE_VERSION);
+    switch (message.getType()) {
+      case CONFIGURE:
+        encoder.putByte(CONFIGURE_OP);
+        encodeServerSideConfiguration(((ConfigureCacheManager) message).getConfiguration(), encoder);
+        break;
+      case VALIDATE:
+        encoder.putByte(VALIDATE_OP);
+        encodeServerSideConfiguration(((ValidateCacheManager) message).getConfiguration(), encoder);
+        break;
+      case CREATE_SERVER_STORE:
+        CreateServerStore createMessage = (CreateServerStore) message;
+        encoder.putByte(CREATE_SERVER_STORE_OP).putString(createMessage.getName());
+        encodeServerStoreConfiguration(createMessage.getStoreConfiguration(), encoder);
+        break;
+      case DESTROY_SERVER_STORE:
+        encoder.putByte(DESTROY_SERVER_STORE_OP).putString(((DestroyServerStore) message).getName());
+        break;
+      case GET_STATISTICS:
+        encoder.putByte(GET_STATISTICS_OP);
+        break;
+      case GET_POOL_OCCUPANCY:
+        encoder.putByte(GET_POOL_OCCUPANCY_OP);
+        break;
+      case SERVER_STORE_OP:
+        encodeServerStoreOperation((ServerStoreOpMessage) message, encoder);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported message type : " + message.getType());
+    }
+    return encoder.toByteArray();
   }
 
   @Override
   public EhcacheEntityMessage decodeMessage(byte[] payload) throws MessageCodecException {
-    return (EhcacheEntityMessage) unmarshall(payload);
+    try {
+      MessageDecoder decoder = openDecoder(payload);
+      byte opcode = decoder.getByte();
+      switch (opcode) {
+        case CONFIGURE_OP:
+          return EhcacheEntityMessage.configure(decodeServerSideConfiguration(decoder));
+        case VALIDATE_OP:
+          return EhcacheEntityMessage.validate(decodeServerSideConfiguration(decoder));
+        case CREATE_SERVER_STORE_OP:
+          String name = decoder.getString();
+          return EhcacheEntityMessage.createServerStore(name, decodeServerStoreConfiguration(decoder));
+        case DESTROY_SERVER_STORE_OP:
+          return EhcacheEntityMessage.destroyServerStore(decoder.getString());
+        case GET_STATISTICS_OP:
+          return EhcacheEntityMessage.getStatistics();
+        case GET_POOL_OCCUPANCY_OP:
+          return EhcacheEntityMessage.getPoolOccupancy();
+        case CLEAR_OP:
+          return ServerStoreOpMessage.clearOperation(decoder.getString());
+        case CLIENT_INVALIDATION_ACK_OP:
+          String cacheId = decoder.getString();
+          return ServerStoreOpMessage.clientInvalidationAck(cacheId, (int) decoder.getVarLong());
+        case GET_ALL_OP:
+          return decodeGetAllOperation(decoder);
+        case GET_AND_APPEND_ALL_OP:
+          return decodeGetAndAppendAllOperation(decoder);
+        case GET_STRIPE_KEYS_OP:
+          String stripedCacheId = decoder.getString();
+          int stripe = decoder.getVarInt();
+          return ServerStoreOpMessage.getStripeKeysOperation(stripedCacheId, stripe, decoder.getVarInt());
+        case GET_OP:
+        case GET_UNTRACKED_OP:
+        case APPEND_OP:
+        case GET_AND_APPEND_OP:
+        case REPLACE_OP:
+          return decodeKeyBasedServerStoreOperation(opcode, decoder);
+        default:
+          throw new IllegalArgumentException("Unknown message opcode : " + opcode);
+      }
+    } catch (RuntimeException e) {
+      throw new MessageCodecException("Failed to decode message", e);
+    }
   }
 
   @Override
   public byte[] encodeResponse(EhcacheEntityResponse response) throws MessageCodecException {
-    return marshall(response);
+    MessageEncoder encoder = MessageEncoder.encoder().putByte(WIRE_VERSION);
+    switch (response.getType()) {
+      case SUCCESS:
+        encoder.putByte(SUCCESS_OP);
+        break;
+      case FAILURE:
+        encoder.putByte(FAILURE_OP).putBytes(serialize(((Failure) response).getCause()));
+        break;
+      case GET_RESPONSE:
+        encoder.putByte(GET_RESPONSE_OP);
+        ChainCodec.encode(((GetResponse) response).getChain(), encoder);
+        break;
+      case GET_ALL_RESPONSE:
+        Chain[] chains = ((GetAllResponse) response).getChains();
+        encoder.putByte(GET_ALL_RESPONSE_OP).putVarInt(chains.length);
+        for (Chain chain : chains) {
+          ChainCodec.encode(chain, encoder);
+        }
+        break;
+      case KEYS_RESPONSE: {
+        long[] keys = ((KeysResponse) response).getKeys();
+        encoder.putByte(KEYS_RESPONSE_OP).putVarInt(keys.length);
+        for (long key : keys) {
+          encoder.putVarLong(key);
+        }
+        break;
+      }
+      case INVALIDATE_HASH:
+        InvalidateHash invalidateHash = (InvalidateHash) response;
+        encoder.putByte(INVALIDATE_HASH_OP).putString(invalidateHash.getCacheId())
+            .putVarLong(invalidateHash.getKey()).putVarLong(invalidateHash.getInvalidationId());
+        break;
+      case INVALIDATE_ALL:
+        InvalidateAll invalidateAll = (InvalidateAll) response;
+        encoder.putByte(INVALIDATE_ALL_OP).putString(invalidateAll.getCacheId()).putVarLong(invalidateAll.getInvalidationId());
+        break;
+      case HASH_INVALIDATION_DONE:
+        HashInvalidationDone hashInvalidationDone = (HashInvalidationDone) response;
+        encoder.putByte(HASH_INVALIDATION_DONE_OP).putString(hashInvalidationDone.getCacheId()).putVarLong(hashInvalidationDone.getKey());
+        break;
+      case ALL_INVALIDATION_DONE:
+        encoder.putByte(ALL_INVALIDATION_DONE_OP).putString(((AllInvalidationDone) response).getCacheId());
+        break;
+      case COMPACT_CHAIN:
+        CompactChain compactChain = (CompactChain) response;
+        encoder.putByte(COMPACT_CHAIN_OP).putString(compactChain.getCacheId()).putVarLong(compactChain.getKey());
+        break;
+      case STATISTICS_RESPONSE:
+        encoder.putByte(STATISTICS_RESPONSE_OP);
+        encodeNestedCounts(((StatisticsResponse) response).getStatistics(), encoder);
+        break;
+      case POOL_OCCUPANCY_RESPONSE: {
+        PoolOccupancyResponse poolOccupancy = (PoolOccupancyResponse) response;
+        encoder.putByte(POOL_OCCUPANCY_RESPONSE_OP);
+        encodeCounts(poolOccupancy.getPoolSizes(), encoder);
+        encodeNestedCounts(poolOccupancy.getOccupancy(), encoder);
+        encodeNestedCounts(poolOccupancy.getFairShares(), encoder);
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported response type : " + response.getType());
+    }
+    return encoder.toByteArray();
   }
 
   @Override
   public EhcacheEntityResponse decodeResponse(byte[] payload) throws MessageCodecException {
-    return (EhcacheEntityResponse) unmarshall(payload);
+    try {
+      MessageDecoder decoder = openDecoder(payload);
+      byte opcode = decoder.getByte();
+      switch (opcode) {
+        case SUCCESS_OP:
+          return EhcacheEntityResponse.success();
+        case FAILURE_OP:
+          return EhcacheEntityResponse.failure((Throwable) deserialize(decoder.getBytes()));
+        case GET_RESPONSE_OP:
+          return EhcacheEntityResponse.response(ChainCodec.decode(decoder));
+        case GET_ALL_RESPONSE_OP: {
+          Chain[] chains = new Chain[decoder.getVarInt()];
+          for (int i = 0; i < chains.length; i++) {
+            chains[i] = ChainCodec.decode(decoder);
+          }
+          return EhcacheEntityResponse.getAllResponse(chains);
+        }
+        case KEYS_RESPONSE_OP: {
+          long[] keys = new long[decoder.getVarInt()];
+          for (int i = 0; i < keys.length; i++) {
+            keys[i] = decoder.getVarLong();
+          }
+          return EhcacheEntityResponse.keysResponse(keys);
+        }
+        case INVALIDATE_HASH_OP: {
+          String cacheId = decoder.getString();
+          long key = decoder.getVarLong();
+          return EhcacheEntityResponse.invalidateHash(cacheId, key, (int) decoder.getVarLong());
+        }
+        case INVALIDATE_ALL_OP: {
+          String cacheId = decoder.getString();
+          return EhcacheEntityResponse.invalidateAll(cacheId, (int) decoder.getVarLong());
+        }
+        case HASH_INVALIDATION_DONE_OP: {
+          String cacheId = decoder.getString();
+          return EhcacheEntityResponse.hashInvalidationDone(cacheId, decoder.getVarLong());
+        }
+        case ALL_INVALIDATION_DONE_OP:
+          return EhcacheEntityResponse.allInvalidationDone(decoder.getString());
+        case COMPACT_CHAIN_OP: {
+          String cacheId = decoder.getString();
+          return EhcacheEntityResponse.compactChain(cacheId, decoder.getVarLong());
+        }
+        case STATISTICS_RESPONSE_OP:
+          return EhcacheEntityResponse.statisticsResponse(decodeNestedCounts(decoder));
+        case POOL_OCCUPANCY_RESPONSE_OP: {
+          Map<String, Long> poolSizes = decodeCounts(decoder);
+          Map<String, Map<String, Long>> occupancy = decodeNestedCounts(decoder);
+          return EhcacheEntityResponse.poolOccupancyResponse(poolSizes, occupancy, decodeNestedCounts(decoder));
+        }
+        default:
+          throw new IllegalArgumentException("Unknown response opcode : " + opcode);
+      }
+    } catch (RuntimeException e) {
+      throw new MessageCodecException("Failed to decode response", e);
+    }
+  }
+
+  static MessageDecoder openDecoder(byte[] payload) {
+    MessageDecoder decoder = new MessageDecoder(payload);
+    byte version = decoder.getByte();
+    if (version != WIRE_VERSION) {
+      throw new IllegalArgumentException("Unsupported wire version : " + version + " (expected " + WIRE_VERSION + ")");
+    }
+    return decoder;
+  }
+
+  private static void encodeServerStoreOperation(ServerStoreOpMessage message, MessageEncoder encoder) {
+    switch (message.operation()) {
+      case GET:
+        encoder.putByte(GET_OP);
+        break;
+      case GET_UNTRACKED:
+        encoder.putByte(GET_UNTRACKED_OP);
+        break;
+      case APPEND:
+        encoder.putByte(APPEND_OP);
+        break;
+      case GET_AND_APPEND:
+        encoder.putByte(GET_AND_APPEND_OP);
+        break;
+      case REPLACE:
+        encoder.putByte(REPLACE_OP);
+        break;
+      case CLEAR:
+        encoder.putByte(CLEAR_OP).putString(message.getCacheId());
+        return;
+      case CLIENT_INVALIDATION_ACK:
+        encoder.putByte(CLIENT_INVALIDATION_ACK_OP).putString(message.getCacheId())
+            .putVarLong(((ClientInvalidationAck) message).getInvalidationId());
+        return;
+      case GET_ALL: {
+        long[] keys = ((GetAllMessage) message).getKeys();
+        encoder.putByte(GET_ALL_OP).putString(message.getCacheId()).putVarInt(keys.length);
+        for (long key : keys) {
+          encoder.putVarLong(key);
+        }
+        return;
+      }
+      case GET_AND_APPEND_ALL: {
+        GetAndAppendAllMessage getAndAppendAllMessage = (GetAndAppendAllMessage) message;
+        long[] keys = getAndAppendAllMessage.getKeys();
+        ByteBuffer[] payloads = getAndAppendAllMessage.getPayloads();
+        encoder.putByte(GET_AND_APPEND_ALL_OP).putString(message.getCacheId()).putVarInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+          encoder.putVarLong(keys[i]).putBuffer(payloads[i]);
+        }
+        return;
+      }
+      case GET_STRIPE_KEYS: {
+        GetStripeKeysMessage getStripeKeysMessage = (GetStripeKeysMessage) message;
+        encoder.putByte(GET_STRIPE_KEYS_OP).putString(message.getCacheId())
+            .putVarInt(getStripeKeysMessage.getStripe()).putVarInt(getStripeKeysMessage.getStripeCount());
+        return;
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported server store operation : " + message.operation());
+    }
+    encoder.putString(message.getCacheId()).putVarLong(((KeyBasedServerStoreOpMessage) message).getKey());
+    switch (message.operation()) {
+      case APPEND:
+        encoder.putBuffer(((AppendMessage) message).getPayload());
+        break;
+      case GET_AND_APPEND:
+        encoder.putBuffer(((GetAndAppendMessage) message).getPayload());
+        break;
+      case REPLACE:
+        ReplaceAtHeadMessage replaceMessage = (ReplaceAtHeadMessage) message;
+        ChainCodec.encode(replaceMessage.getExpect(), encoder);
+        ChainCodec.encode(replaceMessage.getUpdate(), encoder);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static ServerStoreOpMessage decodeKeyBasedServerStoreOperation(byte opcode, MessageDecoder decoder) {
+    String cacheId = decoder.getString();
+    long key = decoder.getVarLong();
+    switch (opcode) {
+      case GET_OP:
+        return ServerStoreOpMessage.getOperation(cacheId, key);
+      case GET_UNTRACKED_OP:
+        return ServerStoreOpMessage.getUntrackedOperation(cacheId, key);
+      case APPEND_OP:
+        return ServerStoreOpMessage.appendOperation(cacheId, key, decoder.getBuffer());
+      case GET_AND_APPEND_OP:
+        return ServerStoreOpMessage.getAndAppendOperation(cacheId, key, decoder.getBuffer());
+      case REPLACE_OP:
+        return ServerStoreOpMessage.replaceAtHeadOperation(cacheId, key, ChainCodec.decode(decoder), ChainCodec.decode(decoder));
+      default:
+        throw new AssertionError("Not a key based opcode : " + opcode);
+    }
+  }
+
+  private static GetAllMessage decodeGetAllOperation(MessageDecoder decoder) {
+    String cacheId = decoder.getString();
+    long[] keys = new long[decoder.getVarInt()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = decoder.getVarLong();
+    }
+    return ServerStoreOpMessage.getAllOperation(cacheId, keys);
+  }
+
+  private static GetAndAppendAllMessage decodeGetAndAppendAllOperation(MessageDecoder decoder) {
+    String cacheId = decoder.getString();
+    int count = decoder.getVarInt();
+    long[] keys = new long[count];
+    ByteBuffer[] payloads = new ByteBuffer[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = decoder.getVarLong();
+      payloads[i] = decoder.getBuffer();
+    }
+    return ServerStoreOpMessage.getAndAppendAllOperation(cacheId, keys, payloads);
+  }
+
+  private static void encodeCounts(Map<String, Long> counts, MessageEncoder encoder) {
+    encoder.putVarInt(counts.size());
+    for (Map.Entry<String, Long> count : counts.entrySet()) {
+      encoder.putString(count.getKey()).putVarLong(count.getValue());
+    }
+  }
+
+  private static Map<String, Long> decodeCounts(MessageDecoder decoder) {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (int size = decoder.getVarInt(); size > 0; size--) {
+      String name = decoder.getString();
+      counts.put(name, decoder.getVarLong());
+    }
+    return counts;
+  }
+
+  private static void encodeNestedCounts(Map<String, Map<String, Long>> counts, MessageEncoder encoder) {
+    encoder.putVarInt(counts.size());
+    for (Map.Entry<String, Map<String, Long>> group : counts.entrySet()) {
+      encoder.putString(group.getKey());
+      encodeCounts(group.getValue(), encoder);
+    }
+  }
+
+  private static Map<String, Map<String, Long>> decodeNestedCounts(MessageDecoder decoder) {
+    Map<String, Map<String, Long>> counts = new LinkedHashMap<String, Map<String, Long>>();
+    for (int size = decoder.getVarInt(); size > 0; size--) {
+      String name = decoder.getString();
+      counts.put(name, decodeCounts(decoder));
+    }
+    return counts;
+  }
+
+  static void encodeServerSideConfiguration(ServerSideConfiguration configuration, MessageEncoder encoder) {
+    encoder.putVarLong(configuration.getMagic());
+    Map<String, ServerSideConfiguration.Pool> pools = configuration.getResourcePools();
+    encoder.putVarInt(pools.size());
+    for (Map.Entry<String, ServerSideConfiguration.Pool> pool : pools.entrySet()) {
+      encoder.putString(pool.getKey())
+          .putString(pool.getValue().getServerResource())
+          .putVarLong(pool.getValue().getSize());
+    }
+  }
+
+  static ServerSideConfiguration decodeServerSideConfiguration(MessageDecoder decoder) {
+    int magic = (int) decoder.getVarLong();
+    int count = decoder.getVarInt();
+    Map<String, ServerSideConfiguration.Pool> pools = new HashMap<String, ServerSideConfiguration.Pool>();
+    for (int i = 0; i < count; i++) {
+      String name = decoder.getString();
+      String serverResource = decoder.getString();
+      pools.put(name, new ServerSideConfiguration.Pool(serverResource, decoder.getVarLong()));
+    }
+    return new ServerSideConfiguration(magic, pools);
+  }
+
+  static void encodeServerStoreConfiguration(ServerStoreConfiguration configuration, MessageEncoder encoder) {
+    encodePoolAllocation(configuration.getPoolAllocation(), encoder);
+    encoder.putByte((byte) configuration.getConsistency().ordinal());
+  }
+
+  static ServerStoreConfiguration decodeServerStoreConfiguration(MessageDecoder decoder) {
+    PoolAllocation poolAllocation = decodePoolAllocation(decoder);
+    return new ServerStoreConfiguration(poolAllocation, decodeConsistency(decoder));
+  }
+
+  private static void encodePoolAllocation(PoolAllocation allocation, MessageEncoder encoder) {
+    if (allocation instanceof PoolAllocation.Fixed) {
+      PoolAllocation.Fixed fixed = (PoolAllocation.Fixed) allocation;
+      encoder.putByte(FIXED_ALLOCATION).putString(fixed.getResourceName()).putVarLong(fixed.getSize());
+    } else if (allocation instanceof PoolAllocation.Shared) {
+      encoder.putByte(SHARED_ALLOCATION).putString(((PoolAllocation.Shared) allocation).getResourcePoolName());
+    } else {
+      throw new IllegalArgumentException("Unsupported pool allocation : " + allocation);
+    }
+  }
+
+  private static PoolAllocation decodePoolAllocation(MessageDecoder decoder) {
+    byte type = decoder.getByte();
+    switch (type) {
+      case FIXED_ALLOCATION:
+        String resourceName = decoder.getString();
+        return new PoolAllocation.Fixed(resourceName, decoder.getVarLong());
+      case SHARED_ALLOCATION:
+        return new PoolAllocation.Shared(decoder.getString());
+      default:
+        throw new IllegalArgumentException("Unknown pool allocation type : " + type);
+    }
+  }
+
+  private static Consistency decodeConsistency(MessageDecoder decoder) {
+    byte ordinal = decoder.getByte();
+    Consistency[] values = Consistency.values();
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new IllegalArgumentException("Unknown consistency : " + ordinal);
+    }
+    return values[ordinal];
   }
 
-  private static Object unmarshall(byte[] payload) {
+  private static Object deserialize(byte[] payload) {
     try {
       return new ObjectInputStream(new ByteArrayInputStream(payload)).readObject();
     } catch (IOException ex) {
@@ -65,12 +545,12 @@ public class EhcacheCodec implements MessageCodec<EhcacheEntityMessage, EhcacheE
     }
   }
 
-  private static byte[] marshall(Object message) {
+  private static byte[] serialize(Object object) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     try {
       ObjectOutputStream oout = new ObjectOutputStream(out);
       try {
-        oout.writeObject(message);
+        oout.writeObject(object);
       } finally {
         oout.close();
       }
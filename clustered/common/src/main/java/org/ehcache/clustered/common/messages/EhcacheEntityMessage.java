@@ -15,19 +15,25 @@
  */
 package org.ehcache.clustered.common.messages;
 
-import java.io.Serializable;
 import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
 import org.terracotta.entity.EntityMessage;
 
 /**
  *
  * @author cdennis
  */
-public abstract class EhcacheEntityMessage implements EntityMessage, Serializable {
+public abstract class EhcacheEntityMessage implements EntityMessage {
 
   public enum Type {
     CONFIGURE,
-    VALIDATE;
+    VALIDATE,
+    CREATE_SERVER_STORE,
+    DESTROY_SERVER_STORE,
+    GET_STATISTICS,
+    GET_POOL_OCCUPANCY,
+    SERVER_STORE_OP,
+    SYNC;
   }
 
   public abstract Type getType();
@@ -75,4 +81,96 @@ public abstract class EhcacheEntityMessage implements EntityMessage, Serializabl
       return configuration;
     }
   }
+
+  public static CreateServerStore createServerStore(String name, ServerStoreConfiguration serverStoreConfiguration) {
+    return new CreateServerStore(name, serverStoreConfiguration);
+  }
+
+  public static class CreateServerStore extends EhcacheEntityMessage {
+
+    private final String name;
+    private final ServerStoreConfiguration storeConfiguration;
+
+    private CreateServerStore(String name, ServerStoreConfiguration storeConfiguration) {
+      this.name = name;
+      this.storeConfiguration = storeConfiguration;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.CREATE_SERVER_STORE;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public ServerStoreConfiguration getStoreConfiguration() {
+      return storeConfiguration;
+    }
+  }
+
+  public static DestroyServerStore destroyServerStore(String name) {
+    return new DestroyServerStore(name);
+  }
+
+  public static class DestroyServerStore extends EhcacheEntityMessage {
+
+    private final String name;
+
+    private DestroyServerStore(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.DESTROY_SERVER_STORE;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  public static GetStatistics getStatistics() {
+    return GetStatistics.INSTANCE;
+  }
+
+  /**
+   * Requests the operation counters of every server store of the cache manager.
+   */
+  public static class GetStatistics extends EhcacheEntityMessage {
+
+    private static final GetStatistics INSTANCE = new GetStatistics();
+
+    private GetStatistics() {
+      //singleton
+    }
+
+    @Override
+    public Type getType() {
+      return Type.GET_STATISTICS;
+    }
+  }
+
+  public static GetPoolOccupancy getPoolOccupancy() {
+    return GetPoolOccupancy.INSTANCE;
+  }
+
+  /**
+   * Requests how the shared pools of the cache manager are split between their server stores.
+   */
+  public static class GetPoolOccupancy extends EhcacheEntityMessage {
+
+    private static final GetPoolOccupancy INSTANCE = new GetPoolOccupancy();
+
+    private GetPoolOccupancy() {
+      //singleton
+    }
+
+    @Override
+    public Type getType() {
+      return Type.GET_POOL_OCCUPANCY;
+    }
+  }
 }
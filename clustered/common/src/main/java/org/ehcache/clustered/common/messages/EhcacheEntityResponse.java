@@ -15,21 +15,39 @@
  */
 package org.ehcache.clustered.common.messages;
 
-import java.io.Serializable;
-
+import org.ehcache.clustered.common.store.Chain;
 import org.terracotta.entity.EntityResponse;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  *
  * @author cdennis
  */
-public abstract class EhcacheEntityResponse implements EntityResponse, Serializable {
+public abstract class EhcacheEntityResponse implements EntityResponse {
 
   public enum Type {
     SUCCESS,
-    FAILURE;
+    FAILURE,
+    GET_RESPONSE,
+    GET_ALL_RESPONSE,
+    KEYS_RESPONSE,
+    INVALIDATE_HASH,
+    INVALIDATE_ALL,
+    HASH_INVALIDATION_DONE,
+    ALL_INVALIDATION_DONE,
+    COMPACT_CHAIN,
+    STATISTICS_RESPONSE,
+    POOL_OCCUPANCY_RESPONSE;
   }
 
+  /**
+   * Invalidation id used when the server does not expect the invalidation to be acknowledged.
+   */
+  public static final int NO_ACK = -1;
+
   public abstract Type getType();
 
   public static Success success() {
@@ -72,5 +90,309 @@ public abstract class EhcacheEntityResponse implements EntityResponse, Serializa
     }
   }
 
+  public static GetResponse response(Chain chain) {
+    return new GetResponse(chain);
+  }
+
+  public static class GetResponse extends EhcacheEntityResponse {
+
+    private final Chain chain;
+
+    private GetResponse(Chain chain) {
+      this.chain = chain;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.GET_RESPONSE;
+    }
+
+    public Chain getChain() {
+      return chain;
+    }
+  }
+
+  public static GetAllResponse getAllResponse(Chain[] chains) {
+    return new GetAllResponse(chains);
+  }
+
+  public static class GetAllResponse extends EhcacheEntityResponse {
+
+    private final Chain[] chains;
+
+    private GetAllResponse(Chain[] chains) {
+      this.chains = chains.clone();
+    }
+
+    @Override
+    public Type getType() {
+      return Type.GET_ALL_RESPONSE;
+    }
+
+    public Chain[] getChains() {
+      return chains.clone();
+    }
+  }
+
+  public static KeysResponse keysResponse(long[] keys) {
+    return new KeysResponse(keys);
+  }
+
+  public static class KeysResponse extends EhcacheEntityResponse {
+
+    private final long[] keys;
+
+    private KeysResponse(long[] keys) {
+      this.keys = keys.clone();
+    }
+
+    @Override
+    public Type getType() {
+      return Type.KEYS_RESPONSE;
+    }
+
+    public long[] getKeys() {
+      return keys.clone();
+    }
+  }
+
+  public static InvalidateHash invalidateHash(String cacheId, long key, int invalidationId) {
+    return new InvalidateHash(cacheId, key, invalidationId);
+  }
+
+  /**
+   * Pushed by the server to the clients holding local copies of mappings with the given key hash, after another
+   * client mutated them.
+   */
+  public static class InvalidateHash extends EhcacheEntityResponse {
+
+    private final String cacheId;
+    private final long key;
+    private final int invalidationId;
+
+    private InvalidateHash(String cacheId, long key, int invalidationId) {
+      this.cacheId = cacheId;
+      this.key = key;
+      this.invalidationId = invalidationId;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.INVALIDATE_HASH;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    public long getKey() {
+      return key;
+    }
+
+    /**
+     * Returns the id the client must acknowledge this invalidation with, or {@link #NO_ACK}.
+     *
+     * @return the invalidation id
+     */
+    public int getInvalidationId() {
+      return invalidationId;
+    }
+  }
+
+  public static InvalidateAll invalidateAll(String cacheId, int invalidationId) {
+    return new InvalidateAll(cacheId, invalidationId);
+  }
+
+  /**
+   * Pushed by the server to the clients holding local copies of mappings of a store, after another client cleared it.
+   */
+  public static class InvalidateAll extends EhcacheEntityResponse {
+
+    private final String cacheId;
+    private final int invalidationId;
+
+    private InvalidateAll(String cacheId, int invalidationId) {
+      this.cacheId = cacheId;
+      this.invalidationId = invalidationId;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.INVALIDATE_ALL;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    /**
+     * Returns the id the client must acknowledge this invalidation with, or {@link #NO_ACK}.
+     *
+     * @return the invalidation id
+     */
+    public int getInvalidationId() {
+      return invalidationId;
+    }
+  }
+
+  public static HashInvalidationDone hashInvalidationDone(String cacheId, long key) {
+    return new HashInvalidationDone(cacheId, key);
+  }
+
+  /**
+   * Pushed by the server to the client that mutated a key hash once all other clients acknowledged its invalidation.
+   */
+  public static class HashInvalidationDone extends EhcacheEntityResponse {
+
+    private final String cacheId;
+    private final long key;
+
+    private HashInvalidationDone(String cacheId, long key) {
+      this.cacheId = cacheId;
+      this.key = key;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.HASH_INVALIDATION_DONE;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    public long getKey() {
+      return key;
+    }
+  }
+
+  public static AllInvalidationDone allInvalidationDone(String cacheId) {
+    return new AllInvalidationDone(cacheId);
+  }
+
+  /**
+   * Pushed by the server to the client that cleared a store once all other clients acknowledged the invalidation.
+   */
+  public static class AllInvalidationDone extends EhcacheEntityResponse {
+
+    private final String cacheId;
+
+    private AllInvalidationDone(String cacheId) {
+      this.cacheId = cacheId;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.ALL_INVALIDATION_DONE;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+  }
+
+  public static CompactChain compactChain(String cacheId, long key) {
+    return new CompactChain(cacheId, key);
+  }
+
+  /**
+   * Pushed by the server to a client that appended to a chain grown past the server compaction thresholds, asking it
+   * to resolve the chain and write back its compacted form.
+   */
+  public static class CompactChain extends EhcacheEntityResponse {
+
+    private final String cacheId;
+    private final long key;
+
+    private CompactChain(String cacheId, long key) {
+      this.cacheId = cacheId;
+      this.key = key;
+    }
+
+    @Override
+    public Type getType() {
+      return Type.COMPACT_CHAIN;
+    }
 
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    public long getKey() {
+      return key;
+    }
+  }
+
+  public static StatisticsResponse statisticsResponse(Map<String, Map<String, Long>> statistics) {
+    return new StatisticsResponse(statistics);
+  }
+
+  /**
+   * Carries the operation counters of server stores, keyed by store name then counter name.  Iteration follows the
+   * order the server listed stores and counters in.
+   */
+  public static class StatisticsResponse extends EhcacheEntityResponse {
+
+    private final Map<String, Map<String, Long>> statistics;
+
+    private StatisticsResponse(Map<String, Map<String, Long>> statistics) {
+      this.statistics = nestedCopy(statistics);
+    }
+
+    @Override
+    public Type getType() {
+      return Type.STATISTICS_RESPONSE;
+    }
+
+    public Map<String, Map<String, Long>> getStatistics() {
+      return statistics;
+    }
+  }
+
+  public static PoolOccupancyResponse poolOccupancyResponse(Map<String, Long> poolSizes, Map<String, Map<String, Long>> occupancy,
+                                                            Map<String, Map<String, Long>> fairShares) {
+    return new PoolOccupancyResponse(poolSizes, occupancy, fairShares);
+  }
+
+  /**
+   * Carries the sizes of the shared pools, and the bytes each server store holds in its pool next to its fair share
+   * of it, keyed by pool name then store name.
+   */
+  public static class PoolOccupancyResponse extends EhcacheEntityResponse {
+
+    private final Map<String, Long> poolSizes;
+    private final Map<String, Map<String, Long>> occupancy;
+    private final Map<String, Map<String, Long>> fairShares;
+
+    private PoolOccupancyResponse(Map<String, Long> poolSizes, Map<String, Map<String, Long>> occupancy, Map<String, Map<String, Long>> fairShares) {
+      this.poolSizes = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(poolSizes));
+      this.occupancy = nestedCopy(occupancy);
+      this.fairShares = nestedCopy(fairShares);
+    }
+
+    @Override
+    public Type getType() {
+      return Type.POOL_OCCUPANCY_RESPONSE;
+    }
+
+    public Map<String, Long> getPoolSizes() {
+      return poolSizes;
+    }
+
+    public Map<String, Map<String, Long>> getOccupancy() {
+      return occupancy;
+    }
+
+    public Map<String, Map<String, Long>> getFairShares() {
+      return fairShares;
+    }
+  }
+
+  private static Map<String, Map<String, Long>> nestedCopy(Map<String, Map<String, Long>> map) {
+    Map<String, Map<String, Long>> copy = new LinkedHashMap<String, Map<String, Long>>();
+    for (Map.Entry<String, Map<String, Long>> entry : map.entrySet()) {
+      copy.put(entry.getKey(), Collections.unmodifiableMap(new LinkedHashMap<String, Long>(entry.getValue())));
+    }
+    return Collections.unmodifiableMap(copy);
+  }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.DataSyncMessage;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.StateSyncMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.terracotta.entity.MessageCodecException;
+import org.terracotta.entity.SyncMessageCodec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary codec for the {@link EntitySyncMessage}s streamed from an active entity to its passives.
+ * <P>
+ *   Uses the same primitives and {@link EhcacheCodec#WIRE_VERSION version byte} as {@link EhcacheCodec}.
+ * </P>
+ */
+public class EhcacheSyncCodec implements SyncMessageCodec<EhcacheEntityMessage> {
+
+  private static final byte STATE_SYNC_OP = 1;
+  private static final byte DATA_SYNC_OP = 2;
+
+  private static final SyncMessageCodec<EhcacheEntityMessage> INSTANCE = new EhcacheSyncCodec();
+
+  public static SyncMessageCodec<EhcacheEntityMessage> syncCodec() {
+    return INSTANCE;
+  }
+
+  @Override
+  public byte[] encode(int concurrencyKey, EhcacheEntityMessage message) throws MessageCodecException {
+    if (message.getType() != EhcacheEntityMessage.Type.SYNC) {
+      throw new IllegalArgumentException("Not a synchronization message : " + message.getType());
+    }
+    MessageEncoder encoder = MessageEncoder.encoder().putByte(EhcacheCodec.WIRE_VERSION);
+    EntitySyncMessage syncMessage = (EntitySyncMessage) message;
+    switch (syncMessage.operation()) {
+      case STATE: {
+        StateSyncMessage stateMessage = (StateSyncMessage) syncMessage;
+        ServerSideConfiguration configuration = stateMessage.getConfiguration();
+        encoder.putByte(STATE_SYNC_OP).putByte((byte) (configuration == null ? 0 : 1));
+        if (configuration != null) {
+          EhcacheCodec.encodeServerSideConfiguration(configuration, encoder);
+        }
+        Map<String, ServerStoreConfiguration> stores = stateMessage.getStoreConfigurations();
+        encoder.putVarInt(stores.size());
+        for (Map.Entry<String, ServerStoreConfiguration> store : stores.entrySet()) {
+          encoder.putString(store.getKey());
+          EhcacheCodec.encodeServerStoreConfiguration(store.getValue(), encoder);
+        }
+        break;
+      }
+      case DATA: {
+        DataSyncMessage dataMessage = (DataSyncMessage) syncMessage;
+        long[] keys = dataMessage.getKeys();
+        Chain[] chains = dataMessage.getChains();
+        encoder.putByte(DATA_SYNC_OP).putString(dataMessage.getCacheId()).putVarInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+          encoder.putVarLong(keys[i]);
+          ChainCodec.encode(chains[i], encoder);
+        }
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unsupported synchronization operation : " + syncMessage.operation());
+    }
+    return encoder.toByteArray();
+  }
+
+  @Override
+  public EhcacheEntityMessage decode(int concurrencyKey, byte[] payload) throws MessageCodecException {
+    try {
+      MessageDecoder decoder = EhcacheCodec.openDecoder(payload);
+      byte opcode = decoder.getByte();
+      switch (opcode) {
+        case STATE_SYNC_OP: {
+          ServerSideConfiguration configuration = null;
+          if (decoder.getByte() != 0) {
+            configuration = EhcacheCodec.decodeServerSideConfiguration(decoder);
+          }
+          int count = decoder.getVarInt();
+          Map<String, ServerStoreConfiguration> stores = new LinkedHashMap<String, ServerStoreConfiguration>();
+          for (int i = 0; i < count; i++) {
+            String name = decoder.getString();
+            stores.put(name, EhcacheCodec.decodeServerStoreConfiguration(decoder));
+          }
+          return EntitySyncMessage.stateSync(configuration, stores);
+        }
+        case DATA_SYNC_OP: {
+          String cacheId = decoder.getString();
+          int count = decoder.getVarInt();
+          long[] keys = new long[count];
+          Chain[] chains = new Chain[count];
+          for (int i = 0; i < count; i++) {
+            keys[i] = decoder.getVarLong();
+            chains[i] = ChainCodec.decode(decoder);
+          }
+          return EntitySyncMessage.dataSync(cacheId, keys, chains);
+        }
+        default:
+          throw new IllegalArgumentException("Unknown synchronization opcode : " + opcode);
+      }
+    } catch (RuntimeException e) {
+      throw new MessageCodecException("Failed to decode synchronization message", e);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.store.Chain;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Messages streamed by an active entity to bring a new passive entity up to date.
+ * <P>
+ *   The entity state is synchronized first, followed by the chains of every store in batches of keys, so that a
+ *   large store never has to be held in a single message.
+ * </P>
+ */
+public abstract class EntitySyncMessage extends EhcacheEntityMessage {
+
+  public enum SyncOp {
+    STATE,
+    DATA;
+  }
+
+  @Override
+  public Type getType() {
+    return Type.SYNC;
+  }
+
+  public abstract SyncOp operation();
+
+  public static StateSyncMessage stateSync(ServerSideConfiguration configuration, Map<String, ServerStoreConfiguration> storeConfigurations) {
+    return new StateSyncMessage(configuration, storeConfigurations);
+  }
+
+  public static DataSyncMessage dataSync(String cacheId, long[] keys, Chain[] chains) {
+    return new DataSyncMessage(cacheId, keys, chains);
+  }
+
+  /**
+   * Carries the cache manager configuration and the configuration of every server store.
+   */
+  public static class StateSyncMessage extends EntitySyncMessage {
+
+    private final ServerSideConfiguration configuration;
+    private final Map<String, ServerStoreConfiguration> storeConfigurations;
+
+    private StateSyncMessage(ServerSideConfiguration configuration, Map<String, ServerStoreConfiguration> storeConfigurations) {
+      this.configuration = configuration;
+      this.storeConfigurations = Collections.unmodifiableMap(new LinkedHashMap<String, ServerStoreConfiguration>(storeConfigurations));
+    }
+
+    @Override
+    public SyncOp operation() {
+      return SyncOp.STATE;
+    }
+
+    /**
+     * Returns the cache manager configuration, or {@code null} if the entity was never configured.
+     *
+     * @return the configuration
+     */
+    public ServerSideConfiguration getConfiguration() {
+      return configuration;
+    }
+
+    public Map<String, ServerStoreConfiguration> getStoreConfigurations() {
+      return storeConfigurations;
+    }
+  }
+
+  /**
+   * Carries the chains of a batch of keys of a single server store.
+   */
+  public static class DataSyncMessage extends EntitySyncMessage {
+
+    private final String cacheId;
+    private final long[] keys;
+    private final Chain[] chains;
+
+    private DataSyncMessage(String cacheId, long[] keys, Chain[] chains) {
+      if (keys.length != chains.length) {
+        throw new IllegalArgumentException("Expected one chain per key : " + keys.length + " keys, " + chains.length + " chains");
+      }
+      this.cacheId = cacheId;
+      this.keys = keys.clone();
+      this.chains = chains.clone();
+    }
+
+    @Override
+    public SyncOp operation() {
+      return SyncOp.DATA;
+    }
+
+    public String getCacheId() {
+      return cacheId;
+    }
+
+    public long[] getKeys() {
+      return keys.clone();
+    }
+
+    public Chain[] getChains() {
+      return chains.clone();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the primitives written by a {@link MessageEncoder}.
+ * <P>
+ *   Buffers are returned as read-only slices of the encoded message, so their content stays valid only as long as the
+ *   message array is not reused.
+ * </P>
+ */
+final class MessageDecoder {
+
+  private final ByteBuffer buffer;
+
+  MessageDecoder(byte[] payload) {
+    this.buffer = ByteBuffer.wrap(payload);
+  }
+
+  byte getByte() {
+    return buffer.get();
+  }
+
+  int getVarInt() {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          throw new IllegalArgumentException("Malformed length : " + value);
+        }
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  long getVarLong() {
+    long zigzag = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      byte b = buffer.get();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IllegalArgumentException("Malformed varlong");
+  }
+
+  String getString() {
+    int length = getVarInt();
+    if (length == 0) {
+      return null;
+    } else {
+      length -= 1;
+      String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, MessageEncoder.UTF_8);
+      buffer.position(buffer.position() + length);
+      return value;
+    }
+  }
+
+  byte[] getBytes() {
+    byte[] value = new byte[getVarInt()];
+    buffer.get(value);
+    return value;
+  }
+
+  ByteBuffer getBuffer() {
+    int length = getVarInt();
+    ByteBuffer slice = buffer.slice();
+    slice.limit(length);
+    buffer.position(buffer.position() + length);
+    return slice.asReadOnlyBuffer();
+  }
+
+  boolean hasRemaining() {
+    return buffer.hasRemaining();
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the primitives of the clustered wire format into a growable buffer.
+ * <P>
+ *   Lengths and counts are written as unsigned varints, signed longs as zig-zag varints.  Scratch buffers are pooled
+ *   per thread: {@link #encoder()} hands out the calling thread's buffer and {@link #toByteArray()} returns it to the
+ *   pool, so encoding a message costs a single allocation for the resulting array.
+ * </P>
+ */
+final class MessageEncoder {
+
+  static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+
+  private static final ThreadLocal<ByteBuffer> POOL = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocate(INITIAL_CAPACITY);
+    }
+  };
+
+  private ByteBuffer buffer;
+
+  private MessageEncoder(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  static MessageEncoder encoder() {
+    ByteBuffer pooled = POOL.get();
+    POOL.set(null);
+    if (pooled == null) {
+      // re-entrant use on this thread - fall back to a private buffer
+      pooled = ByteBuffer.allocate(INITIAL_CAPACITY);
+    }
+    pooled.clear();
+    return new MessageEncoder(pooled);
+  }
+
+  MessageEncoder putByte(byte value) {
+    ensureRemaining(1);
+    buffer.put(value);
+    return this;
+  }
+
+  MessageEncoder putVarInt(int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative length : " + value);
+    }
+    ensureRemaining(5);
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+    return this;
+  }
+
+  MessageEncoder putVarLong(long value) {
+    ensureRemaining(10);
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    buffer.put((byte) zigzag);
+    return this;
+  }
+
+  /**
+   * Writes a possibly {@code null} string as its UTF-8 length plus one followed by the bytes, zero denoting {@code null}.
+   */
+  MessageEncoder putString(String value) {
+    if (value == null) {
+      return putVarInt(0);
+    } else {
+      byte[] bytes = value.getBytes(UTF_8);
+      putVarInt(bytes.length + 1);
+      ensureRemaining(bytes.length);
+      buffer.put(bytes);
+      return this;
+    }
+  }
+
+  MessageEncoder putBytes(byte[] value) {
+    putVarInt(value.length);
+    ensureRemaining(value.length);
+    buffer.put(value);
+    return this;
+  }
+
+  /**
+   * Writes the remaining content of {@code value} without disturbing its position.
+   */
+  MessageEncoder putBuffer(ByteBuffer value) {
+    ByteBuffer source = value.duplicate();
+    putVarInt(source.remaining());
+    ensureRemaining(source.remaining());
+    buffer.put(source);
+    return this;
+  }
+
+  /**
+   * Copies the encoded form out and returns the scratch buffer to the calling thread's pool.  The encoder must not be
+   * used afterwards.
+   */
+  byte[] toByteArray() {
+    byte[] encoded = new byte[buffer.position()];
+    buffer.flip();
+    buffer.get(encoded);
+    if (buffer.capacity() <= MAX_POOLED_CAPACITY) {
+      POOL.set(buffer);
+    } else if (POOL.get() == null) {
+      POOL.set(ByteBuffer.allocate(INITIAL_CAPACITY));
+    }
+    buffer = null;
+    return encoded;
+  }
+
+  private void ensureRemaining(int required) {
+    if (buffer.remaining() < required) {
+      int capacity = buffer.capacity();
+      int needed = buffer.position() + required;
+      while (capacity < needed) {
+        capacity = capacity << 1;
+        if (capacity < 0) {
+          capacity = Integer.MAX_VALUE;
+          break;
+        }
+      }
+      ByteBuffer grown = ByteBuffer.allocate(capacity);
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
+  }
+}
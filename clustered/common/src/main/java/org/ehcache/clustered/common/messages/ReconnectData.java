@@ -0,0 +1,100 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The extended reconnect data a client sends when it reconnects to a newly promoted active: for each server store,
+ * the key hashes the client may still hold local copies of.
+ * <P>
+ *   The new active registers the client as a holder of these hashes, so that the client can keep its local copies
+ *   across the fail-over and still be invalidated by later mutations.  An empty payload, as sent by clients keeping
+ *   nothing, decodes to empty data.
+ * </P>
+ */
+public final class ReconnectData {
+
+  private final Map<String, Set<Long>> heldHashes = new HashMap<String, Set<Long>>();
+
+  /**
+   * Records hashes of {@code cacheId} the client may hold local copies of.
+   *
+   * @param cacheId the server store name
+   * @param hashes the held key hashes
+   */
+  public void add(String cacheId, Collection<Long> hashes) {
+    Set<Long> held = heldHashes.get(cacheId);
+    if (held == null) {
+      held = new HashSet<Long>();
+      heldHashes.put(cacheId, held);
+    }
+    held.addAll(hashes);
+  }
+
+  public Set<String> getCacheIds() {
+    return Collections.unmodifiableSet(heldHashes.keySet());
+  }
+
+  public Set<Long> getHeldHashes(String cacheId) {
+    Set<Long> held = heldHashes.get(cacheId);
+    if (held == null) {
+      return Collections.emptySet();
+    } else {
+      return Collections.unmodifiableSet(held);
+    }
+  }
+
+  public byte[] encode() {
+    if (heldHashes.isEmpty()) {
+      return new byte[0];
+    }
+    MessageEncoder encoder = MessageEncoder.encoder();
+    encoder.putVarInt(heldHashes.size());
+    for (Map.Entry<String, Set<Long>> held : heldHashes.entrySet()) {
+      encoder.putString(held.getKey());
+      encoder.putVarInt(held.getValue().size());
+      for (Long hash : held.getValue()) {
+        encoder.putVarLong(hash);
+      }
+    }
+    return encoder.toByteArray();
+  }
+
+  public static ReconnectData decode(byte[] payload) {
+    ReconnectData data = new ReconnectData();
+    if (payload == null || payload.length == 0) {
+      return data;
+    }
+    MessageDecoder decoder = new MessageDecoder(payload);
+    int caches = decoder.getVarInt();
+    for (int i = 0; i < caches; i++) {
+      String cacheId = decoder.getString();
+      int count = decoder.getVarInt();
+      Set<Long> held = new HashSet<Long>(count * 2);
+      for (int j = 0; j < count; j++) {
+        held.add(decoder.getVarLong());
+      }
+      data.heldHashes.put(cacheId, held);
+    }
+    return data;
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.store.Chain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Messages operating on a single server-side store, identified by its cache id.
+ */
+public abstract class ServerStoreOpMessage extends EhcacheEntityMessage {
+
+  public enum ServerStoreOp {
+    GET,
+    APPEND,
+    GET_AND_APPEND,
+    REPLACE,
+    CLEAR,
+    CLIENT_INVALIDATION_ACK,
+    GET_ALL,
+    GET_AND_APPEND_ALL,
+    GET_STRIPE_KEYS,
+    GET_UNTRACKED;
+  }
+
+  private final String cacheId;
+
+  private ServerStoreOpMessage(String cacheId) {
+    this.cacheId = cacheId;
+  }
+
+  @Override
+  public Type getType() {
+    return Type.SERVER_STORE_OP;
+  }
+
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  public abstract ServerStoreOp operation();
+
+  public static GetMessage getOperation(String cacheId, long key) {
+    return new GetMessage(cacheId, key);
+  }
+
+  public static GetUntrackedMessage getUntrackedOperation(String cacheId, long key) {
+    return new GetUntrackedMessage(cacheId, key);
+  }
+
+  public static AppendMessage appendOperation(String cacheId, long key, ByteBuffer payload) {
+    return new AppendMessage(cacheId, key, payload);
+  }
+
+  public static GetAndAppendMessage getAndAppendOperation(String cacheId, long key, ByteBuffer payload) {
+    return new GetAndAppendMessage(cacheId, key, payload);
+  }
+
+  public static ReplaceAtHeadMessage replaceAtHeadOperation(String cacheId, long key, Chain expect, Chain update) {
+    return new ReplaceAtHeadMessage(cacheId, key, expect, update);
+  }
+
+  public static ClearMessage clearOperation(String cacheId) {
+    return new ClearMessage(cacheId);
+  }
+
+  public static GetAllMessage getAllOperation(String cacheId, long[] keys) {
+    return new GetAllMessage(cacheId, keys);
+  }
+
+  public static GetAndAppendAllMessage getAndAppendAllOperation(String cacheId, long[] keys, ByteBuffer[] payloads) {
+    return new GetAndAppendAllMessage(cacheId, keys, payloads);
+  }
+
+  public static GetStripeKeysMessage getStripeKeysOperation(String cacheId, int stripe, int stripeCount) {
+    return new GetStripeKeysMessage(cacheId, stripe, stripeCount);
+  }
+
+  public static ClientInvalidationAck clientInvalidationAck(String cacheId, int invalidationId) {
+    return new ClientInvalidationAck(cacheId, invalidationId);
+  }
+
+  public abstract static class KeyBasedServerStoreOpMessage extends ServerStoreOpMessage implements ConcurrentEntityMessage {
+
+    private final long key;
+
+    private KeyBasedServerStoreOpMessage(String cacheId, long key) {
+      super(cacheId);
+      this.key = key;
+    }
+
+    public long getKey() {
+      return key;
+    }
+
+    @Override
+    public int concurrencyKey() {
+      return (int) (key ^ (key >>> 32));
+    }
+  }
+
+  public static class GetMessage extends KeyBasedServerStoreOpMessage {
+
+    private GetMessage(String cacheId, long key) {
+      super(cacheId, key);
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET;
+    }
+  }
+
+  /**
+   * Reads a chain without registering the client as holding a copy of it.
+   */
+  public static class GetUntrackedMessage extends KeyBasedServerStoreOpMessage {
+
+    private GetUntrackedMessage(String cacheId, long key) {
+      super(cacheId, key);
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET_UNTRACKED;
+    }
+  }
+
+  public static class AppendMessage extends KeyBasedServerStoreOpMessage {
+
+    private final ByteBuffer payload;
+
+    private AppendMessage(String cacheId, long key, ByteBuffer payload) {
+      super(cacheId, key);
+      this.payload = payload.duplicate();
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.APPEND;
+    }
+
+    public ByteBuffer getPayload() {
+      return payload.duplicate();
+    }
+  }
+
+  public static class GetAndAppendMessage extends KeyBasedServerStoreOpMessage {
+
+    private final ByteBuffer payload;
+
+    private GetAndAppendMessage(String cacheId, long key, ByteBuffer payload) {
+      super(cacheId, key);
+      this.payload = payload.duplicate();
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET_AND_APPEND;
+    }
+
+    public ByteBuffer getPayload() {
+      return payload.duplicate();
+    }
+  }
+
+  public static class ReplaceAtHeadMessage extends KeyBasedServerStoreOpMessage {
+
+    private final Chain expect;
+    private final Chain update;
+
+    private ReplaceAtHeadMessage(String cacheId, long key, Chain expect, Chain update) {
+      super(cacheId, key);
+      this.expect = expect;
+      this.update = update;
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.REPLACE;
+    }
+
+    public Chain getExpect() {
+      return expect;
+    }
+
+    public Chain getUpdate() {
+      return update;
+    }
+  }
+
+  public static class ClearMessage extends ServerStoreOpMessage {
+
+    private ClearMessage(String cacheId) {
+      super(cacheId);
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.CLEAR;
+    }
+  }
+
+  /**
+   * Reads the chains of many keys in a single message.
+   */
+  public static class GetAllMessage extends ServerStoreOpMessage {
+
+    private final long[] keys;
+
+    private GetAllMessage(String cacheId, long[] keys) {
+      super(cacheId);
+      this.keys = keys.clone();
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET_ALL;
+    }
+
+    public long[] getKeys() {
+      return keys.clone();
+    }
+  }
+
+  /**
+   * Appends a payload to the chains of many keys in a single message.
+   */
+  public static class GetAndAppendAllMessage extends ServerStoreOpMessage {
+
+    private final long[] keys;
+    private final ByteBuffer[] payloads;
+
+    private GetAndAppendAllMessage(String cacheId, long[] keys, ByteBuffer[] payloads) {
+      super(cacheId);
+      if (keys.length != payloads.length) {
+        throw new IllegalArgumentException("Expected one payload per key : " + keys.length + " keys, " + payloads.length + " payloads");
+      }
+      this.keys = keys.clone();
+      this.payloads = new ByteBuffer[payloads.length];
+      for (int i = 0; i < payloads.length; i++) {
+        this.payloads[i] = payloads[i].duplicate();
+      }
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET_AND_APPEND_ALL;
+    }
+
+    public long[] getKeys() {
+      return keys.clone();
+    }
+
+    public ByteBuffer[] getPayloads() {
+      ByteBuffer[] duplicates = new ByteBuffer[payloads.length];
+      for (int i = 0; i < payloads.length; i++) {
+        duplicates[i] = payloads[i].duplicate();
+      }
+      return duplicates;
+    }
+  }
+
+  /**
+   * Lists the keys of the chains held in one stripe of a store, the key space being split in a power of two number
+   * of stripes by key hash.
+   */
+  public static class GetStripeKeysMessage extends ServerStoreOpMessage {
+
+    private final int stripe;
+    private final int stripeCount;
+
+    private GetStripeKeysMessage(String cacheId, int stripe, int stripeCount) {
+      super(cacheId);
+      this.stripe = stripe;
+      this.stripeCount = stripeCount;
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.GET_STRIPE_KEYS;
+    }
+
+    public int getStripe() {
+      return stripe;
+    }
+
+    public int getStripeCount() {
+      return stripeCount;
+    }
+  }
+
+  /**
+   * Sent by a client once it has dropped the local copies targeted by an invalidation that requested acknowledgement.
+   */
+  public static class ClientInvalidationAck extends ServerStoreOpMessage {
+
+    private final int invalidationId;
+
+    private ClientInvalidationAck(String cacheId, int invalidationId) {
+      super(cacheId);
+      this.invalidationId = invalidationId;
+    }
+
+    @Override
+    public ServerStoreOp operation() {
+      return ServerStoreOp.CLIENT_INVALIDATION_ACK;
+    }
+
+    public int getInvalidationId() {
+      return invalidationId;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.store;
+
+/**
+ * An {@link Element} read from a server store, carrying the sequence number the store assigned to it.
+ * <P>
+ *   Sequence numbers identify elements within a chain, so that {@code replaceAtHead} can tell whether
+ *   the head of a chain still holds the elements a client read.
+ * </P>
+ */
+public interface SequencedElement extends Element {
+
+  /**
+   * The sequence number assigned to this element by the server store.
+   *
+   * @return the sequence number
+   */
+  long getSequenceNumber();
+}
@@ -13,10 +13,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package org.ehcache.clustered.server.store;
-
-import org.ehcache.clustered.common.store.Chain;
-import org.ehcache.clustered.common.store.Element;
+package org.ehcache.clustered.common.store;
 
 import java.nio.ByteBuffer;
 
@@ -48,6 +45,15 @@ public interface ServerStore {
    */
   Chain get(long key);
 
+  /**
+   * Returns the Chain associated with the provided hash, like {@link #get(long)}, for a caller that keeps no copy of
+   * its content: a store tracking the callers to invalidate does not register this one.
+   *
+   * @param key hashcode of the key
+   * @return the {@link Chain} associated with the hash
+   */
+  Chain getUntracked(long key);
+
   /**
    * Appends the provided binary to Chain associated with key atomically.
    * While appending, the payLoad is stored in {@link Element}.
@@ -75,6 +81,36 @@ public interface ServerStore {
    */
   Chain getAndAppend(long key, ByteBuffer payLoad);
 
+  /**
+   * Returns the Chains associated with the provided hashes.
+   * Each Chain is read atomically, but not all of them together.
+   *
+   * @param keys hashcodes of the keys
+   * @return the {@link Chain}s associated with the hashes, in the order of {@code keys}
+   */
+  Chain[] getAll(long[] keys);
+
+  /**
+   * Returns a snapshot of the keys falling in {@code stripe} when the keys are split in {@code stripeCount} disjoint
+   * stripes, so that reading every stripe lists every key with a Chain.
+   *
+   * @param stripe the stripe index
+   * @param stripeCount the number of stripes, a power of two
+   * @return the keys of the stripe
+   * @throws IllegalArgumentException if {@code stripeCount} is not a power of two or {@code stripe} is out of range
+   */
+  long[] getStripeKeys(int stripe, int stripeCount);
+
+  /**
+   * Performs a {@link #getAndAppend(long, ByteBuffer)} for every key, in order.
+   * Each getAndAppend is atomic, but not all of them together.
+   *
+   * @param keys to which the payLoads have to be appended
+   * @param payLoads to be appended, one per key
+   * @return the Chains associated with the keys before the payLoads were appended, in the order of {@code keys}
+   */
+  Chain[] getAndAppendAll(long[] keys, ByteBuffer[] payLoads);
+
   /**
    * Replaces the provided Chain with the equivalent Chain present at the head.
    * This operation is not guaranteed to succeed.
@@ -111,4 +147,9 @@ public interface ServerStore {
    * @param update the new Chain to be replaced
    */
   void replaceAtHead(long key, Chain expect, Chain update);
+
+  /**
+   * Removes all the Chains from this store.
+   */
+  void clear();
 }
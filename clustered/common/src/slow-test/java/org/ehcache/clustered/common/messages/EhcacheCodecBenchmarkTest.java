@@ -0,0 +1,196 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.ChainUtils;
+import org.ehcache.clustered.common.store.Element;
+import org.junit.Test;
+import org.terracotta.entity.MessageCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the binary {@link EhcacheCodec} against Java serialization of the equivalent message state, which is how
+ * messages were encoded before the binary wire format.
+ * <P>
+ *   The serialized baselines mirror the previous message classes: a cache id, a key and a copied payload array for a
+ *   {@code getAndAppend}, and a pre-encoded chain array for a get response.
+ * </P>
+ */
+public class EhcacheCodecBenchmarkTest {
+
+  private static final int PAYLOAD_SIZE = 128;
+  private static final int CHAIN_LENGTH = 4;
+  private static final int ITERATIONS = 200000;
+
+  private final MessageCodec<EhcacheEntityMessage, EhcacheEntityResponse> codec = EhcacheCodec.messageCodec();
+
+  @Test
+  public void testGetAndAppendMessage() throws Exception {
+    final ByteBuffer payload = ByteBuffer.wrap(new byte[PAYLOAD_SIZE]);
+
+    Round binary = new Round() {
+      @Override
+      int run() throws Exception {
+        byte[] encoded = codec.encodeMessage(ServerStoreOpMessage.getAndAppendOperation("cache", 42L, payload));
+        codec.decodeMessage(encoded);
+        return encoded.length;
+      }
+    };
+    Round serialized = new Round() {
+      @Override
+      int run() throws Exception {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        byte[] encoded = serialize(new SerializedGetAndAppend("cache", 42L, bytes));
+        deserialize(encoded);
+        return encoded.length;
+      }
+    };
+
+    compare("getAndAppend", binary, serialized);
+  }
+
+  @Test
+  public void testGetResponse() throws Exception {
+    final Chain chain = chain(CHAIN_LENGTH, PAYLOAD_SIZE);
+
+    Round binary = new Round() {
+      @Override
+      int run() throws Exception {
+        byte[] encoded = codec.encodeResponse(EhcacheEntityResponse.response(chain));
+        for (Element element : ((EhcacheEntityResponse.GetResponse) codec.decodeResponse(encoded)).getChain()) {
+          element.getPayload();
+        }
+        return encoded.length;
+      }
+    };
+    Round serialized = new Round() {
+      @Override
+      int run() throws Exception {
+        byte[] encoded = serialize(new SerializedGetResponse(flatten(chain)));
+        deserialize(encoded);
+        return encoded.length;
+      }
+    };
+
+    compare("get response", binary, serialized);
+  }
+
+  private static void compare(String name, Round binary, Round serialized) throws Exception {
+    // warm up both paths before timing either
+    binary.time(ITERATIONS);
+    serialized.time(ITERATIONS);
+
+    long binaryNanos = binary.time(ITERATIONS);
+    long serializedNanos = serialized.time(ITERATIONS);
+    int binarySize = binary.run();
+    int serializedSize = serialized.run();
+
+    System.out.println(String.format("%s : binary %,d ops/s %d bytes - serialized %,d ops/s %d bytes",
+        name, opsPerSecond(binaryNanos), binarySize, opsPerSecond(serializedNanos), serializedSize));
+
+    assertThat(binarySize, lessThan(serializedSize));
+  }
+
+  private static long opsPerSecond(long nanos) {
+    return ITERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+  }
+
+  private abstract static class Round {
+
+    abstract int run() throws Exception;
+
+    long time(int iterations) throws Exception {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        run();
+      }
+      return System.nanoTime() - start;
+    }
+  }
+
+  private static byte[] flatten(Chain chain) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Element element : chain) {
+      ByteBuffer payload = element.getPayload();
+      byte[] bytes = new byte[payload.remaining()];
+      payload.get(bytes);
+      out.write(bytes, 0, bytes.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static Chain chain(int length, int payloadSize) {
+    Element[] elements = new Element[length];
+    for (int i = 0; i < length; i++) {
+      elements[i] = ChainUtils.element(ByteBuffer.allocate(payloadSize));
+    }
+    return ChainUtils.chain(elements);
+  }
+
+  private static byte[] serialize(Object object) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ObjectOutputStream oout = new ObjectOutputStream(out);
+    try {
+      oout.writeObject(object);
+    } finally {
+      oout.close();
+    }
+    return out.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+    return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+  }
+
+  private static final class SerializedGetAndAppend implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String cacheId;
+    private final long key;
+    private final byte[] payload;
+
+    SerializedGetAndAppend(String cacheId, long key, byte[] payload) {
+      this.cacheId = cacheId;
+      this.key = key;
+      this.payload = payload;
+    }
+  }
+
+  private static final class SerializedGetResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] chain;
+
+    SerializedGetResponse(byte[] chain) {
+      this.chain = chain;
+    }
+  }
+}
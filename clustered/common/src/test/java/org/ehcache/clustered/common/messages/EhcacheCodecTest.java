@@ -0,0 +1,330 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ConfigureCacheManager;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.CreateServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.DestroyServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.CompactChain;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.Failure;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetAllResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.HashInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateAll;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateHash;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.KeysResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.PoolOccupancyResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.StatisticsResponse;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ClientInvalidationAck;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetStripeKeysMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetUntrackedMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ReplaceAtHeadMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.SequencedElement;
+import org.junit.Test;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.ehcache.clustered.common.store.ChainUtils.chain;
+import static org.ehcache.clustered.common.store.ChainUtils.sequencedElement;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class EhcacheCodecTest {
+
+  private final MessageCodec<EhcacheEntityMessage, EhcacheEntityResponse> codec = EhcacheCodec.messageCodec();
+
+  @Test
+  public void testConfigureRoundTrip() throws Exception {
+    Map<String, ServerSideConfiguration.Pool> pools = new HashMap<String, ServerSideConfiguration.Pool>();
+    pools.put("primary", new ServerSideConfiguration.Pool("offheap", 1024L * 1024L));
+    pools.put("secondary", new ServerSideConfiguration.Pool(null, 42L));
+
+    EhcacheEntityMessage decoded = roundTrip(EhcacheEntityMessage.configure(new ServerSideConfiguration(-7, pools)));
+
+    ServerSideConfiguration configuration = ((ConfigureCacheManager) decoded).getConfiguration();
+    assertThat(configuration.getMagic(), is(-7));
+    assertThat(configuration.getResourcePools().size(), is(2));
+    assertThat(configuration.getResourcePools().get("primary").getServerResource(), is("offheap"));
+    assertThat(configuration.getResourcePools().get("primary").getSize(), is(1024L * 1024L));
+    assertThat(configuration.getResourcePools().get("secondary").getServerResource(), nullValue());
+    assertThat(configuration.getResourcePools().get("secondary").getSize(), is(42L));
+  }
+
+  @Test
+  public void testCreateServerStoreRoundTrip() throws Exception {
+    CreateServerStore fixed = (CreateServerStore) roundTrip(EhcacheEntityMessage.createServerStore("cache",
+        new ServerStoreConfiguration(new PoolAllocation.Fixed("offheap", 8192L))));
+    assertThat(fixed.getName(), is("cache"));
+    PoolAllocation.Fixed allocation = (PoolAllocation.Fixed) fixed.getStoreConfiguration().getPoolAllocation();
+    assertThat(allocation.getResourceName(), is("offheap"));
+    assertThat(allocation.getSize(), is(8192L));
+
+    CreateServerStore shared = (CreateServerStore) roundTrip(EhcacheEntityMessage.createServerStore("cach\u00e9",
+        new ServerStoreConfiguration(new PoolAllocation.Shared("primary"))));
+    assertThat(shared.getName(), is("cach\u00e9"));
+    assertThat(((PoolAllocation.Shared) shared.getStoreConfiguration().getPoolAllocation()).getResourcePoolName(), is("primary"));
+    assertThat(shared.getStoreConfiguration().getConsistency(), is(Consistency.EVENTUAL));
+
+    CreateServerStore strong = (CreateServerStore) roundTrip(EhcacheEntityMessage.createServerStore("cache",
+        new ServerStoreConfiguration(new PoolAllocation.Shared("primary"), Consistency.STRONG)));
+    assertThat(strong.getStoreConfiguration().getConsistency(), is(Consistency.STRONG));
+  }
+
+  @Test
+  public void testDestroyServerStoreRoundTrip() throws Exception {
+    assertThat(((DestroyServerStore) roundTrip(EhcacheEntityMessage.destroyServerStore("cache"))).getName(), is("cache"));
+  }
+
+  @Test
+  public void testGetAndAppendRoundTrip() throws Exception {
+    ByteBuffer payload = ByteBuffer.wrap(new byte[] {1, 2, 3, 4});
+    GetAndAppendMessage decoded = (GetAndAppendMessage) roundTrip(ServerStoreOpMessage.getAndAppendOperation("cache", Long.MIN_VALUE, payload));
+
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getKey(), is(Long.MIN_VALUE));
+    assertThat(decoded.getPayload(), is(ByteBuffer.wrap(new byte[] {1, 2, 3, 4})));
+    assertThat(payload.remaining(), is(4));
+  }
+
+  @Test
+  public void testReplaceAtHeadRoundTrip() throws Exception {
+    ReplaceAtHeadMessage decoded = (ReplaceAtHeadMessage) roundTrip(ServerStoreOpMessage.replaceAtHeadOperation("cache", -1L,
+        chain(sequencedElement(5L, 1, 2), sequencedElement(6L, 3)), chain(sequencedElement(-1L, 4, 5, 6))));
+
+    assertThat(decoded.getKey(), is(-1L));
+    assertChain(decoded.getExpect(), sequencedElement(5L, 1, 2), sequencedElement(6L, 3));
+    assertChain(decoded.getUpdate(), sequencedElement(-1L, 4, 5, 6));
+  }
+
+  @Test
+  public void testClearRoundTrip() throws Exception {
+    ServerStoreOpMessage decoded = (ServerStoreOpMessage) roundTrip(ServerStoreOpMessage.clearOperation("cache"));
+    assertThat(decoded.operation(), is(ServerStoreOpMessage.ServerStoreOp.CLEAR));
+    assertThat(decoded.getCacheId(), is("cache"));
+  }
+
+  @Test
+  public void testClientInvalidationAckRoundTrip() throws Exception {
+    ClientInvalidationAck decoded = (ClientInvalidationAck) roundTrip(ServerStoreOpMessage.clientInvalidationAck("cache", 1234));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getInvalidationId(), is(1234));
+  }
+
+  @Test
+  public void testGetAllRoundTrip() throws Exception {
+    GetAllMessage decoded = (GetAllMessage) roundTrip(ServerStoreOpMessage.getAllOperation("cache", new long[] {Long.MIN_VALUE, 0L, 42L}));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getKeys(), is(new long[] {Long.MIN_VALUE, 0L, 42L}));
+  }
+
+  @Test
+  public void testGetUntrackedRoundTrip() throws Exception {
+    GetUntrackedMessage decoded = (GetUntrackedMessage) roundTrip(ServerStoreOpMessage.getUntrackedOperation("cache", -42L));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getKey(), is(-42L));
+  }
+
+  @Test
+  public void testGetStripeKeysRoundTrip() throws Exception {
+    GetStripeKeysMessage decoded = (GetStripeKeysMessage) roundTrip(ServerStoreOpMessage.getStripeKeysOperation("cache", 3, 64));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getStripe(), is(3));
+    assertThat(decoded.getStripeCount(), is(64));
+  }
+
+  @Test
+  public void testGetAndAppendAllRoundTrip() throws Exception {
+    GetAndAppendAllMessage decoded = (GetAndAppendAllMessage) roundTrip(ServerStoreOpMessage.getAndAppendAllOperation("cache",
+        new long[] {1L, -1L}, new ByteBuffer[] {ByteBuffer.wrap(new byte[] {1, 2}), ByteBuffer.wrap(new byte[0])}));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getKeys(), is(new long[] {1L, -1L}));
+    ByteBuffer[] payloads = decoded.getPayloads();
+    assertThat(payloads.length, is(2));
+    assertThat(payloads[0], is(ByteBuffer.wrap(new byte[] {1, 2})));
+    assertThat(payloads[1].remaining(), is(0));
+  }
+
+  @Test
+  public void testGetAndAppendAllRejectsMismatchedPayloads() {
+    try {
+      ServerStoreOpMessage.getAndAppendAllOperation("cache", new long[] {1L, 2L}, new ByteBuffer[] {ByteBuffer.allocate(1)});
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGetAllResponseRoundTrip() throws Exception {
+    GetAllResponse response = (GetAllResponse) codec.decodeResponse(codec.encodeResponse(
+        EhcacheEntityResponse.getAllResponse(new Chain[] {chain(sequencedElement(1L, 9)), chain(), chain(sequencedElement(2L), sequencedElement(3L, 7))})));
+    Chain[] chains = response.getChains();
+    assertThat(chains.length, is(3));
+    assertChain(chains[0], sequencedElement(1L, 9));
+    assertThat(chains[1].isEmpty(), is(true));
+    assertChain(chains[2], sequencedElement(2L), sequencedElement(3L, 7));
+  }
+
+  @Test
+  public void testInvalidationResponsesRoundTrip() throws Exception {
+    InvalidateHash invalidateHash = (InvalidateHash) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.invalidateHash("cache", -42L, 7)));
+    assertThat(invalidateHash.getCacheId(), is("cache"));
+    assertThat(invalidateHash.getKey(), is(-42L));
+    assertThat(invalidateHash.getInvalidationId(), is(7));
+
+    InvalidateAll invalidateAll = (InvalidateAll) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.invalidateAll("cache", EhcacheEntityResponse.NO_ACK)));
+    assertThat(invalidateAll.getCacheId(), is("cache"));
+    assertThat(invalidateAll.getInvalidationId(), is(EhcacheEntityResponse.NO_ACK));
+
+    HashInvalidationDone hashDone = (HashInvalidationDone) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.hashInvalidationDone("cache", Long.MAX_VALUE)));
+    assertThat(hashDone.getCacheId(), is("cache"));
+    assertThat(hashDone.getKey(), is(Long.MAX_VALUE));
+
+    EhcacheEntityResponse allDone = codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.allInvalidationDone("cache")));
+    assertThat(allDone.getType(), is(EhcacheEntityResponse.Type.ALL_INVALIDATION_DONE));
+  }
+
+  @Test
+  public void testCompactChainRoundTrip() throws Exception {
+    CompactChain compactChain = (CompactChain) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.compactChain("cache", -7L)));
+    assertThat(compactChain.getCacheId(), is("cache"));
+    assertThat(compactChain.getKey(), is(-7L));
+  }
+
+  @Test
+  public void testKeysResponseRoundTrip() throws Exception {
+    KeysResponse keys = (KeysResponse) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.keysResponse(new long[] {Long.MAX_VALUE, -1L})));
+    assertThat(keys.getKeys(), is(new long[] {Long.MAX_VALUE, -1L}));
+  }
+
+  @Test
+  public void testStatisticsRoundTrip() throws Exception {
+    assertThat(roundTrip(EhcacheEntityMessage.getStatistics()).getType(), is(EhcacheEntityMessage.Type.GET_STATISTICS));
+
+    Map<String, Map<String, Long>> statistics = new LinkedHashMap<String, Map<String, Long>>();
+    Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    counters.put("gets", Long.MAX_VALUE);
+    counters.put("appends", 0L);
+    statistics.put("cache", counters);
+    statistics.put("empty", Collections.<String, Long>emptyMap());
+
+    StatisticsResponse response = (StatisticsResponse) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.statisticsResponse(statistics)));
+    assertThat(response.getStatistics(), is(statistics));
+    assertThat(response.getStatistics().get("cache").keySet().iterator().next(), is("gets"));
+  }
+
+  @Test
+  public void testPoolOccupancyRoundTrip() throws Exception {
+    assertThat(roundTrip(EhcacheEntityMessage.getPoolOccupancy()).getType(), is(EhcacheEntityMessage.Type.GET_POOL_OCCUPANCY));
+
+    Map<String, Long> poolSizes = new LinkedHashMap<String, Long>();
+    poolSizes.put("primary", 4096L);
+    poolSizes.put("secondary", 1024L);
+    Map<String, Map<String, Long>> occupancy = new LinkedHashMap<String, Map<String, Long>>();
+    occupancy.put("primary", Collections.singletonMap("cache", 3072L));
+    occupancy.put("secondary", Collections.<String, Long>emptyMap());
+    Map<String, Map<String, Long>> fairShares = new LinkedHashMap<String, Map<String, Long>>();
+    fairShares.put("primary", Collections.singletonMap("cache", 4096L));
+    fairShares.put("secondary", Collections.<String, Long>emptyMap());
+
+    PoolOccupancyResponse response = (PoolOccupancyResponse) codec.decodeResponse(codec.encodeResponse(
+        EhcacheEntityResponse.poolOccupancyResponse(poolSizes, occupancy, fairShares)));
+    assertThat(response.getPoolSizes(), is(poolSizes));
+    assertThat(response.getOccupancy(), is(occupancy));
+    assertThat(response.getFairShares(), is(fairShares));
+  }
+
+  @Test
+  public void testResponsesRoundTrip() throws Exception {
+    assertThat(codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.success())).getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+
+    Failure failure = (Failure) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.failure(new IllegalStateException("boom"))));
+    assertThat(failure.getCause(), instanceOf(IllegalStateException.class));
+    assertThat(failure.getCause().getMessage(), is("boom"));
+
+    GetResponse response = (GetResponse) codec.decodeResponse(codec.encodeResponse(EhcacheEntityResponse.response(chain(sequencedElement(1L, 9), sequencedElement(300L)))));
+    assertChain(response.getChain(), sequencedElement(1L, 9), sequencedElement(300L));
+  }
+
+  @Test
+  public void testLargeMessageRoundTrip() throws Exception {
+    byte[] large = new byte[256 * 1024];
+    large[large.length - 1] = 1;
+    GetAndAppendMessage decoded = (GetAndAppendMessage) roundTrip(ServerStoreOpMessage.getAndAppendOperation("cache", 1L, ByteBuffer.wrap(large)));
+    assertThat(decoded.getPayload(), is(ByteBuffer.wrap(large)));
+
+    // the oversized scratch buffer is not pooled, later messages still encode correctly
+    assertThat(((DestroyServerStore) roundTrip(EhcacheEntityMessage.destroyServerStore("cache"))).getName(), is("cache"));
+  }
+
+  @Test
+  public void testUnknownWireVersionIsRejected() throws Exception {
+    byte[] encoded = codec.encodeMessage(EhcacheEntityMessage.destroyServerStore("cache"));
+    encoded[0] = (byte) (EhcacheCodec.WIRE_VERSION + 1);
+    try {
+      codec.decodeMessage(encoded);
+      fail("Expected MessageCodecException");
+    } catch (MessageCodecException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testTruncatedMessageIsRejected() throws Exception {
+    byte[] encoded = codec.encodeMessage(ServerStoreOpMessage.getAndAppendOperation("cache", 1L, ByteBuffer.wrap(new byte[16])));
+    byte[] truncated = new byte[encoded.length - 1];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    try {
+      codec.decodeMessage(truncated);
+      fail("Expected MessageCodecException");
+    } catch (MessageCodecException e) {
+      //expected
+    }
+  }
+
+  private EhcacheEntityMessage roundTrip(EhcacheEntityMessage message) throws MessageCodecException {
+    return codec.decodeMessage(codec.encodeMessage(message));
+  }
+
+  private static void assertChain(Chain chain, SequencedElement ... expected) {
+    Iterator<Element> it = chain.iterator();
+    for (SequencedElement element : expected) {
+      SequencedElement actual = (SequencedElement) it.next();
+      assertThat(actual.getSequenceNumber(), is(element.getSequenceNumber()));
+      assertThat(actual.getPayload(), is(element.getPayload()));
+    }
+    assertThat(it.hasNext(), is(false));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.DataSyncMessage;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.StateSyncMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.junit.Test;
+import org.terracotta.entity.SyncMessageCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.ehcache.clustered.common.store.ChainUtils.chain;
+import static org.ehcache.clustered.common.store.ChainUtils.element;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class EhcacheSyncCodecTest {
+
+  private final SyncMessageCodec<EhcacheEntityMessage> codec = EhcacheSyncCodec.syncCodec();
+
+  @Test
+  public void testStateSyncRoundTrip() throws Exception {
+    Map<String, ServerStoreConfiguration> stores = new LinkedHashMap<String, ServerStoreConfiguration>();
+    stores.put("fixed", new ServerStoreConfiguration(new PoolAllocation.Fixed("offheap", 1024L), Consistency.STRONG));
+    stores.put("shared", new ServerStoreConfiguration(new PoolAllocation.Shared("primary")));
+    ServerSideConfiguration configuration = new ServerSideConfiguration(3,
+        Collections.singletonMap("primary", new ServerSideConfiguration.Pool("offheap", 4096L)));
+
+    StateSyncMessage decoded = (StateSyncMessage) roundTrip(EntitySyncMessage.stateSync(configuration, stores));
+    assertThat(decoded.getConfiguration().getMagic(), is(3));
+    assertThat(decoded.getConfiguration().getResourcePools().get("primary").getSize(), is(4096L));
+    assertThat(decoded.getStoreConfigurations().size(), is(2));
+    assertThat(decoded.getStoreConfigurations().get("fixed").getConsistency(), is(Consistency.STRONG));
+    assertThat(((PoolAllocation.Fixed) decoded.getStoreConfigurations().get("fixed").getPoolAllocation()).getSize(), is(1024L));
+    assertThat(((PoolAllocation.Shared) decoded.getStoreConfigurations().get("shared").getPoolAllocation()).getResourcePoolName(), is("primary"));
+  }
+
+  @Test
+  public void testUnconfiguredStateSyncRoundTrip() throws Exception {
+    StateSyncMessage decoded = (StateSyncMessage) roundTrip(
+        EntitySyncMessage.stateSync(null, Collections.<String, ServerStoreConfiguration>emptyMap()));
+    assertThat(decoded.getConfiguration(), nullValue());
+    assertThat(decoded.getStoreConfigurations().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testDataSyncRoundTrip() throws Exception {
+    DataSyncMessage decoded = (DataSyncMessage) roundTrip(EntitySyncMessage.dataSync("cache",
+        new long[] {-1L, 42L}, new Chain[] {chain(element(1), element(2, 3)), chain(element())}));
+    assertThat(decoded.getCacheId(), is("cache"));
+    assertThat(decoded.getKeys(), is(new long[] {-1L, 42L}));
+
+    Iterator<Element> first = decoded.getChains()[0].iterator();
+    assertThat(first.next().getPayload(), is(ByteBuffer.wrap(new byte[] {1})));
+    assertThat(first.next().getPayload(), is(ByteBuffer.wrap(new byte[] {2, 3})));
+    assertThat(first.hasNext(), is(false));
+    assertThat(decoded.getChains()[1].iterator().next().getPayload().remaining(), is(0));
+  }
+
+  private EhcacheEntityMessage roundTrip(EhcacheEntityMessage message) throws Exception {
+    return codec.decode(2, codec.encode(2, message));
+  }
+}
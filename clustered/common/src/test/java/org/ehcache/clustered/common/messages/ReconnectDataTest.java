@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.messages;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReconnectDataTest {
+
+  @Test
+  public void testRoundTrip() {
+    ReconnectData data = new ReconnectData();
+    data.add("foo", Arrays.asList(1L, -42L, Long.MAX_VALUE));
+    data.add("bar", Collections.singleton(Long.MIN_VALUE));
+    data.add("foo", Collections.singleton(1L));
+
+    ReconnectData decoded = ReconnectData.decode(data.encode());
+    assertThat(decoded.getCacheIds(), containsInAnyOrder("foo", "bar"));
+    assertThat(decoded.getHeldHashes("foo"), containsInAnyOrder(1L, -42L, Long.MAX_VALUE));
+    assertThat(decoded.getHeldHashes("bar"), containsInAnyOrder(Long.MIN_VALUE));
+  }
+
+  @Test
+  public void testEmptyDataIsEmptyPayload() {
+    assertThat(new ReconnectData().encode().length, is(0));
+    assertThat(ReconnectData.decode(new byte[0]).getCacheIds(), empty());
+    assertThat(ReconnectData.decode(new byte[0]).getHeldHashes("foo"), empty());
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.common.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Builds the chains and elements exchanged in messages, for codec tests.
+ */
+public final class ChainUtils {
+
+  private ChainUtils() {
+    //no instances
+  }
+
+  /**
+   * Builds an element whose payload holds the given bytes.  Every call to {@link Element#getPayload()} returns a
+   * fresh buffer over the same content.
+   *
+   * @param bytes the payload bytes, truncated to {@code byte}
+   * @return the element
+   */
+  public static Element element(int ... bytes) {
+    return element(ByteBuffer.wrap(toBytes(bytes)));
+  }
+
+  /**
+   * Builds an element over the content of {@code payload}.
+   *
+   * @param payload the payload, not consumed
+   * @return the element
+   */
+  public static Element element(final ByteBuffer payload) {
+    return new Element() {
+      @Override
+      public ByteBuffer getPayload() {
+        return payload.duplicate();
+      }
+    };
+  }
+
+  /**
+   * Builds a sequenced element whose payload holds the given bytes.
+   *
+   * @param sequenceNumber the sequence number
+   * @param bytes the payload bytes, truncated to {@code byte}
+   * @return the element
+   */
+  public static SequencedElement sequencedElement(final long sequenceNumber, int ... bytes) {
+    final ByteBuffer payload = ByteBuffer.wrap(toBytes(bytes));
+    return new SequencedElement() {
+      @Override
+      public long getSequenceNumber() {
+        return sequenceNumber;
+      }
+
+      @Override
+      public ByteBuffer getPayload() {
+        return payload.duplicate();
+      }
+    };
+  }
+
+  /**
+   * Builds a chain of the given elements.
+   *
+   * @param elements the elements, oldest first
+   * @return the chain
+   */
+  public static Chain chain(Element ... elements) {
+    final Element[] copy = elements.clone();
+    return new Chain() {
+      @Override
+      public Iterator<Element> reverseIterator() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean isEmpty() {
+        return copy.length == 0;
+      }
+
+      @Override
+      public Iterator<Element> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(copy)).iterator();
+      }
+    };
+  }
+
+  private static byte[] toBytes(int ... bytes) {
+    byte[] result = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      result[i] = (byte) bytes[i];
+    }
+    return result;
+  }
+}
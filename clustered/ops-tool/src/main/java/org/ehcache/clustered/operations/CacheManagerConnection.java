@@ -0,0 +1,90 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.operations;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Properties;
+
+import org.ehcache.clustered.client.internal.EhcacheClientEntity;
+import org.ehcache.clustered.client.internal.EhcacheClientEntityFactory;
+import org.terracotta.connection.Connection;
+import org.terracotta.connection.ConnectionException;
+import org.terracotta.connection.ConnectionFactory;
+import org.terracotta.exception.EntityNotFoundException;
+
+/**
+ * A connection to the server entity of a clustered cache manager.
+ * <P>
+ *   The location is parsed like the cluster URI of a clustering service configuration: the scheme and authority
+ *   locate the cluster and the path names the cache manager.
+ * </P>
+ */
+final class CacheManagerConnection implements Closeable {
+
+  private final Connection connection;
+  private final EhcacheClientEntity entity;
+
+  private CacheManagerConnection(Connection connection, EhcacheClientEntity entity) {
+    this.connection = connection;
+    this.entity = entity;
+  }
+
+  static CacheManagerConnection connect(URI location) throws ConnectionException, EntityNotFoundException {
+    URI clusterUri;
+    try {
+      clusterUri = new URI(location.getScheme(), location.getAuthority(), null, null, null);
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+    String entityIdentifier = clusterUri.relativize(location).getPath();
+
+    Connection connection = ConnectionFactory.connect(clusterUri, new Properties());
+    boolean connected = false;
+    try {
+      CacheManagerConnection cacheManager = new CacheManagerConnection(connection, new EhcacheClientEntityFactory(connection).retrieve(entityIdentifier));
+      connected = true;
+      return cacheManager;
+    } finally {
+      if (!connected) {
+        closeQuietly(connection);
+      }
+    }
+  }
+
+  EhcacheClientEntity getEntity() {
+    return entity;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      entity.close();
+    } finally {
+      connection.close();
+    }
+  }
+
+  private static void closeQuietly(Connection connection) {
+    try {
+      connection.close();
+    } catch (IOException e) {
+      // already failing
+    }
+  }
+}
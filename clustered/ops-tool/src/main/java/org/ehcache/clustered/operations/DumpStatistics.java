@@ -0,0 +1,119 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.operations;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Parameters(commandNames = "stats", commandDescription = "dump the server side statistics of the clustered caches of a cache manager")
+class DumpStatistics extends AbstractCommand {
+
+  @Parameter(names = {"-c", "--cache"}, description = "only dump the statistics of this cache")
+  private String cache;
+
+  @Parameter(names = {"-i", "--interval"}, description = "sample the statistics twice, this many seconds apart, and dump the rates")
+  private int interval = 0;
+
+  DumpStatistics(BaseOptions base) {
+    super(base);
+  }
+
+  @Override
+  public int execute() {
+    if (getClusterLocationOverride() == null) {
+      throw new ParameterException("--cluster option required with the stats command");
+    } else if (interval < 0) {
+      throw new ParameterException("--interval must not be negative : " + interval);
+    }
+
+    CacheManagerConnection connection;
+    try {
+      connection = CacheManagerConnection.connect(getClusterLocationOverride());
+    } catch (Exception e) {
+      System.err.println("Failed to connect to " + getClusterLocationOverride() + " : " + e);
+      return 1;
+    }
+    try {
+      Map<String, Map<String, Long>> first = select(connection.getEntity().getStatistics());
+      if (first == null) {
+        System.err.println("No cache '" + cache + "' at " + getClusterLocationOverride());
+        return 1;
+      } else if (interval == 0) {
+        System.out.print(format(first, null, 0));
+      } else {
+        TimeUnit.SECONDS.sleep(interval);
+        Map<String, Map<String, Long>> second = select(connection.getEntity().getStatistics());
+        if (second == null) {
+          System.err.println("Cache '" + cache + "' was destroyed at " + getClusterLocationOverride());
+          return 1;
+        }
+        System.out.print(format(second, first, interval));
+      }
+      return 0;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return 1;
+    } finally {
+      try {
+        connection.close();
+      } catch (IOException e) {
+        System.err.println("Failed to close the connection to " + getClusterLocationOverride() + " : " + e);
+      }
+    }
+  }
+
+  /**
+   * Keeps the statistics of the selected cache, returning {@code null} if it does not exist.
+   */
+  private Map<String, Map<String, Long>> select(Map<String, Map<String, Long>> statistics) {
+    if (cache == null) {
+      return statistics;
+    } else if (statistics.containsKey(cache)) {
+      return Collections.singletonMap(cache, statistics.get(cache));
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Formats the counters of each cache, followed by their rate per second since {@code previous} when given.  No rate
+   * is shown for a counter that was not sampled before, or that went down because its cache was recreated.
+   */
+  static String format(Map<String, Map<String, Long>> statistics, Map<String, Map<String, Long>> previous, int interval) {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Map<String, Long>> store : statistics.entrySet()) {
+      sb.append("cache '").append(store.getKey()).append("'\n");
+      Map<String, Long> before = previous == null ? null : previous.get(store.getKey());
+      for (Map.Entry<String, Long> statistic : store.getValue().entrySet()) {
+        long value = statistic.getValue();
+        sb.append(String.format(Locale.ROOT, "  %-20s %16d", statistic.getKey(), value));
+        Long old = before == null ? null : before.get(statistic.getKey());
+        if (old != null && old <= value) {
+          sb.append(String.format(Locale.ROOT, " %14.1f/s", (value - old) / (double) interval));
+        }
+        sb.append('\n');
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.operations;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.Parameters;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.PoolOccupancyResponse;
+
+@Parameters(commandNames = "occupancy", commandDescription = "list the per cache occupancy of the shared pools of a cache manager")
+class ListPoolOccupancy extends AbstractCommand {
+
+  @Parameter(names = {"-p", "--pool"}, description = "only list the caches of this shared pool")
+  private String pool;
+
+  ListPoolOccupancy(BaseOptions base) {
+    super(base);
+  }
+
+  @Override
+  public int execute() {
+    if (getClusterLocationOverride() == null) {
+      throw new ParameterException("--cluster option required with the occupancy command");
+    }
+
+    CacheManagerConnection connection;
+    try {
+      connection = CacheManagerConnection.connect(getClusterLocationOverride());
+    } catch (Exception e) {
+      System.err.println("Failed to connect to " + getClusterLocationOverride() + " : " + e);
+      return 1;
+    }
+    try {
+      PoolOccupancyResponse occupancy = connection.getEntity().getPoolOccupancy();
+      Map<String, Long> poolSizes = occupancy.getPoolSizes();
+      if (pool == null) {
+        System.out.print(format(poolSizes, occupancy.getOccupancy(), occupancy.getFairShares()));
+      } else if (poolSizes.containsKey(pool)) {
+        System.out.print(format(Collections.singletonMap(pool, poolSizes.get(pool)), occupancy.getOccupancy(), occupancy.getFairShares()));
+      } else {
+        System.err.println("No shared pool '" + pool + "' at " + getClusterLocationOverride());
+        return 1;
+      }
+      return 0;
+    } finally {
+      try {
+        connection.close();
+      } catch (IOException e) {
+        System.err.println("Failed to close the connection to " + getClusterLocationOverride() + " : " + e);
+      }
+    }
+  }
+
+  /**
+   * Formats the size of each pool, followed by the bytes each of its caches holds and its fair share of the pool.
+   */
+  static String format(Map<String, Long> poolSizes, Map<String, Map<String, Long>> occupancy, Map<String, Map<String, Long>> fairShares) {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Long> poolSize : poolSizes.entrySet()) {
+      sb.append("pool '").append(poolSize.getKey()).append("' : ").append(poolSize.getValue()).append(" bytes\n");
+      Map<String, Long> held = occupancy.get(poolSize.getKey());
+      Map<String, Long> shares = fairShares.get(poolSize.getKey());
+      if (held != null && !held.isEmpty()) {
+        sb.append(String.format(Locale.ROOT, "  %-20s %16s %16s", "cache", "occupancy", "fair share")).append('\n');
+        for (Map.Entry<String, Long> cache : held.entrySet()) {
+          Long share = shares == null ? null : shares.get(cache.getKey());
+          sb.append(String.format(Locale.ROOT, "  %-20s %16d %16d", cache.getKey(), cache.getValue(), share == null ? 0L : share)).append('\n');
+        }
+      }
+    }
+    return sb.toString();
+  }
+}
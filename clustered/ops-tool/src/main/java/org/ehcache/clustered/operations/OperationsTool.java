@@ -48,6 +48,8 @@ public class OperationsTool {
     jc.addCommand(new CreateCacheManager(base));
     jc.addCommand(new UpdateCacheManager(base));
     jc.addCommand(new DestroyCacheManager(base));
+    jc.addCommand(new ListPoolOccupancy(base));
+    jc.addCommand(new DumpStatistics(base));
 
     jc.setParameterDescriptionComparator(REQUIRED_FIRST);
     for (JCommander jcc : jc.getCommands().values()) {
@@ -0,0 +1,65 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.operations;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class DumpStatisticsTest {
+
+  @Test
+  public void testFormatWithoutRates() {
+    Map<String, Map<String, Long>> statistics = new LinkedHashMap<String, Map<String, Long>>();
+    statistics.put("foo", counters(12L, 3L));
+
+    assertThat(DumpStatistics.format(statistics, null, 0), is(
+        "cache 'foo'\n"
+        + "  gets                               12\n"
+        + "  appends                             3\n"));
+  }
+
+  @Test
+  public void testFormatWithRates() {
+    Map<String, Map<String, Long>> before = new LinkedHashMap<String, Map<String, Long>>();
+    before.put("foo", counters(10L, 3L));
+    before.put("bar", counters(50L, 50L));
+    Map<String, Map<String, Long>> after = new LinkedHashMap<String, Map<String, Long>>();
+    after.put("foo", counters(30L, 3L));
+    after.put("bar", counters(1L, 60L));
+    after.put("baz", counters(5L, 5L));
+
+    assertThat(DumpStatistics.format(after, before, 4), is(
+        "cache 'foo'\n"
+        + "  gets                               30            5.0/s\n"
+        + "  appends                             3            0.0/s\n"
+        + "cache 'bar'\n"
+        + "  gets                                1\n"
+        + "  appends                            60            2.5/s\n"
+        + "cache 'baz'\n"
+        + "  gets                                5\n"
+        + "  appends                             5\n"));
+  }
+
+  private static Map<String, Long> counters(long gets, long appends) {
+    Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    counters.put("gets", gets);
+    counters.put("appends", appends);
+    return counters;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.operations;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ListPoolOccupancyTest {
+
+  @Test
+  public void testFormat() {
+    Map<String, Long> poolSizes = new LinkedHashMap<String, Long>();
+    poolSizes.put("primary", 4096L);
+    poolSizes.put("secondary", 1024L);
+    Map<String, Long> primaryOccupancy = new LinkedHashMap<String, Long>();
+    primaryOccupancy.put("bar", 1024L);
+    primaryOccupancy.put("foo", 3072L);
+    Map<String, Long> primaryShares = new LinkedHashMap<String, Long>();
+    primaryShares.put("bar", 2048L);
+    primaryShares.put("foo", 2048L);
+    Map<String, Map<String, Long>> occupancy = new LinkedHashMap<String, Map<String, Long>>();
+    occupancy.put("primary", primaryOccupancy);
+    occupancy.put("secondary", Collections.<String, Long>emptyMap());
+    Map<String, Map<String, Long>> fairShares = new LinkedHashMap<String, Map<String, Long>>();
+    fairShares.put("primary", primaryShares);
+    fairShares.put("secondary", Collections.<String, Long>emptyMap());
+
+    assertThat(ListPoolOccupancy.format(poolSizes, occupancy, fairShares), is(
+        "pool 'primary' : 4096 bytes\n"
+        + "  cache                       occupancy       fair share\n"
+        + "  bar                              1024             2048\n"
+        + "  foo                              3072             2048\n"
+        + "pool 'secondary' : 1024 bytes\n"));
+  }
+}
@@ -127,6 +127,41 @@ public class OperationsToolTest {
     assertThat(run("--cluster ### update --config file.xml"), is(1));
   }
 
+  @Test
+  public void testOccupancyWithUnreachableCluster() {
+    assertThat(run("--cluster http://example.com:1234/watman occupancy"), is(1));
+  }
+
+  @Test
+  public void testPoolOccupancyWithUnreachableCluster() {
+    assertThat(run("--cluster http://example.com:1234/watman occupancy --pool primary"), is(1));
+  }
+
+  @Test
+  public void testOccupancyWithoutCluster() {
+    assertThat(run("occupancy"), is(1));
+  }
+
+  @Test
+  public void testStatisticsWithUnreachableCluster() {
+    assertThat(run("--cluster http://example.com:1234/watman stats"), is(1));
+  }
+
+  @Test
+  public void testSampledCacheStatisticsWithUnreachableCluster() {
+    assertThat(run("--cluster http://example.com:1234/watman stats --cache foo --interval 10"), is(1));
+  }
+
+  @Test
+  public void testStatisticsWithNegativeInterval() {
+    assertThat(run("--cluster http://example.com:1234/watman stats --interval -1"), is(1));
+  }
+
+  @Test
+  public void testStatisticsWithoutCluster() {
+    assertThat(run("stats"), is(1));
+  }
+
   public static int run(String command) {
     return OperationsTool.innerMain(command.split("\\s+"));
   }
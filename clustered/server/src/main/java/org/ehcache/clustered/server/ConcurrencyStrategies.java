@@ -15,7 +15,11 @@
  */
 package org.ehcache.clustered.server;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Set;
+
+import org.ehcache.clustered.common.messages.ConcurrentEntityMessage;
 import org.terracotta.entity.ConcurrencyStrategy;
 
 import static java.util.Collections.singleton;
@@ -42,4 +46,72 @@ public final class ConcurrencyStrategies {
   public static final <T extends EntityMessage> ConcurrencyStrategy<T> noConcurrency() {
     return NO_CONCURRENCY;
   }
+
+  /**
+   * Returns a strategy executing {@link ConcurrentEntityMessage}s on one of {@code bucketCount} data keys derived from
+   * their key hash, and every other message on the single {@link KeyHashConcurrencyStrategy#MANAGEMENT_KEY}.
+   *
+   * @param bucketCount the number of data keys, rounded up to a power of two
+   * @param <T> the message type
+   * @return a key hash based strategy
+   */
+  public static <T extends EntityMessage> ConcurrencyStrategy<T> keyHashConcurrency(int bucketCount) {
+    return new KeyHashConcurrencyStrategy<T>(bucketCount);
+  }
+
+  /**
+   * Spreads data messages across concurrency keys by key hash.
+   * <P>
+   *   Key hashes are spread the same way {@link org.ehcache.clustered.server.offheap.OffHeapServerStore} selects its
+   *   segments, so with as many buckets as segments each data key only ever contends on a single segment lock.
+   *   Management messages (lifecycle and store wide operations) all share one key and so are executed in order with
+   *   respect to each other.
+   * </P>
+   */
+  static final class KeyHashConcurrencyStrategy<T extends EntityMessage> implements ConcurrencyStrategy<T> {
+
+    static final int MANAGEMENT_KEY = 1;
+    static final int DATA_KEY_OFFSET = MANAGEMENT_KEY + 1;
+
+    private final int mask;
+    private final Set<Integer> synchronizationKeys;
+
+    KeyHashConcurrencyStrategy(int bucketCount) {
+      if (bucketCount <= 0) {
+        throw new IllegalArgumentException("Bucket count must be positive : " + bucketCount);
+      }
+      int buckets = Integer.highestOneBit(bucketCount);
+      if (buckets < bucketCount) {
+        buckets <<= 1;
+      }
+      this.mask = buckets - 1;
+
+      Set<Integer> keys = new LinkedHashSet<Integer>();
+      keys.add(MANAGEMENT_KEY);
+      for (int i = 0; i < buckets; i++) {
+        keys.add(DATA_KEY_OFFSET + i);
+      }
+      this.synchronizationKeys = Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public int concurrencyKey(T message) {
+      if (message instanceof ConcurrentEntityMessage) {
+        int hash = ((ConcurrentEntityMessage) message).concurrencyKey();
+        hash ^= (hash >>> 16);
+        return DATA_KEY_OFFSET + (hash & mask);
+      } else {
+        return MANAGEMENT_KEY;
+      }
+    }
+
+    /**
+     * Returns the management key followed by every data key, so that passive synchronization can proceed stripe by
+     * stripe.
+     */
+    @Override
+    public Set<Integer> getKeysForSynchronization() {
+      return synchronizationKeys;
+    }
+  }
 }
@@ -15,31 +15,107 @@
  */
 package org.ehcache.clustered.server;
 
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
-import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
 import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
 import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ConfigureCacheManager;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.CreateServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.DestroyServerStore;
 import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ValidateCacheManager;
 import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EntitySyncMessage;
+import org.ehcache.clustered.common.messages.ReconnectData;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.AppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ClientInvalidationAck;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetUntrackedMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetStripeKeysMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ReplaceAtHeadMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.server.ConcurrencyStrategies.KeyHashConcurrencyStrategy;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.ehcache.clustered.server.offheap.SharedPoolAllocator;
 
 import org.terracotta.entity.ActiveServerEntity;
+import org.terracotta.entity.BasicServiceConfiguration;
+import org.terracotta.entity.ClientCommunicator;
 import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.PassiveSynchronizationChannel;
+import org.terracotta.entity.ServiceRegistry;
 
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.NO_ACK;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.allInvalidationDone;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.compactChain;
 import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.failure;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.getAllResponse;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.hashInvalidationDone;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.invalidateAll;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.invalidateHash;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.keysResponse;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.poolOccupancyResponse;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.response;
+import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.statisticsResponse;
 import static org.ehcache.clustered.common.messages.EhcacheEntityResponse.success;
 
 public class EhcacheActiveEntity implements ActiveServerEntity<EhcacheEntityMessage, EhcacheEntityResponse> {
 
-  private final UUID identity;
+  /**
+   * Number of keys sent to a passive in a single synchronization message.
+   */
+  static final int SYNC_BATCH_SIZE = 256;
 
-  private ServerSideConfiguration configuration;
+  /**
+   * Number of elements past which the client appending to a chain is asked to compact it.
+   */
+  static final int COMPACTION_LENGTH_THRESHOLD = 32;
 
+  /**
+   * Payload bytes past which the client appending to a chain is asked to compact it.
+   */
+  static final int COMPACTION_SIZE_THRESHOLD = 64 * 1024;
 
-  EhcacheActiveEntity(byte[] config) {
-    this.identity = ClusteredEhcacheIdentity.deserialize(config);
+  private final EhcacheServerState state;
+  private final ClientCommunicator clientCommunicator;
+
+  private final ConcurrentMap<String, InvalidationTracker> invalidationTrackers = new ConcurrentHashMap<String, InvalidationTracker>();
+
+  private final AtomicInteger invalidationIdGenerator = new AtomicInteger();
+  private final ConcurrentMap<Integer, PendingInvalidation> pendingInvalidations = new ConcurrentHashMap<Integer, PendingInvalidation>();
+
+  EhcacheActiveEntity(ServiceRegistry services, EhcacheServerState state) {
+    this(state, services.getService(new BasicServiceConfiguration<ClientCommunicator>(ClientCommunicator.class)));
+  }
+
+  EhcacheActiveEntity(byte[] config, ClientCommunicator clientCommunicator) {
+    this(new EhcacheServerState(ClusteredEhcacheIdentity.deserialize(config)), clientCommunicator);
+  }
+
+  EhcacheActiveEntity(EhcacheServerState state, ClientCommunicator clientCommunicator) {
+    this.state = state;
+    if (clientCommunicator == null) {
+      throw new NullPointerException("Client communicator cannot be null");
+    }
+    this.clientCommunicator = clientCommunicator;
   }
 
   @Override
@@ -49,7 +125,17 @@ public class EhcacheActiveEntity implements ActiveServerEntity<EhcacheEntityMess
 
   @Override
   public void disconnected(ClientDescriptor clientDescriptor) {
-    //nothing to do
+    for (InvalidationTracker tracker : invalidationTrackers.values()) {
+      tracker.untrack(clientDescriptor);
+    }
+    for (Map.Entry<Integer, PendingInvalidation> entry : pendingInvalidations.entrySet()) {
+      PendingInvalidation pending = entry.getValue();
+      if (pending.originator.equals(clientDescriptor)) {
+        pendingInvalidations.remove(entry.getKey(), pending);
+      } else {
+        acknowledge(entry.getKey(), clientDescriptor);
+      }
+    }
   }
 
   @Override
@@ -57,18 +143,99 @@ public class EhcacheActiveEntity implements ActiveServerEntity<EhcacheEntityMess
     switch (message.getType()) {
       case CONFIGURE: return configure((ConfigureCacheManager) message);
       case VALIDATE: return validate((ValidateCacheManager) message);
+      case CREATE_SERVER_STORE: return createServerStore((CreateServerStore) message);
+      case DESTROY_SERVER_STORE: return destroyServerStore((DestroyServerStore) message);
+      case GET_STATISTICS: return getStatistics();
+      case GET_POOL_OCCUPANCY: return getPoolOccupancy();
+      case SERVER_STORE_OP: return invokeServerStoreOperation(clientDescriptor, (ServerStoreOpMessage) message);
       default: throw new IllegalArgumentException("Unknown message " + message);
     }
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The client reports the key hashes it still holds local copies of, which are registered as if the client had just
+   *   read them so that later mutations invalidate its copies.  Hashes of unknown stores are ignored.
+   * </P>
+   * <P>
+   *   The invalidations of the {@link RecentMutations latest mutations} this server replicated as a passive may have
+   *   been lost with the failed active, so the reported hashes among them are invalidated again instead, as is the
+   *   whole store if it was recently cleared.
+   * </P>
+   */
   @Override
   public void handleReconnect(ClientDescriptor clientDescriptor, byte[] extendedReconnectData) {
-    //nothing to do
+    ReconnectData reconnectData = ReconnectData.decode(extendedReconnectData);
+    for (String cacheId : reconnectData.getCacheIds()) {
+      InvalidationTracker tracker = invalidationTrackers.get(cacheId);
+      if (tracker != null) {
+        RecentMutations recentMutations = state.getRecentMutations(cacheId);
+        if (recentMutations != null && recentMutations.wasCleared()) {
+          send(clientDescriptor, invalidateAll(cacheId, NO_ACK));
+        } else {
+          for (Long hash : reconnectData.getHeldHashes(cacheId)) {
+            if (recentMutations != null && recentMutations.wasMutated(hash)) {
+              send(clientDescriptor, invalidateHash(cacheId, hash, NO_ACK));
+            } else {
+              tracker.track(hash, clientDescriptor);
+            }
+          }
+        }
+      }
+    }
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   The management key carries the entity state, and each data key the chains of the matching stripe of every
+   *   store.  Chains are read one at a time and sent in batches of {@link #SYNC_BATCH_SIZE} keys, so no store lock is
+   *   held while the passive catches up.
+   * </P>
+   */
   @Override
-  public void synchronizeKeyToPassive(PassiveSynchronizationChannel syncChannel, int concurrencyKey) {
-    throw new UnsupportedOperationException("Active/passive is not supported yet");
+  public void synchronizeKeyToPassive(PassiveSynchronizationChannel<EhcacheEntityMessage> syncChannel, int concurrencyKey) {
+    if (concurrencyKey == KeyHashConcurrencyStrategy.MANAGEMENT_KEY) {
+      syncChannel.synchronizeToPassive(EntitySyncMessage.stateSync(state.getConfiguration(), state.getStoreConfigurations()));
+    } else {
+      // data keys match the strategy created by EhcacheServerEntityService
+      int stripe = concurrencyKey - KeyHashConcurrencyStrategy.DATA_KEY_OFFSET;
+      for (String name : state.getStoreConfigurations().keySet()) {
+        OffHeapServerStore store = state.getStore(name);
+        if (store != null) {
+          synchronizeStripeToPassive(syncChannel, name, store, stripe);
+        }
+      }
+    }
+  }
+
+  private static void synchronizeStripeToPassive(PassiveSynchronizationChannel<EhcacheEntityMessage> syncChannel, String name, OffHeapServerStore store, int stripe) {
+    List<Long> keys = new ArrayList<Long>(SYNC_BATCH_SIZE);
+    List<Chain> chains = new ArrayList<Chain>(SYNC_BATCH_SIZE);
+    for (long key : store.getStripeKeys(stripe, OffHeapServerStore.DEFAULT_CONCURRENCY)) {
+      Chain chain = store.get(key);
+      if (!chain.isEmpty()) {
+        keys.add(key);
+        chains.add(chain);
+        if (keys.size() == SYNC_BATCH_SIZE) {
+          syncChannel.synchronizeToPassive(dataSync(name, keys, chains));
+          keys.clear();
+          chains.clear();
+        }
+      }
+    }
+    if (!keys.isEmpty()) {
+      syncChannel.synchronizeToPassive(dataSync(name, keys, chains));
+    }
+  }
+
+  private static EntitySyncMessage dataSync(String name, List<Long> keys, List<Chain> chains) {
+    long[] keyArray = new long[keys.size()];
+    for (int i = 0; i < keyArray.length; i++) {
+      keyArray[i] = keys.get(i);
+    }
+    return EntitySyncMessage.dataSync(name, keyArray, chains.toArray(new Chain[chains.size()]));
   }
 
   @Override
@@ -76,30 +243,343 @@ public class EhcacheActiveEntity implements ActiveServerEntity<EhcacheEntityMess
     //nothing to do
   }
 
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   Called when a passive entity is promoted: the stores it replicated are already in the shared state, but no
+   *   client is known to hold any of their mappings.
+   * </P>
+   */
   @Override
   public void loadExisting() {
-    //nothing to do
+    for (Map.Entry<String, ServerStoreConfiguration> store : state.getStoreConfigurations().entrySet()) {
+      invalidationTrackers.putIfAbsent(store.getKey(), new InvalidationTracker(store.getValue().getConsistency()));
+      OffHeapServerStore serverStore = state.getStore(store.getKey());
+      if (serverStore != null) {
+        serverStore.setEvictionListener(new InvalidatingEvictionListener(store.getKey()));
+      }
+    }
   }
 
   @Override
   public void destroy() {
-    //nothing to do
+    state.destroy();
+    invalidationTrackers.clear();
+    pendingInvalidations.clear();
+  }
+
+  OffHeapServerStore getServerStore(String name) {
+    return state.getStore(name);
   }
 
   private EhcacheEntityResponse configure(ConfigureCacheManager message) throws IllegalStateException {
-    if (configuration == null) {
-      this.configuration = message.getConfiguration();
+    try {
+      state.configure(message.getConfiguration());
       return success();
-    } else {
-      return failure(new IllegalStateException("Clustered Cache Manager already configured"));
+    } catch (IllegalStateException e) {
+      return failure(e);
     }
   }
 
   private EhcacheEntityResponse validate(ValidateCacheManager message)  throws IllegalArgumentException {
-    if (Integer.bitCount(configuration.getMagic()) != Integer.bitCount(message.getConfiguration().getMagic())) {
+    if (Integer.bitCount(state.getConfiguration().getMagic()) != Integer.bitCount(message.getConfiguration().getMagic())) {
       return failure(new IllegalArgumentException("Magic parameters not aligned"));
     } else {
       return success();
     }
   }
+
+  private EhcacheEntityResponse createServerStore(CreateServerStore message) {
+    OffHeapServerStore store;
+    try {
+      store = state.createStore(message.getName(), message.getStoreConfiguration());
+    } catch (IllegalStateException e) {
+      return failure(e);
+    } catch (IllegalArgumentException e) {
+      return failure(e);
+    }
+    invalidationTrackers.put(message.getName(), new InvalidationTracker(message.getStoreConfiguration().getConsistency()));
+    store.setEvictionListener(new InvalidatingEvictionListener(message.getName()));
+    return success();
+  }
+
+  private EhcacheEntityResponse destroyServerStore(DestroyServerStore message) {
+    try {
+      state.destroyStore(message.getName());
+    } catch (IllegalStateException e) {
+      return failure(e);
+    }
+    invalidationTrackers.remove(message.getName());
+    for (Map.Entry<Integer, PendingInvalidation> entry : pendingInvalidations.entrySet()) {
+      if (entry.getValue().cacheId.equals(message.getName())) {
+        complete(entry.getKey(), entry.getValue());
+      }
+    }
+    return success();
+  }
+
+  private EhcacheEntityResponse getStatistics() {
+    Map<String, Map<String, Long>> statistics = new LinkedHashMap<String, Map<String, Long>>();
+    for (String name : new TreeSet<String>(state.getStoreConfigurations().keySet())) {
+      OffHeapServerStore store = state.getStore(name);
+      if (store != null) {
+        statistics.put(name, store.getStatistics().getCounters());
+      }
+    }
+    return statisticsResponse(statistics);
+  }
+
+  private EhcacheEntityResponse getPoolOccupancy() {
+    Map<String, Long> poolSizes = new LinkedHashMap<String, Long>();
+    Map<String, Map<String, Long>> occupancy = new LinkedHashMap<String, Map<String, Long>>();
+    Map<String, Map<String, Long>> fairShares = new LinkedHashMap<String, Map<String, Long>>();
+    for (Map.Entry<String, SharedPoolAllocator> pool : new TreeMap<String, SharedPoolAllocator>(state.getSharedPools()).entrySet()) {
+      Map<String, Long> held = new TreeMap<String, Long>(pool.getValue().getOccupancy());
+      Map<String, Long> shares = new TreeMap<String, Long>();
+      for (String store : held.keySet()) {
+        shares.put(store, pool.getValue().getFairShare(store));
+      }
+      poolSizes.put(pool.getKey(), pool.getValue().getSize());
+      occupancy.put(pool.getKey(), held);
+      fairShares.put(pool.getKey(), shares);
+    }
+    return poolOccupancyResponse(poolSizes, occupancy, fairShares);
+  }
+
+  private EhcacheEntityResponse invokeServerStoreOperation(ClientDescriptor clientDescriptor, ServerStoreOpMessage message) {
+    OffHeapServerStore store = state.getStore(message.getCacheId());
+    if (store == null) {
+      return failure(new IllegalStateException("Server store '" + message.getCacheId() + "' does not exist"));
+    }
+    InvalidationTracker tracker = invalidationTrackers.get(message.getCacheId());
+
+    switch (message.operation()) {
+      case GET: {
+        GetMessage getMessage = (GetMessage) message;
+        tracker.track(getMessage.getKey(), clientDescriptor);
+        return response(store.get(getMessage.getKey()));
+      }
+      case GET_UNTRACKED:
+        return response(store.get(((GetUntrackedMessage) message).getKey()));
+      case APPEND: {
+        AppendMessage appendMessage = (AppendMessage) message;
+        Chain previous = store.getAndAppend(appendMessage.getKey(), appendMessage.getPayload());
+        invalidateHashForClients(clientDescriptor, message.getCacheId(), appendMessage.getKey(), tracker);
+        requestCompactionIfNeeded(clientDescriptor, message.getCacheId(), appendMessage.getKey(), previous, appendMessage.getPayload());
+        return success();
+      }
+      case GET_AND_APPEND: {
+        GetAndAppendMessage getAndAppendMessage = (GetAndAppendMessage) message;
+        Chain previous = store.getAndAppend(getAndAppendMessage.getKey(), getAndAppendMessage.getPayload());
+        invalidateHashForClients(clientDescriptor, message.getCacheId(), getAndAppendMessage.getKey(), tracker);
+        requestCompactionIfNeeded(clientDescriptor, message.getCacheId(), getAndAppendMessage.getKey(), previous, getAndAppendMessage.getPayload());
+        return response(previous);
+      }
+      case GET_ALL: {
+        long[] keys = ((GetAllMessage) message).getKeys();
+        for (long key : keys) {
+          tracker.track(key, clientDescriptor);
+        }
+        return getAllResponse(store.getAll(keys));
+      }
+      case GET_AND_APPEND_ALL: {
+        GetAndAppendAllMessage getAndAppendAllMessage = (GetAndAppendAllMessage) message;
+        long[] keys = getAndAppendAllMessage.getKeys();
+        ByteBuffer[] payloads = getAndAppendAllMessage.getPayloads();
+        Chain[] chains = store.getAndAppendAll(keys, payloads);
+        Set<Long> distinctKeys = new LinkedHashSet<Long>();
+        for (long key : keys) {
+          distinctKeys.add(key);
+        }
+        for (long key : distinctKeys) {
+          invalidateHashForClients(clientDescriptor, message.getCacheId(), key, tracker);
+        }
+        for (int i = 0; i < keys.length; i++) {
+          requestCompactionIfNeeded(clientDescriptor, message.getCacheId(), keys[i], chains[i], payloads[i]);
+        }
+        return getAllResponse(chains);
+      }
+      case GET_STRIPE_KEYS: {
+        GetStripeKeysMessage getStripeKeysMessage = (GetStripeKeysMessage) message;
+        try {
+          return keysResponse(store.getStripeKeys(getStripeKeysMessage.getStripe(), getStripeKeysMessage.getStripeCount()));
+        } catch (IllegalArgumentException e) {
+          return failure(e);
+        }
+      }
+      case REPLACE: {
+        ReplaceAtHeadMessage replaceAtHeadMessage = (ReplaceAtHeadMessage) message;
+        store.replaceAtHead(replaceAtHeadMessage.getKey(), replaceAtHeadMessage.getExpect(), replaceAtHeadMessage.getUpdate());
+        return success();
+      }
+      case CLEAR: {
+        store.clear();
+        invalidateAllForClients(clientDescriptor, message.getCacheId(), tracker);
+        return success();
+      }
+      case CLIENT_INVALIDATION_ACK: {
+        acknowledge(((ClientInvalidationAck) message).getInvalidationId(), clientDescriptor);
+        return success();
+      }
+      default:
+        throw new IllegalArgumentException("Unknown server store operation " + message.operation());
+    }
+  }
+
+  /**
+   * Asks the appending client to compact a chain that the append grew past a multiple of the compaction thresholds.
+   * Only crossings trigger a request, so a chain that cannot be compacted, because all its mappings are live, does not
+   * cost a request per append.
+   */
+  private void requestCompactionIfNeeded(ClientDescriptor client, String cacheId, long key, Chain previous, ByteBuffer payload) {
+    long length = 0;
+    long size = 0;
+    for (Element element : previous) {
+      length++;
+      size += element.getPayload().remaining();
+    }
+    if (crossesThreshold(length, length + 1, COMPACTION_LENGTH_THRESHOLD)
+        || crossesThreshold(size, size + payload.remaining(), COMPACTION_SIZE_THRESHOLD)) {
+      send(client, compactChain(cacheId, key));
+    }
+  }
+
+  /**
+   * Returns whether growing from {@code before} to {@code after} reaches {@code threshold} or one of its doublings.
+   */
+  static boolean crossesThreshold(long before, long after, long threshold) {
+    if (after < threshold) {
+      return false;
+    } else if (before < threshold) {
+      return true;
+    } else {
+      return Long.numberOfLeadingZeros(before / threshold) != Long.numberOfLeadingZeros(after / threshold);
+    }
+  }
+
+  private void invalidateHashForClients(ClientDescriptor originator, String cacheId, long key, InvalidationTracker tracker) {
+    Set<ClientDescriptor> clients = tracker.invalidateHash(key, originator);
+    if (tracker.getConsistency() == Consistency.STRONG) {
+      int invalidationId = startInvalidation(originator, cacheId, key, clients);
+      for (ClientDescriptor client : clients) {
+        if (!send(client, invalidateHash(cacheId, key, invalidationId))) {
+          acknowledge(invalidationId, client);
+        }
+      }
+    } else {
+      for (ClientDescriptor client : clients) {
+        send(client, invalidateHash(cacheId, key, NO_ACK));
+      }
+    }
+  }
+
+  /**
+   * Tells the holders of an evicted hash to drop their copies.  Eviction does not change the value of any mapping a
+   * client may still be reading or writing, so nobody waits on these invalidations.
+   */
+  private void invalidateEvictedHash(String cacheId, long key) {
+    InvalidationTracker tracker = invalidationTrackers.get(cacheId);
+    if (tracker != null) {
+      for (ClientDescriptor client : tracker.getHolders(key)) {
+        send(client, invalidateHash(cacheId, key, NO_ACK));
+      }
+    }
+  }
+
+  private void invalidateAllForClients(ClientDescriptor originator, String cacheId, InvalidationTracker tracker) {
+    Set<ClientDescriptor> clients = tracker.invalidateAll(originator);
+    if (tracker.getConsistency() == Consistency.STRONG) {
+      int invalidationId = startInvalidation(originator, cacheId, null, clients);
+      for (ClientDescriptor client : clients) {
+        if (!send(client, invalidateAll(cacheId, invalidationId))) {
+          acknowledge(invalidationId, client);
+        }
+      }
+    } else {
+      for (ClientDescriptor client : clients) {
+        send(client, invalidateAll(cacheId, NO_ACK));
+      }
+    }
+  }
+
+  private int startInvalidation(ClientDescriptor originator, String cacheId, Long key, Set<ClientDescriptor> clients) {
+    int invalidationId = invalidationIdGenerator.getAndIncrement() & Integer.MAX_VALUE;
+    PendingInvalidation pending = new PendingInvalidation(originator, cacheId, key, clients);
+    if (clients.isEmpty()) {
+      notifyOriginator(pending);
+    } else {
+      pendingInvalidations.put(invalidationId, pending);
+    }
+    return invalidationId;
+  }
+
+  private void acknowledge(int invalidationId, ClientDescriptor client) {
+    PendingInvalidation pending = pendingInvalidations.get(invalidationId);
+    if (pending != null && pending.clients.remove(client) && pending.clients.isEmpty()) {
+      complete(invalidationId, pending);
+    }
+  }
+
+  private void complete(int invalidationId, PendingInvalidation pending) {
+    if (pendingInvalidations.remove(invalidationId, pending)) {
+      notifyOriginator(pending);
+    }
+  }
+
+  private void notifyOriginator(PendingInvalidation pending) {
+    if (pending.key == null) {
+      send(pending.originator, allInvalidationDone(pending.cacheId));
+    } else {
+      send(pending.originator, hashInvalidationDone(pending.cacheId, pending.key));
+    }
+  }
+
+  /**
+   * Pushes a message to a client, returning {@code false} if the client could not be reached.
+   */
+  private boolean send(ClientDescriptor client, EhcacheEntityResponse message) {
+    try {
+      clientCommunicator.sendNoResponse(client, message);
+      return true;
+    } catch (Exception e) {
+      // the client is going away, disconnected() will forget about it
+      return false;
+    }
+  }
+
+  /**
+   * Forwards the chains evicted from a store to its holders.
+   */
+  private final class InvalidatingEvictionListener implements OffHeapServerStore.EvictionListener {
+
+    private final String cacheId;
+
+    InvalidatingEvictionListener(String cacheId) {
+      this.cacheId = cacheId;
+    }
+
+    @Override
+    public void onEviction(long key) {
+      invalidateEvictedHash(cacheId, key);
+    }
+  }
+
+  /**
+   * An invalidation that the {@code originator} is waiting on the {@code clients} to acknowledge.
+   */
+  private static final class PendingInvalidation {
+
+    private final ClientDescriptor originator;
+    private final String cacheId;
+    private final Long key;
+    private final Set<ClientDescriptor> clients;
+
+    PendingInvalidation(ClientDescriptor originator, String cacheId, Long key, Set<ClientDescriptor> clients) {
+      this.originator = originator;
+      this.cacheId = cacheId;
+      this.key = key;
+      this.clients = Collections.newSetFromMap(new ConcurrentHashMap<ClientDescriptor, Boolean>());
+      this.clients.addAll(clients);
+    }
+  }
 }
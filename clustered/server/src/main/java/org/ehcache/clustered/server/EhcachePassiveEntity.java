@@ -0,0 +1,240 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.ConfigureCacheManager;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.CreateServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage.DestroyServerStore;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EntitySyncMessage;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.DataSyncMessage;
+import org.ehcache.clustered.common.messages.EntitySyncMessage.StateSyncMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.AppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendAllMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.GetAndAppendMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage.ReplaceAtHeadMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.terracotta.entity.PassiveServerEntity;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Keeps a replica of the stores of an {@link EhcacheActiveEntity}.
+ * <P>
+ *   Every message the active executes is replayed here, but only its effect on the stores is reproduced: reads,
+ *   invalidation acknowledgements and validations are ignored, and messages the active rejected fail the same way
+ *   here without any side effect.  Compactions are matched by payload rather than sequence number, since each server
+ *   numbers its chain elements independently.
+ * </P>
+ * <P>
+ *   A passive joining a running active first receives the {@link EntitySyncMessage}s streamed by
+ *   {@link EhcacheActiveEntity#synchronizeKeyToPassive}.
+ * </P>
+ */
+public class EhcachePassiveEntity implements PassiveServerEntity<EhcacheEntityMessage, EhcacheEntityResponse> {
+
+  private final EhcacheServerState state;
+
+  EhcachePassiveEntity(byte[] config) {
+    this(new EhcacheServerState(ClusteredEhcacheIdentity.deserialize(config)));
+  }
+
+  EhcachePassiveEntity(EhcacheServerState state) {
+    this.state = state;
+  }
+
+  @Override
+  public void invoke(EhcacheEntityMessage message) {
+    switch (message.getType()) {
+      case CONFIGURE:
+      case CREATE_SERVER_STORE:
+      case DESTROY_SERVER_STORE:
+        try {
+          invokeLifecycleOperation(message);
+        } catch (IllegalStateException e) {
+          // the active rejected this message the same way
+        } catch (IllegalArgumentException e) {
+          // the active rejected this message the same way
+        }
+        break;
+      case VALIDATE:
+      case GET_STATISTICS:
+      case GET_POOL_OCCUPANCY:
+        break;
+      case SERVER_STORE_OP:
+        invokeServerStoreOperation((ServerStoreOpMessage) message);
+        break;
+      case SYNC:
+        invokeSyncOperation((EntitySyncMessage) message);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown message " + message);
+    }
+  }
+
+  private void invokeLifecycleOperation(EhcacheEntityMessage message) {
+    switch (message.getType()) {
+      case CONFIGURE:
+        state.configure(((ConfigureCacheManager) message).getConfiguration());
+        break;
+      case CREATE_SERVER_STORE:
+        CreateServerStore createMessage = (CreateServerStore) message;
+        state.createStore(createMessage.getName(), createMessage.getStoreConfiguration());
+        break;
+      case DESTROY_SERVER_STORE:
+        state.destroyStore(((DestroyServerStore) message).getName());
+        break;
+      default:
+        throw new AssertionError(message.getType());
+    }
+  }
+
+  private void invokeServerStoreOperation(ServerStoreOpMessage message) {
+    OffHeapServerStore store = state.getStore(message.getCacheId());
+    if (store == null) {
+      return;
+    }
+    RecentMutations recentMutations = state.getRecentMutations(message.getCacheId());
+    switch (message.operation()) {
+      case APPEND: {
+        AppendMessage appendMessage = (AppendMessage) message;
+        store.append(appendMessage.getKey(), appendMessage.getPayload());
+        if (recentMutations != null) {
+          recentMutations.mutated(appendMessage.getKey());
+        }
+        break;
+      }
+      case GET_AND_APPEND: {
+        GetAndAppendMessage getAndAppendMessage = (GetAndAppendMessage) message;
+        store.append(getAndAppendMessage.getKey(), getAndAppendMessage.getPayload());
+        if (recentMutations != null) {
+          recentMutations.mutated(getAndAppendMessage.getKey());
+        }
+        break;
+      }
+      case GET_AND_APPEND_ALL: {
+        GetAndAppendAllMessage getAndAppendAllMessage = (GetAndAppendAllMessage) message;
+        long[] keys = getAndAppendAllMessage.getKeys();
+        ByteBuffer[] payloads = getAndAppendAllMessage.getPayloads();
+        for (int i = 0; i < keys.length; i++) {
+          store.append(keys[i], payloads[i]);
+          if (recentMutations != null) {
+            recentMutations.mutated(keys[i]);
+          }
+        }
+        break;
+      }
+      case REPLACE: {
+        ReplaceAtHeadMessage replaceAtHeadMessage = (ReplaceAtHeadMessage) message;
+        store.replicateReplaceAtHead(replaceAtHeadMessage.getKey(), replaceAtHeadMessage.getExpect(), replaceAtHeadMessage.getUpdate());
+        break;
+      }
+      case CLEAR:
+        store.clear();
+        if (recentMutations != null) {
+          recentMutations.cleared();
+        }
+        break;
+      case GET:
+      case GET_UNTRACKED:
+      case GET_ALL:
+      case GET_STRIPE_KEYS:
+      case CLIENT_INVALIDATION_ACK:
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown server store operation " + message.operation());
+    }
+  }
+
+  private void invokeSyncOperation(EntitySyncMessage message) {
+    switch (message.operation()) {
+      case STATE: {
+        StateSyncMessage stateMessage = (StateSyncMessage) message;
+        ServerSideConfiguration configuration = stateMessage.getConfiguration();
+        if (configuration != null && state.getConfiguration() == null) {
+          state.configure(configuration);
+        }
+        for (Map.Entry<String, ServerStoreConfiguration> store : stateMessage.getStoreConfigurations().entrySet()) {
+          if (state.getStore(store.getKey()) == null) {
+            state.createStore(store.getKey(), store.getValue());
+          }
+        }
+        break;
+      }
+      case DATA: {
+        DataSyncMessage dataMessage = (DataSyncMessage) message;
+        OffHeapServerStore store = state.getStore(dataMessage.getCacheId());
+        if (store == null) {
+          throw new IllegalStateException("Server store '" + dataMessage.getCacheId() + "' was not synchronized");
+        }
+        long[] keys = dataMessage.getKeys();
+        Chain[] chains = dataMessage.getChains();
+        for (int i = 0; i < keys.length; i++) {
+          store.put(keys[i], chains[i]);
+        }
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unknown synchronization operation " + message.operation());
+    }
+  }
+
+  @Override
+  public void startSyncEntity() {
+    //nothing to do
+  }
+
+  @Override
+  public void endSyncEntity() {
+    //nothing to do
+  }
+
+  @Override
+  public void startSyncConcurrencyKey(int concurrencyKey) {
+    //nothing to do
+  }
+
+  @Override
+  public void endSyncConcurrencyKey(int concurrencyKey) {
+    //nothing to do
+  }
+
+  @Override
+  public void createNew() {
+    //nothing to do
+  }
+
+  @Override
+  public void loadExisting() {
+    //nothing to do
+  }
+
+  @Override
+  public void destroy() {
+    state.destroy();
+  }
+
+  OffHeapServerStore getServerStore(String name) {
+    return state.getStore(name);
+  }
+}
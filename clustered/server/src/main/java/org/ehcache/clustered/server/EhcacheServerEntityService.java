@@ -15,21 +15,34 @@
  */
 package org.ehcache.clustered.server;
 
+import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
 import org.ehcache.clustered.common.messages.EhcacheCodec;
 import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
 import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EhcacheSyncCodec;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
 import org.terracotta.entity.ConcurrencyStrategy;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.PassiveServerEntity;
 import org.terracotta.entity.ServerEntityService;
 import org.terracotta.entity.ServiceRegistry;
 
-import static org.ehcache.clustered.server.ConcurrencyStrategies.noConcurrency;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.ehcache.clustered.server.ConcurrencyStrategies.keyHashConcurrency;
 import org.terracotta.entity.SyncMessageCodec;
 
 public class EhcacheServerEntityService implements ServerEntityService<EhcacheEntityMessage, EhcacheEntityResponse> {
 
   private static final long ENTITY_VERSION = 1L;
+
+  /**
+   * The state of every entity hosted by this server, shared by its successive active and passive instances.
+   */
+  private final ConcurrentMap<UUID, EhcacheServerState> states = new ConcurrentHashMap<UUID, EhcacheServerState>();
+
   @Override
   public long getVersion() {
     return ENTITY_VERSION;
@@ -42,17 +55,21 @@ public class EhcacheServerEntityService implements ServerEntityService<EhcacheEn
 
   @Override
   public EhcacheActiveEntity createActiveEntity(ServiceRegistry registry, byte[] configuration) {
-    return new EhcacheActiveEntity(configuration);
+    return new EhcacheActiveEntity(registry, stateFor(configuration));
   }
 
   @Override
   public PassiveServerEntity<EhcacheEntityMessage, EhcacheEntityResponse> createPassiveEntity(ServiceRegistry registry, byte[] configuration) {
-    throw new UnsupportedOperationException("Active/passive is not supported yet");
+    return new EhcachePassiveEntity(stateFor(configuration));
+  }
+
+  private EhcacheServerState stateFor(byte[] configuration) {
+    return EhcacheServerState.stateFor(states, ClusteredEhcacheIdentity.deserialize(configuration));
   }
 
   @Override
   public ConcurrencyStrategy<EhcacheEntityMessage> getConcurrencyStrategy(byte[] config) {
-    return noConcurrency();
+    return keyHashConcurrency(OffHeapServerStore.DEFAULT_CONCURRENCY);
   }
 
   @Override
@@ -62,6 +79,6 @@ public class EhcacheServerEntityService implements ServerEntityService<EhcacheEn
 
   @Override
   public SyncMessageCodec<EhcacheEntityMessage> getSyncMessageCodec() {
-    return null;
+    return EhcacheSyncCodec.syncCodec();
   }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.ehcache.clustered.server.offheap.SharedPoolAllocator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The server-side state of a clustered cache manager: its configuration, shared pools and server stores.
+ * <P>
+ *   The state is held apart from the entity instances using it.  {@link EhcacheServerEntityService} keeps one per
+ *   entity identity, so that a passive entity promoted to active on failover carries on with the stores it has been
+ *   replicating.
+ * </P>
+ */
+class EhcacheServerState {
+
+  private final UUID identity;
+  private final ConcurrentMap<UUID, EhcacheServerState> registry;
+
+  private volatile ServerSideConfiguration configuration;
+  private volatile Map<String, SharedPoolAllocator> sharedPools = new HashMap<String, SharedPoolAllocator>();
+  private final ConcurrentMap<String, OffHeapServerStore> stores = new ConcurrentHashMap<String, OffHeapServerStore>();
+  private final ConcurrentMap<String, ServerStoreConfiguration> storeConfigurations = new ConcurrentHashMap<String, ServerStoreConfiguration>();
+  private final ConcurrentMap<String, RecentMutations> recentMutations = new ConcurrentHashMap<String, RecentMutations>();
+
+  /**
+   * Creates a state that is not shared with any other entity instance.
+   *
+   * @param identity the entity identity
+   */
+  EhcacheServerState(UUID identity) {
+    this(identity, null);
+  }
+
+  private EhcacheServerState(UUID identity, ConcurrentMap<UUID, EhcacheServerState> registry) {
+    this.identity = identity;
+    this.registry = registry;
+  }
+
+  /**
+   * Returns the state registered for {@code identity}, registering a new one if needed.  The state unregisters itself
+   * when destroyed.
+   *
+   * @param registry the states of all live entities
+   * @param identity the entity identity
+   * @return the state of the entity
+   */
+  static EhcacheServerState stateFor(ConcurrentMap<UUID, EhcacheServerState> registry, UUID identity) {
+    EhcacheServerState state = registry.get(identity);
+    if (state == null) {
+      EhcacheServerState created = new EhcacheServerState(identity, registry);
+      state = registry.putIfAbsent(identity, created);
+      if (state == null) {
+        state = created;
+      }
+    }
+    return state;
+  }
+
+  UUID getIdentity() {
+    return identity;
+  }
+
+  /**
+   * Returns the cache manager configuration, or {@code null} if it is not configured yet.
+   */
+  ServerSideConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  void configure(ServerSideConfiguration configuration) throws IllegalStateException {
+    if (this.configuration != null) {
+      throw new IllegalStateException("Clustered Cache Manager already configured");
+    }
+    Map<String, SharedPoolAllocator> pools = new HashMap<String, SharedPoolAllocator>();
+    for (Map.Entry<String, ServerSideConfiguration.Pool> pool : configuration.getResourcePools().entrySet()) {
+      pools.put(pool.getKey(), new SharedPoolAllocator(pool.getValue().getSize()));
+    }
+    this.sharedPools = pools;
+    this.configuration = configuration;
+  }
+
+  OffHeapServerStore createStore(String name, ServerStoreConfiguration storeConfiguration) throws IllegalStateException, IllegalArgumentException {
+    if (configuration == null) {
+      throw new IllegalStateException("Clustered Cache Manager is not configured");
+    }
+    if (stores.containsKey(name)) {
+      throw new IllegalStateException("Server store '" + name + "' already exists");
+    }
+
+    PoolAllocation allocation = storeConfiguration.getPoolAllocation();
+    OffHeapServerStore store;
+    if (allocation instanceof PoolAllocation.Fixed) {
+      store = new OffHeapServerStore(((PoolAllocation.Fixed) allocation).getSize());
+    } else if (allocation instanceof PoolAllocation.Shared) {
+      String poolName = ((PoolAllocation.Shared) allocation).getResourcePoolName();
+      SharedPoolAllocator pool = sharedPools.get(poolName);
+      if (pool == null) {
+        throw new IllegalArgumentException("Unknown shared pool '" + poolName + "' for server store '" + name + "'");
+      }
+      store = pool.createStore(name, SharedPoolAllocator.DEFAULT_WEIGHT);
+    } else {
+      throw new IllegalArgumentException("Unsupported pool allocation " + allocation);
+    }
+
+    if (stores.putIfAbsent(name, store) != null) {
+      release(name, store, storeConfiguration);
+      throw new IllegalStateException("Server store '" + name + "' already exists");
+    }
+    storeConfigurations.put(name, storeConfiguration);
+    if (storeConfiguration.getConsistency() == Consistency.EVENTUAL) {
+      recentMutations.put(name, new RecentMutations());
+    }
+    return store;
+  }
+
+  void destroyStore(String name) throws IllegalStateException {
+    OffHeapServerStore store = stores.remove(name);
+    if (store == null) {
+      throw new IllegalStateException("Server store '" + name + "' does not exist");
+    }
+    recentMutations.remove(name);
+    release(name, store, storeConfigurations.remove(name));
+  }
+
+  /**
+   * Destroys a store, returning its pages to the shared pool it was carved from if any.
+   */
+  private void release(String name, OffHeapServerStore store, ServerStoreConfiguration storeConfiguration) {
+    PoolAllocation allocation = storeConfiguration == null ? null : storeConfiguration.getPoolAllocation();
+    if (allocation instanceof PoolAllocation.Shared) {
+      SharedPoolAllocator pool = sharedPools.get(((PoolAllocation.Shared) allocation).getResourcePoolName());
+      if (pool != null) {
+        pool.destroyStore(name);
+        return;
+      }
+    }
+    store.destroy();
+  }
+
+  OffHeapServerStore getStore(String name) {
+    return stores.get(name);
+  }
+
+  /**
+   * Returns the latest replicated mutations of an eventually consistent store, or {@code null} for a strongly
+   * consistent or unknown store.
+   */
+  RecentMutations getRecentMutations(String name) {
+    return recentMutations.get(name);
+  }
+
+  /**
+   * Returns the allocator of a shared pool, or {@code null} if no such pool is configured.
+   */
+  SharedPoolAllocator getSharedPool(String name) {
+    return sharedPools.get(name);
+  }
+
+  /**
+   * Returns the allocators of the shared pools, keyed by pool name.
+   */
+  Map<String, SharedPoolAllocator> getSharedPools() {
+    return Collections.unmodifiableMap(sharedPools);
+  }
+
+  Map<String, ServerStoreConfiguration> getStoreConfigurations() {
+    return Collections.unmodifiableMap(new HashMap<String, ServerStoreConfiguration>(storeConfigurations));
+  }
+
+  /**
+   * Releases all stores and pools, and unregisters this state.
+   */
+  void destroy() {
+    for (String name : stores.keySet()) {
+      OffHeapServerStore store = stores.remove(name);
+      if (store != null) {
+        release(name, store, storeConfigurations.remove(name));
+      }
+    }
+    storeConfigurations.clear();
+    recentMutations.clear();
+    sharedPools = new HashMap<String, SharedPoolAllocator>();
+    if (registry != null) {
+      registry.remove(identity, this);
+    }
+  }
+}
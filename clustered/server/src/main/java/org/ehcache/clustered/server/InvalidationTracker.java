@@ -0,0 +1,138 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import org.ehcache.clustered.common.Consistency;
+import org.terracotta.entity.ClientDescriptor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks which clients may hold a local copy of the mappings of a server store, per key hash.
+ * <P>
+ *   A client is registered against a hash when it reads the chain for that hash, and is forgotten once it has been
+ *   sent an invalidation for it.  Operations on the same hash are serialized by the entity concurrency strategy, which
+ *   only leaves clears and disconnections racing with the per hash operations.
+ * </P>
+ */
+final class InvalidationTracker {
+
+  private final Consistency consistency;
+  private final ConcurrentMap<Long, Set<ClientDescriptor>> holders = new ConcurrentHashMap<Long, Set<ClientDescriptor>>();
+
+  InvalidationTracker(Consistency consistency) {
+    this.consistency = consistency;
+  }
+
+  Consistency getConsistency() {
+    return consistency;
+  }
+
+  /**
+   * Records that {@code client} may now hold local copies of mappings with the given key hash.
+   *
+   * @param key the key hash
+   * @param client the reading client
+   */
+  void track(long key, ClientDescriptor client) {
+    while (true) {
+      Set<ClientDescriptor> clients = holders.get(key);
+      if (clients == null) {
+        Set<ClientDescriptor> newClients = Collections.newSetFromMap(new ConcurrentHashMap<ClientDescriptor, Boolean>());
+        newClients.add(client);
+        if (holders.putIfAbsent(key, newClients) == null) {
+          return;
+        }
+      } else {
+        clients.add(client);
+        // a concurrent clear may have detached this set before the client was added to it
+        if (holders.get(key) == clients) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets all holders of the given key hash but {@code originator}, whose own tier already dropped the mutated
+   * mapping.  The originator is kept registered as its caching tier may install the value it just wrote.
+   *
+   * @param key the mutated key hash
+   * @param originator the mutating client
+   * @return the clients that must be sent an invalidation
+   */
+  Set<ClientDescriptor> invalidateHash(long key, ClientDescriptor originator) {
+    Set<ClientDescriptor> clients = holders.remove(key);
+    track(key, originator);
+    if (clients == null) {
+      return Collections.emptySet();
+    }
+    clients.remove(originator);
+    return clients;
+  }
+
+  /**
+   * Returns the clients that may hold mappings with the given key hash, without forgetting them.
+   * <P>
+   *   Used when the server drops a chain on its own: holders stay registered so that a later mutation of the hash
+   *   still invalidates them with the guarantees of the store consistency.
+   * </P>
+   *
+   * @param key the key hash
+   * @return the current holders
+   */
+  Set<ClientDescriptor> getHolders(long key) {
+    Set<ClientDescriptor> clients = holders.get(key);
+    if (clients == null) {
+      return Collections.emptySet();
+    } else {
+      return new HashSet<ClientDescriptor>(clients);
+    }
+  }
+
+  /**
+   * Forgets all holders of any key hash but {@code originator}.
+   *
+   * @param originator the clearing client
+   * @return the clients that must be sent an invalidation
+   */
+  Set<ClientDescriptor> invalidateAll(ClientDescriptor originator) {
+    Set<ClientDescriptor> clients = new HashSet<ClientDescriptor>();
+    for (Map.Entry<Long, Set<ClientDescriptor>> entry : holders.entrySet()) {
+      if (holders.remove(entry.getKey(), entry.getValue())) {
+        clients.addAll(entry.getValue());
+      }
+    }
+    clients.remove(originator);
+    return clients;
+  }
+
+  /**
+   * Forgets a disconnected client.
+   *
+   * @param client the disconnected client
+   */
+  void untrack(ClientDescriptor client) {
+    for (Set<ClientDescriptor> clients : holders.values()) {
+      clients.remove(client);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The key hashes of an eventually consistent store touched by the latest replicated mutations.
+ * <P>
+ *   Eventual invalidations are not acknowledged, so the last ones a failed active sent may never have reached their
+ *   clients, who then report the stale hashes as held when reconnecting.  The passive records the hashes of the last
+ *   {@link #WINDOW} mutations it replicated, which the promoted active invalidates again on reconnect.  Invalidations
+ *   of older mutations are assumed delivered.
+ * </P>
+ */
+final class RecentMutations {
+
+  static final int WINDOW = 4096;
+
+  private final Map<Long, Boolean> hashes = new LinkedHashMap<Long, Boolean>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+      return size() > WINDOW;
+    }
+  };
+  private int mutationsSinceClear = WINDOW;
+
+  /**
+   * Records a mutation of the given key hash.
+   *
+   * @param key the mutated key hash
+   */
+  synchronized void mutated(long key) {
+    hashes.remove(key);
+    hashes.put(key, Boolean.TRUE);
+    if (mutationsSinceClear < WINDOW) {
+      mutationsSinceClear++;
+    }
+  }
+
+  /**
+   * Records a clear of the store, which mutates every hash.
+   */
+  synchronized void cleared() {
+    hashes.clear();
+    mutationsSinceClear = 0;
+  }
+
+  /**
+   * Returns whether the store was cleared within the window.
+   */
+  synchronized boolean wasCleared() {
+    return mutationsSinceClear < WINDOW;
+  }
+
+  /**
+   * Returns whether the given key hash was mutated within the window.
+   *
+   * @param key the key hash
+   */
+  synchronized boolean wasMutated(long key) {
+    return hashes.containsKey(key);
+  }
+}
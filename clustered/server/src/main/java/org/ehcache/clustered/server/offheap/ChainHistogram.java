@@ -0,0 +1,99 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of chain dimensions, with power of two buckets.
+ * <P>
+ *   Bucket {@code 0} counts the zero values, and bucket {@code n} the values in {@code [2^(n-1), 2^n)}.
+ * </P>
+ */
+public final class ChainHistogram {
+
+  private static final int BUCKETS = Long.SIZE + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  void record(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value : " + value);
+    }
+    counts.incrementAndGet(bucketOf(value));
+  }
+
+  static int bucketOf(long value) {
+    return Long.SIZE - Long.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Returns the smallest value counted in a bucket.
+   *
+   * @param bucket the bucket index
+   * @return the bucket lower bound
+   */
+  public static long lowerBound(int bucket) {
+    return bucket == 0 ? 0L : 1L << (bucket - 1);
+  }
+
+  /**
+   * Returns a snapshot of the bucket counts, trimmed after the last non-empty bucket.
+   *
+   * @return the counts, indexed by bucket
+   */
+  public long[] getCounts() {
+    long[] snapshot = new long[BUCKETS];
+    int length = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      if (snapshot[i] != 0) {
+        length = i + 1;
+      }
+    }
+    long[] trimmed = new long[length];
+    System.arraycopy(snapshot, 0, trimmed, 0, length);
+    return trimmed;
+  }
+
+  /**
+   * Returns the number of recorded values.
+   *
+   * @return the total count
+   */
+  public long getTotalCount() {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    return total;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("ChainHistogram{");
+    long[] snapshot = getCounts();
+    for (int i = 0; i < snapshot.length; i++) {
+      if (snapshot[i] != 0) {
+        if (sb.length() > "ChainHistogram{".length()) {
+          sb.append(", ");
+        }
+        sb.append(">=").append(lowerBound(i)).append(':').append(snapshot[i]);
+      }
+    }
+    return sb.append('}').toString();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.terracotta.offheapstore.storage.portability.Portability;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a {@link SequencedChain} as a single contiguous buffer.
+ * <P>
+ *   The layout is an element count followed by, for each element in chain order, its sequence number, its payload
+ *   length and its payload bytes.  Decoding copies the payloads back on-heap so that the returned chain stays valid
+ *   once the offheap mapping is modified or evicted.
+ * </P>
+ */
+final class ChainPortability implements Portability<SequencedChain> {
+
+  static final ChainPortability INSTANCE = new ChainPortability();
+
+  private static final int ELEMENT_HEADER_SIZE = 8 + 4;
+
+  private ChainPortability() {
+  }
+
+  @Override
+  public ByteBuffer encode(SequencedChain chain) {
+    int size = 4;
+    for (int i = 0; i < chain.length(); i++) {
+      size += ELEMENT_HEADER_SIZE + chain.get(i).getPayload().remaining();
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(chain.length());
+    for (int i = 0; i < chain.length(); i++) {
+      StoredElement element = chain.get(i);
+      ByteBuffer payload = element.getPayload();
+      buffer.putLong(element.getSequenceNumber());
+      buffer.putInt(payload.remaining());
+      buffer.put(payload);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public SequencedChain decode(ByteBuffer buffer) {
+    ByteBuffer input = buffer.duplicate();
+    StoredElement[] elements = new StoredElement[input.getInt()];
+    for (int i = 0; i < elements.length; i++) {
+      long sequenceNumber = input.getLong();
+      byte[] payload = new byte[input.getInt()];
+      input.get(payload);
+      elements[i] = new StoredElement(sequenceNumber, ByteBuffer.wrap(payload));
+    }
+    return new SequencedChain(elements);
+  }
+
+  @Override
+  public boolean equals(Object object, ByteBuffer buffer) {
+    throw new UnsupportedOperationException("Chains are never compared in their encoded form");
+  }
+}
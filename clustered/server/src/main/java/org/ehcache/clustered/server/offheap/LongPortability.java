@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.terracotta.offheapstore.storage.portability.Portability;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the {@code long} key hashes of an {@link OffHeapChainMap}.
+ */
+final class LongPortability implements Portability<Long> {
+
+  static final LongPortability INSTANCE = new LongPortability();
+
+  private LongPortability() {
+  }
+
+  @Override
+  public ByteBuffer encode(Long object) {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.putLong(0, object);
+    return buffer;
+  }
+
+  @Override
+  public Long decode(ByteBuffer buffer) {
+    return buffer.getLong(buffer.position());
+  }
+
+  @Override
+  public boolean equals(Object object, ByteBuffer buffer) {
+    return object.equals(decode(buffer));
+  }
+}
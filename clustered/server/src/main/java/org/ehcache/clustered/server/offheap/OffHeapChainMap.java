@@ -0,0 +1,255 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.SequencedElement;
+
+import org.terracotta.offheapstore.ReadWriteLockedOffHeapClockCache;
+import org.terracotta.offheapstore.exceptions.OversizeMappingException;
+import org.terracotta.offheapstore.paging.PageSource;
+import org.terracotta.offheapstore.storage.OffHeapBufferStorageEngine;
+import org.terracotta.offheapstore.storage.PointerSize;
+import org.terracotta.offheapstore.storage.StorageEngine;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A single segment of an {@link OffHeapServerStore}.
+ * <P>
+ *   Chains are stored as one offheap mapping per key.  Mutations rewrite the whole mapping under the segment write
+ *   lock while reads only take the shared read lock and hand back immutable on-heap snapshots.  When the segment is
+ *   full the underlying clock cache evicts other chains to make room, reporting each evicted key to the
+ *   {@link OffHeapServerStore.EvictionListener}.
+ * </P>
+ */
+class OffHeapChainMap {
+
+  private final HeadMap heads;
+  private final AtomicLong sequenceGenerator;
+  private final OffHeapServerStore.EvictionListener evictionListener;
+
+  OffHeapChainMap(PageSource source, int dataPageSize, int tableSize, AtomicLong sequenceGenerator,
+                  OffHeapServerStore.EvictionListener evictionListener) {
+    // data pages may be stolen from other segments, and other stores of a shared pool, when the source is exhausted
+    StorageEngine<Long, SequencedChain> storageEngine = OffHeapBufferStorageEngine.createFactory(PointerSize.INT, source,
+        dataPageSize, LongPortability.INSTANCE, ChainPortability.INSTANCE, true, true).newInstance();
+    this.heads = new HeadMap(source, storageEngine, tableSize, evictionListener);
+    this.sequenceGenerator = sequenceGenerator;
+    this.evictionListener = evictionListener;
+  }
+
+  SequencedChain get(long key) {
+    Lock lock = heads.readLock();
+    lock.lock();
+    try {
+      SequencedChain chain = heads.get(key);
+      return chain == null ? SequencedChain.EMPTY : chain;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  SequencedChain getAndAppend(long key, ByteBuffer payload) {
+    Lock lock = heads.writeLock();
+    lock.lock();
+    try {
+      SequencedChain current = heads.get(key);
+      if (current == null) {
+        current = SequencedChain.EMPTY;
+      }
+      store(key, current.append(new StoredElement(sequenceGenerator.incrementAndGet(), payload)));
+      return current;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean replaceAtHead(long key, Chain expect, Chain update) {
+    return replaceAtHead(key, expect, update, true);
+  }
+
+  /**
+   * Replaces the head of a chain, matching the {@code expect} elements either by sequence number or by payload.
+   * Payloads are matched when the expected chain was read from another server, whose sequence numbers are unrelated
+   * to this segment's.
+   *
+   * @return {@code true} if the head was replaced, {@code false} if the chain no longer starts with {@code expect}
+   */
+  boolean replaceAtHead(long key, Chain expect, Chain update, boolean matchSequence) {
+    Lock lock = heads.writeLock();
+    lock.lock();
+    try {
+      SequencedChain current = heads.get(key);
+      if (current == null) {
+        return false;
+      }
+
+      int matched = 0;
+      for (Element expected : expect) {
+        if (matched >= current.length()) {
+          return false;
+        }
+        if (matchSequence) {
+          if (!(expected instanceof SequencedElement)) {
+            throw new IllegalArgumentException("Expected chain must be made of elements read from this store : " + expected);
+          }
+          if (current.get(matched).getSequenceNumber() != ((SequencedElement) expected).getSequenceNumber()) {
+            return false;
+          }
+        } else if (!current.get(matched).getPayload().equals(expected.getPayload())) {
+          return false;
+        }
+        matched++;
+      }
+      if (matched == 0) {
+        return false;
+      }
+
+      List<StoredElement> replacement = new ArrayList<StoredElement>();
+      for (Element element : update) {
+        replacement.add(new StoredElement(sequenceGenerator.incrementAndGet(), element.getPayload()));
+      }
+      for (Iterator<StoredElement> it = current.elements().listIterator(matched); it.hasNext(); ) {
+        replacement.add(it.next());
+      }
+
+      if (replacement.isEmpty()) {
+        heads.remove(key);
+      } else {
+        store(key, new SequencedChain(replacement.toArray(new StoredElement[replacement.size()])));
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Replaces the chain of {@code key} with a copy of {@code chain}, numbered with this segment's sequence numbers.
+   */
+  void put(long key, Chain chain) {
+    List<StoredElement> elements = new ArrayList<StoredElement>();
+    for (Element element : chain) {
+      elements.add(new StoredElement(sequenceGenerator.incrementAndGet(), element.getPayload()));
+    }
+    Lock lock = heads.writeLock();
+    lock.lock();
+    try {
+      if (elements.isEmpty()) {
+        heads.remove(key);
+      } else {
+        store(key, new SequencedChain(elements.toArray(new StoredElement[elements.size()])));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the keys that currently have a chain.
+   */
+  List<Long> keys() {
+    Lock lock = heads.readLock();
+    lock.lock();
+    try {
+      return new ArrayList<Long>(heads.keySet());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void store(long key, SequencedChain chain) {
+    try {
+      heads.put(key, chain);
+    } catch (OversizeMappingException e) {
+      /*
+       * The chain cannot fit even after evicting everything else in the segment.  Dropping it is consistent with
+       * cache semantics: clients will treat the key as a miss.
+       */
+      if (heads.remove(key) != null) {
+        evictionListener.onEviction(key);
+      }
+    }
+  }
+
+  void clear() {
+    Lock lock = heads.writeLock();
+    lock.lock();
+    try {
+      heads.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long getSize() {
+    return heads.size();
+  }
+
+  /**
+   * Returns the memory held by this segment.  Takes no lock, so it may be called while allocating for another segment.
+   */
+  long getAllocatedMemory() {
+    return heads.getAllocatedMemory();
+  }
+
+  void destroy() {
+    Lock lock = heads.writeLock();
+    lock.lock();
+    try {
+      heads.destroy();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * The clock cache holding the chains, reporting the keys it evicts.
+   */
+  private static final class HeadMap extends ReadWriteLockedOffHeapClockCache<Long, SequencedChain> {
+
+    private final OffHeapServerStore.EvictionListener evictionListener;
+
+    HeadMap(PageSource source, StorageEngine<? super Long, ? super SequencedChain> storageEngine, int tableSize,
+            OffHeapServerStore.EvictionListener evictionListener) {
+      super(source, true, storageEngine, tableSize);
+      this.evictionListener = evictionListener;
+    }
+
+    @Override
+    public boolean evict(int index, boolean shrink) {
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        Entry<Long, SequencedChain> entry = getEntryAtTableOffset(index);
+        boolean evicted = super.evict(index, shrink);
+        if (evicted) {
+          evictionListener.onEviction(entry.getKey());
+        }
+        return evicted;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.ServerStore;
+
+import org.terracotta.offheapstore.buffersource.OffHeapBufferSource;
+import org.terracotta.offheapstore.paging.PageSource;
+import org.terracotta.offheapstore.paging.UpfrontAllocatingPageSource;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ServerStore} keeping its chains in offheap memory.
+ * <P>
+ *   The store is split into a power-of-two number of {@link OffHeapChainMap} segments selected by key hash.  All
+ *   segments draw their pages from the same {@link PageSource}, so the store as a whole is bounded by that source and
+ *   evicts chains once it is exhausted.  Evictions are counted, and reported to the {@link EvictionListener} if one is
+ *   set.  Operations are counted in the store's {@link ServerStoreStatistics}.
+ * </P>
+ */
+public class OffHeapServerStore implements ServerStore {
+
+  /**
+   * Notified of every chain the store drops to stay within its capacity.
+   * <P>
+   *   Called with the lock of the evicting segment held: implementations must not call back into the store.
+   * </P>
+   */
+  public interface EvictionListener {
+    void onEviction(long key);
+  }
+
+  public static final int DEFAULT_CONCURRENCY = 16;
+
+  private static final int INITIAL_TABLE_SIZE = 128;
+  private static final int MIN_DATA_PAGE_SIZE = 4 * 1024;
+  private static final int MAX_DATA_PAGE_SIZE = 1024 * 1024;
+
+  private final OffHeapChainMap[] segments;
+  private final ServerStoreStatistics statistics = new ServerStoreStatistics();
+  private volatile EvictionListener evictionListener;
+
+  /**
+   * Creates a store of {@link #DEFAULT_CONCURRENCY} segments backed by its own offheap allocation.
+   *
+   * @param size the number of bytes the store may use
+   */
+  public OffHeapServerStore(long size) {
+    this(createPageSource(size), size, DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Creates a store drawing its pages from the given source.
+   *
+   * @param source the page source shared by all segments
+   * @param size the number of bytes the store is expected to use from {@code source}, used for sizing pages
+   * @param concurrency the number of segments, rounded up to a power of two
+   */
+  public OffHeapServerStore(PageSource source, long size, int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be positive : " + concurrency);
+    }
+    int segmentCount = Integer.highestOneBit(concurrency);
+    if (segmentCount < concurrency) {
+      segmentCount <<= 1;
+    }
+    int dataPageSize = dataPageSize(size, segmentCount);
+    AtomicLong sequenceGenerator = new AtomicLong();
+    EvictionListener segmentListener = new EvictionListener() {
+      @Override
+      public void onEviction(long key) {
+        statistics.eviction();
+        EvictionListener listener = evictionListener;
+        if (listener != null) {
+          listener.onEviction(key);
+        }
+      }
+    };
+    this.segments = new OffHeapChainMap[segmentCount];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new OffHeapChainMap(source, dataPageSize, INITIAL_TABLE_SIZE, sequenceGenerator, segmentListener);
+    }
+  }
+
+  /**
+   * Creates a page source reserving {@code size} bytes of offheap memory up front.
+   *
+   * @param size the number of bytes to reserve
+   * @return a new page source
+   */
+  public static PageSource createPageSource(long size) {
+    int maxChunk = (int) Math.min(size, 1024L * 1024L * 1024L);
+    int minChunk = Math.min(maxChunk, MAX_DATA_PAGE_SIZE);
+    return new UpfrontAllocatingPageSource(new OffHeapBufferSource(), size, maxChunk, minChunk);
+  }
+
+  private static int dataPageSize(long size, int segmentCount) {
+    long perSegment = size / segmentCount / 4;
+    int pageSize = (int) Long.highestOneBit(Math.max(Math.min(perSegment, MAX_DATA_PAGE_SIZE), 1));
+    return Math.max(pageSize, MIN_DATA_PAGE_SIZE);
+  }
+
+  private OffHeapChainMap segmentFor(long key) {
+    return segments[spread(key) & (segments.length - 1)];
+  }
+
+  private static int spread(long key) {
+    int hash = (int) (key ^ (key >>> 32));
+    return hash ^ (hash >>> 16);
+  }
+
+  @Override
+  public Chain get(long key) {
+    statistics.get();
+    return served(segmentFor(key).get(key));
+  }
+
+  @Override
+  public Chain getUntracked(long key) {
+    return get(key);
+  }
+
+  @Override
+  public void append(long key, ByteBuffer payLoad) {
+    statistics.append(payLoad.remaining());
+    segmentFor(key).getAndAppend(key, payLoad);
+  }
+
+  @Override
+  public Chain getAndAppend(long key, ByteBuffer payLoad) {
+    statistics.append(payLoad.remaining());
+    return served(segmentFor(key).getAndAppend(key, payLoad));
+  }
+
+  private Chain served(SequencedChain chain) {
+    statistics.served(chain);
+    return chain;
+  }
+
+  @Override
+  public Chain[] getAll(long[] keys) {
+    Chain[] chains = new Chain[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      chains[i] = get(keys[i]);
+    }
+    return chains;
+  }
+
+  @Override
+  public Chain[] getAndAppendAll(long[] keys, ByteBuffer[] payLoads) {
+    if (keys.length != payLoads.length) {
+      throw new IllegalArgumentException("Expected one payload per key : " + keys.length + " keys, " + payLoads.length + " payloads");
+    }
+    Chain[] chains = new Chain[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      chains[i] = getAndAppend(keys[i], payLoads[i]);
+    }
+    return chains;
+  }
+
+  @Override
+  public void replaceAtHead(long key, Chain expect, Chain update) {
+    statistics.replaceAtHead(segmentFor(key).replaceAtHead(key, expect, update));
+  }
+
+  /**
+   * Applies a {@link #replaceAtHead(long, Chain, Chain)} computed against another server's copy of the chain.  The
+   * expected elements are matched by payload, since sequence numbers are local to each server.
+   *
+   * @param key key of the chain
+   * @param expect the head of the chain as seen by the other server
+   * @param update the replacement head
+   */
+  public void replicateReplaceAtHead(long key, Chain expect, Chain update) {
+    segmentFor(key).replaceAtHead(key, expect, update, false);
+  }
+
+  /**
+   * Replaces the chain of {@code key} with a copy of {@code chain}, or removes it if {@code chain} is empty.
+   *
+   * @param key key of the chain
+   * @param chain the new chain
+   */
+  public void put(long key, Chain chain) {
+    segmentFor(key).put(key, chain);
+  }
+
+  /**
+   * Returns a snapshot of the keys falling in {@code stripe} when the key space is split in {@code stripeCount}
+   * stripes using the same hash spreading as segment selection.
+   *
+   * @param stripe the stripe index
+   * @param stripeCount the number of stripes, a power of two
+   * @return the keys of the stripe
+   */
+  @Override
+  public long[] getStripeKeys(int stripe, int stripeCount) {
+    if (Integer.bitCount(stripeCount) != 1 || stripe < 0 || stripe >= stripeCount) {
+      throw new IllegalArgumentException("Invalid stripe " + stripe + " of " + stripeCount);
+    }
+    int stripeMask = stripeCount - 1;
+    int segmentMask = segments.length - 1;
+    List<Long> keys = new ArrayList<Long>();
+    for (int i = 0; i < segments.length; i++) {
+      // segments and stripes both select on the low bits of the spread hash
+      if ((i & stripeMask) == (stripe & segmentMask)) {
+        for (Long key : segments[i].keys()) {
+          if ((spread(key) & stripeMask) == stripe) {
+            keys.add(key);
+          }
+        }
+      }
+    }
+    long[] keyArray = new long[keys.size()];
+    for (int i = 0; i < keyArray.length; i++) {
+      keyArray[i] = keys.get(i);
+    }
+    return keyArray;
+  }
+
+  @Override
+  public void clear() {
+    for (OffHeapChainMap segment : segments) {
+      segment.clear();
+    }
+  }
+
+  public void setEvictionListener(EvictionListener evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * Returns the number of chains evicted since the store was created.
+   *
+   * @return the eviction count
+   */
+  public long getEvictionCount() {
+    return statistics.getEvictions();
+  }
+
+  /**
+   * Returns the distribution of the number of elements in the chains returned by reads and appends.
+   *
+   * @return the chain length histogram
+   * @see ServerStoreStatistics#getChainLengthHistogram()
+   */
+  public ChainHistogram getChainLengthHistogram() {
+    return statistics.getChainLengthHistogram();
+  }
+
+  /**
+   * Returns the distribution of the payload bytes of the chains returned by reads and appends.
+   *
+   * @return the chain size histogram
+   * @see ServerStoreStatistics#getChainSizeHistogram()
+   */
+  public ChainHistogram getChainSizeHistogram() {
+    return statistics.getChainSizeHistogram();
+  }
+
+  /**
+   * Returns the operation counters of this store.  Replicated operations applied through
+   * {@link #replicateReplaceAtHead(long, Chain, Chain)} and {@link #put(long, Chain)} are not counted.
+   *
+   * @return the store statistics
+   */
+  public ServerStoreStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Returns the number of keys that currently have a chain.
+   *
+   * @return the key count
+   */
+  public long getSize() {
+    long size = 0;
+    for (OffHeapChainMap segment : segments) {
+      size += segment.getSize();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the offheap memory currently held by this store, tables included.
+   *
+   * @return the allocated bytes
+   */
+  public long getAllocatedMemory() {
+    long allocated = 0;
+    for (OffHeapChainMap segment : segments) {
+      allocated += segment.getAllocatedMemory();
+    }
+    return allocated;
+  }
+
+  /**
+   * Releases all offheap memory held by this store.  The store must not be used afterwards.
+   */
+  public void destroy() {
+    for (OffHeapChainMap segment : segments) {
+      segment.destroy();
+    }
+  }
+}
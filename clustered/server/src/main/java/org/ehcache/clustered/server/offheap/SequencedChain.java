@@ -0,0 +1,125 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable on-heap snapshot of a chain held in an {@link OffHeapChainMap}.
+ */
+final class SequencedChain implements Chain {
+
+  static final SequencedChain EMPTY = new SequencedChain(new StoredElement[0]);
+
+  private final StoredElement[] elements;
+
+  SequencedChain(StoredElement[] elements) {
+    this.elements = elements;
+  }
+
+  int length() {
+    return elements.length;
+  }
+
+  /**
+   * Returns the total payload size of the chain, in bytes.
+   */
+  long size() {
+    long size = 0;
+    for (StoredElement element : elements) {
+      size += element.size();
+    }
+    return size;
+  }
+
+  StoredElement get(int index) {
+    return elements[index];
+  }
+
+  List<StoredElement> elements() {
+    return Collections.unmodifiableList(Arrays.asList(elements));
+  }
+
+  SequencedChain append(StoredElement element) {
+    StoredElement[] appended = Arrays.copyOf(elements, elements.length + 1);
+    appended[elements.length] = element;
+    return new SequencedChain(appended);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return elements.length == 0;
+  }
+
+  @Override
+  public Iterator<Element> iterator() {
+    return new Iterator<Element>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < elements.length;
+      }
+
+      @Override
+      public Element next() {
+        if (hasNext()) {
+          return elements[next++];
+        } else {
+          throw new NoSuchElementException();
+        }
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Remove operation is not supported");
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Element> reverseIterator() {
+    return new Iterator<Element>() {
+      private int next = elements.length - 1;
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public Element next() {
+        if (hasNext()) {
+          return elements[next--];
+        } else {
+          throw new NoSuchElementException();
+        }
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("Remove operation is not supported");
+      }
+    };
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operation counters of an {@link OffHeapServerStore}.
+ * <P>
+ *   Counters are striped so that updating them on every operation stays cheap under concurrency.  Values are read
+ *   without coordination between counters, so a snapshot taken under load may be slightly inconsistent.
+ * </P>
+ */
+public final class ServerStoreStatistics {
+
+  private final StripedCounter gets = new StripedCounter();
+  private final StripedCounter appends = new StripedCounter();
+  private final StripedCounter appendedBytes = new StripedCounter();
+  private final StripedCounter replaceSuccesses = new StripedCounter();
+  private final StripedCounter replaceFailures = new StripedCounter();
+  private final StripedCounter evictions = new StripedCounter();
+  private final ChainHistogram chainLengths = new ChainHistogram();
+  private final ChainHistogram chainSizes = new ChainHistogram();
+
+  void get() {
+    gets.increment();
+  }
+
+  void append(int bytes) {
+    appends.increment();
+    appendedBytes.add(bytes);
+  }
+
+  void replaceAtHead(boolean replaced) {
+    if (replaced) {
+      replaceSuccesses.increment();
+    } else {
+      replaceFailures.increment();
+    }
+  }
+
+  void eviction() {
+    evictions.increment();
+  }
+
+  void served(SequencedChain chain) {
+    chainLengths.record(chain.length());
+    chainSizes.record(chain.size());
+  }
+
+  public long getGets() {
+    return gets.sum();
+  }
+
+  public long getAppends() {
+    return appends.sum();
+  }
+
+  /**
+   * Returns the payload bytes appended, which is the write traffic of the store.
+   *
+   * @return the appended bytes
+   */
+  public long getAppendedBytes() {
+    return appendedBytes.sum();
+  }
+
+  public long getReplaceSuccesses() {
+    return replaceSuccesses.sum();
+  }
+
+  /**
+   * Returns the number of {@code replaceAtHead} calls that found the chain changed, typically because another client
+   * appended or compacted first.
+   *
+   * @return the failed replace count
+   */
+  public long getReplaceFailures() {
+    return replaceFailures.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the distribution of the number of elements in the chains returned by reads and appends, which is how
+   * many operations a client replays per access.
+   *
+   * @return the chain length histogram
+   */
+  public ChainHistogram getChainLengthHistogram() {
+    return chainLengths;
+  }
+
+  /**
+   * Returns the distribution of the payload bytes of the chains returned by reads and appends.
+   *
+   * @return the chain size histogram
+   */
+  public ChainHistogram getChainSizeHistogram() {
+    return chainSizes;
+  }
+
+  /**
+   * Returns the current value of every counter, keyed by counter name.
+   *
+   * @return the counter values
+   */
+  public Map<String, Long> getCounters() {
+    Map<String, Long> counters = new LinkedHashMap<String, Long>();
+    counters.put("gets", getGets());
+    counters.put("appends", getAppends());
+    counters.put("appendedBytes", getAppendedBytes());
+    counters.put("replaceSuccesses", getReplaceSuccesses());
+    counters.put("replaceFailures", getReplaceFailures());
+    counters.put("evictions", getEvictions());
+    return counters;
+  }
+
+  @Override
+  public String toString() {
+    return "gets=" + getGets()
+        + " appends=" + getAppends()
+        + " appendedBytes=" + getAppendedBytes()
+        + " replaceSuccesses=" + getReplaceSuccesses()
+        + " replaceFailures=" + getReplaceFailures()
+        + " evictions=" + getEvictions()
+        + " chainLengths=" + chainLengths
+        + " chainSizes=" + chainSizes;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.terracotta.offheapstore.paging.OffHeapStorageArea;
+import org.terracotta.offheapstore.paging.Page;
+import org.terracotta.offheapstore.paging.PageSource;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out the pages of a shared pool to the server stores using it.
+ * <P>
+ *   Each store draws its pages through its own view of the pool.  Free pages go to whichever store asks first, so a
+ *   single busy store may fill an otherwise idle pool.  Once the pool is exhausted, a store may only take pages from
+ *   other stores while it holds less than its fair share - the pool size split between the stores in proportion to
+ *   their weights.  A store at or above its share evicts its own chains instead, which lets starved stores win their
+ *   pages back from a store that grew while they were idle.
+ * </P>
+ */
+public class SharedPoolAllocator {
+
+  public static final int DEFAULT_WEIGHT = 1;
+
+  private final PageSource source;
+  private final long size;
+  private final ConcurrentMap<String, StoreAllocation> allocations = new ConcurrentHashMap<String, StoreAllocation>();
+
+  public SharedPoolAllocator(long size) {
+    this.source = OffHeapServerStore.createPageSource(size);
+    this.size = size;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Creates a store drawing its pages from this pool.
+   *
+   * @param name the store name
+   * @param weight the weight of the store when splitting the pool
+   * @return the new store
+   * @throws IllegalStateException if a store with this name already uses the pool
+   */
+  public OffHeapServerStore createStore(String name, int weight) throws IllegalStateException {
+    if (weight <= 0) {
+      throw new IllegalArgumentException("Weight must be positive : " + weight);
+    }
+    StoreAllocation allocation = new StoreAllocation(weight);
+    if (allocations.putIfAbsent(name, allocation) != null) {
+      throw new IllegalStateException("Server store '" + name + "' already uses this pool");
+    }
+    OffHeapServerStore store = new OffHeapServerStore(allocation, size, OffHeapServerStore.DEFAULT_CONCURRENCY);
+    allocation.store = store;
+    return store;
+  }
+
+  /**
+   * Destroys a store created by this pool, returning its pages.
+   *
+   * @param name the store name
+   */
+  public void destroyStore(String name) {
+    StoreAllocation allocation = allocations.remove(name);
+    if (allocation != null && allocation.store != null) {
+      allocation.store.destroy();
+    }
+  }
+
+  /**
+   * Returns the memory currently held by each store of the pool.
+   *
+   * @return store name to occupied bytes
+   */
+  public Map<String, Long> getOccupancy() {
+    Map<String, Long> occupancy = new HashMap<String, Long>();
+    for (Map.Entry<String, StoreAllocation> allocation : allocations.entrySet()) {
+      occupancy.put(allocation.getKey(), allocation.getValue().occupancy());
+    }
+    return Collections.unmodifiableMap(occupancy);
+  }
+
+  /**
+   * Returns the share of the pool a store is guaranteed to be able to reclaim.
+   *
+   * @param name the store name
+   * @return the fair share in bytes, or {@code 0} if the store does not use this pool
+   */
+  public long getFairShare(String name) {
+    StoreAllocation allocation = allocations.get(name);
+    return allocation == null ? 0L : fairShare(allocation);
+  }
+
+  private long fairShare(StoreAllocation allocation) {
+    long totalWeight = 0;
+    for (StoreAllocation other : allocations.values()) {
+      totalWeight += other.weight;
+    }
+    if (totalWeight == 0) {
+      return size;
+    }
+    return size / totalWeight * allocation.weight;
+  }
+
+  /**
+   * The view of the pool used by a single store.
+   */
+  private final class StoreAllocation implements PageSource {
+
+    private final int weight;
+    private volatile OffHeapServerStore store;
+
+    StoreAllocation(int weight) {
+      this.weight = weight;
+    }
+
+    long occupancy() {
+      OffHeapServerStore current = store;
+      return current == null ? 0L : current.getAllocatedMemory();
+    }
+
+    @Override
+    public Page allocate(int size, boolean thief, boolean victim, OffHeapStorageArea owner) {
+      boolean underShare = occupancy() + size <= fairShare(this);
+      return source.allocate(size, thief && underShare, victim, owner);
+    }
+
+    @Override
+    public void free(Page page) {
+      source.free(page);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.ehcache.clustered.common.store.SequencedElement;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable {@link SequencedElement} decoded from offheap storage.
+ */
+final class StoredElement implements SequencedElement {
+
+  private final long sequenceNumber;
+  private final ByteBuffer payload;
+
+  StoredElement(long sequenceNumber, ByteBuffer payload) {
+    this.sequenceNumber = sequenceNumber;
+    this.payload = payload.asReadOnlyBuffer();
+  }
+
+  @Override
+  public long getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  int size() {
+    return payload.remaining();
+  }
+
+  @Override
+  public ByteBuffer getPayload() {
+    return payload.duplicate();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.junit.Test;
+import org.terracotta.entity.ConcurrencyStrategy;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.ehcache.clustered.server.ConcurrencyStrategies.KeyHashConcurrencyStrategy.DATA_KEY_OFFSET;
+import static org.ehcache.clustered.server.ConcurrencyStrategies.KeyHashConcurrencyStrategy.MANAGEMENT_KEY;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class ConcurrencyStrategiesTest {
+
+  private final ConcurrencyStrategy<EhcacheEntityMessage> strategy = ConcurrencyStrategies.keyHashConcurrency(4);
+
+  @Test
+  public void testManagementMessagesUseManagementKey() {
+    assertThat(strategy.concurrencyKey(EhcacheEntityMessage.configure(new ServerSideConfiguration(1))), is(MANAGEMENT_KEY));
+    assertThat(strategy.concurrencyKey(EhcacheEntityMessage.destroyServerStore("cache")), is(MANAGEMENT_KEY));
+    assertThat(strategy.concurrencyKey(ServerStoreOpMessage.clearOperation("cache")), is(MANAGEMENT_KEY));
+  }
+
+  @Test
+  public void testDataMessagesAreSpreadByKeyHash() {
+    Set<Integer> keys = new HashSet<Integer>();
+    for (long key = -64; key < 64; key++) {
+      int concurrencyKey = strategy.concurrencyKey(ServerStoreOpMessage.getOperation("cache", key));
+      assertThat(concurrencyKey, not(MANAGEMENT_KEY));
+      assertThat(strategy.getKeysForSynchronization().contains(concurrencyKey), is(true));
+      keys.add(concurrencyKey);
+    }
+    assertThat(keys, containsInAnyOrder(DATA_KEY_OFFSET, DATA_KEY_OFFSET + 1, DATA_KEY_OFFSET + 2, DATA_KEY_OFFSET + 3));
+  }
+
+  @Test
+  public void testSameKeyHashSharesConcurrencyKey() {
+    int getKey = strategy.concurrencyKey(ServerStoreOpMessage.getOperation("cache", 42L));
+    int appendKey = strategy.concurrencyKey(ServerStoreOpMessage.appendOperation("other", 42L, ByteBuffer.allocate(1)));
+    assertThat(appendKey, is(getKey));
+  }
+
+  @Test
+  public void testBucketCountIsRoundedToPowerOfTwo() {
+    assertThat(ConcurrencyStrategies.<EhcacheEntityMessage>keyHashConcurrency(3).getKeysForSynchronization(),
+        containsInAnyOrder(MANAGEMENT_KEY, DATA_KEY_OFFSET, DATA_KEY_OFFSET + 1, DATA_KEY_OFFSET + 2, DATA_KEY_OFFSET + 3));
+  }
+}
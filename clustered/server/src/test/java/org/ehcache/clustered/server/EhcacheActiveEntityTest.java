@@ -15,9 +15,54 @@
  */
 package org.ehcache.clustered.server;
 
+import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.CompactChain;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetAllResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.GetResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.HashInvalidationDone;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateHash;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.KeysResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.PoolOccupancyResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.StatisticsResponse;
+import org.ehcache.clustered.common.messages.ReconnectData;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
 
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  *
@@ -28,7 +73,7 @@ public class EhcacheActiveEntityTest {
   @Test
   public void testConfigTooShort() {
     try {
-      new EhcacheActiveEntity(new byte[15]);
+      new EhcacheActiveEntity(new byte[15], mock(ClientCommunicator.class));
       fail("Expected IllegalArgumentException");
     } catch (IllegalArgumentException e) {
       //expected
@@ -38,7 +83,7 @@ public class EhcacheActiveEntityTest {
   @Test
   public void testConfigTooLong() {
     try {
-      new EhcacheActiveEntity(new byte[17]);
+      new EhcacheActiveEntity(new byte[17], mock(ClientCommunicator.class));
       fail("Expected IllegalArgumentException");
     } catch (IllegalArgumentException e) {
       //expected
@@ -48,10 +93,386 @@ public class EhcacheActiveEntityTest {
   @Test
   public void testConfigNull() {
     try {
-      new EhcacheActiveEntity(null);
+      new EhcacheActiveEntity(null, mock(ClientCommunicator.class));
       fail("Expected NullPointerException");
     } catch (NullPointerException e) {
       //expected
     }
   }
+
+  @Test
+  public void testCreateServerStoreWithFixedAllocation() {
+    EhcacheActiveEntity entity = configuredEntity();
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Fixed("primary", 1024 * 1024))));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+
+    OffHeapServerStore store = entity.getServerStore("cache");
+    assertThat(store, notNullValue());
+    store.append(1L, ByteBuffer.wrap(new byte[] {42}));
+    assertThat(store.get(1L).isEmpty(), is(false));
+    entity.destroy();
+  }
+
+  @Test
+  public void testCreateServerStoreWithSharedAllocation() {
+    EhcacheActiveEntity entity = configuredEntity();
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("shared"))));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+    assertThat(entity.getServerStore("cache"), notNullValue());
+    entity.destroy();
+  }
+
+  @Test
+  public void testCreateServerStoreWithUnknownSharedPool() {
+    EhcacheActiveEntity entity = configuredEntity();
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("unknown"))));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.FAILURE));
+    assertThat(((EhcacheEntityResponse.Failure) response).getCause(), instanceOf(IllegalArgumentException.class));
+    assertThat(entity.getServerStore("cache"), nullValue());
+  }
+
+  @Test
+  public void testCreateDuplicateServerStore() {
+    EhcacheActiveEntity entity = configuredEntity();
+    ServerStoreConfiguration storeConfiguration = new ServerStoreConfiguration(new PoolAllocation.Shared("shared"));
+    entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.createServerStore("cache", storeConfiguration));
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", storeConfiguration));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.FAILURE));
+    assertThat(((EhcacheEntityResponse.Failure) response).getCause(), instanceOf(IllegalStateException.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testDestroyServerStore() {
+    EhcacheActiveEntity entity = configuredEntity();
+    entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("shared"))));
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.destroyServerStore("cache"));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+    assertThat(entity.getServerStore("cache"), nullValue());
+
+    response = entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.destroyServerStore("cache"));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.FAILURE));
+  }
+
+  @Test
+  public void testGetStatistics() {
+    EhcacheActiveEntity entity = storeEntity(mock(ClientCommunicator.class), Consistency.EVENTUAL);
+    ClientDescriptor client = mock(ClientDescriptor.class);
+    entity.invoke(client, ServerStoreOpMessage.getOperation("cache", 1L));
+    entity.invoke(client, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1, 2, 3})));
+
+    EhcacheEntityResponse response = entity.invoke(client, EhcacheEntityMessage.getStatistics());
+
+    Map<String, Map<String, Long>> statistics = ((StatisticsResponse) response).getStatistics();
+    assertThat(statistics.keySet(), is(Collections.singleton("cache")));
+    assertThat(statistics.get("cache").get("gets"), is(1L));
+    assertThat(statistics.get("cache").get("appends"), is(1L));
+    assertThat(statistics.get("cache").get("appendedBytes"), is(3L));
+    entity.destroy();
+  }
+
+  @Test
+  public void testGetPoolOccupancy() {
+    EhcacheActiveEntity entity = configuredEntity();
+    ClientDescriptor client = mock(ClientDescriptor.class);
+    entity.invoke(client, EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("shared"))));
+    entity.getServerStore("cache").append(1L, ByteBuffer.wrap(new byte[] {42}));
+
+    PoolOccupancyResponse response = (PoolOccupancyResponse) entity.invoke(client, EhcacheEntityMessage.getPoolOccupancy());
+
+    assertThat(response.getPoolSizes().keySet(), is(Collections.singleton("shared")));
+    assertThat(response.getOccupancy().get("shared").keySet(), is(Collections.singleton("cache")));
+    assertThat(response.getOccupancy().get("shared").get("cache"), greaterThan(0L));
+    assertThat(response.getFairShares().get("shared").get("cache"), is(response.getPoolSizes().get("shared")));
+    entity.destroy();
+  }
+
+  @Test
+  public void testEventualAppendInvalidatesOtherReaders() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor reader = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    entity.invoke(reader, ServerStoreOpMessage.getOperation("cache", 1L));
+    entity.invoke(writer, ServerStoreOpMessage.getOperation("cache", 1L));
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(reader), sent.capture());
+    InvalidateHash invalidation = (InvalidateHash) sent.getValue();
+    assertThat(invalidation.getCacheId(), is("cache"));
+    assertThat(invalidation.getKey(), is(1L));
+    assertThat(invalidation.getInvalidationId(), is(EhcacheEntityResponse.NO_ACK));
+    verify(communicator, never()).sendNoResponse(eq(writer), any(EhcacheEntityResponse.class));
+
+    // the reader was forgotten, the writer is still tracked
+    entity.invoke(reader, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {2})));
+    verify(communicator).sendNoResponse(eq(writer), any(InvalidateHash.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testUntrackedGetIsNotInvalidated() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor compactor = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    EhcacheEntityResponse response = entity.invoke(compactor, ServerStoreOpMessage.getUntrackedOperation("cache", 1L));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.GET_RESPONSE));
+    assertThat(((GetResponse) response).getChain().isEmpty(), is(false));
+
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {2})));
+    verify(communicator, never()).sendNoResponse(eq(compactor), any(EhcacheEntityResponse.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testReconnectedClientIsInvalidatedForHeldHashes() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor reconnected = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    ReconnectData reconnectData = new ReconnectData();
+    reconnectData.add("cache", Collections.singleton(1L));
+    reconnectData.add("unknown", Collections.singleton(1L));
+    entity.handleReconnect(reconnected, reconnectData.encode());
+
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 2L, ByteBuffer.wrap(new byte[] {1})));
+    verify(communicator, never()).sendNoResponse(eq(reconnected), any(EhcacheEntityResponse.class));
+
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(reconnected), sent.capture());
+    assertThat(((InvalidateHash) sent.getValue()).getKey(), is(1L));
+    entity.destroy();
+  }
+
+  @Test
+  public void testReconnectWithoutData() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor reconnected = mock(ClientDescriptor.class);
+    entity.handleReconnect(reconnected, new byte[0]);
+
+    entity.invoke(mock(ClientDescriptor.class), ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    verify(communicator, never()).sendNoResponse(eq(reconnected), any(EhcacheEntityResponse.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testStripeKeysPartitionTheStore() throws Exception {
+    EhcacheActiveEntity entity = storeEntity(mock(ClientCommunicator.class), Consistency.EVENTUAL);
+    ClientDescriptor client = mock(ClientDescriptor.class);
+    for (long key = 0; key < 100; key++) {
+      entity.invoke(client, ServerStoreOpMessage.appendOperation("cache", key, ByteBuffer.wrap(new byte[] {1})));
+    }
+
+    Set<Long> keys = new HashSet<Long>();
+    for (int stripe = 0; stripe < 8; stripe++) {
+      KeysResponse response = (KeysResponse) entity.invoke(client, ServerStoreOpMessage.getStripeKeysOperation("cache", stripe, 8));
+      for (long key : response.getKeys()) {
+        assertThat(keys.add(key), is(true));
+      }
+    }
+    assertThat(keys.size(), is(100));
+
+    EhcacheEntityResponse invalid = entity.invoke(client, ServerStoreOpMessage.getStripeKeysOperation("cache", 0, 3));
+    assertThat(invalid.getType(), is(EhcacheEntityResponse.Type.FAILURE));
+    entity.destroy();
+  }
+
+  @Test
+  public void testStrongAppendCompletesOnceAllReadersAcknowledged() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.STRONG);
+    ClientDescriptor readerA = mock(ClientDescriptor.class);
+    ClientDescriptor readerB = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    entity.invoke(readerA, ServerStoreOpMessage.getOperation("cache", 1L));
+    entity.invoke(readerB, ServerStoreOpMessage.getOperation("cache", 1L));
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(readerA), sent.capture());
+    int invalidationId = ((InvalidateHash) sent.getValue()).getInvalidationId();
+    verify(communicator).sendNoResponse(eq(readerB), any(InvalidateHash.class));
+
+    entity.invoke(readerA, ServerStoreOpMessage.clientInvalidationAck("cache", invalidationId));
+    verify(communicator, never()).sendNoResponse(eq(writer), any(EhcacheEntityResponse.class));
+
+    entity.disconnected(readerB);
+    verify(communicator).sendNoResponse(eq(writer), sent.capture());
+    HashInvalidationDone done = (HashInvalidationDone) sent.getValue();
+    assertThat(done.getCacheId(), is("cache"));
+    assertThat(done.getKey(), is(1L));
+    entity.destroy();
+  }
+
+  @Test
+  public void testStrongClearWithoutReadersCompletesImmediately() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.STRONG);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    entity.invoke(writer, ServerStoreOpMessage.clearOperation("cache"));
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(writer), sent.capture());
+    assertThat(sent.getValue().getType(), is(EhcacheEntityResponse.Type.ALL_INVALIDATION_DONE));
+    entity.destroy();
+  }
+
+  @Test
+  public void testBatchedGetAndAppendAllInvalidatesEachKeyOnce() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor reader = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    GetAllResponse empty = (GetAllResponse) entity.invoke(reader, ServerStoreOpMessage.getAllOperation("cache", new long[] {1L, 2L}));
+    assertThat(empty.getChains().length, is(2));
+    assertThat(empty.getChains()[0].isEmpty(), is(true));
+    assertThat(empty.getChains()[1].isEmpty(), is(true));
+
+    GetAllResponse previous = (GetAllResponse) entity.invoke(writer, ServerStoreOpMessage.getAndAppendAllOperation("cache",
+        new long[] {1L, 2L, 1L}, new ByteBuffer[] {ByteBuffer.wrap(new byte[] {1}), ByteBuffer.wrap(new byte[] {2}), ByteBuffer.wrap(new byte[] {3})}));
+    assertThat(previous.getChains().length, is(3));
+    assertThat(previous.getChains()[0].isEmpty(), is(true));
+    assertThat(previous.getChains()[2].iterator().next().getPayload(), is(ByteBuffer.wrap(new byte[] {1})));
+    verify(communicator, times(2)).sendNoResponse(eq(reader), any(InvalidateHash.class));
+
+    GetAllResponse current = (GetAllResponse) entity.invoke(reader, ServerStoreOpMessage.getAllOperation("cache", new long[] {1L, 2L}));
+    assertThat(payloads(current.getChains()[0]), is(new int[] {1, 3}));
+    assertThat(payloads(current.getChains()[1]), is(new int[] {2}));
+    entity.destroy();
+  }
+
+  @Test
+  public void testEvictionInvalidatesHolders() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = configuredEntity(communicator);
+    entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.createServerStore("cache",
+        new ServerStoreConfiguration(new PoolAllocation.Fixed("primary", 1024 * 1024), Consistency.EVENTUAL)));
+    ClientDescriptor reader = mock(ClientDescriptor.class);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    int readKeys = 256;
+    for (long key = 0; key < readKeys; key++) {
+      entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", key, ByteBuffer.allocate(1024)));
+      entity.invoke(reader, ServerStoreOpMessage.getOperation("cache", key));
+    }
+    // only other keys are written from now on: any invalidation of the read keys comes from an eviction
+    for (long key = readKeys; key < 8 * 1024; key++) {
+      entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", key, ByteBuffer.allocate(1024)));
+    }
+    assertThat(entity.getServerStore("cache").getEvictionCount(), greaterThan(0L));
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator, atLeastOnce()).sendNoResponse(eq(reader), sent.capture());
+    for (EhcacheEntityResponse response : sent.getAllValues()) {
+      InvalidateHash invalidation = (InvalidateHash) response;
+      assertThat(invalidation.getKey(), lessThan((long) readKeys));
+      assertThat(invalidation.getInvalidationId(), is(EhcacheEntityResponse.NO_ACK));
+      assertThat(entity.getServerStore("cache").get(invalidation.getKey()).isEmpty(), is(true));
+    }
+    entity.destroy();
+  }
+
+  @Test
+  public void testLongChainsRequestCompactionFromTheAppender() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = storeEntity(communicator, Consistency.EVENTUAL);
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    for (int i = 0; i < EhcacheActiveEntity.COMPACTION_LENGTH_THRESHOLD - 1; i++) {
+      entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    }
+    verify(communicator, never()).sendNoResponse(eq(writer), any(CompactChain.class));
+
+    entity.invoke(writer, ServerStoreOpMessage.getAndAppendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(writer), sent.capture());
+    CompactChain request = (CompactChain) sent.getValue();
+    assertThat(request.getCacheId(), is("cache"));
+    assertThat(request.getKey(), is(1L));
+
+    // no further request until the chain doubles
+    for (int i = 0; i < EhcacheActiveEntity.COMPACTION_LENGTH_THRESHOLD - 1; i++) {
+      entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    }
+    verify(communicator, times(1)).sendNoResponse(eq(writer), any(CompactChain.class));
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    verify(communicator, times(2)).sendNoResponse(eq(writer), any(CompactChain.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testLargeChainsRequestCompaction() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity entity = configuredEntity(communicator);
+    // large enough for data pages to hold a chain past the size threshold
+    entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.createServerStore("big",
+        new ServerStoreConfiguration(new PoolAllocation.Fixed("primary", 64 * 1024 * 1024))));
+    ClientDescriptor writer = mock(ClientDescriptor.class);
+
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("big", 1L, ByteBuffer.allocate(EhcacheActiveEntity.COMPACTION_SIZE_THRESHOLD - 1)));
+    verify(communicator, never()).sendNoResponse(eq(writer), any(CompactChain.class));
+    entity.invoke(writer, ServerStoreOpMessage.appendOperation("big", 1L, ByteBuffer.allocate(1)));
+    verify(communicator).sendNoResponse(eq(writer), any(CompactChain.class));
+    entity.destroy();
+  }
+
+  @Test
+  public void testThresholdCrossings() {
+    assertThat(EhcacheActiveEntity.crossesThreshold(30, 31, 32), is(false));
+    assertThat(EhcacheActiveEntity.crossesThreshold(31, 32, 32), is(true));
+    assertThat(EhcacheActiveEntity.crossesThreshold(32, 33, 32), is(false));
+    assertThat(EhcacheActiveEntity.crossesThreshold(63, 64, 32), is(true));
+    assertThat(EhcacheActiveEntity.crossesThreshold(64, 100, 32), is(false));
+    assertThat(EhcacheActiveEntity.crossesThreshold(100, 128, 32), is(true));
+  }
+
+  private static int[] payloads(Chain chain) {
+    int length = 0;
+    for (Iterator<Element> it = chain.iterator(); it.hasNext(); it.next()) {
+      length++;
+    }
+    int[] payloads = new int[length];
+    int i = 0;
+    for (Element element : chain) {
+      payloads[i++] = element.getPayload().get(0);
+    }
+    return payloads;
+  }
+
+  private static EhcacheActiveEntity storeEntity(ClientCommunicator communicator, Consistency consistency) {
+    EhcacheActiveEntity entity = configuredEntity(communicator);
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class),
+        EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("shared"), consistency)));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+    return entity;
+  }
+
+  private static EhcacheActiveEntity configuredEntity() {
+    return configuredEntity(mock(ClientCommunicator.class));
+  }
+
+  private static EhcacheActiveEntity configuredEntity(ClientCommunicator communicator) {
+    EhcacheActiveEntity entity = new EhcacheActiveEntity(ClusteredEhcacheIdentity.serialize(UUID.randomUUID()), communicator);
+    ServerSideConfiguration configuration = new ServerSideConfiguration(0,
+        Collections.singletonMap("shared", new ServerSideConfiguration.Pool("primary", 4 * 1024 * 1024)));
+    EhcacheEntityResponse response = entity.invoke(mock(ClientDescriptor.class), EhcacheEntityMessage.configure(configuration));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+    return entity;
+  }
 }
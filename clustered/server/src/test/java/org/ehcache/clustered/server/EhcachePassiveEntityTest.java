@@ -0,0 +1,265 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server;
+
+import org.ehcache.clustered.common.ClusteredEhcacheIdentity;
+import org.ehcache.clustered.common.Consistency;
+import org.ehcache.clustered.common.PoolAllocation;
+import org.ehcache.clustered.common.ServerSideConfiguration;
+import org.ehcache.clustered.common.ServerStoreConfiguration;
+import org.ehcache.clustered.common.messages.EhcacheEntityMessage;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateAll;
+import org.ehcache.clustered.common.messages.EhcacheEntityResponse.InvalidateHash;
+import org.ehcache.clustered.common.messages.EhcacheSyncCodec;
+import org.ehcache.clustered.common.messages.ReconnectData;
+import org.ehcache.clustered.common.messages.ServerStoreOpMessage;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.server.ConcurrencyStrategies.KeyHashConcurrencyStrategy;
+import org.ehcache.clustered.server.offheap.OffHeapServerStore;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.PassiveSynchronizationChannel;
+import org.terracotta.entity.SyncMessageCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class EhcachePassiveEntityTest {
+
+  private static final ServerSideConfiguration CONFIGURATION = new ServerSideConfiguration(0,
+      Collections.singletonMap("shared", new ServerSideConfiguration.Pool("primary", 4 * 1024 * 1024)));
+  private static final ServerStoreConfiguration STORE_CONFIGURATION =
+      new ServerStoreConfiguration(new PoolAllocation.Shared("shared"), Consistency.STRONG);
+  private static final ServerStoreConfiguration EVENTUAL_STORE_CONFIGURATION =
+      new ServerStoreConfiguration(new PoolAllocation.Shared("shared"), Consistency.EVENTUAL);
+
+  @Test
+  public void testReplicatedMessagesMirrorTheActive() throws Exception {
+    EhcacheActiveEntity active = new EhcacheActiveEntity(identity(), mock(ClientCommunicator.class));
+    EhcachePassiveEntity passive = new EhcachePassiveEntity(identity());
+    ClientDescriptor client = mock(ClientDescriptor.class);
+
+    replicate(active, passive, client, EhcacheEntityMessage.configure(CONFIGURATION));
+    replicate(active, passive, client, EhcacheEntityMessage.createServerStore("cache", STORE_CONFIGURATION));
+    for (byte b = 1; b <= 4; b++) {
+      replicate(active, passive, client, ServerStoreOpMessage.getAndAppendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {b})));
+    }
+    replicate(active, passive, client, ServerStoreOpMessage.getAndAppendAllOperation("cache", new long[] {2L, 3L},
+        new ByteBuffer[] {ByteBuffer.wrap(new byte[] {2}), ByteBuffer.wrap(new byte[] {3})}));
+    assertThat(payloads(passive.getServerStore("cache").get(1L)), is(new byte[] {1, 2, 3, 4}));
+    assertThat(payloads(passive.getServerStore("cache").get(3L)), is(new byte[] {3}));
+
+    Chain expect = active.getServerStore("cache").get(1L);
+    ServerStoreOpMessage compaction = ServerStoreOpMessage.replaceAtHeadOperation("cache", 1L, expect,
+        passive.getServerStore("cache").get(3L));
+    replicate(active, passive, client, compaction);
+    assertThat(payloads(active.getServerStore("cache").get(1L)), is(new byte[] {3}));
+    assertThat(payloads(passive.getServerStore("cache").get(1L)), is(new byte[] {3}));
+
+    // a rejected message has no effect on either side
+    replicate(active, passive, client, EhcacheEntityMessage.createServerStore("cache", new ServerStoreConfiguration(new PoolAllocation.Shared("unknown"))));
+    assertThat(payloads(passive.getServerStore("cache").get(2L)), is(new byte[] {2}));
+
+    replicate(active, passive, client, ServerStoreOpMessage.clearOperation("cache"));
+    assertThat(passive.getServerStore("cache").getSize(), is(0L));
+
+    replicate(active, passive, client, EhcacheEntityMessage.destroyServerStore("cache"));
+    assertThat(passive.getServerStore("cache"), nullValue());
+    active.destroy();
+    passive.destroy();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSynchronizationCopiesActiveState() throws Exception {
+    EhcacheActiveEntity active = new EhcacheActiveEntity(identity(), mock(ClientCommunicator.class));
+    ClientDescriptor client = mock(ClientDescriptor.class);
+    active.invoke(client, EhcacheEntityMessage.configure(CONFIGURATION));
+    active.invoke(client, EhcacheEntityMessage.createServerStore("cache", STORE_CONFIGURATION));
+    int keys = 4 * EhcacheActiveEntity.SYNC_BATCH_SIZE;
+    for (long key = 0; key < keys; key++) {
+      active.invoke(client, ServerStoreOpMessage.appendOperation("cache", key, ByteBuffer.wrap(new byte[] {(byte) key})));
+    }
+
+    EhcachePassiveEntity passive = new EhcachePassiveEntity(identity());
+    SyncMessageCodec<EhcacheEntityMessage> codec = EhcacheSyncCodec.syncCodec();
+    passive.startSyncEntity();
+    for (int concurrencyKey : ConcurrencyStrategies.keyHashConcurrency(OffHeapServerStore.DEFAULT_CONCURRENCY).getKeysForSynchronization()) {
+      PassiveSynchronizationChannel<EhcacheEntityMessage> channel = mock(PassiveSynchronizationChannel.class);
+      active.synchronizeKeyToPassive(channel, concurrencyKey);
+
+      ArgumentCaptor<EhcacheEntityMessage> sent = ArgumentCaptor.forClass(EhcacheEntityMessage.class);
+      verify(channel, atLeastOnce()).synchronizeToPassive(sent.capture());
+      passive.startSyncConcurrencyKey(concurrencyKey);
+      for (EhcacheEntityMessage message : sent.getAllValues()) {
+        passive.invoke(codec.decode(concurrencyKey, codec.encode(concurrencyKey, message)));
+      }
+      passive.endSyncConcurrencyKey(concurrencyKey);
+    }
+    passive.endSyncEntity();
+
+    OffHeapServerStore store = passive.getServerStore("cache");
+    assertThat(store, notNullValue());
+    assertThat(store.getSize(), is((long) keys));
+    for (long key = 0; key < keys; key++) {
+      assertThat(payloads(store.get(key)), is(new byte[] {(byte) key}));
+    }
+
+    // replicated messages carry on from the synchronized state
+    passive.invoke(ServerStoreOpMessage.appendOperation("cache", 0L, ByteBuffer.wrap(new byte[] {-1})));
+    assertThat(payloads(store.get(0L)), is(new byte[] {0, -1}));
+    active.destroy();
+    passive.destroy();
+  }
+
+  @Test
+  public void testPromotedPassiveKeepsReplicatedStores() throws Exception {
+    EhcacheServerState state = new EhcacheServerState(UUID.randomUUID());
+    EhcachePassiveEntity passive = new EhcachePassiveEntity(state);
+    passive.invoke(EhcacheEntityMessage.configure(CONFIGURATION));
+    passive.invoke(EhcacheEntityMessage.createServerStore("cache", STORE_CONFIGURATION));
+    passive.invoke(ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+
+    EhcacheActiveEntity active = new EhcacheActiveEntity(state, mock(ClientCommunicator.class));
+    active.loadExisting();
+    EhcacheEntityResponse response = active.invoke(mock(ClientDescriptor.class), ServerStoreOpMessage.getOperation("cache", 1L));
+    assertThat(payloads(((EhcacheEntityResponse.GetResponse) response).getChain()), is(new byte[] {1}));
+
+    response = active.invoke(mock(ClientDescriptor.class), ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {2})));
+    assertThat(response.getType(), is(EhcacheEntityResponse.Type.SUCCESS));
+    active.destroy();
+  }
+
+  @Test
+  public void testPromotedPassiveReinvalidatesRecentlyMutatedHashes() throws Exception {
+    EhcacheServerState state = eventualState();
+    new EhcachePassiveEntity(state).invoke(ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity active = new EhcacheActiveEntity(state, communicator);
+    active.loadExisting();
+    ClientDescriptor reconnected = mock(ClientDescriptor.class);
+    ReconnectData reconnectData = new ReconnectData();
+    reconnectData.add("cache", Arrays.asList(1L, 2L));
+    active.handleReconnect(reconnected, reconnectData.encode());
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(reconnected), sent.capture());
+    assertThat(((InvalidateHash) sent.getValue()).getKey(), is(1L));
+
+    // the hash that was not recently mutated stays registered
+    active.invoke(mock(ClientDescriptor.class), ServerStoreOpMessage.appendOperation("cache", 2L, ByteBuffer.wrap(new byte[] {2})));
+    verify(communicator, times(2)).sendNoResponse(eq(reconnected), sent.capture());
+    assertThat(((InvalidateHash) sent.getValue()).getKey(), is(2L));
+    active.destroy();
+  }
+
+  @Test
+  public void testPromotedPassiveReinvalidatesRecentlyClearedStores() throws Exception {
+    EhcacheServerState state = eventualState();
+    EhcachePassiveEntity passive = new EhcachePassiveEntity(state);
+    passive.invoke(ServerStoreOpMessage.appendOperation("cache", 1L, ByteBuffer.wrap(new byte[] {1})));
+    passive.invoke(ServerStoreOpMessage.clearOperation("cache"));
+
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity active = new EhcacheActiveEntity(state, communicator);
+    active.loadExisting();
+    ClientDescriptor reconnected = mock(ClientDescriptor.class);
+    ReconnectData reconnectData = new ReconnectData();
+    reconnectData.add("cache", Collections.singleton(3L));
+    active.handleReconnect(reconnected, reconnectData.encode());
+
+    ArgumentCaptor<EhcacheEntityResponse> sent = ArgumentCaptor.forClass(EhcacheEntityResponse.class);
+    verify(communicator).sendNoResponse(eq(reconnected), sent.capture());
+    assertThat(sent.getValue(), instanceOf(InvalidateAll.class));
+    active.destroy();
+  }
+
+  @Test
+  public void testMutationsOlderThanTheWindowAreNotReinvalidated() throws Exception {
+    EhcacheServerState state = eventualState();
+    EhcachePassiveEntity passive = new EhcachePassiveEntity(state);
+    passive.invoke(ServerStoreOpMessage.clearOperation("cache"));
+    for (long key = 0; key <= RecentMutations.WINDOW; key++) {
+      passive.invoke(ServerStoreOpMessage.appendOperation("cache", key, ByteBuffer.wrap(new byte[] {1})));
+    }
+
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    EhcacheActiveEntity active = new EhcacheActiveEntity(state, communicator);
+    active.loadExisting();
+    ClientDescriptor reconnected = mock(ClientDescriptor.class);
+    ReconnectData reconnectData = new ReconnectData();
+    reconnectData.add("cache", Collections.singleton(0L));
+    active.handleReconnect(reconnected, reconnectData.encode());
+
+    verify(communicator, never()).sendNoResponse(eq(reconnected), any(EhcacheEntityResponse.class));
+    active.destroy();
+  }
+
+  @Test
+  public void testManagementKeyIsSynchronizedFirst() {
+    assertThat(ConcurrencyStrategies.keyHashConcurrency(OffHeapServerStore.DEFAULT_CONCURRENCY).getKeysForSynchronization().iterator().next(),
+        is(KeyHashConcurrencyStrategy.MANAGEMENT_KEY));
+  }
+
+  private static void replicate(EhcacheActiveEntity active, EhcachePassiveEntity passive, ClientDescriptor client, EhcacheEntityMessage message) {
+    active.invoke(client, message);
+    passive.invoke(message);
+  }
+
+  private static EhcacheServerState eventualState() {
+    EhcacheServerState state = new EhcacheServerState(UUID.randomUUID());
+    state.configure(CONFIGURATION);
+    state.createStore("cache", EVENTUAL_STORE_CONFIGURATION);
+    return state;
+  }
+
+  private static byte[] identity() {
+    return ClusteredEhcacheIdentity.serialize(UUID.randomUUID());
+  }
+
+  private static byte[] payloads(Chain chain) {
+    int length = 0;
+    for (Element element : chain) {
+      length++;
+    }
+    byte[] payloads = new byte[length];
+    int i = 0;
+    for (Element element : chain) {
+      payloads[i++] = element.getPayload().get(0);
+    }
+    return payloads;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link ChainHistogram}
+ */
+public class ChainHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    assertThat(ChainHistogram.bucketOf(0), is(0));
+    assertThat(ChainHistogram.bucketOf(1), is(1));
+    assertThat(ChainHistogram.bucketOf(3), is(2));
+    assertThat(ChainHistogram.bucketOf(4), is(3));
+    assertThat(ChainHistogram.bucketOf(Long.MAX_VALUE), is(63));
+    assertThat(ChainHistogram.lowerBound(0), is(0L));
+    assertThat(ChainHistogram.lowerBound(3), is(4L));
+  }
+
+  @Test
+  public void testCountsAreTrimmed() {
+    ChainHistogram histogram = new ChainHistogram();
+    assertThat(histogram.getCounts().length, is(0));
+    histogram.record(5);
+    histogram.record(6);
+    histogram.record(0);
+    assertThat(histogram.getCounts(), is(new long[] {1, 0, 0, 2}));
+    assertThat(histogram.getTotalCount(), is(3L));
+    assertThat(histogram.toString(), is("ChainHistogram{>=0:1, >=4:2}"));
+  }
+}
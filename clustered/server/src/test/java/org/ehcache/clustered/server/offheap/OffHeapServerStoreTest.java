@@ -0,0 +1,205 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.ehcache.clustered.server.store.ChainBuilder;
+import org.ehcache.clustered.server.store.ElementBuilder;
+import org.ehcache.clustered.common.store.Chain;
+import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.ServerStore;
+import org.ehcache.clustered.server.store.ServerStoreTest;
+import org.ehcache.clustered.server.store.impl.HeapChainBuilder;
+import org.ehcache.clustered.server.store.impl.HeapElementBuilder;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link OffHeapServerStore}
+ */
+public class OffHeapServerStoreTest extends ServerStoreTest {
+
+  @Override
+  public ServerStore newStore() {
+    return new OffHeapServerStore(4 * 1024 * 1024);
+  }
+
+  @Override
+  public ChainBuilder newChainBuilder() {
+    return new HeapChainBuilder();
+  }
+
+  @Override
+  public ElementBuilder newElementBuilder() {
+    return new HeapElementBuilder();
+  }
+
+  @Test
+  public void testReplaceAtHeadWithEmptyUpdateRemovesMapping() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    store.append(1L, ByteBuffer.wrap(new byte[] {1}));
+    store.replaceAtHead(1L, store.get(1L), new HeapChainBuilder().build());
+    assertThat(store.get(1L).isEmpty(), is(true));
+    assertThat(store.getSize(), is(0L));
+  }
+
+  @Test
+  public void testStripeKeysPartitionTheStore() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    for (long key = -100; key < 100; key++) {
+      store.append(key, ByteBuffer.wrap(new byte[] {1}));
+    }
+    for (int stripeCount : new int[] {4, OffHeapServerStore.DEFAULT_CONCURRENCY, 64}) {
+      Set<Long> seen = new HashSet<Long>();
+      for (int stripe = 0; stripe < stripeCount; stripe++) {
+        for (long key : store.getStripeKeys(stripe, stripeCount)) {
+          assertThat(seen.add(key), is(true));
+        }
+      }
+      assertThat(seen.size(), is(200));
+    }
+    store.destroy();
+  }
+
+  @Test
+  public void testPutReplacesChain() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    HeapElementBuilder elements = new HeapElementBuilder();
+    store.append(1L, ByteBuffer.wrap(new byte[] {1}));
+    store.put(1L, new HeapChainBuilder().build(elements.build(ByteBuffer.wrap(new byte[] {2})), elements.build(ByteBuffer.wrap(new byte[] {3}))));
+    assertThat(payloads(store.get(1L)), is(new byte[] {2, 3}));
+
+    // installed elements are numbered by the store and so can be compacted
+    store.replaceAtHead(1L, store.get(1L), new HeapChainBuilder().build(elements.build(ByteBuffer.wrap(new byte[] {4}))));
+    assertThat(payloads(store.get(1L)), is(new byte[] {4}));
+
+    store.put(1L, new HeapChainBuilder().build());
+    assertThat(store.getSize(), is(0L));
+    store.destroy();
+  }
+
+  @Test
+  public void testReplicatedReplaceAtHeadMatchesPayloads() {
+    OffHeapServerStore active = new OffHeapServerStore(1024 * 1024);
+    OffHeapServerStore passive = new OffHeapServerStore(1024 * 1024);
+    // offset the sequence numbers of the passive
+    passive.append(2L, ByteBuffer.wrap(new byte[] {9}));
+    for (byte b = 1; b <= 3; b++) {
+      active.append(1L, ByteBuffer.wrap(new byte[] {b}));
+      passive.append(1L, ByteBuffer.wrap(new byte[] {b}));
+    }
+    Chain expect = active.getAndAppend(1L, ByteBuffer.wrap(new byte[] {4}));
+    passive.append(1L, ByteBuffer.wrap(new byte[] {4}));
+    Chain update = new HeapChainBuilder().build(new HeapElementBuilder().build(ByteBuffer.wrap(new byte[] {3})));
+
+    passive.replaceAtHead(1L, expect, update);
+    assertThat(payloads(passive.get(1L)), is(new byte[] {1, 2, 3, 4}));
+
+    passive.replicateReplaceAtHead(1L, expect, update);
+    assertThat(payloads(passive.get(1L)), is(new byte[] {3, 4}));
+
+    passive.replicateReplaceAtHead(1L, expect, update);
+    assertThat(payloads(passive.get(1L)), is(new byte[] {3, 4}));
+    active.destroy();
+    passive.destroy();
+  }
+
+  private static byte[] payloads(Chain chain) {
+    int length = 0;
+    for (Element element : chain) {
+      length++;
+    }
+    byte[] payloads = new byte[length];
+    int i = 0;
+    for (Element element : chain) {
+      payloads[i++] = element.getPayload().get(0);
+    }
+    return payloads;
+  }
+
+  @Test
+  public void testServedChainsAreRecorded() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    store.get(1L);
+    store.getAndAppend(1L, ByteBuffer.wrap(new byte[] {1, 2}));
+    store.append(1L, ByteBuffer.wrap(new byte[] {3}));
+    store.get(1L);
+
+    assertThat(store.getChainLengthHistogram().getCounts(), is(new long[] {2, 0, 1}));
+    assertThat(store.getChainSizeHistogram().getCounts(), is(new long[] {2, 0, 1}));
+    store.destroy();
+  }
+
+  @Test
+  public void testOperationsAreCounted() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    store.get(1L);
+    store.append(1L, ByteBuffer.wrap(new byte[] {1, 2}));
+    Chain chain = store.getAndAppend(1L, ByteBuffer.wrap(new byte[] {3}));
+    store.replaceAtHead(1L, chain, new HeapChainBuilder().build(new HeapElementBuilder().build(ByteBuffer.wrap(new byte[] {4}))));
+    store.replaceAtHead(1L, chain, new HeapChainBuilder().build());
+
+    ServerStoreStatistics statistics = store.getStatistics();
+    assertThat(statistics.getGets(), is(1L));
+    assertThat(statistics.getAppends(), is(2L));
+    assertThat(statistics.getAppendedBytes(), is(3L));
+    assertThat(statistics.getReplaceSuccesses(), is(1L));
+    assertThat(statistics.getReplaceFailures(), is(1L));
+    assertThat(statistics.getEvictions(), is(0L));
+    store.destroy();
+  }
+
+  @Test
+  public void testFullStoreEvictsChains() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    int keys = 4 * 1024;
+    for (long i = 0; i < keys; i++) {
+      store.append(i, ByteBuffer.allocate(1024));
+    }
+    assertThat(store.getSize(), greaterThan(0L));
+    assertThat(store.getSize(), lessThan((long) keys));
+    store.destroy();
+  }
+
+  @Test
+  public void testEvictionsAreCountedAndReported() {
+    OffHeapServerStore store = new OffHeapServerStore(1024 * 1024);
+    final Set<Long> evicted = new HashSet<Long>();
+    store.setEvictionListener(new OffHeapServerStore.EvictionListener() {
+      @Override
+      public void onEviction(long key) {
+        evicted.add(key);
+      }
+    });
+    int keys = 4 * 1024;
+    for (long i = 0; i < keys; i++) {
+      store.append(i, ByteBuffer.allocate(1024));
+    }
+    assertThat(store.getEvictionCount(), is((long) evicted.size()));
+    assertThat(store.getSize() + store.getEvictionCount(), is((long) keys));
+    for (Long key : evicted) {
+      assertThat(store.get(key).isEmpty(), is(true));
+    }
+    store.destroy();
+  }
+}
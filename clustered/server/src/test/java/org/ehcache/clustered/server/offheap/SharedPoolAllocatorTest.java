@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.clustered.server.offheap;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link SharedPoolAllocator}
+ */
+public class SharedPoolAllocatorTest {
+
+  private static final long POOL_SIZE = 4 * 1024 * 1024;
+
+  @Test
+  public void testFairShareFollowsWeights() {
+    SharedPoolAllocator pool = new SharedPoolAllocator(POOL_SIZE);
+    try {
+      pool.createStore("light", 1);
+      pool.createStore("heavy", 3);
+      assertThat(pool.getFairShare("light"), is(POOL_SIZE / 4));
+      assertThat(pool.getFairShare("heavy"), is(3 * POOL_SIZE / 4));
+      assertThat(pool.getFairShare("unknown"), is(0L));
+
+      pool.destroyStore("heavy");
+      assertThat(pool.getFairShare("light"), is(POOL_SIZE));
+      assertThat(pool.getOccupancy(), not(hasKey("heavy")));
+    } finally {
+      pool.destroyStore("light");
+    }
+  }
+
+  @Test
+  public void testDuplicateStoreIsRejected() {
+    SharedPoolAllocator pool = new SharedPoolAllocator(POOL_SIZE);
+    try {
+      pool.createStore("cache", SharedPoolAllocator.DEFAULT_WEIGHT);
+      try {
+        pool.createStore("cache", SharedPoolAllocator.DEFAULT_WEIGHT);
+        fail("Expected IllegalStateException");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    } finally {
+      pool.destroyStore("cache");
+    }
+  }
+
+  @Test
+  public void testBusyStoreMayUseAnIdlePool() {
+    SharedPoolAllocator pool = new SharedPoolAllocator(POOL_SIZE);
+    try {
+      OffHeapServerStore busy = pool.createStore("busy", SharedPoolAllocator.DEFAULT_WEIGHT);
+      pool.createStore("idle", SharedPoolAllocator.DEFAULT_WEIGHT);
+      fill(busy, 0, 8 * 1024);
+      assertThat(pool.getOccupancy().get("busy"), greaterThan(pool.getFairShare("busy")));
+    } finally {
+      pool.destroyStore("busy");
+      pool.destroyStore("idle");
+    }
+  }
+
+  @Test
+  public void testStarvedStoreReclaimsPagesFromBusyStore() {
+    SharedPoolAllocator pool = new SharedPoolAllocator(POOL_SIZE);
+    try {
+      OffHeapServerStore busy = pool.createStore("busy", SharedPoolAllocator.DEFAULT_WEIGHT);
+      OffHeapServerStore starved = pool.createStore("starved", SharedPoolAllocator.DEFAULT_WEIGHT);
+      fill(busy, 0, 8 * 1024);
+      long busyBefore = pool.getOccupancy().get("busy");
+
+      fill(starved, 0, 8 * 1024);
+      assertThat(pool.getOccupancy().get("starved"), greaterThan(pool.getFairShare("starved") / 4));
+      assertThat(pool.getOccupancy().get("busy"), lessThan(busyBefore));
+      assertThat(starved.getSize(), greaterThan(0L));
+    } finally {
+      pool.destroyStore("busy");
+      pool.destroyStore("starved");
+    }
+  }
+
+  private static void fill(OffHeapServerStore store, long from, long to) {
+    for (long key = from; key < to; key++) {
+      store.append(key, ByteBuffer.allocate(1024));
+    }
+  }
+}
@@ -18,6 +18,7 @@ package org.ehcache.clustered.server.store;
 
 import org.ehcache.clustered.common.store.Chain;
 import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.ServerStore;
 import org.junit.Test;
 
 import java.nio.ByteBuffer;
@@ -107,6 +108,30 @@ public abstract class ServerStoreTest {
     assertChainAndReverseChainOnlyHave(chain, 2, 22);
   }
 
+  @Test
+  public void testGetAll() {
+    ServerStore store = newStore();
+    populateStore(store);
+    Chain[] chains = store.getAll(new long[] {3, 42, 1});
+    assertThat(chains.length, is(3));
+    assertChainAndReverseChainOnlyHave(chains[0], 3);
+    assertThat(chains[1].isEmpty(), is(true));
+    assertChainAndReverseChainOnlyHave(chains[2], 1);
+  }
+
+  @Test
+  public void testGetAndAppendAll() {
+    ServerStore store = newStore();
+    populateStore(store);
+    Chain[] chains = store.getAndAppendAll(new long[] {2, 42, 2}, new ByteBuffer[] {createPayload(22), createPayload(42), createPayload(222)});
+    assertThat(chains.length, is(3));
+    assertChainAndReverseChainOnlyHave(chains[0], 2);
+    assertThat(chains[1].isEmpty(), is(true));
+    assertChainAndReverseChainOnlyHave(chains[2], 2, 22);
+    assertChainAndReverseChainOnlyHave(store.get(2), 2, 22, 222);
+    assertChainAndReverseChainOnlyHave(store.get(42), 42);
+  }
+
   @Test
   public void testGetAndAppendNoMappingExists() {
     ServerStore store = newStore();
@@ -197,4 +222,13 @@ public abstract class ServerStoreTest {
     assertChainAndReverseChainOnlyHave(toVerify, 111, 1111);
   }
 
+  @Test
+  public void testClear() {
+    ServerStore store = newStore();
+    populateStore(store);
+    store.clear();
+    for (int i = 1; i <= 16; i++) {
+      assertThat(store.get(i).isEmpty(), is(true));
+    }
+  }
 }
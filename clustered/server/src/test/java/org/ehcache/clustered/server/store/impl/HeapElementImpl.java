@@ -16,13 +16,14 @@
 package org.ehcache.clustered.server.store.impl;
 
 import org.ehcache.clustered.common.store.Element;
+import org.ehcache.clustered.common.store.SequencedElement;
 
 import java.nio.ByteBuffer;
 
 /**
  * Implements {@link Element}
  */
-public class HeapElementImpl implements Element {
+public class HeapElementImpl implements SequencedElement {
 
   private final long sequenceNumber;
   private final ByteBuffer data;
@@ -32,6 +33,7 @@ public class HeapElementImpl implements Element {
     this.data = data;
   }
 
+  @Override
   public long getSequenceNumber() {
     return this.sequenceNumber;
   }
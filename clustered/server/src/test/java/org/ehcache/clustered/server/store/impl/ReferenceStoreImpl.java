@@ -17,7 +17,7 @@ package org.ehcache.clustered.server.store.impl;
 
 import org.ehcache.clustered.common.store.Chain;
 import org.ehcache.clustered.common.store.Element;
-import org.ehcache.clustered.server.store.ServerStore;
+import org.ehcache.clustered.common.store.ServerStore;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -68,6 +68,11 @@ public class ReferenceStoreImpl implements ServerStore  {
     }
   }
 
+  @Override
+  public Chain getUntracked(long key) {
+    return get(key);
+  }
+
   @Override
   public void append(long key, ByteBuffer payLoad) {
     Lock lock =  getLock(key).writeLock();
@@ -104,6 +109,51 @@ public class ReferenceStoreImpl implements ServerStore  {
     }
   }
 
+  @Override
+  public Chain[] getAll(long[] keys) {
+    Chain[] chains = new Chain[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      chains[i] = get(keys[i]);
+    }
+    return chains;
+  }
+
+  @Override
+  public long[] getStripeKeys(int stripe, int stripeCount) {
+    if (Integer.bitCount(stripeCount) != 1 || stripe < 0 || stripe >= stripeCount) {
+      throw new IllegalArgumentException("Invalid stripe " + stripe + " of " + stripeCount);
+    }
+    List<Long> keys = new ArrayList<Long>();
+    for (ReadWriteLock lock : locks) {
+      lock.readLock().lock();
+    }
+    try {
+      for (Long key : map.keySet()) {
+        if ((key & (stripeCount - 1)) == stripe) {
+          keys.add(key);
+        }
+      }
+    } finally {
+      for (ReadWriteLock lock : locks) {
+        lock.readLock().unlock();
+      }
+    }
+    long[] keyArray = new long[keys.size()];
+    for (int i = 0; i < keyArray.length; i++) {
+      keyArray[i] = keys.get(i);
+    }
+    return keyArray;
+  }
+
+  @Override
+  public Chain[] getAndAppendAll(long[] keys, ByteBuffer[] payLoads) {
+    Chain[] chains = new Chain[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      chains[i] = getAndAppend(keys[i], payLoads[i]);
+    }
+    return chains;
+  }
+
   @Override
   public void replaceAtHead(long key, Chain expect, Chain update) {
     Lock lock =  getLock(key).writeLock();
@@ -145,6 +195,20 @@ public class ReferenceStoreImpl implements ServerStore  {
     }
   }
 
+  @Override
+  public void clear() {
+    for (ReadWriteLock lock : locks) {
+      lock.writeLock().lock();
+    }
+    try {
+      map.clear();
+    } finally {
+      for (ReadWriteLock lock : locks) {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
   private HeapChainImpl cast(Chain chain) {
     return (HeapChainImpl)chain;
   }
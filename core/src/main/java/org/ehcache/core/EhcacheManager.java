@@ -32,6 +32,8 @@ import org.ehcache.core.events.CacheEventDispatcher;
 import org.ehcache.core.events.CacheEventDispatcherFactory;
 import org.ehcache.core.events.CacheManagerListener;
 import org.ehcache.core.spi.LifeCycledAdapter;
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
+import org.ehcache.core.spi.loaderwriter.WarmUpProvider;
 import org.ehcache.core.internal.service.ServiceLocator;
 import org.ehcache.core.spi.store.InternalCacheManager;
 import org.ehcache.core.spi.store.Store;
@@ -398,6 +400,19 @@ public class EhcacheManager implements PersistentCacheManager, InternalCacheMana
       evtService.setListenerSource(cache);
     }
 
+    WarmUpConfiguration warmUpConfiguration =
+        ServiceLocator.findSingletonAmongst(WarmUpConfiguration.class, config.getServiceConfigurations().toArray());
+    if (warmUpConfiguration != null) {
+      if (decorator == null) {
+        throw new IllegalStateException("Cache '" + alias + "' cannot be warmed up without a CacheLoaderWriter");
+      }
+      WarmUpProvider warmUpProvider = serviceLocator.getService(WarmUpProvider.class);
+      if (warmUpProvider == null) {
+        throw new IllegalStateException("Cache '" + alias + "' cannot be warmed up without a WarmUpProvider");
+      }
+      lifeCycledList.add(warmUpProvider.createWarmUp(alias, store, decorator, warmUpConfiguration));
+    }
+
     for (LifeCycled lifeCycled : lifeCycledList) {
       cache.addHook(lifeCycled);
     }
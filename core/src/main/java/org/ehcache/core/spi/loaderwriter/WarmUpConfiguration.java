@@ -0,0 +1,63 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.core.spi.loaderwriter;
+
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the {@link WarmUpProvider}.
+ * <P>
+ *   A cache carrying this configuration loads the keys of a {@link org.ehcache.spi.loaderwriter.WarmUpKeySource} through
+ *   its {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter} when it is initialized.
+ * </P>
+ */
+public interface WarmUpConfiguration extends ServiceConfiguration<WarmUpProvider> {
+
+  /**
+   * The maximum number of keys loaded by a single {@code loadAll} call.
+   *
+   * @return the batch size
+   */
+  int getBatchSize();
+
+  /**
+   * The maximum number of batches loaded concurrently.
+   *
+   * @return the warm-up parallelism
+   */
+  int getParallelism();
+
+  /**
+   * The maximum number of keys loaded per second, or {@code 0} if loading is not throttled.
+   *
+   * @return the maximum load rate
+   */
+  long getMaxLoadsPerSecond();
+
+  /**
+   * Returns the alias of the thread resource pool loading the batches.
+   *
+   * @return the thread pool alias
+   */
+  String getThreadPoolAlias();
+
+  /**
+   * Indicates whether the cache only becomes available once warmed up, or is warmed up in the background.
+   *
+   * @return {@code true} if warming up delays the cache initialization
+   */
+  boolean isBlocking();
+}
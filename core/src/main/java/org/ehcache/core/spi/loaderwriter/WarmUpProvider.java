@@ -0,0 +1,50 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.core.spi.loaderwriter;
+
+import org.ehcache.core.spi.LifeCycled;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.spi.service.Service;
+
+/**
+ * A {@link Service} warming up caches through their {@link CacheLoaderWriter}.
+ * <P>
+ *   A {@code CacheManager} will use the {@link #createWarmUp(String, Store, CacheLoaderWriter, WarmUpConfiguration)}
+ *   method for each {@code Cache} it manages that carries a {@link WarmUpConfiguration}.
+ * </P>
+ */
+public interface WarmUpProvider extends Service {
+
+  /**
+   * Creates the warm-up of a cache.
+   * <P>
+   *   The warm-up starts when the returned {@link LifeCycled} is initialized, after the cache store, and is stopped
+   *   when it is closed.
+   * </P>
+   *
+   * @param alias the cache alias
+   * @param store the store of the cache
+   * @param loaderWriter the loader-writer of the cache
+   * @param configuration the warm-up configuration
+   * @param <K> the key type of the cache
+   * @param <V> the value type of the cache
+   *
+   * @return the warm-up lifecycle
+   */
+  <K, V> LifeCycled createWarmUp(String alias, Store<K, V> store, CacheLoaderWriter<? super K, V> loaderWriter,
+                                 WarmUpConfiguration configuration);
+}
@@ -60,6 +60,19 @@ public interface CachingTier<K, V> extends ConfigurationChangeSupport {
    */
   void invalidate(K key) throws StoreAccessException;
 
+  /**
+   * Removes all mappings whose key has the given hash code, without triggering the {@link InvalidationListener}.
+   * <P>
+   *   This is meant for authoritative tiers that learn of changes made behind their back and only know the hash of
+   *   the affected keys: the removed mappings are stale and must not be flushed anywhere.
+   * </P>
+   *
+   * @param hash the key hash code
+   *
+   * @throws StoreAccessException if mappings cannot be removed
+   */
+  void invalidateAllWithHash(long hash) throws StoreAccessException;
+
   /**
    * Empty out the caching tier.
    * <P>
@@ -78,6 +78,16 @@ public interface LowerCachingTier<K, V> extends ConfigurationChangeSupport {
    */
   void invalidate(K key, NullaryFunction<K> function) throws StoreAccessException;
 
+  /**
+   * Removes all mappings whose key has the given hash code, without triggering the
+   * {@link org.ehcache.core.spi.store.tiering.CachingTier.InvalidationListener}.
+   *
+   * @param hash the key hash code
+   *
+   * @throws StoreAccessException if mappings cannot be removed
+   */
+  void invalidateAllWithHash(long hash) throws StoreAccessException;
+
   /**
    * Empty out this tier
    *
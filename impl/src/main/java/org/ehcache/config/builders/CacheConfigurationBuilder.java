@@ -567,9 +567,32 @@ public class CacheConfigurationBuilder<K, V> implements Builder<CacheConfigurati
    * @return a new builder with the added configuration
    */
   public CacheConfigurationBuilder<K, V> withDiskStoreThreadPool(String threadPoolAlias, int concurrency) {
-    OffHeapDiskStoreConfiguration configuration = new OffHeapDiskStoreConfiguration(threadPoolAlias, concurrency);
+    OffHeapDiskStoreConfiguration existingServiceConfiguration = getExistingServiceConfiguration(OffHeapDiskStoreConfiguration.class);
+    boolean physicalOrderIteration = existingServiceConfiguration != null && existingServiceConfiguration.isPhysicalOrderIteration();
+    OffHeapDiskStoreConfiguration configuration = new OffHeapDiskStoreConfiguration(threadPoolAlias, concurrency, physicalOrderIteration);
     CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
+    if (existingServiceConfiguration != null) {
+      otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
+    }
+    otherBuilder.serviceConfigurations.add(configuration);
+    return otherBuilder;
+  }
+
+  /**
+   * Adds or updates the {@link ServiceConfiguration} for the {@link org.ehcache.impl.internal.store.disk.OffHeapDiskStore.Provider}
+   * to make iteration walk the data file in physical order.
+   *
+   * @return a new builder with the added / updated configuration
+   */
+  public CacheConfigurationBuilder<K, V> withDiskStorePhysicalOrderIteration() {
     OffHeapDiskStoreConfiguration existingServiceConfiguration = getExistingServiceConfiguration(OffHeapDiskStoreConfiguration.class);
+    OffHeapDiskStoreConfiguration configuration;
+    if (existingServiceConfiguration == null) {
+      configuration = new OffHeapDiskStoreConfiguration(null, 1, true);
+    } else {
+      configuration = new OffHeapDiskStoreConfiguration(existingServiceConfiguration.getThreadPoolAlias(), existingServiceConfiguration.getWriterConcurrency(), true);
+    }
+    CacheConfigurationBuilder<K, V> otherBuilder = new CacheConfigurationBuilder<K, V>(this);
     if (existingServiceConfiguration != null) {
       otherBuilder.serviceConfigurations.remove(existingServiceConfiguration);
     }
@@ -0,0 +1,180 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.config.builders;
+
+import org.ehcache.config.Builder;
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
+import org.ehcache.impl.config.loaderwriter.warmup.DefaultWarmUpConfiguration;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
+
+/**
+ * The {@code WarmUpConfigurationBuilder} enables building {@link WarmUpConfiguration}s using a fluent style.
+ * <P>
+ * As with all Ehcache builders, all instances are immutable and calling any method on the builder will return a new
+ * instance without modifying the one on which the method was called.
+ * This enables the sharing of builder instances without any risk of seeing them modified by code elsewhere.
+ */
+public final class WarmUpConfigurationBuilder implements Builder<WarmUpConfiguration> {
+
+  private final WarmUpKeySource<?> keySource;
+  private final Class<? extends WarmUpKeySource<?>> keySourceClass;
+  private final Object[] arguments;
+  private int batchSize = 100;
+  private int parallelism = 1;
+  private long maxLoadsPerSecond = 0;
+  private String threadPoolAlias = null;
+  private boolean blocking = false;
+
+  private WarmUpConfigurationBuilder(WarmUpKeySource<?> keySource, Class<? extends WarmUpKeySource<?>> keySourceClass, Object[] arguments) {
+    this.keySource = keySource;
+    this.keySourceClass = keySourceClass;
+    this.arguments = arguments;
+  }
+
+  private WarmUpConfigurationBuilder(WarmUpConfigurationBuilder other) {
+    keySource = other.keySource;
+    keySourceClass = other.keySourceClass;
+    arguments = other.arguments;
+    batchSize = other.batchSize;
+    parallelism = other.parallelism;
+    maxLoadsPerSecond = other.maxLoadsPerSecond;
+    threadPoolAlias = other.threadPoolAlias;
+    blocking = other.blocking;
+  }
+
+  /**
+   * Creates a new builder for a warm-up loading the keys of the given {@link WarmUpKeySource}.
+   *
+   * @param keySource the key source
+   * @return a new builder
+   */
+  public static WarmUpConfigurationBuilder newWarmUpConfiguration(WarmUpKeySource<?> keySource) {
+    if (keySource == null) {
+      throw new NullPointerException("Null key source");
+    }
+    return new WarmUpConfigurationBuilder(keySource, null, null);
+  }
+
+  /**
+   * Creates a new builder for a warm-up loading the keys of a {@link WarmUpKeySource} instantiated from the given
+   * class and constructor arguments.
+   *
+   * @param keySourceClass the key source class
+   * @param arguments the constructor arguments
+   * @return a new builder
+   */
+  public static WarmUpConfigurationBuilder newWarmUpConfiguration(Class<? extends WarmUpKeySource<?>> keySourceClass, Object... arguments) {
+    if (keySourceClass == null) {
+      throw new NullPointerException("Null key source class");
+    }
+    return new WarmUpConfigurationBuilder(null, keySourceClass, arguments);
+  }
+
+  /**
+   * Sets the maximum number of keys loaded by a single {@code loadAll} call on the returned builder.
+   *
+   * @param batchSize the batch size
+   * @return a new builder with the updated batch size
+   */
+  public WarmUpConfigurationBuilder batchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be a positive integer, was: " + batchSize);
+    }
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.batchSize = batchSize;
+    return otherBuilder;
+  }
+
+  /**
+   * Sets the maximum number of batches loaded concurrently on the returned builder.
+   *
+   * @param parallelism the warm-up parallelism
+   * @return a new builder with the updated parallelism
+   */
+  public WarmUpConfigurationBuilder parallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be a positive integer, was: " + parallelism);
+    }
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.parallelism = parallelism;
+    return otherBuilder;
+  }
+
+  /**
+   * Limits the number of keys loaded per second on the returned builder, {@code 0} meaning no limit.
+   *
+   * @param maxLoadsPerSecond the maximum load rate
+   * @return a new builder with the updated load rate
+   */
+  public WarmUpConfigurationBuilder maxLoadsPerSecond(long maxLoadsPerSecond) {
+    if (maxLoadsPerSecond < 0) {
+      throw new IllegalArgumentException("Max loads per second must not be negative, was: " + maxLoadsPerSecond);
+    }
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.maxLoadsPerSecond = maxLoadsPerSecond;
+    return otherBuilder;
+  }
+
+  /**
+   * Sets the thread pool loading the batches on the returned builder.
+   *
+   * @param threadPoolAlias the thread pool alias
+   * @return a new builder with the updated thread pool alias
+   */
+  public WarmUpConfigurationBuilder useThreadPool(String threadPoolAlias) {
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.threadPoolAlias = threadPoolAlias;
+    return otherBuilder;
+  }
+
+  /**
+   * Makes the cache only become available once warmed up on the returned builder.
+   *
+   * @return a new builder with a blocking warm-up
+   *
+   * @see #background()
+   */
+  public WarmUpConfigurationBuilder blocking() {
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.blocking = true;
+    return otherBuilder;
+  }
+
+  /**
+   * Makes the cache available immediately and warms it up in the background on the returned builder.
+   *
+   * @return a new builder with a background warm-up
+   *
+   * @see #blocking()
+   */
+  public WarmUpConfigurationBuilder background() {
+    WarmUpConfigurationBuilder otherBuilder = new WarmUpConfigurationBuilder(this);
+    otherBuilder.blocking = false;
+    return otherBuilder;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public WarmUpConfiguration build() {
+    if (keySource != null) {
+      return new DefaultWarmUpConfiguration(keySource, batchSize, parallelism, maxLoadsPerSecond, threadPoolAlias, blocking);
+    } else {
+      return new DefaultWarmUpConfiguration(keySourceClass, arguments, batchSize, parallelism, maxLoadsPerSecond, threadPoolAlias, blocking);
+    }
+  }
+}
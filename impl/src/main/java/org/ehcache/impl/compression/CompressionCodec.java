@@ -0,0 +1,58 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Defines the contract used to compress and decompress the serial form of cached values.
+ * <P>
+ *   Implementations must be thread-safe.
+ * </P>
+ * <P>
+ *   Codecs are used by the off heap and disk stores between the value
+ *   {@link org.ehcache.spi.serialization.Serializer serializer} and the storage layer.
+ *   The uncompressed length of the value is tracked by the store, a codec only has to deal with the payload.
+ * </P>
+ *
+ * @see org.ehcache.impl.config.store.compression.ValueCompressionConfiguration
+ */
+public interface CompressionCodec {
+
+  /**
+   * Compresses the remaining bytes of the given buffer.
+   *
+   * @param source the buffer to compress, its position is advanced to its limit
+   *
+   * @return a buffer containing the compressed form, ready to be read
+   */
+  ByteBuffer compress(ByteBuffer source);
+
+  /**
+   * Decompresses the remaining bytes of {@code source} into {@code target}.
+   * <P>
+   *   {@code target} has exactly as many bytes remaining as the uncompressed form requires.
+   * </P>
+   *
+   * @param source the compressed form
+   * @param target the buffer receiving the uncompressed form
+   *
+   * @throws IllegalArgumentException if the compressed form is corrupt
+   */
+  void decompress(ByteBuffer source, ByteBuffer target) throws IllegalArgumentException;
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.compression;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link CompressionCodec} based on the {@code java.util.zip} deflate implementation.
+ * <P>
+ *   Slower than {@link LZ4CompressionCodec} but usually producing a better ratio.
+ * </P>
+ */
+public class DeflateCompressionCodec implements CompressionCodec {
+
+  private final int level;
+
+  /**
+   * Creates a codec using the default deflate compression level.
+   */
+  public DeflateCompressionCodec() {
+    this(Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a codec using the given deflate compression level.
+   *
+   * @param level the compression level, between 0 and 9 or -1 for the default
+   *
+   * @see Deflater#setLevel(int)
+   */
+  public DeflateCompressionCodec(int level) {
+    if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid deflate compression level : " + level);
+    }
+    this.level = level;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer compress(ByteBuffer source) {
+    byte[] input = toArray(source);
+    Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      byte[] output = new byte[input.length + (input.length >>> 3) + 64];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == output.length) {
+          byte[] bigger = new byte[output.length << 1];
+          System.arraycopy(output, 0, bigger, 0, length);
+          output = bigger;
+        }
+        length += deflater.deflate(output, length, output.length - length);
+      }
+      return ByteBuffer.wrap(output, 0, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void decompress(ByteBuffer source, ByteBuffer target) {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(toArray(source));
+      byte[] output = new byte[target.remaining()];
+      int length = 0;
+      while (length < output.length) {
+        int inflated = inflater.inflate(output, length, output.length - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != output.length) {
+        throw new IllegalArgumentException("Corrupt deflate stream : expected " + output.length + " bytes, inflated " + length);
+      }
+      target.put(output);
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupt deflate stream", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{level=" + level + "}";
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.compression;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fast {@link CompressionCodec} producing blocks in the LZ4 block format.
+ * <P>
+ *   This is a pure Java, single pass, greedy implementation: it favors speed over compression ratio and is
+ *   the recommended codec when CPU cost on the put path matters.
+ * </P>
+ */
+public class LZ4CompressionCodec implements CompressionCodec {
+
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MF_LIMIT = 12;
+  private static final int MAX_DISTANCE = 0xffff;
+  private static final int RUN_MASK = 0xf;
+
+  private static final int HASH_LOG = 12;
+  private static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer compress(ByteBuffer source) {
+    byte[] src = new byte[source.remaining()];
+    source.get(src);
+    int length = src.length;
+    byte[] dst = new byte[length + length / 255 + 16];
+
+    int dp = 0;
+    int anchor = 0;
+    if (length >= MF_LIMIT + 1) {
+      int[] hashTable = new int[HASH_TABLE_SIZE];
+      int limit = length - MF_LIMIT;
+      int matchLimit = length - LAST_LITERALS;
+      int sp = 0;
+      while (sp < limit) {
+        int sequence = readInt(src, sp);
+        int hash = hash(sequence);
+        int ref = hashTable[hash] - 1;
+        hashTable[hash] = sp + 1;
+        if (ref < 0 || sp - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+          sp++;
+          continue;
+        }
+
+        int matchLength = MIN_MATCH;
+        while (sp + matchLength < matchLimit && src[ref + matchLength] == src[sp + matchLength]) {
+          matchLength++;
+        }
+
+        int literals = sp - anchor;
+        int tokenIndex = dp++;
+        dp = writeLength(dst, dp, literals);
+        System.arraycopy(src, anchor, dst, dp, literals);
+        dp += literals;
+
+        int offset = sp - ref;
+        dst[dp++] = (byte) offset;
+        dst[dp++] = (byte) (offset >>> 8);
+        dp = writeLength(dst, dp, matchLength - MIN_MATCH);
+
+        dst[tokenIndex] = (byte) ((Math.min(literals, RUN_MASK) << 4) | Math.min(matchLength - MIN_MATCH, RUN_MASK));
+
+        sp += matchLength;
+        anchor = sp;
+      }
+    }
+
+    int literals = length - anchor;
+    int tokenIndex = dp++;
+    dp = writeLength(dst, dp, literals);
+    System.arraycopy(src, anchor, dst, dp, literals);
+    dp += literals;
+    dst[tokenIndex] = (byte) (Math.min(literals, RUN_MASK) << 4);
+
+    return ByteBuffer.wrap(dst, 0, dp);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void decompress(ByteBuffer source, ByteBuffer target) {
+    byte[] src = new byte[source.remaining()];
+    source.get(src);
+    byte[] dst = new byte[target.remaining()];
+
+    try {
+      int sp = 0;
+      int dp = 0;
+      while (true) {
+        int token = src[sp++] & 0xff;
+
+        int literals = token >>> 4;
+        if (literals == RUN_MASK) {
+          int b;
+          do {
+            b = src[sp++] & 0xff;
+            literals += b;
+          } while (b == 0xff);
+        }
+        System.arraycopy(src, sp, dst, dp, literals);
+        sp += literals;
+        dp += literals;
+        if (sp == src.length) {
+          break;
+        }
+
+        int offset = (src[sp++] & 0xff) | ((src[sp++] & 0xff) << 8);
+        int matchLength = token & RUN_MASK;
+        if (matchLength == RUN_MASK) {
+          int b;
+          do {
+            b = src[sp++] & 0xff;
+            matchLength += b;
+          } while (b == 0xff);
+        }
+        matchLength += MIN_MATCH;
+
+        int ref = dp - offset;
+        if (offset == 0 || ref < 0) {
+          throw new IllegalArgumentException("Corrupt LZ4 block : invalid match offset " + offset + " at " + dp);
+        }
+        for (int i = 0; i < matchLength; i++) {
+          dst[dp++] = dst[ref++];
+        }
+      }
+      if (dp != dst.length) {
+        throw new IllegalArgumentException("Corrupt LZ4 block : expected " + dst.length + " bytes, decompressed " + dp);
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Corrupt LZ4 block", e);
+    }
+    target.put(dst);
+  }
+
+  private static int writeLength(byte[] dst, int dp, int length) {
+    if (length >= RUN_MASK) {
+      int remaining = length - RUN_MASK;
+      while (remaining >= 0xff) {
+        dst[dp++] = (byte) 0xff;
+        remaining -= 0xff;
+      }
+      dst[dp++] = (byte) remaining;
+    }
+    return dp;
+  }
+
+  private static int readInt(byte[] buffer, int index) {
+    return (buffer[index] & 0xff) | ((buffer[index + 1] & 0xff) << 8) | ((buffer[index + 2] & 0xff) << 16) | ((buffer[index + 3] & 0xff) << 24);
+  }
+
+  private static int hash(int sequence) {
+    return (sequence * -1640531535) >>> (32 - HASH_LOG);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
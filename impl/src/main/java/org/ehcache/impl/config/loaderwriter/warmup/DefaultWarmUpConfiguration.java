@@ -0,0 +1,122 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.config.loaderwriter.warmup;
+
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
+import org.ehcache.core.spi.loaderwriter.WarmUpProvider;
+import org.ehcache.impl.internal.classes.ClassInstanceConfiguration;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
+
+/**
+ * {@link org.ehcache.spi.service.ServiceConfiguration} for the default {@link WarmUpProvider}.
+ */
+public class DefaultWarmUpConfiguration extends ClassInstanceConfiguration<WarmUpKeySource<?>> implements WarmUpConfiguration {
+
+  private final int batchSize;
+  private final int parallelism;
+  private final long maxLoadsPerSecond;
+  private final String threadPoolAlias;
+  private final boolean blocking;
+
+  /**
+   * Creates a new configuration with the specified {@link WarmUpKeySource} class and associated constructor arguments.
+   *
+   * @param keySourceClass the key source class
+   * @param arguments the constructor arguments
+   * @param batchSize the maximum number of keys per {@code loadAll} call
+   * @param parallelism the maximum number of batches loaded concurrently
+   * @param maxLoadsPerSecond the maximum number of keys loaded per second, {@code 0} for no limit
+   * @param threadPoolAlias the thread pool alias
+   * @param blocking whether the cache only becomes available once warmed up
+   */
+  public DefaultWarmUpConfiguration(Class<? extends WarmUpKeySource<?>> keySourceClass, Object[] arguments, int batchSize,
+                                    int parallelism, long maxLoadsPerSecond, String threadPoolAlias, boolean blocking) {
+    super(keySourceClass, arguments);
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+    this.maxLoadsPerSecond = maxLoadsPerSecond;
+    this.threadPoolAlias = threadPoolAlias;
+    this.blocking = blocking;
+  }
+
+  /**
+   * Creates a new configuration with the specified {@link WarmUpKeySource} instance.
+   *
+   * @param keySource the key source
+   * @param batchSize the maximum number of keys per {@code loadAll} call
+   * @param parallelism the maximum number of batches loaded concurrently
+   * @param maxLoadsPerSecond the maximum number of keys loaded per second, {@code 0} for no limit
+   * @param threadPoolAlias the thread pool alias
+   * @param blocking whether the cache only becomes available once warmed up
+   */
+  public DefaultWarmUpConfiguration(WarmUpKeySource<?> keySource, int batchSize, int parallelism, long maxLoadsPerSecond,
+                                    String threadPoolAlias, boolean blocking) {
+    super(keySource);
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+    this.maxLoadsPerSecond = maxLoadsPerSecond;
+    this.threadPoolAlias = threadPoolAlias;
+    this.blocking = blocking;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getMaxLoadsPerSecond() {
+    return maxLoadsPerSecond;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isBlocking() {
+    return blocking;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<WarmUpProvider> getServiceType() {
+    return WarmUpProvider.class;
+  }
+}
@@ -96,7 +96,8 @@ public class DefaultSerializationProviderConfiguration implements ServiceCreatio
     boolean transientConstructorPresent;
     boolean persistentConstructorPresent;
 
-    if(transientConstructorPresent = isConstructorPresent(serializerClass, ClassLoader.class)) {
+    if(transientConstructorPresent = isConstructorPresent(serializerClass, ClassLoader.class)
+                                     || isConstructorPresent(serializerClass, Class.class, ClassLoader.class)) {
       if (!overwrite && transientSerializers.containsKey(serializableClass)) {
         throw new IllegalArgumentException("Duplicate transient serializer for class : " + serializableClass.getName());
       } else {
@@ -104,7 +105,8 @@ public class DefaultSerializationProviderConfiguration implements ServiceCreatio
       }
     }
 
-    if(persistentConstructorPresent = isConstructorPresent(serializerClass, ClassLoader.class, FileBasedPersistenceContext.class)) {
+    if(persistentConstructorPresent = isConstructorPresent(serializerClass, ClassLoader.class, FileBasedPersistenceContext.class)
+                                      || isConstructorPresent(serializerClass, Class.class, ClassLoader.class, FileBasedPersistenceContext.class)) {
       if (!overwrite && persistentSerializers.containsKey(serializableClass)) {
         throw new IllegalArgumentException("Duplicate persistent serializer for class : " + serializableClass.getName());
       } else {
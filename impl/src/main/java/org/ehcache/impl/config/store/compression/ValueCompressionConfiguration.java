@@ -0,0 +1,93 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.config.store.compression;
+
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.impl.compression.CompressionCodec;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} enabling compression of values stored in the off heap and disk
+ * {@link org.ehcache.core.spi.store.Store stores} of a cache.
+ * <P>
+ *   Values whose serial form is smaller than the configured threshold, or which do not shrink once compressed,
+ *   are stored as is.
+ * </P>
+ */
+public class ValueCompressionConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * Default size, in bytes, under which values are not compressed.
+   */
+  public static final int DEFAULT_THRESHOLD = 64;
+
+  private final CompressionCodec codec;
+  private final int threshold;
+
+  /**
+   * Creates a new configuration instance using the provided codec and the {@link #DEFAULT_THRESHOLD default threshold}.
+   *
+   * @param codec the compression codec
+   */
+  public ValueCompressionConfiguration(CompressionCodec codec) {
+    this(codec, DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Creates a new configuration instance using the provided parameters.
+   *
+   * @param codec the compression codec
+   * @param threshold the size in bytes of the serial form under which values are not compressed
+   */
+  public ValueCompressionConfiguration(CompressionCodec codec, int threshold) {
+    if (codec == null) {
+      throw new NullPointerException("Compression codec cannot be null");
+    }
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Compression threshold must be positive : " + threshold);
+    }
+    this.codec = codec;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Returns the configured compression codec.
+   *
+   * @return the compression codec
+   */
+  public CompressionCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Returns the size in bytes of the serial form under which values are not compressed.
+   *
+   * @return the compression threshold
+   */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
@@ -26,6 +26,7 @@ public class OffHeapDiskStoreConfiguration implements ServiceConfiguration<OffHe
 
   private final String threadPoolAlias;
   private final int writerConcurrency;
+  private final boolean physicalOrderIteration;
 
   /**
    * Creates a new configuration instance using the provided parameters.
@@ -36,8 +37,22 @@ public class OffHeapDiskStoreConfiguration implements ServiceConfiguration<OffHe
    * @see org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration
    */
   public OffHeapDiskStoreConfiguration(String threadPoolAlias, int writerConcurrency) {
+    this(threadPoolAlias, writerConcurrency, false);
+  }
+
+  /**
+   * Creates a new configuration instance using the provided parameters.
+   *
+   * @param threadPoolAlias the thread pool alias
+   * @param writerConcurrency the writer concurrency
+   * @param physicalOrderIteration whether iteration walks the data file in physical order
+   *
+   * @see org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration
+   */
+  public OffHeapDiskStoreConfiguration(String threadPoolAlias, int writerConcurrency, boolean physicalOrderIteration) {
     this.threadPoolAlias = threadPoolAlias;
     this.writerConcurrency = writerConcurrency;
+    this.physicalOrderIteration = physicalOrderIteration;
   }
 
   /**
@@ -60,6 +75,18 @@ public class OffHeapDiskStoreConfiguration implements ServiceConfiguration<OffHe
     return writerConcurrency;
   }
 
+  /**
+   * Indicates whether iterating the store walks the data file in physical order rather than in hash order.
+   * <P>
+   *   Physical order iteration turns full scans, such as warm-up or export, into sequential reads of the data file.
+   * </P>
+   *
+   * @return {@code true} if physical order iteration is enabled
+   */
+  public boolean isPhysicalOrderIteration() {
+    return physicalOrderIteration;
+  }
+
   /**
    * {@inheritDoc}
    */
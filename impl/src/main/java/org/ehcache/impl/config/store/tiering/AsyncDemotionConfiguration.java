@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.tiering;
+
+import org.ehcache.impl.internal.store.tiering.CompoundCachingTier;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} enabling asynchronous demotion of values evicted from the heap tier into the
+ * lower caching tier, such as offheap, of a {@link CompoundCachingTier}.
+ * <P>
+ *   Without this configuration evicted values are serialized and written to the lower caching tier by the thread
+ *   that caused the eviction. With it, that work is handed to worker threads through a bounded queue.
+ *   When the queue is full, the evicting thread performs the demotion itself.
+ * </P>
+ */
+public class AsyncDemotionConfiguration implements ServiceConfiguration<CompoundCachingTier.Provider> {
+
+  /**
+   * Default maximum number of demotions waiting for a worker.
+   */
+  public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+  private final String threadPoolAlias;
+  private final int workers;
+  private final int queueSize;
+
+  /**
+   * Creates a new configuration instance with a queue of {@link #DEFAULT_QUEUE_SIZE} demotions.
+   *
+   * @param threadPoolAlias the thread pool alias, {@code null} for the default pool
+   * @param workers the number of demotion workers
+   *
+   * @see org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration
+   */
+  public AsyncDemotionConfiguration(String threadPoolAlias, int workers) {
+    this(threadPoolAlias, workers, DEFAULT_QUEUE_SIZE);
+  }
+
+  /**
+   * Creates a new configuration instance using the provided parameters.
+   *
+   * @param threadPoolAlias the thread pool alias, {@code null} for the default pool
+   * @param workers the number of demotion workers
+   * @param queueSize the maximum number of demotions waiting for a worker
+   *
+   * @see org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration
+   */
+  public AsyncDemotionConfiguration(String threadPoolAlias, int workers, int queueSize) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("Demotion worker count must be positive : " + workers);
+    }
+    if (queueSize <= 0) {
+      throw new IllegalArgumentException("Demotion queue size must be positive : " + queueSize);
+    }
+    this.threadPoolAlias = threadPoolAlias;
+    this.workers = workers;
+    this.queueSize = queueSize;
+  }
+
+  /**
+   * Returns the configured thread pool alias.
+   *
+   * @return the thread pool alias
+   *
+   * @see org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration
+   */
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  /**
+   * Returns the number of demotion workers.
+   *
+   * @return the worker count
+   */
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Returns the maximum number of demotions waiting for a worker.
+   *
+   * @return the queue size
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<CompoundCachingTier.Provider> getServiceType() {
+    return CompoundCachingTier.Provider.class;
+  }
+}
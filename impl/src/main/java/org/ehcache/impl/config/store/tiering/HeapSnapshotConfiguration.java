@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.config.store.tiering;
+
+import org.ehcache.impl.internal.store.tiering.TieredStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} making the tiered {@link org.ehcache.core.spi.store.Store store} of a persistent
+ * cache restart with a warm heap tier.
+ * <P>
+ *   When the store is released, the keys of the most hit heap mappings are written to the persistence space of the
+ *   cache. When it is next initialized, those keys are faulted from the recovered authoritative tier into the heap
+ *   tier by background threads, while the cache is already in use.
+ * </P>
+ * <P>
+ *   This configuration requires a persistent disk tier.
+ * </P>
+ */
+public class HeapSnapshotConfiguration implements ServiceConfiguration<TieredStore.Provider> {
+
+  private final int maxKeys;
+  private final int parallelism;
+
+  /**
+   * Creates a configuration snapshotting at most {@code maxKeys} keys, reloaded using {@code parallelism} threads.
+   *
+   * @param maxKeys the maximum number of keys in the snapshot
+   * @param parallelism the number of threads reloading the snapshot
+   */
+  public HeapSnapshotConfiguration(int maxKeys, int parallelism) {
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("Heap snapshot key count must be positive : " + maxKeys);
+    }
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Heap snapshot parallelism must be positive : " + parallelism);
+    }
+    this.maxKeys = maxKeys;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Returns the maximum number of keys in the snapshot.
+   *
+   * @return the maximum key count
+   */
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  /**
+   * Returns the number of threads reloading the snapshot.
+   *
+   * @return the reload parallelism
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<TieredStore.Provider> getServiceType() {
+    return TieredStore.Provider.class;
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.config.store.tiering;
+
+import org.ehcache.impl.internal.store.tiering.TieredStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} for the tiered {@link org.ehcache.core.spi.store.Store store} controlling when values
+ * read from the authoritative tier are promoted into the caching tier.
+ * <P>
+ *   Without this configuration every read missing the caching tier promotes the value, so a one-off scan can
+ *   flush the whole caching tier.
+ * </P>
+ */
+public class PromotionPolicyConfiguration implements ServiceConfiguration<TieredStore.Provider> {
+
+  /**
+   * The kinds of promotion policy.
+   */
+  public enum Type {
+    /**
+     * Promote a key once it missed the caching tier a number of times within a sliding window,
+     * tracked using a compact frequency sketch.
+     */
+    FREQUENCY,
+    /**
+     * Promote a key with a fixed probability on each caching tier miss.
+     */
+    PROBABILISTIC
+  }
+
+  private final Type type;
+  private final int accesses;
+  private final int window;
+  private final double probability;
+
+  private PromotionPolicyConfiguration(Type type, int accesses, int window, double probability) {
+    this.type = type;
+    this.accesses = accesses;
+    this.window = window;
+    this.probability = probability;
+  }
+
+  /**
+   * Creates a configuration promoting keys on their {@code accesses}-th caching tier miss.
+   * <P>
+   *   Access counts decay by half every {@code window} caching tier misses, which also bounds
+   *   the memory used to track them.
+   * </P>
+   *
+   * @param accesses the number of misses needed for promotion, between 1 and 15
+   * @param window the number of misses after which access counts decay
+   * @return a new configuration
+   */
+  public static PromotionPolicyConfiguration afterAccesses(int accesses, int window) {
+    if (accesses < 1 || accesses > 15) {
+      throw new IllegalArgumentException("Promotion access count must be between 1 and 15 : " + accesses);
+    }
+    if (window <= 0) {
+      throw new IllegalArgumentException("Promotion window must be positive : " + window);
+    }
+    return new PromotionPolicyConfiguration(Type.FREQUENCY, accesses, window, 1.0);
+  }
+
+  /**
+   * Creates a configuration promoting keys with the given probability on each caching tier miss.
+   *
+   * @param probability the promotion probability, in {@code ]0, 1]}
+   * @return a new configuration
+   */
+  public static PromotionPolicyConfiguration withProbability(double probability) {
+    if (!(probability > 0.0 && probability <= 1.0)) {
+      throw new IllegalArgumentException("Promotion probability must be in ]0, 1] : " + probability);
+    }
+    return new PromotionPolicyConfiguration(Type.PROBABILISTIC, 1, 0, probability);
+  }
+
+  /**
+   * Returns the policy type.
+   *
+   * @return the policy type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the number of caching tier misses needed for promotion, for {@link Type#FREQUENCY} policies.
+   *
+   * @return the access count
+   */
+  public int getAccesses() {
+    return accesses;
+  }
+
+  /**
+   * Returns the number of caching tier misses after which access counts decay, for {@link Type#FREQUENCY} policies.
+   *
+   * @return the window size
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Returns the promotion probability, for {@link Type#PROBABILISTIC} policies.
+   *
+   * @return the promotion probability
+   */
+  public double getProbability() {
+    return probability;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<TieredStore.Provider> getServiceType() {
+    return TieredStore.Provider.class;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.impl.config.store.tiering;
+
+import org.ehcache.impl.internal.store.tiering.TieredStore;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * {@link ServiceConfiguration} making writes to the tiered {@link org.ehcache.core.spi.store.Store store} install
+ * the written value in its caching tier.
+ * <P>
+ *   By default {@code put}, {@code replace} and {@code compute} write to the authoritative tier and invalidate the
+ *   caching tier, so the next read faults the value back and deserializes it. With this configuration the value
+ *   written is installed in the caching tier directly, which suits read-after-write access patterns.
+ * </P>
+ */
+public class WritePopulatesCachingTierConfiguration implements ServiceConfiguration<TieredStore.Provider> {
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Class<TieredStore.Provider> getServiceType() {
+    return TieredStore.Provider.class;
+  }
+}
@@ -28,6 +28,7 @@ import static java.lang.Integer.rotateLeft;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
@@ -6370,4 +6371,51 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
             return new MapEntry<K, V>(maxKey, maxVal, this);
         }
     }
+
+    /**
+     * Removes all mappings whose key has the given hash code.
+     * <p>
+     * Only the single bin the hash maps to is inspected. Mappings added
+     * concurrently with this call may or may not be removed.
+     *
+     * @param keyHash the key hash code
+     * @return the removed mappings
+     */
+    public Map<K, V> removeAllWithHash(int keyHash) {
+        int h = spread(keyHash);
+        Collection<K> candidates = new ArrayList<K>();
+        Node<K,V>[] tab = table;
+        while (tab != null) {
+            Node<K,V> f = tabAt(tab, (tab.length - 1) & h);
+            if (f == null) {
+                break;
+            } else if (f.hash == MOVED) {
+                tab = ((ForwardingNode<K,V>) f).nextTable;
+                continue;
+            }
+            Node<K,V> e;
+            if (f instanceof TreeBin) {
+                e = ((TreeBin<K,V>) f).first;
+            } else if (f.hash >= 0) {
+                e = f;
+            } else {
+                e = null;
+            }
+            for (; e != null; e = e.next) {
+                if (e.hash == h && e.key.hashCode() == keyHash) {
+                    candidates.add(e.key);
+                }
+            }
+            break;
+        }
+
+        Map<K, V> removed = new HashMap<K, V>();
+        for (K key : candidates) {
+            V value = remove(key);
+            if (value != null) {
+                removed.put(key, value);
+            }
+        }
+        return removed;
+    }
 }
@@ -0,0 +1,306 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.loaderwriter.warmup;
+
+import org.ehcache.core.spi.LifeCycled;
+import org.ehcache.core.spi.function.Function;
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.impl.internal.util.ThreadFactoryUtil;
+import org.ehcache.spi.loaderwriter.BulkCacheLoadingException;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.CacheLoadingException;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the keys of a {@link WarmUpKeySource} into a cache store through {@link CacheLoaderWriter#loadAll(Iterable)}.
+ * <P>
+ *   Keys are read by a single thread, the initializing one for blocking warm-ups, and grouped in batches which are
+ *   loaded on an executor with at most {@link WarmUpConfiguration#getParallelism()} batches in flight. Each batch is
+ *   installed with {@link Store#bulkComputeIfAbsent(Set, Function)}, so keys mapped in the meantime are neither loaded
+ *   nor overwritten. A failed batch is logged and counted, and the warm-up carries on with the next one.
+ * </P>
+ */
+class CacheWarmUp<K, V> implements LifeCycled {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmUp.class);
+
+  private static final Set<String> STATISTICS_TAGS = Collections.singleton("warm-up");
+
+  private final String alias;
+  private final Store<K, V> store;
+  private final CacheLoaderWriter<? super K, V> loaderWriter;
+  private final WarmUpKeySource<? extends K> keySource;
+  private final ExecutorService executor;
+  private final int batchSize;
+  private final int parallelism;
+  private final long nanosPerLoad;
+  private final boolean blocking;
+
+  private final Semaphore inFlight;
+  private final AtomicLong nextLoadTime = new AtomicLong(System.nanoTime());
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  private final AtomicLong loadedMappings = new AtomicLong();
+  private final AtomicLong completedBatches = new AtomicLong();
+  private final AtomicLong failedBatches = new AtomicLong();
+
+  private volatile boolean started;
+  private volatile boolean cancelled;
+  private volatile Thread reader;
+
+  CacheWarmUp(String alias, Store<K, V> store, CacheLoaderWriter<? super K, V> loaderWriter,
+              WarmUpKeySource<? extends K> keySource, ExecutorService executor, WarmUpConfiguration configuration) {
+    this.alias = alias;
+    this.store = store;
+    this.loaderWriter = loaderWriter;
+    this.keySource = keySource;
+    this.executor = executor;
+    this.batchSize = configuration.getBatchSize();
+    this.parallelism = configuration.getParallelism();
+    this.nanosPerLoad = configuration.getMaxLoadsPerSecond() == 0 ? 0 : Math.max(1, TimeUnit.SECONDS.toNanos(1) / configuration.getMaxLoadsPerSecond());
+    this.blocking = configuration.isBlocking();
+    this.inFlight = new Semaphore(parallelism);
+  }
+
+  @Override
+  public void init() {
+    registerStatistics();
+    started = true;
+    if (blocking) {
+      warmUp();
+    } else {
+      reader = ThreadFactoryUtil.threadFactory(alias + " warm-up").newThread(new Runnable() {
+        @Override
+        public void run() {
+          warmUp();
+        }
+      });
+      reader.setDaemon(true);
+      reader.start();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (!started) {
+      executor.shutdown();
+      return;
+    }
+    cancelled = true;
+    Thread thread = reader;
+    if (thread != null) {
+      thread.interrupt();
+    }
+    awaitTermination();
+  }
+
+  long getLoadedMappings() {
+    return loadedMappings.get();
+  }
+
+  long getCompletedBatches() {
+    return completedBatches.get();
+  }
+
+  long getFailedBatches() {
+    return failedBatches.get();
+  }
+
+  /**
+   * Waits for the warm-up to complete, successfully or not.
+   */
+  void awaitTermination() {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          done.await();
+          return;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void registerStatistics() {
+    StatisticsManager.createPassThroughStatistic(store, "warmUpLoadedMappings", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getLoadedMappings();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(store, "warmUpCompletedBatches", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getCompletedBatches();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(store, "warmUpFailedBatches", STATISTICS_TAGS, new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return getFailedBatches();
+      }
+    });
+  }
+
+  private void warmUp() {
+    long start = System.nanoTime();
+    LOGGER.info("Warming up cache '{}'", alias);
+    try {
+      List<K> batch = new ArrayList<K>(batchSize);
+      for (K key : keySource.keys()) {
+        if (cancelled) {
+          break;
+        }
+        batch.add(key);
+        if (batch.size() == batchSize) {
+          submit(batch);
+          batch = new ArrayList<K>(batchSize);
+        }
+      }
+      if (!batch.isEmpty() && !cancelled) {
+        submit(batch);
+      }
+    } catch (InterruptedException e) {
+      LOGGER.debug("Warm-up of cache '{}' interrupted", alias);
+    } catch (Exception e) {
+      LOGGER.warn("Listing the warm-up keys of cache '{}' failed, the cache is only partially loaded", alias, e);
+    } finally {
+      inFlight.acquireUninterruptibly(parallelism);
+      inFlight.release(parallelism);
+      executor.shutdown();
+      LOGGER.info("Warm-up of cache '{}' {} after {} ms : {} mappings loaded, {} batches completed, {} batches failed",
+          alias, cancelled ? "cancelled" : "completed", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+          loadedMappings.get(), completedBatches.get(), failedBatches.get());
+      done.countDown();
+    }
+  }
+
+  private void submit(final List<K> batch) throws InterruptedException {
+    inFlight.acquire();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            load(batch);
+          } finally {
+            inFlight.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  private void load(List<K> batch) {
+    try {
+      if (!throttle(batch.size()) || cancelled) {
+        return;
+      }
+      store.bulkComputeIfAbsent(new LinkedHashSet<K>(batch), new Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>>() {
+        @Override
+        public Iterable<? extends Map.Entry<? extends K, ? extends V>> apply(Iterable<? extends K> absentKeys) {
+          return loadAll(absentKeys).entrySet();
+        }
+      });
+      completedBatches.incrementAndGet();
+    } catch (StoreAccessException e) {
+      failed(batch, e);
+    } catch (RuntimeException e) {
+      failed(batch, e);
+    }
+  }
+
+  private Map<K, V> loadAll(Iterable<? extends K> keys) {
+    Map<?, ? extends V> loaded;
+    try {
+      loaded = loaderWriter.loadAll(keys);
+    } catch (BulkCacheLoadingException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheLoadingException(e);
+    }
+    Map<K, V> result = new LinkedHashMap<K, V>();
+    for (K key : keys) {
+      V value = loaded.get(key);
+      result.put(key, value);
+      if (value != null) {
+        loadedMappings.incrementAndGet();
+      }
+    }
+    return result;
+  }
+
+  private void failed(List<K> batch, Exception e) {
+    failedBatches.incrementAndGet();
+    LOGGER.warn("Warm-up of cache '{}' failed to load a batch of {} keys", alias, batch.size(), e);
+  }
+
+  /**
+   * Waits until {@code loads} more keys can be loaded without exceeding the configured rate.
+   *
+   * @return {@code false} if interrupted while waiting
+   */
+  private boolean throttle(int loads) {
+    if (nanosPerLoad == 0) {
+      return true;
+    }
+    long now = System.nanoTime();
+    long slot;
+    while (true) {
+      long next = nextLoadTime.get();
+      slot = next - now > 0 ? next : now;
+      if (nextLoadTime.compareAndSet(next, slot + loads * nanosPerLoad)) {
+        break;
+      }
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(slot - now);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
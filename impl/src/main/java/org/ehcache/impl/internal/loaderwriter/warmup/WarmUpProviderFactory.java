@@ -0,0 +1,96 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.loaderwriter.warmup;
+
+import org.ehcache.core.spi.LifeCycled;
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
+import org.ehcache.core.spi.loaderwriter.WarmUpProvider;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.core.spi.service.ServiceFactory;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.impl.config.loaderwriter.warmup.DefaultWarmUpConfiguration;
+import org.ehcache.impl.internal.classes.ClassInstanceProvider;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
+import org.ehcache.spi.service.Service;
+import org.ehcache.spi.service.ServiceCreationConfiguration;
+import org.ehcache.spi.service.ServiceDependencies;
+import org.ehcache.spi.service.ServiceProvider;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Creates the default {@link WarmUpProvider}, which warms caches up from a {@link WarmUpKeySource} on an
+ * {@link ExecutionService} thread pool.
+ */
+public class WarmUpProviderFactory implements ServiceFactory<WarmUpProvider> {
+
+  @Override
+  public WarmUpProvider create(ServiceCreationConfiguration<WarmUpProvider> configuration) {
+    if (configuration != null) {
+      throw new IllegalArgumentException("Warm-up configuration must not be provided at CacheManager level");
+    }
+    return new Provider();
+  }
+
+  @Override
+  public Class<WarmUpProvider> getServiceType() {
+    return WarmUpProvider.class;
+  }
+
+  @ServiceDependencies(ExecutionService.class)
+  public static class Provider extends ClassInstanceProvider<String, WarmUpKeySource<?>> implements WarmUpProvider {
+
+    private volatile ExecutionService executionService;
+
+    protected Provider() {
+      super(null, DefaultWarmUpConfiguration.class, true);
+    }
+
+    @Override
+    public void start(ServiceProvider<Service> serviceProvider) {
+      executionService = serviceProvider.getService(ExecutionService.class);
+    }
+
+    @Override
+    public <K, V> LifeCycled createWarmUp(String alias, Store<K, V> store, CacheLoaderWriter<? super K, V> loaderWriter,
+                                          WarmUpConfiguration configuration) {
+      if (!(configuration instanceof DefaultWarmUpConfiguration)) {
+        throw new IllegalArgumentException("Unsupported warm-up configuration : " + configuration);
+      }
+      final WarmUpKeySource<?> keySource = newInstance(alias, configuration);
+      @SuppressWarnings("unchecked")
+      final CacheWarmUp<K, V> warmUp = new CacheWarmUp<K, V>(alias, store, loaderWriter, (WarmUpKeySource<? extends K>) keySource,
+          executionService.getUnorderedExecutor(configuration.getThreadPoolAlias(), new LinkedBlockingQueue<Runnable>()),
+          configuration);
+      return new LifeCycled() {
+        @Override
+        public void init() throws Exception {
+          warmUp.init();
+        }
+
+        @Override
+        public void close() throws Exception {
+          try {
+            warmUp.close();
+          } finally {
+            releaseInstance(keySource);
+          }
+        }
+      };
+    }
+  }
+}
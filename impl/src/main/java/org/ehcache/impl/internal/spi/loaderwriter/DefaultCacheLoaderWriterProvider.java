@@ -17,15 +17,18 @@
 package org.ehcache.impl.internal.spi.loaderwriter;
 
 import org.ehcache.config.CacheConfiguration;
+import org.ehcache.core.spi.loaderwriter.WarmUpProvider;
 import org.ehcache.impl.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
 import org.ehcache.impl.config.loaderwriter.DefaultCacheLoaderWriterProviderConfiguration;
 import org.ehcache.impl.internal.classes.ClassInstanceProvider;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceDependencies;
 
 /**
  * @author Alex Snaps
  */
+@ServiceDependencies(WarmUpProvider.class)
 public class DefaultCacheLoaderWriterProvider extends ClassInstanceProvider<String, CacheLoaderWriter<?, ?>> implements CacheLoaderWriterProvider {
 
   public DefaultCacheLoaderWriterProvider(DefaultCacheLoaderWriterProviderConfiguration configuration) {
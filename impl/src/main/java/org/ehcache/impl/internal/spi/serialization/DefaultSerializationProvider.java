@@ -161,7 +161,7 @@ public class DefaultSerializationProvider implements SerializationProvider {
     protected <T> Serializer<T> createSerializer(String suffix, Class<T> clazz, ClassLoader classLoader, DefaultSerializerConfiguration<T> config, ServiceConfiguration<?>... configs) throws UnsupportedTypeException {
       try {
         Class<? extends Serializer<T>> klazz = getClassFor(clazz, config, classLoader);
-        return constructSerializer(clazz, klazz.getConstructor(ClassLoader.class), classLoader);
+        return constructSerializer(clazz, findConstructor(klazz, ClassLoader.class), classLoader);
       } catch (NoSuchMethodException e) {
         throw new RuntimeException(e);
       }
@@ -192,7 +192,7 @@ public class DefaultSerializationProvider implements SerializationProvider {
     protected <T> Serializer<T> createSerializer(String suffix, Class<T> clazz, ClassLoader classLoader, DefaultSerializerConfiguration<T> config, ServiceConfiguration<?>... configs) throws UnsupportedTypeException {
       Class<? extends Serializer<T>> klazz = getClassFor(clazz, config, classLoader);
       try {
-        Constructor<? extends Serializer<T>> constructor = klazz.getConstructor(ClassLoader.class, FileBasedPersistenceContext.class);
+        Constructor<? extends Serializer<T>> constructor = findConstructor(klazz, ClassLoader.class, FileBasedPersistenceContext.class);
         PersistenceSpaceIdentifier space = findSingletonAmongst(PersistenceSpaceIdentifier.class, (Object[]) configs);
         FileBasedPersistenceContext context = persistence.createPersistenceContextWithin(space, DefaultSerializationProvider.class.getSimpleName() + suffix);
         return constructSerializer(clazz, constructor, classLoader, context);
@@ -260,7 +260,27 @@ public class DefaultSerializationProvider implements SerializationProvider {
       throw new UnsupportedTypeException("No serializer found for type '" + clazz.getName() + "'");
     }
 
+    /**
+     * Finds the constructor of a serializer, preferring one taking the serialized type before the given parameters.
+     */
+    protected static <T> Constructor<? extends Serializer<T>> findConstructor(Class<? extends Serializer<T>> klazz, Class<?>... parameterTypes) throws NoSuchMethodException {
+      Class<?>[] typedParameterTypes = new Class<?>[parameterTypes.length + 1];
+      typedParameterTypes[0] = Class.class;
+      System.arraycopy(parameterTypes, 0, typedParameterTypes, 1, parameterTypes.length);
+      try {
+        return klazz.getConstructor(typedParameterTypes);
+      } catch (NoSuchMethodException e) {
+        return klazz.getConstructor(parameterTypes);
+      }
+    }
+
     protected <T> Serializer<T> constructSerializer(Class<T> clazz, Constructor<? extends Serializer<T>> constructor, Object ... args) {
+      if (constructor.getParameterTypes().length > args.length) {
+        Object[] typedArgs = new Object[args.length + 1];
+        typedArgs[0] = clazz;
+        System.arraycopy(args, 0, typedArgs, 1, args.length);
+        args = typedArgs;
+      }
       try {
         Serializer<T> serializer = constructor.newInstance(args);
         LOG.info("Serializer for <{}> : {}", clazz.getName(), serializer);
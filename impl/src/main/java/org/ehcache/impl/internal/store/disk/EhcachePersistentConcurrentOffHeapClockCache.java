@@ -20,6 +20,7 @@ import org.ehcache.config.EvictionAdvisor;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.impl.internal.store.disk.factories.EhcachePersistentSegmentFactory;
+import org.ehcache.impl.internal.store.disk.factories.EhcachePersistentSegmentFactory.EhcachePersistentSegment;
 import org.ehcache.impl.internal.store.offheap.EhcacheOffHeapBackingMap;
 import org.terracotta.offheapstore.Metadata;
 import org.terracotta.offheapstore.MetadataTuple;
@@ -28,6 +29,11 @@ import org.terracotta.offheapstore.disk.persistent.AbstractPersistentConcurrentO
 
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -246,4 +252,62 @@ public class EhcachePersistentConcurrentOffHeapClockCache<K, V> extends Abstract
   public long nextIdFor(final K key) {
     return counters[getIndexFor(key.hashCode())].getAndIncrement();
   }
+
+  /**
+   * Returns an iterator walking each segment in data file order, reading mappings in batches.
+   * <P>
+   *   Like the regular entry set iterator this is weakly consistent: mappings modified during iteration may or may
+   *   not be returned.
+   * </P>
+   *
+   * @param batchSize the number of mappings read per segment lock acquisition
+   * @return an iterator over the mappings
+   */
+  public Iterator<Map.Entry<K, V>> physicalOrderIterator(final int batchSize) {
+    return new Iterator<Map.Entry<K, V>>() {
+      private final List<Map.Entry<K, V>> batch = new ArrayList<Map.Entry<K, V>>(batchSize);
+      private int segmentIndex = -1;
+      private long[] encodedSlots = new long[0];
+      private int position = 0;
+      private int batchPosition = 0;
+
+      @Override
+      public boolean hasNext() {
+        while (batchPosition == batch.size()) {
+          batch.clear();
+          batchPosition = 0;
+          while (position * 2 == encodedSlots.length) {
+            if (segmentIndex + 1 >= segments.length) {
+              return false;
+            }
+            segmentIndex++;
+            encodedSlots = ((EhcachePersistentSegment<K, V>) segments[segmentIndex]).slotsInEncodingOrder();
+            position = 0;
+          }
+          int end = Math.min(position + batchSize, encodedSlots.length / 2);
+          ((EhcachePersistentSegment<K, V>) segments[segmentIndex]).readInEncodingOrder(encodedSlots, position, end, batch);
+          position = end;
+        }
+        return true;
+      }
+
+      @Override
+      public Map.Entry<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return batch.get(batchPosition++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public Map<K, V> removeAllWithHash(int keyHash) {
+    return ((EhcachePersistentSegment<K, V>) segments[getIndexFor(keyHash)]).removeAllWithHash(keyHash);
+  }
 }
@@ -22,6 +22,7 @@ import org.ehcache.Status;
 import org.ehcache.config.Eviction;
 import org.ehcache.config.EvictionAdvisor;
 import org.ehcache.config.ResourceType;
+import org.ehcache.impl.config.store.compression.ValueCompressionConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.events.StoreEventDispatcher;
@@ -33,6 +34,7 @@ import org.ehcache.impl.internal.store.offheap.EhcacheOffHeapBackingMap;
 import org.ehcache.impl.internal.store.offheap.OffHeapValueHolder;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.impl.internal.store.offheap.portability.SerializerPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompressor;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.spi.service.ServiceProvider;
@@ -70,6 +72,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -86,6 +89,9 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
   private static final String KEY_TYPE_PROPERTY_NAME = "keyType";
   private static final String VALUE_TYPE_PROPERTY_NAME = "valueType";
+  private static final String VALUE_COMPRESSION_PROPERTY_NAME = "valueCompression";
+
+  private static final int PHYSICAL_ORDER_ITERATION_BATCH_SIZE = 256;
 
   protected final AtomicReference<Status> status = new AtomicReference<Status>(Status.UNINITIALIZED);
 
@@ -95,22 +101,32 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
   private final ClassLoader classLoader;
   private final Serializer<K> keySerializer;
   private final Serializer<V> valueSerializer;
+  private final ValueCompressor valueCompressor;
   private final long sizeInBytes;
   private final FileBasedPersistenceContext fileBasedPersistenceContext;
   private final ExecutionService executionService;
   private final String threadPoolAlias;
   private final int writerConcurrency;
+  private final boolean physicalOrderIteration;
 
   private volatile EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
 
   public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
                           ExecutionService executionService, String threadPoolAlias, int writerConcurrency,
                           final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes) {
+    this(fileBasedPersistenceContext, executionService, threadPoolAlias, writerConcurrency, false, config, timeSource, eventDispatcher, sizeInBytes, null);
+  }
+
+  public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
+                          ExecutionService executionService, String threadPoolAlias, int writerConcurrency, boolean physicalOrderIteration,
+                          final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes,
+                          ValueCompressor valueCompressor) {
     super("local-disk", config, timeSource, eventDispatcher);
     this.fileBasedPersistenceContext = fileBasedPersistenceContext;
     this.executionService = executionService;
     this.threadPoolAlias = threadPoolAlias;
     this.writerConcurrency = writerConcurrency;
+    this.physicalOrderIteration = physicalOrderIteration;
 
     EvictionAdvisor<? super K, ? super V> evictionAdvisor = config.getEvictionAdvisor();
     if (evictionAdvisor != null) {
@@ -123,6 +139,10 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
     this.classLoader = config.getClassLoader();
     this.keySerializer = config.getKeySerializer();
     this.valueSerializer = config.getValueSerializer();
+    this.valueCompressor = valueCompressor;
+    if (valueCompressor != null) {
+      valueCompressor.registerStatistics(this, "local-disk");
+    }
     this.sizeInBytes = sizeInBytes;
 
     if (!status.compareAndSet(Status.UNINITIALIZED, Status.AVAILABLE)) {
@@ -183,6 +203,11 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
     } catch (ClassNotFoundException cnfe) {
       throw new IllegalStateException("Persisted value type class not found", cnfe);
     }
+    String persistedCompression = properties.getProperty(VALUE_COMPRESSION_PROPERTY_NAME);
+    String configuredCompression = valueCompressionName();
+    if (persistedCompression == null ? configuredCompression != null : !persistedCompression.equals(configuredCompression)) {
+      throw new IllegalArgumentException("Persisted value compression '" + persistedCompression + "' is not the same as the configured value compression '" + configuredCompression + "'");
+    }
 
     FileInputStream fin = new FileInputStream(indexFile);
     try {
@@ -205,7 +230,7 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       MappedPageSource source = new MappedPageSource(dataFile, false, size);
       try {
         PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer, valueCompressor));
         DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
         Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -244,6 +269,10 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       Properties properties = new Properties();
       properties.put(KEY_TYPE_PROPERTY_NAME, keyType.getName());
       properties.put(VALUE_TYPE_PROPERTY_NAME, valueType.getName());
+      String compression = valueCompressionName();
+      if (compression != null) {
+        properties.put(VALUE_COMPRESSION_PROPERTY_NAME, compression);
+      }
       properties.store(fos, "Key and value types");
     } finally {
       fos.close();
@@ -251,7 +280,7 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
     MappedPageSource source = new MappedPageSource(getDataFile(), size);
     PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer, valueCompressor));
     DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
     Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -267,11 +296,24 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
   }
 
+  private String valueCompressionName() {
+    return valueCompressor == null ? null : valueCompressor.getCodec().getClass().getName();
+  }
+
   @Override
   protected EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap() {
     return map;
   }
 
+  @Override
+  protected java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> backingMapIterator() {
+    if (physicalOrderIteration) {
+      return map.physicalOrderIterator(PHYSICAL_ORDER_ITERATION_BATCH_SIZE);
+    } else {
+      return super.backingMapIterator();
+    }
+  }
+
   private File getDataFile() {
     return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.data");
   }
@@ -329,21 +371,26 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
       String threadPoolAlias;
       int writerConcurrency;
+      boolean physicalOrderIteration;
       OffHeapDiskStoreConfiguration config = findSingletonAmongst(OffHeapDiskStoreConfiguration.class, serviceConfigs);
       if (config == null) {
         threadPoolAlias = defaultThreadPool;
         writerConcurrency = 1;
+        physicalOrderIteration = false;
       } else {
         threadPoolAlias = config.getThreadPoolAlias();
         writerConcurrency = config.getWriterConcurrency();
+        physicalOrderIteration = config.isPhysicalOrderIteration();
       }
+      ValueCompressionConfiguration compressionConfig = findSingletonAmongst(ValueCompressionConfiguration.class, (Object[]) serviceConfigs);
+      ValueCompressor valueCompressor = compressionConfig == null ? null : new ValueCompressor(compressionConfig);
       PersistenceSpaceIdentifier space = findSingletonAmongst(PersistenceSpaceIdentifier.class, (Object[]) serviceConfigs);
       try {
         FileBasedPersistenceContext persistenceContext = localPersistenceService.createPersistenceContextWithin(space , "offheap-disk-store");
 
         OffHeapDiskStore<K, V> offHeapStore = new OffHeapDiskStore<K, V>(persistenceContext,
-                executionService, threadPoolAlias, writerConcurrency,
-                storeConfig, timeSource, eventDispatcher, unit.toBytes(diskPool.getSize()));
+                executionService, threadPoolAlias, writerConcurrency, physicalOrderIteration,
+                storeConfig, timeSource, eventDispatcher, unit.toBytes(diskPool.getSize()), valueCompressor);
         createdStores.add(offHeapStore);
         return offHeapStore;
       } catch (CachePersistenceException cpex) {
@@ -26,6 +26,12 @@ import org.terracotta.offheapstore.disk.persistent.PersistentStorageEngine;
 import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.nio.IntBuffer;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 import static org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment.ADVISED_AGAINST_EVICTION;
@@ -68,11 +74,138 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
 
     private final EvictionAdvisor<? super K, ? super V> evictionAdvisor;
     private final EvictionListener<K, V> evictionListener;
+    private final PersistentStorageEngine<? super K, ? super V> engine;
 
     EhcachePersistentSegment(MappedPageSource source, PersistentStorageEngine<? super K, ? super V> storageEngine, int tableSize, boolean bootstrap, EvictionAdvisor<? super K, ? super V> evictionAdvisor, EvictionListener<K, V> evictionListener) {
       super(source, storageEngine, tableSize, bootstrap);
       this.evictionAdvisor = evictionAdvisor;
       this.evictionListener = evictionListener;
+      this.engine = storageEngine;
+    }
+
+    /**
+     * Snapshots the occupied table slots of this segment, sorted by storage encoding.
+     * <P>
+     *   For a file backed storage engine the encoding is the address of the mapping in the data file, so walking
+     *   slots in this order reads the data file sequentially.
+     * </P>
+     *
+     * @return pairs of {@code (encoding, slot)} packed in a single array, ordered by encoding
+     */
+    public long[] slotsInEncodingOrder() {
+      Lock lock = readLock();
+      lock.lock();
+      try {
+        IntBuffer table = hashtable;
+        int slots = table.capacity() / ENTRY_SIZE;
+        EncodedSlot[] present = new EncodedSlot[slots];
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+          int offset = slot * ENTRY_SIZE;
+          if ((table.get(offset + STATUS) & STATUS_USED) != 0) {
+            present[count++] = new EncodedSlot(readEncoding(table, offset), slot);
+          }
+        }
+        Arrays.sort(present, 0, count);
+        long[] result = new long[count * 2];
+        for (int i = 0; i < count; i++) {
+          result[i * 2] = present[i].encoding;
+          result[i * 2 + 1] = present[i].slot;
+        }
+        return result;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Reads a batch of mappings previously returned by {@link #slotsInEncodingOrder()}.
+     * <P>
+     *   Slots whose content changed since the snapshot was taken are skipped.
+     * </P>
+     *
+     * @param encodedSlots the snapshot
+     * @param from index of the first pair to read
+     * @param to index after the last pair to read
+     * @param into the list receiving the mappings
+     */
+    @SuppressWarnings("unchecked")
+    public void readInEncodingOrder(long[] encodedSlots, int from, int to, List<Map.Entry<K, V>> into) {
+      Lock lock = readLock();
+      lock.lock();
+      try {
+        IntBuffer table = hashtable;
+        for (int i = from; i < to; i++) {
+          long encoding = encodedSlots[i * 2];
+          int offset = ((int) encodedSlots[i * 2 + 1]) * ENTRY_SIZE;
+          if (offset + ENTRY_SIZE <= table.capacity()
+              && (table.get(offset + STATUS) & STATUS_USED) != 0
+              && readEncoding(table, offset) == encoding) {
+            K key = (K) engine.readKey(encoding, table.get(offset + KEY_HASHCODE));
+            V value = (V) engine.readValue(encoding);
+            into.add(new AbstractMap.SimpleImmutableEntry<K, V>(key, value));
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Removes all the mappings whose key hash code is {@code keyHash}.
+     * <P>
+     *   Only the probe sequence of {@code keyHash} is walked and keys are matched on the hash code stored in the
+     *   table, so only the removed mappings get decoded.
+     * </P>
+     *
+     * @param keyHash the key hash code
+     *
+     * @return the removed mappings
+     */
+    public Map<K, V> removeAllWithHash(int keyHash) {
+      Map<K, V> removed = new HashMap<K, V>();
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        IntBuffer table = hashtable;
+        int capacity = table.capacity();
+        int offset = indexFor(spread(keyHash));
+        for (int probed = 0; probed < capacity; probed += ENTRY_SIZE) {
+          int status = table.get(offset + STATUS);
+          if ((status & (STATUS_USED | STATUS_REMOVED)) == 0) {
+            break;
+          }
+          if ((status & STATUS_USED) != 0 && table.get(offset + KEY_HASHCODE) == keyHash) {
+            Entry<K, V> entry = getEntryAtTableOffset(offset);
+            removed.put(entry.getKey(), entry.getValue());
+            removeAtTableOffset(offset, false);
+          }
+          offset = (offset + ENTRY_SIZE) % capacity;
+        }
+      } finally {
+        lock.unlock();
+      }
+      return removed;
+    }
+
+    private static long readEncoding(IntBuffer table, int offset) {
+      return (((long) table.get(offset + ENCODING)) << Integer.SIZE) | (table.get(offset + ENCODING + 1) & 0xffffffffL);
+    }
+
+    private static final class EncodedSlot implements Comparable<EncodedSlot> {
+
+      private final long encoding;
+      private final int slot;
+
+      EncodedSlot(long encoding, int slot) {
+        this.encoding = encoding;
+        this.slot = slot;
+      }
+
+      @Override
+      public int compareTo(EncodedSlot other) {
+        return encoding < other.encoding ? -1 : (encoding == other.encoding ? 0 : 1);
+      }
     }
 
     @Override
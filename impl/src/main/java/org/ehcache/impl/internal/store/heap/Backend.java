@@ -51,6 +51,14 @@ interface Backend<K, V> {
 
   boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue);
 
+  /**
+   * Removes all mappings whose key has the given hash code
+   *
+   * @param hash the key hash code
+   * @return the removed mappings
+   */
+  Map<K, OnHeapValueHolder<V>> removeAllWithHash(int hash);
+
   /**
    * Returns the number of mappings
    *
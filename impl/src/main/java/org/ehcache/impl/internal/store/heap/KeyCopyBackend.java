@@ -28,6 +28,7 @@ import org.ehcache.spi.copy.Copier;
 
 import java.util.AbstractMap;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Random;
@@ -203,4 +204,14 @@ class KeyCopyBackend<K, V> implements Backend<K, V> {
   public boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
     return keyCopyMap.replace(lookupOnlyKey(key), oldValue, newValue);
   }
+
+  @Override
+  public Map<K, OnHeapValueHolder<V>> removeAllWithHash(int hash) {
+    Map<OnHeapKey<K>, OnHeapValueHolder<V>> removed = keyCopyMap.removeAllWithHash(hash);
+    Map<K, OnHeapValueHolder<V>> result = new HashMap<K, OnHeapValueHolder<V>>();
+    for (Map.Entry<OnHeapKey<K>, OnHeapValueHolder<V>> entry : removed.entrySet()) {
+      result.put(entry.getKey().getActualKeyObject(), entry.getValue());
+    }
+    return result;
+  }
 }
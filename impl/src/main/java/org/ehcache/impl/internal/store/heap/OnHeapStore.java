@@ -71,6 +71,7 @@ import org.terracotta.offheapstore.util.FindbugsSuppressWarnings;
 import org.terracotta.statistics.StatisticsManager;
 import org.terracotta.statistics.observer.OperationObserver;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -81,6 +82,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -133,6 +135,13 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   };
 
+  private static final Comparator<Map.Entry<?, Long>> HITS_ORDER = new Comparator<Map.Entry<?, Long>>() {
+    @Override
+    public int compare(Map.Entry<?, Long> e1, Map.Entry<?, Long> e2) {
+      return e1.getValue().compareTo(e2.getValue());
+    }
+  };
+
   private static final InvalidationListener NULL_INVALIDATION_LISTENER = new InvalidationListener() {
     @Override
     public void onInvalidation(Object key, ValueHolder valueHolder) {
@@ -682,6 +691,35 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     };
   }
 
+  /**
+   * Returns the keys of the most hit mappings of this store, most hit first.
+   * <P>
+   *   Mappings still being faulted are not considered.
+   * </P>
+   *
+   * @param max the maximum number of keys returned
+   * @return the hottest keys
+   */
+  public List<K> hottestKeys(int max) {
+    PriorityQueue<Map.Entry<K, Long>> hottest = new PriorityQueue<Map.Entry<K, Long>>(max + 1, HITS_ORDER);
+    for (java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> it = map.entrySetIterator(); it.hasNext(); ) {
+      Map.Entry<K, OnHeapValueHolder<V>> entry = it.next();
+      if (entry.getValue() instanceof Fault) {
+        continue;
+      }
+      hottest.add(new AbstractMap.SimpleImmutableEntry<K, Long>(entry.getKey(), entry.getValue().hits()));
+      if (hottest.size() > max) {
+        hottest.poll();
+      }
+    }
+    List<K> keys = new ArrayList<K>(hottest.size());
+    while (!hottest.isEmpty()) {
+      keys.add(hottest.poll().getKey());
+    }
+    Collections.reverse(keys);
+    return keys;
+  }
+
   @Override
   public ValueHolder<V> getOrComputeIfAbsent(final K key, final Function<K, ValueHolder<V>> source) throws StoreAccessException {
     try {
@@ -810,6 +848,17 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   }
 
+  @Override
+  public void invalidateAllWithHash(long hash) throws StoreAccessException {
+    try {
+      for (OnHeapValueHolder<V> removed : map.removeAllWithHash((int) hash).values()) {
+        updateUsageInBytesIfRequired(- removed.size());
+      }
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+    }
+  }
+
   @Override
   public void silentInvalidate(K key, final Function<Store.ValueHolder<V>, Void> function) throws StoreAccessException {
     silentInvalidateObserver.begin();
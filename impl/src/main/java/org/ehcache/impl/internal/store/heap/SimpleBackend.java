@@ -125,4 +125,9 @@ class SimpleBackend<K, V> implements Backend<K, V> {
   public boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
     return realMap.replace(key, oldValue, newValue);
   }
+
+  @Override
+  public Map<K, OnHeapValueHolder<V>> removeAllWithHash(int hash) {
+    return realMap.removeAllWithHash(hash);
+  }
 }
@@ -603,7 +603,7 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   @Override
   public Iterator<Cache.Entry<K, ValueHolder<V>>> iterator() {
     return new Iterator<Cache.Entry<K, ValueHolder<V>>>() {
-      private final java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> mapIterator = backingMap().entrySet().iterator();
+      private final java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> mapIterator = backingMapIterator();
 
       @Override
       public boolean hasNext() {
@@ -997,6 +997,15 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
+  @Override
+  public void invalidateAllWithHash(long hash) throws StoreAccessException {
+    try {
+      backingMap().removeAllWithHash((int) hash);
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+    }
+  }
+
   @Override
   public void invalidate(K key, final NullaryFunction<K> function) throws StoreAccessException {
     invalidateObserver.begin();
@@ -1292,6 +1301,15 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   protected abstract EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap();
 
+  /**
+   * Returns the iterator over the backing map mappings used by {@link #iterator()}.
+   *
+   * @return an iterator over the backing map
+   */
+  protected java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> backingMapIterator() {
+    return backingMap().entrySet().iterator();
+  }
+
   protected static <K, V> EvictionAdvisor<K, OffHeapValueHolder<V>> wrap(EvictionAdvisor<? super K, ? super V> delegate) {
     return new OffHeapEvictionAdvisorWrapper<K, V>(delegate);
   }
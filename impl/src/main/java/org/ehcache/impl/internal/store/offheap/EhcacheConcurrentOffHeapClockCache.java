@@ -16,10 +16,12 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.ehcache.config.EvictionAdvisor;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
+import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment;
 
 import org.terracotta.offheapstore.MetadataTuple;
 import org.terracotta.offheapstore.Segment;
@@ -240,4 +242,9 @@ public class EhcacheConcurrentOffHeapClockCache<K, V> extends AbstractConcurrent
   public long nextIdFor(final K key) {
     return counters[getIndexFor(key.hashCode())].getAndIncrement();
   }
+
+  @Override
+  public Map<K, V> removeAllWithHash(int keyHash) {
+    return ((EhcacheSegment<K, V>) segments[getIndexFor(keyHash)]).removeAllWithHash(keyHash);
+  }
 }
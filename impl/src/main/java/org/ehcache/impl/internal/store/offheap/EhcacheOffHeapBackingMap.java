@@ -17,6 +17,7 @@
 package org.ehcache.impl.internal.store.offheap;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 import org.ehcache.core.spi.function.BiFunction;
@@ -86,4 +87,16 @@ public interface EhcacheOffHeapBackingMap<K, V> extends ConcurrentMap<K, V>, Off
   List<Segment<K, V>> getSegments();
 
   boolean shrinkOthers(int excludedHash);
+
+  /**
+   * Removes all mappings whose key has the given hash code.
+   * <P>
+   *   This scans the keys of the segment the hash maps to, under that segment's write lock.
+   * </P>
+   *
+   * @param keyHash the key hash code
+   *
+   * @return the removed mappings
+   */
+  Map<K, V> removeAllWithHash(int keyHash);
 }
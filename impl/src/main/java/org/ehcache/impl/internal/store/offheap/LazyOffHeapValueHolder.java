@@ -20,6 +20,7 @@ import org.ehcache.core.spi.store.Store;
 import org.ehcache.impl.internal.store.BinaryValueHolder;
 import org.ehcache.spi.serialization.SerializerException;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompressor;
 import org.ehcache.spi.serialization.Serializer;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 
@@ -33,16 +34,22 @@ import java.util.concurrent.TimeUnit;
 public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> implements BinaryValueHolder {
 
   private final Serializer<V> valueSerializer;
+  private final ValueCompressor valueCompressor;
   private final WriteContext writeContext;
   private Mode mode;
   private ByteBuffer binaryValue;
   private V value;
 
   public LazyOffHeapValueHolder(long id, ByteBuffer binaryValue, Serializer<V> serializer, long creationTime, long expireTime, long lastAccessTime, long hits, WriteContext writeContext) {
+    this(id, binaryValue, serializer, null, creationTime, expireTime, lastAccessTime, hits, writeContext);
+  }
+
+  public LazyOffHeapValueHolder(long id, ByteBuffer binaryValue, Serializer<V> serializer, ValueCompressor compressor, long creationTime, long expireTime, long lastAccessTime, long hits, WriteContext writeContext) {
     super(id, creationTime, expireTime);
     setLastAccessTime(lastAccessTime, TIME_UNIT);
     this.binaryValue = binaryValue;
     this.valueSerializer = serializer;
+    this.valueCompressor = compressor;
     this.setHits(hits);
     this.writeContext = writeContext;
     this.mode = Mode.ATTACHED;
@@ -57,7 +64,7 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
   @Override
   public ByteBuffer getBinaryValue() throws IllegalStateException {
     if (isBinaryValueAvailable()) {
-      return binaryValue.duplicate();
+      return uncompressedBinaryValue();
     } else {
       throw new IllegalStateException("This OffHeapValueHolder has not been prepared to hand off its binary form");
     }
@@ -96,7 +103,7 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
   void forceDeserialization() {
     if (value == null) {
       try {
-        value = valueSerializer.read(binaryValue.duplicate());
+        value = valueSerializer.read(uncompressedBinaryValue());
       } catch (ClassNotFoundException e) {
         throw new SerializerException(e);
       } catch (SerializerException e) {
@@ -106,6 +113,14 @@ public final class LazyOffHeapValueHolder<V> extends OffHeapValueHolder<V> imple
     }
   }
 
+  private ByteBuffer uncompressedBinaryValue() {
+    if (valueCompressor == null) {
+      return binaryValue.duplicate();
+    } else {
+      return valueCompressor.decompress(binaryValue);
+    }
+  }
+
   /**
    * Must be called under offheap lock, may read invalid memory content otherwise
    */
@@ -23,12 +23,14 @@ import org.ehcache.config.EvictionAdvisor;
 import org.ehcache.config.ResourceType;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.core.events.StoreEventDispatcher;
+import org.ehcache.impl.config.store.compression.ValueCompressionConfiguration;
 import org.ehcache.core.spi.store.StoreAccessException;
 import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
 import org.ehcache.impl.internal.events.ThreadLocalStoreEventDispatcher;
 import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.impl.internal.store.offheap.portability.SerializerPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompressor;
 import org.ehcache.core.spi.time.TimeSource;
 import org.ehcache.core.spi.time.TimeSourceService;
 import org.ehcache.spi.service.ServiceProvider;
@@ -56,6 +58,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
+import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
 import static org.ehcache.impl.internal.store.offheap.OffHeapStoreUtils.getBufferSource;
 
 /**
@@ -66,11 +69,16 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
   private final EvictionAdvisor<K, OffHeapValueHolder<V>> evictionAdvisor;
   private final Serializer<K> keySerializer;
   private final Serializer<V> valueSerializer;
+  private final ValueCompressor valueCompressor;
   private final long sizeInBytes;
 
   private volatile EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
 
   public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes) {
+    this(config, timeSource, eventDispatcher, sizeInBytes, null);
+  }
+
+  public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, StoreEventDispatcher<K, V> eventDispatcher, long sizeInBytes, ValueCompressor valueCompressor) {
     super("local-offheap", config, timeSource, eventDispatcher);
     EvictionAdvisor<? super K, ? super V> evictionAdvisor = config.getEvictionAdvisor();
     if (evictionAdvisor != null) {
@@ -80,6 +88,10 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     }
     this.keySerializer = config.getKeySerializer();
     this.valueSerializer = config.getValueSerializer();
+    this.valueCompressor = valueCompressor;
+    if (valueCompressor != null) {
+      valueCompressor.registerStatistics(this, "local-offheap");
+    }
     this.sizeInBytes = sizeInBytes;
   }
 
@@ -92,7 +104,7 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     HeuristicConfiguration config = new HeuristicConfiguration(size);
     PageSource source = new UpfrontAllocatingPageSource(getBufferSource(), config.getMaximumSize(), config.getMaximumChunkSize(), config.getMinimumChunkSize());
     Portability<K> keyPortability = new SerializerPortability<K>(keySerializer);
-    Portability<OffHeapValueHolder<V>> elementPortability = new OffHeapValueHolderPortability<V>(valueSerializer);
+    Portability<OffHeapValueHolder<V>> elementPortability = new OffHeapValueHolderPortability<V>(valueSerializer, valueCompressor);
     Factory<OffHeapBufferStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = OffHeapBufferStorageEngine.createFactory(PointerSize.INT, source, config
         .getSegmentDataPageSize(), keyPortability, elementPortability, false, true);
 
@@ -141,8 +153,10 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
       }
       MemoryUnit unit = (MemoryUnit)offHeapPool.getUnit();
 
+      ValueCompressionConfiguration compressionConfig = findSingletonAmongst(ValueCompressionConfiguration.class, (Object[]) serviceConfigs);
+      ValueCompressor valueCompressor = compressionConfig == null ? null : new ValueCompressor(compressionConfig);
 
-      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, eventDispatcher, unit.toBytes(offHeapPool.getSize()));
+      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, eventDispatcher, unit.toBytes(offHeapPool.getSize()), valueCompressor);
       createdStores.add(offHeapStore);
       return offHeapStore;
     }
@@ -25,6 +25,9 @@ import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.storage.StorageEngine;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -106,6 +109,43 @@ public class EhcacheSegmentFactory<K, V> implements Factory<PinnableSegment<K, V
       }
     }
 
+    /**
+     * Removes all the mappings whose key hash code is {@code keyHash}.
+     * <P>
+     *   Only the probe sequence of {@code keyHash} is walked and keys are matched on the hash code stored in the
+     *   table, so only the removed mappings get decoded.
+     * </P>
+     *
+     * @param keyHash the key hash code
+     *
+     * @return the removed mappings
+     */
+    public Map<K, V> removeAllWithHash(int keyHash) {
+      Map<K, V> removed = new HashMap<K, V>();
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        IntBuffer table = hashtable;
+        int capacity = table.capacity();
+        int offset = indexFor(spread(keyHash));
+        for (int probed = 0; probed < capacity; probed += ENTRY_SIZE) {
+          int status = table.get(offset + STATUS);
+          if ((status & (STATUS_USED | STATUS_REMOVED)) == 0) {
+            break;
+          }
+          if ((status & STATUS_USED) != 0 && table.get(offset + KEY_HASHCODE) == keyHash) {
+            Entry<K, V> entry = getEntryAtTableOffset(offset);
+            removed.put(entry.getKey(), entry.getValue());
+            removeAtTableOffset(offset, false);
+          }
+          offset = (offset + ENTRY_SIZE) % capacity;
+        }
+      } finally {
+        lock.unlock();
+      }
+      return removed;
+    }
+
     public interface EvictionListener<K, V> {
       void onEviction(K key, V value);
     }
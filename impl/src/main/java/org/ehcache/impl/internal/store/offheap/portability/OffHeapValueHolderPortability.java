@@ -38,9 +38,15 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
   private static final int FIELDS_OVERHEAD = 40;
 
   private final Serializer<V> serializer;
+  private final ValueCompressor compressor;
 
   public OffHeapValueHolderPortability(Serializer<V> serializer) {
+    this(serializer, null);
+  }
+
+  public OffHeapValueHolderPortability(Serializer<V> serializer, ValueCompressor compressor) {
     this.serializer = serializer;
+    this.compressor = compressor;
   }
 
   @Override
@@ -51,6 +57,9 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
     } else {
       serialized = serializer.serialize(valueHolder.value());
     }
+    if (compressor != null) {
+      serialized = compressor.compress(serialized);
+    }
     ByteBuffer byteBuffer = ByteBuffer.allocate(serialized.remaining() + FIELDS_OVERHEAD);
     byteBuffer.putLong(valueHolder.getId());
     byteBuffer.putLong(valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT));
@@ -79,7 +88,7 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
     long lastAccessTime = byteBuffer.getLong();
     long expireTime = byteBuffer.getLong();
     long hits = byteBuffer.getLong();
-    return new LazyOffHeapValueHolder<V>(id, byteBuffer.slice(), serializer,
+    return new LazyOffHeapValueHolder<V>(id, byteBuffer.slice(), serializer, compressor,
         creationTime, expireTime, lastAccessTime, hits, writeContext);
   }
 }
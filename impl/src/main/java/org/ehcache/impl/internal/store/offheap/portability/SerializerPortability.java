@@ -16,6 +16,7 @@
 
 package org.ehcache.impl.internal.store.offheap.portability;
 
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.SerializerException;
 import org.ehcache.spi.serialization.Serializer;
 
@@ -29,9 +30,11 @@ import java.nio.ByteBuffer;
 public class SerializerPortability<T> implements Portability<T> {
 
   private final Serializer<T> serializer;
+  private final boolean canonical;
 
   public SerializerPortability(Serializer<T> serializer) {
     this.serializer = serializer;
+    this.canonical = serializer instanceof CanonicalSerializer;
   }
 
   @Override
@@ -50,6 +53,10 @@ public class SerializerPortability<T> implements Portability<T> {
 
   @Override
   public boolean equals(Object o, ByteBuffer byteBuffer) {
+    if (canonical) {
+      // equal instances have identical serial forms, so the stored binary needs no deserialization
+      return serializer.serialize((T) o).equals(byteBuffer);
+    }
     try {
       return serializer.equals((T)o, byteBuffer);
     } catch (ClassNotFoundException e) {
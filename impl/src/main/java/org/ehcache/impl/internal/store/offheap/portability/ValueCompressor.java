@@ -0,0 +1,170 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.impl.compression.CompressionCodec;
+import org.ehcache.impl.config.store.compression.ValueCompressionConfiguration;
+import org.ehcache.spi.serialization.SerializerException;
+import org.terracotta.statistics.StatisticsManager;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compression stage sitting between the value {@link org.ehcache.spi.serialization.Serializer} and the storage
+ * engine.
+ * <P>
+ *   Every stored form starts with a one byte header telling whether the payload is compressed, in which case the
+ *   uncompressed length follows as an int.
+ * </P>
+ */
+public class ValueCompressor {
+
+  private static final byte RAW = 0;
+  private static final byte COMPRESSED = 1;
+
+  private final CompressionCodec codec;
+  private final int threshold;
+
+  private final AtomicLong compressions = new AtomicLong();
+  private final AtomicLong rawStores = new AtomicLong();
+  private final AtomicLong inputBytes = new AtomicLong();
+  private final AtomicLong outputBytes = new AtomicLong();
+  private final AtomicLong compressionNanos = new AtomicLong();
+  private final AtomicLong decompressions = new AtomicLong();
+  private final AtomicLong decompressionNanos = new AtomicLong();
+
+  public ValueCompressor(ValueCompressionConfiguration configuration) {
+    this(configuration.getCodec(), configuration.getThreshold());
+  }
+
+  public ValueCompressor(CompressionCodec codec, int threshold) {
+    this.codec = codec;
+    this.threshold = threshold;
+  }
+
+  public CompressionCodec getCodec() {
+    return codec;
+  }
+
+  public ByteBuffer compress(ByteBuffer serialized) {
+    int length = serialized.remaining();
+    inputBytes.addAndGet(length);
+    if (length >= threshold) {
+      long start = System.nanoTime();
+      ByteBuffer compressed = codec.compress(serialized.duplicate());
+      compressionNanos.addAndGet(System.nanoTime() - start);
+      if (compressed.remaining() + 4 < length) {
+        compressions.incrementAndGet();
+        outputBytes.addAndGet(compressed.remaining() + 5);
+        ByteBuffer stored = ByteBuffer.allocate(compressed.remaining() + 5);
+        stored.put(COMPRESSED).putInt(length).put(compressed).flip();
+        return stored;
+      }
+    }
+    rawStores.incrementAndGet();
+    outputBytes.addAndGet(length + 1);
+    ByteBuffer stored = ByteBuffer.allocate(length + 1);
+    stored.put(RAW).put(serialized).flip();
+    return stored;
+  }
+
+  public ByteBuffer decompress(ByteBuffer stored) {
+    ByteBuffer source = stored.duplicate();
+    byte header = source.get();
+    switch (header) {
+      case RAW:
+        return source.slice();
+      case COMPRESSED:
+        long start = System.nanoTime();
+        ByteBuffer target = ByteBuffer.allocate(source.getInt());
+        try {
+          codec.decompress(source, target);
+        } catch (IllegalArgumentException e) {
+          throw new SerializerException(e);
+        }
+        decompressionNanos.addAndGet(System.nanoTime() - start);
+        decompressions.incrementAndGet();
+        target.flip();
+        return target;
+      default:
+        throw new SerializerException("Unknown value compression header : " + header);
+    }
+  }
+
+  public void registerStatistics(Object context, String statisticsTag) {
+    StatisticsManager.createPassThroughStatistic(context, "compressionCount", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compressions.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "uncompressedStoreCount", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return rawStores.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "compressionInputBytes", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return inputBytes.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "compressionOutputBytes", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return outputBytes.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "compressionRatio", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compressionRatio();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "compressionTime", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return compressionNanos.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "decompressionCount", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return decompressions.get();
+      }
+    });
+    StatisticsManager.createPassThroughStatistic(context, "decompressionTime", Collections.singleton(statisticsTag), new Callable<Number>() {
+      @Override
+      public Number call() throws Exception {
+        return decompressionNanos.get();
+      }
+    });
+  }
+
+  /**
+   * Ratio of serialized bytes to stored bytes, {@code 1.0} meaning no gain.
+   */
+  double compressionRatio() {
+    long out = outputBytes.get();
+    return out == 0 ? 1.0 : (double) inputBytes.get() / out;
+  }
+}
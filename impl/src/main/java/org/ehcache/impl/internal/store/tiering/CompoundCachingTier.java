@@ -16,6 +16,10 @@
 package org.ehcache.impl.internal.store.tiering;
 
 import org.ehcache.core.CacheConfigurationChangeListener;
+import org.ehcache.core.spi.service.ExecutionService;
+import org.ehcache.core.spi.time.TimeSource;
+import org.ehcache.core.spi.time.TimeSourceService;
+import org.ehcache.impl.config.store.tiering.AsyncDemotionConfiguration;
 import org.ehcache.core.spi.store.StoreAccessException;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.spi.service.ServiceProvider;
@@ -25,6 +29,7 @@ import org.ehcache.core.spi.store.tiering.HigherCachingTier;
 import org.ehcache.core.spi.store.tiering.LowerCachingTier;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
+import org.ehcache.spi.service.ServiceDependencies;
 import org.ehcache.core.internal.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,9 +37,16 @@ import org.terracotta.statistics.StatisticsManager;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
 
@@ -44,27 +56,44 @@ import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmon
 public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CompoundCachingTier.class);
+  private static final long DEMOTION_SHUTDOWN_TIMEOUT_SECONDS = 30;
 
   private final HigherCachingTier<K, V> higher;
   private final LowerCachingTier<K, V> lower;
   private volatile InvalidationListener<K, V> invalidationListener;
 
+  private final TimeSource timeSource;
+  private final ExecutorService[] demotionWorkers;
+  private final int demotionQueueSize;
+  private final ConcurrentMap<K, Demotion<V>> pendingDemotions;
+  private final AtomicInteger queuedDemotions = new AtomicInteger();
+
   public CompoundCachingTier(HigherCachingTier<K, V> higher, final LowerCachingTier<K, V> lower) {
+    this(higher, lower, null, null, 0);
+  }
+
+  /**
+   * Creates a compound caching tier demoting evicted values asynchronously.
+   *
+   * @param higher the higher caching tier
+   * @param lower the lower caching tier
+   * @param timeSource the time source used to check the expiry of values waiting for demotion
+   * @param demotionWorkers the executors running demotions, keys are spread over them by hash
+   * @param demotionQueueSize the maximum number of demotions waiting for a worker
+   */
+  public CompoundCachingTier(HigherCachingTier<K, V> higher, final LowerCachingTier<K, V> lower,
+                             TimeSource timeSource, ExecutorService[] demotionWorkers, int demotionQueueSize) {
     this.higher = higher;
     this.lower = lower;
+    this.timeSource = timeSource;
+    this.demotionWorkers = demotionWorkers;
+    this.demotionQueueSize = demotionQueueSize;
+    this.pendingDemotions = demotionWorkers == null ? null : new ConcurrentHashMap<K, Demotion<V>>();
     this.higher.setInvalidationListener(new InvalidationListener<K, V>() {
       @Override
       public void onInvalidation(final K key, final Store.ValueHolder<V> valueHolder) {
-        try {
-          CompoundCachingTier.this.lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
-            @Override
-            public Store.ValueHolder<V> apply(K k) {
-              return valueHolder;
-            }
-          });
-        } catch (StoreAccessException cae) {
-          notifyInvalidation(key, valueHolder);
-          LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+        if (pendingDemotions == null || !demoteAsynchronously(key, valueHolder)) {
+          demote(key, valueHolder);
         }
       }
     });
@@ -73,6 +102,136 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
     StatisticsManager.associate(lower).withParent(this);
   }
 
+  HigherCachingTier<K, V> getHigherCachingTier() {
+    return higher;
+  }
+
+  private void demote(K key, final Store.ValueHolder<V> valueHolder) {
+    try {
+      lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
+        @Override
+        public Store.ValueHolder<V> apply(K k) {
+          return valueHolder;
+        }
+      });
+    } catch (StoreAccessException cae) {
+      notifyInvalidation(key, valueHolder);
+      LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+    }
+  }
+
+  /**
+   * Hands the demotion of an evicted value to a worker.
+   * <P>
+   *   Until a worker installs it in the lower tier, the value is kept in {@link #pendingDemotions} where readers and
+   *   invalidations find it. Whoever removes it from there first owns it: a worker only installs the value if it
+   *   removed it, and does so under the lower tier lock for the key so that readers missing the pending value
+   *   find it in the lower tier.
+   * </P>
+   *
+   * @return {@code false} if the demotion queue is full or closed and the caller must demote synchronously
+   */
+  private boolean demoteAsynchronously(final K key, Store.ValueHolder<V> valueHolder) {
+    if (queuedDemotions.incrementAndGet() > demotionQueueSize) {
+      queuedDemotions.decrementAndGet();
+      return false;
+    }
+    final Demotion<V> demotion = new Demotion<V>(valueHolder);
+    pendingDemotions.put(key, demotion);
+    try {
+      demotionWorkers[(key.hashCode() & Integer.MAX_VALUE) % demotionWorkers.length].execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            completeDemotion(key, demotion);
+          } finally {
+            queuedDemotions.decrementAndGet();
+          }
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      queuedDemotions.decrementAndGet();
+      return !pendingDemotions.remove(key, demotion);
+    }
+  }
+
+  private void completeDemotion(K key, final Demotion<V> demotion) {
+    if (pendingDemotions.get(key) != demotion) {
+      return;
+    }
+    try {
+      lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
+        @Override
+        public Store.ValueHolder<V> apply(K k) {
+          return pendingDemotions.remove(k, demotion) ? demotion.valueHolder : null;
+        }
+      });
+    } catch (StoreAccessException cae) {
+      pendingDemotions.remove(key, demotion);
+      notifyInvalidation(key, demotion.valueHolder);
+      LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+    }
+  }
+
+  /**
+   * Takes back a value waiting for demotion, if any.
+   */
+  private Store.ValueHolder<V> reclaimDemotion(K key) {
+    if (pendingDemotions == null) {
+      return null;
+    }
+    Demotion<V> demotion = pendingDemotions.remove(key);
+    if (demotion == null) {
+      return null;
+    } else if (demotion.valueHolder.isExpired(timeSource.getTimeMillis(), TimeUnit.MILLISECONDS)) {
+      notifyInvalidation(key, demotion.valueHolder);
+      return null;
+    } else {
+      return demotion.valueHolder;
+    }
+  }
+
+  private void discardDemotion(K key) {
+    if (pendingDemotions != null) {
+      Demotion<V> demotion = pendingDemotions.remove(key);
+      if (demotion != null) {
+        notifyInvalidation(key, demotion.valueHolder);
+      }
+    }
+  }
+
+  void shutdownDemotion() {
+    if (demotionWorkers == null) {
+      return;
+    }
+    pendingDemotions.clear();
+    for (ExecutorService worker : demotionWorkers) {
+      worker.shutdown();
+    }
+    boolean interrupted = false;
+    for (ExecutorService worker : demotionWorkers) {
+      try {
+        if (!worker.awaitTermination(DEMOTION_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.warn("Demotion worker did not terminate within {} seconds", DEMOTION_SHUTDOWN_TIMEOUT_SECONDS);
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Demotion<V> {
+    private final Store.ValueHolder<V> valueHolder;
+
+    Demotion(Store.ValueHolder<V> valueHolder) {
+      this.valueHolder = valueHolder;
+    }
+  }
+
   private void notifyInvalidation(K key, Store.ValueHolder<V> p) {
     final InvalidationListener<K, V> invalidationListener = this.invalidationListener;
     if (invalidationListener != null) {
@@ -103,7 +262,11 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
         @Override
         public Store.ValueHolder<V> apply(K k) {
           try {
-            Store.ValueHolder<V> valueHolder = lower.getAndRemove(k);
+            Store.ValueHolder<V> valueHolder = reclaimDemotion(k);
+            if (valueHolder != null) {
+              return valueHolder;
+            }
+            valueHolder = lower.getAndRemove(k);
             if (valueHolder != null) {
               return valueHolder;
             }
@@ -129,6 +292,7 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
             if (mappedValue != null) {
               notifyInvalidation(key, mappedValue);
             }  else {
+              discardDemotion(key);
               lower.invalidate(key);
             }
           } catch (StoreAccessException cae) {
@@ -142,11 +306,30 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
     }
   }
 
+  @Override
+  public void invalidateAllWithHash(long hash) throws StoreAccessException {
+    try {
+      higher.invalidateAllWithHash(hash);
+    } finally {
+      if (pendingDemotions != null) {
+        for (Iterator<K> it = pendingDemotions.keySet().iterator(); it.hasNext(); ) {
+          if (it.next().hashCode() == (int) hash) {
+            it.remove();
+          }
+        }
+      }
+      lower.invalidateAllWithHash(hash);
+    }
+  }
+
   @Override
   public void clear() throws StoreAccessException {
     try {
       higher.clear();
     } finally {
+      if (pendingDemotions != null) {
+        pendingDemotions.clear();
+      }
       lower.clear();
     }
   }
@@ -166,6 +349,7 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
   }
 
 
+  @ServiceDependencies({TimeSourceService.class, ExecutionService.class})
   public static class Provider implements CachingTier.Provider {
     private volatile ServiceProvider<Service> serviceProvider;
     private final ConcurrentMap<CachingTier<?, ?>, Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider>> providersMap = new ConcurrentWeakIdentityHashMap<CachingTier<?, ?>, Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider>>();
@@ -187,7 +371,20 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
       LowerCachingTier.Provider lowerProvider = serviceProvider.getService(compoundCachingTierServiceConfiguration.lowerProvider());
       LowerCachingTier<K, V> lowerCachingTier = lowerProvider.createCachingTier(storeConfig, serviceConfigs);
 
-      CompoundCachingTier<K, V> compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier);
+      CompoundCachingTier<K, V> compoundCachingTier;
+      AsyncDemotionConfiguration asyncDemotionConfiguration = findSingletonAmongst(AsyncDemotionConfiguration.class, (Object[])serviceConfigs);
+      if (asyncDemotionConfiguration == null) {
+        compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier);
+      } else {
+        TimeSource timeSource = serviceProvider.getService(TimeSourceService.class).getTimeSource();
+        ExecutionService executionService = serviceProvider.getService(ExecutionService.class);
+        ExecutorService[] workers = new ExecutorService[asyncDemotionConfiguration.getWorkers()];
+        for (int i = 0; i < workers.length; i++) {
+          workers[i] = executionService.getOrderedExecutor(asyncDemotionConfiguration.getThreadPoolAlias(), new LinkedBlockingQueue<Runnable>());
+        }
+        compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier,
+            timeSource, workers, asyncDemotionConfiguration.getQueueSize());
+      }
       providersMap.put(compoundCachingTier, new AbstractMap.SimpleEntry<HigherCachingTier.Provider, LowerCachingTier.Provider>(higherProvider, lowerProvider));
       return compoundCachingTier;
     }
@@ -200,6 +397,7 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
       CompoundCachingTier compoundCachingTier = (CompoundCachingTier) resource;
       Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider> entry = providersMap.get(resource);
 
+      compoundCachingTier.shutdownDemotion();
       entry.getKey().releaseHigherCachingTier(compoundCachingTier.higher);
       entry.getValue().releaseCachingTier(compoundCachingTier.lower);
     }
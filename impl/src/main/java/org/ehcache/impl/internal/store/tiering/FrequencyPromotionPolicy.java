@@ -0,0 +1,36 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+/**
+ * {@link PromotionPolicy} promoting keys once they missed the caching tier a given number of times
+ * within a decaying window.
+ */
+public class FrequencyPromotionPolicy<K> implements PromotionPolicy<K> {
+
+  private final FrequencySketch sketch;
+  private final int accesses;
+
+  public FrequencyPromotionPolicy(int accesses, int window) {
+    this.sketch = new FrequencySketch(window);
+    this.accesses = accesses;
+  }
+
+  @Override
+  public boolean promote(K key) {
+    return sketch.incrementAndEstimate(key) >= accesses;
+  }
+}
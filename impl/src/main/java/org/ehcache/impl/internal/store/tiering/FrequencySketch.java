@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A count-min sketch of 4-bit counters estimating how often keys were seen.
+ * <P>
+ *   Each key maps to four counters spread over the table; its estimate is the lowest of them. Once
+ *   {@code sampleSize} increments happened every counter is halved, so estimates only reflect recent history.
+ *   Updates are lock free and an estimate may be off by the few increments racing with it.
+ * </P>
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAX_COUNT = 15;
+
+  private final AtomicLongArray table;
+  private final int tableMask;
+  private final int sampleSize;
+  private final AtomicInteger size = new AtomicInteger();
+
+  FrequencySketch(int sampleSize) {
+    int length = 64;
+    while (length < sampleSize / 10 && length < (1 << 24)) {
+      length <<= 1;
+    }
+    this.table = new AtomicLongArray(length);
+    this.tableMask = length - 1;
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Increments the counters of the given key and returns its estimated frequency, including this occurrence.
+   *
+   * @param key the key seen
+   * @return the estimated frequency
+   */
+  int incrementAndEstimate(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int offset = (start + i) << 2;
+      frequency = Math.min(frequency, increment(index, offset));
+    }
+    if (size.incrementAndGet() >= sampleSize) {
+      reset();
+    }
+    return frequency;
+  }
+
+  private int increment(int index, int offset) {
+    long mask = 0xfL << offset;
+    while (true) {
+      long current = table.get(index);
+      int count = (int) ((current & mask) >>> offset);
+      if (count == MAX_COUNT) {
+        return count;
+      }
+      if (table.compareAndSet(index, current, current + (1L << offset))) {
+        return count + 1;
+      }
+    }
+  }
+
+  private void reset() {
+    int current = size.get();
+    if (current >= sampleSize && size.compareAndSet(current, current >>> 1)) {
+      for (int i = 0; i < table.length(); i++) {
+        while (true) {
+          long value = table.get(i);
+          if (table.compareAndSet(i, value, (value >>> 1) & RESET_MASK)) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+}
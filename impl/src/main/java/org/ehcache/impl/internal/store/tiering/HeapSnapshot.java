@@ -0,0 +1,215 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+import org.ehcache.core.spi.store.StoreAccessException;
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.impl.internal.util.ThreadFactoryUtil;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists the hottest keys of the heap tier of a {@link TieredStore} across restarts.
+ * <P>
+ *   On release the keys of the most hit heap mappings are serialized to a file. On initialization that file is read
+ *   and deleted, and the keys are faulted from the authoritative tier by a pool of background threads. A snapshot that
+ *   cannot be read is discarded: the store then simply starts with a cold heap tier.
+ * </P>
+ */
+class HeapSnapshot<K> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HeapSnapshot.class);
+
+  static final String SNAPSHOT_FILE_NAME = "heap-snapshot.data";
+
+  private static final int MAGIC = 0x45484853;
+
+  private final File file;
+  private final Serializer<K> keySerializer;
+  private final int maxKeys;
+  private final int parallelism;
+
+  private final AtomicInteger warmedKeys = new AtomicInteger();
+
+  private volatile boolean cancelled;
+  private ExecutorService executor;
+
+  HeapSnapshot(File directory, Serializer<K> keySerializer, int maxKeys, int parallelism) {
+    this.file = new File(directory, SNAPSHOT_FILE_NAME);
+    this.keySerializer = keySerializer;
+    this.maxKeys = maxKeys;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Starts faulting the snapshotted keys into the caching tier of {@code store}, if there is a snapshot.
+   *
+   * @param store the store to warm
+   */
+  synchronized void restore(final TieredStore<K, ?> store) {
+    final List<K> keys = read();
+    if (keys.isEmpty()) {
+      return;
+    }
+    cancelled = false;
+    final AtomicInteger next = new AtomicInteger();
+    int threads = Math.min(parallelism, keys.size());
+    executor = Executors.newFixedThreadPool(threads, ThreadFactoryUtil.threadFactory("heap warm-up"));
+    for (int i = 0; i < threads; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = next.getAndIncrement(); i < keys.size() && !cancelled; i = next.getAndIncrement()) {
+            try {
+              store.faultingGet(keys.get(i));
+              warmedKeys.incrementAndGet();
+            } catch (StoreAccessException e) {
+              LOGGER.warn("Warming the heap tier failed, it is only partially loaded", e);
+              return;
+            }
+          }
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Stops any warm-up in progress and snapshots the hottest keys of {@code heapTier}.
+   *
+   * @param heapTier the heap tier to snapshot
+   */
+  synchronized void save(OnHeapStore<K, ?> heapTier) {
+    cancelled = true;
+    if (executor != null) {
+      awaitWarmUp(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      executor = null;
+    }
+    try {
+      write(heapTier.hottestKeys(maxKeys));
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the heap snapshot {}", file, e);
+    } catch (SerializerException e) {
+      LOGGER.warn("Unable to write the heap snapshot {}", file, e);
+    }
+  }
+
+  /**
+   * Waits for the warm-up to complete.
+   *
+   * @return {@code true} if there is no warm-up in progress anymore
+   */
+  synchronized boolean awaitWarmUp(long timeout, TimeUnit unit) {
+    if (executor == null) {
+      return true;
+    }
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  int getWarmedKeys() {
+    return warmedKeys.get();
+  }
+
+  private void write(List<K> keys) throws IOException {
+    File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+    try {
+      output.writeInt(MAGIC);
+      output.writeInt(keys.size());
+      for (K key : keys) {
+        ByteBuffer binary = keySerializer.serialize(key);
+        output.writeInt(binary.remaining());
+        while (binary.hasRemaining()) {
+          output.write(binary.get());
+        }
+      }
+    } finally {
+      output.close();
+    }
+    if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+      throw new IOException("Unable to rename " + temp + " to " + file);
+    }
+  }
+
+  private List<K> read() {
+    if (!file.isFile()) {
+      return Collections.emptyList();
+    }
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (input.readInt() != MAGIC) {
+          throw new IOException("Not a heap snapshot");
+        }
+        int count = input.readInt();
+        List<K> keys = new ArrayList<K>(Math.min(count, maxKeys));
+        for (int i = 0; i < count; i++) {
+          byte[] binary = new byte[input.readInt()];
+          input.readFully(binary);
+          if (keys.size() < maxKeys) {
+            keys.add(keySerializer.read(ByteBuffer.wrap(binary)));
+          }
+        }
+        return keys;
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Discarding unreadable heap snapshot {}", file, e);
+    } catch (ClassNotFoundException e) {
+      LOGGER.warn("Discarding unreadable heap snapshot {}", file, e);
+    } catch (SerializerException e) {
+      LOGGER.warn("Discarding unreadable heap snapshot {}", file, e);
+    } finally {
+      if (!file.delete()) {
+        LOGGER.warn("Unable to delete heap snapshot {}", file);
+      }
+    }
+    return Collections.emptyList();
+  }
+}
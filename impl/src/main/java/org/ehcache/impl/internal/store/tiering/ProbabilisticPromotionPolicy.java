@@ -0,0 +1,42 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+import java.util.Random;
+
+/**
+ * {@link PromotionPolicy} promoting keys with a fixed probability on each caching tier miss.
+ */
+public class ProbabilisticPromotionPolicy<K> implements PromotionPolicy<K> {
+
+  private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+    @Override
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  private final double probability;
+
+  public ProbabilisticPromotionPolicy(double probability) {
+    this.probability = probability;
+  }
+
+  @Override
+  public boolean promote(K key) {
+    return probability >= 1.0 || RANDOM.get().nextDouble() < probability;
+  }
+}
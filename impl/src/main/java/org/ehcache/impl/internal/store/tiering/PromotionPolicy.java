@@ -0,0 +1,36 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+/**
+ * Decides whether a value read from the authoritative tier of a {@link TieredStore} gets promoted
+ * into its caching tier.
+ *
+ * @param <K> the key type
+ */
+public interface PromotionPolicy<K> {
+
+  /**
+   * Records a caching tier miss for {@code key} and tells whether its value should be promoted.
+   * <P>
+   *   Implementations must be thread-safe and cheap: this is called on every caching tier miss.
+   * </P>
+   *
+   * @param key the key that missed the caching tier
+   * @return {@code true} if the value should be installed in the caching tier
+   */
+  boolean promote(K key);
+}
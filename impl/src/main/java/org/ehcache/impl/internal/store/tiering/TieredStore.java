@@ -16,6 +16,7 @@
 package org.ehcache.impl.internal.store.tiering;
 
 import org.ehcache.Cache;
+import org.ehcache.CachePersistenceException;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourceType;
@@ -24,6 +25,12 @@ import org.ehcache.core.spi.store.StoreAccessException;
 import org.ehcache.core.spi.function.BiFunction;
 import org.ehcache.core.spi.function.Function;
 import org.ehcache.core.spi.function.NullaryFunction;
+import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.core.spi.service.LocalPersistenceService;
+import org.ehcache.core.spi.service.LocalPersistenceService.PersistenceSpaceIdentifier;
+import org.ehcache.impl.config.store.tiering.HeapSnapshotConfiguration;
+import org.ehcache.impl.config.store.tiering.PromotionPolicyConfiguration;
+import org.ehcache.impl.config.store.tiering.WritePopulatesCachingTierConfiguration;
 import org.ehcache.impl.internal.store.disk.OffHeapDiskStore;
 import org.ehcache.impl.internal.store.heap.OnHeapStore;
 import org.ehcache.impl.internal.store.offheap.OffHeapStore;
@@ -51,12 +58,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Collections.unmodifiableSet;
 import static org.ehcache.config.ResourceType.Core.DISK;
 import static org.ehcache.config.ResourceType.Core.HEAP;
 import static org.ehcache.config.ResourceType.Core.OFFHEAP;
+import static org.ehcache.core.internal.service.ServiceLocator.findSingletonAmongst;
 
 /**
  * A {@link Store} implementation supporting a tiered caching model.
@@ -69,11 +78,24 @@ public class TieredStore<K, V> implements Store<K, V> {
   private final CachingTier<K, V> noopCachingTier;
   private final CachingTier<K, V> realCachingTier;
   private final AuthoritativeTier<K, V> authoritativeTier;
+  private final PromotionPolicy<K> promotionPolicy;
+  private final boolean writePopulatesCachingTier;
 
   private final TieringStoreStatsSettings tieringStoreStatsSettings;
 
 
   public TieredStore(CachingTier<K, V> cachingTier, AuthoritativeTier<K, V> authoritativeTier) {
+    this(cachingTier, authoritativeTier, null);
+  }
+
+  public TieredStore(CachingTier<K, V> cachingTier, AuthoritativeTier<K, V> authoritativeTier, PromotionPolicy<K> promotionPolicy) {
+    this(cachingTier, authoritativeTier, promotionPolicy, false);
+  }
+
+  public TieredStore(CachingTier<K, V> cachingTier, AuthoritativeTier<K, V> authoritativeTier, PromotionPolicy<K> promotionPolicy,
+                     boolean writePopulatesCachingTier) {
+    this.promotionPolicy = promotionPolicy;
+    this.writePopulatesCachingTier = writePopulatesCachingTier;
     this.cachingTierRef = new AtomicReference<CachingTier<K, V>>(cachingTier);
     this.authoritativeTier = authoritativeTier;
     this.realCachingTier = cachingTier;
@@ -96,6 +118,18 @@ public class TieredStore<K, V> implements Store<K, V> {
 
   @Override
   public ValueHolder<V> get(final K key) throws StoreAccessException {
+    if (promotionPolicy != null) {
+      return getWithPromotionPolicy(key);
+    } else {
+      return faultingGet(key);
+    }
+  }
+
+  /**
+   * Reads {@code key} through the caching tier, faulting it from the authoritative tier regardless of any
+   * {@link PromotionPolicy}.
+   */
+  ValueHolder<V> faultingGet(final K key) throws StoreAccessException {
     try {
       return cachingTier().getOrComputeIfAbsent(key, new Function<K, ValueHolder<V>>() {
         @Override
@@ -112,6 +146,180 @@ public class TieredStore<K, V> implements Store<K, V> {
     }
   }
 
+  private ValueHolder<V> getWithPromotionPolicy(final K key) throws StoreAccessException {
+    PromotingSource source = new PromotingSource();
+    ValueHolder<V> valueHolder;
+    try {
+      valueHolder = cachingTier().getOrComputeIfAbsent(key, source);
+    } catch (ComputationException ce) {
+      throw ce.getStoreAccessException();
+    }
+    if (valueHolder != null) {
+      return valueHolder;
+    } else if (source.invoked) {
+      return source.unpromoted;
+    } else {
+      // another thread's fault on this key was not promoted: read through to the authority
+      return authoritativeTier.get(key);
+    }
+  }
+
+  /**
+   * Caching tier source consulting the {@link PromotionPolicy}: keys that are not promoted are read from
+   * the authoritative tier without faulting, and the caching tier is handed {@code null} so it keeps no mapping.
+   */
+  private class PromotingSource implements Function<K, ValueHolder<V>> {
+
+    private boolean invoked;
+    private ValueHolder<V> unpromoted;
+
+    @Override
+    public ValueHolder<V> apply(K key) {
+      invoked = true;
+      try {
+        if (promotionPolicy.promote(key)) {
+          return authoritativeTier.getAndFault(key);
+        } else {
+          unpromoted = authoritativeTier.get(key);
+          return null;
+        }
+      } catch (StoreAccessException cae) {
+        throw new ComputationException(cae);
+      }
+    }
+  }
+
+  /**
+   * Performs a write against the authoritative tier from within a caching tier fault on the same key, so that the
+   * written value can be installed in the caching tier without being read back from the authoritative tier.
+   * <P>
+   *   The fault is in place before the write happens, so a concurrent writer invalidating the key after its own
+   *   write removes whatever this write installs. If another thread's mapping or fault was found instead, the write
+   *   is performed the usual way.
+   * </P>
+   */
+  private <R> R populatingWrite(K key, PopulatingWrite<R> write) throws StoreAccessException {
+    CachingTier<K, V> cachingTier = cachingTier();
+    cachingTier.invalidate(key);
+    cachingTier.getOrComputeIfAbsent(key, write);
+    if (write.invoked) {
+      if (write.failure != null) {
+        throw write.failure;
+      } else if (write.runtimeFailure != null) {
+        throw write.runtimeFailure;
+      }
+      return write.result;
+    }
+    try {
+      return write.write(key);
+    } finally {
+      cachingTier().invalidate(key);
+    }
+  }
+
+  private abstract class PopulatingWrite<R> implements Function<K, ValueHolder<V>> {
+
+    private boolean invoked;
+    private R result;
+    private StoreAccessException failure;
+    private RuntimeException runtimeFailure;
+
+    abstract R write(K key) throws StoreAccessException;
+
+    /**
+     * Returns the value the write left in the authoritative tier, or {@code null} if it did not write.
+     */
+    abstract V writtenValue(R result);
+
+    @Override
+    public ValueHolder<V> apply(K key) {
+      invoked = true;
+      try {
+        result = write(key);
+      } catch (StoreAccessException e) {
+        failure = e;
+        return null;
+      } catch (RuntimeException e) {
+        // left for the caller to rethrow as is, the caching tier would wrap it
+        runtimeFailure = e;
+        return null;
+      }
+      V value = writtenValue(result);
+      if (value == null) {
+        return null;
+      }
+      try {
+        ValueHolder<V> faulted = authoritativeTier.getAndFault(key);
+        return faulted == null ? null : new WrittenValueHolder<V>(faulted, value);
+      } catch (StoreAccessException e) {
+        LOG.debug("Failed to fault written mapping for key {}, leaving it out of the caching tier", key, e);
+        return null;
+      }
+    }
+  }
+
+  private abstract class ComputingWrite extends PopulatingWrite<ValueHolder<V>> {
+    @Override
+    V writtenValue(ValueHolder<V> result) {
+      return result == null ? null : result.value();
+    }
+  }
+
+  /**
+   * A faulted authoritative tier mapping carrying the value instance that was just written, sparing its
+   * deserialization.
+   */
+  private static final class WrittenValueHolder<V> implements ValueHolder<V> {
+
+    private final ValueHolder<V> faulted;
+    private final V value;
+
+    WrittenValueHolder(ValueHolder<V> faulted, V value) {
+      this.faulted = faulted;
+      this.value = value;
+    }
+
+    @Override
+    public V value() {
+      return value;
+    }
+
+    @Override
+    public long creationTime(TimeUnit unit) {
+      return faulted.creationTime(unit);
+    }
+
+    @Override
+    public long expirationTime(TimeUnit unit) {
+      return faulted.expirationTime(unit);
+    }
+
+    @Override
+    public boolean isExpired(long expirationTime, TimeUnit unit) {
+      return faulted.isExpired(expirationTime, unit);
+    }
+
+    @Override
+    public long lastAccessTime(TimeUnit unit) {
+      return faulted.lastAccessTime(unit);
+    }
+
+    @Override
+    public float hitRate(long now, TimeUnit unit) {
+      return faulted.hitRate(now, unit);
+    }
+
+    @Override
+    public long hits() {
+      return faulted.hits();
+    }
+
+    @Override
+    public long getId() {
+      return faulted.getId();
+    }
+  }
+
   static class ComputationException extends RuntimeException {
 
     public ComputationException(StoreAccessException cause) {
@@ -135,6 +343,19 @@ public class TieredStore<K, V> implements Store<K, V> {
 
   @Override
   public PutStatus put(final K key, final V value) throws StoreAccessException {
+    if (writePopulatesCachingTier) {
+      return populatingWrite(key, new PopulatingWrite<PutStatus>() {
+        @Override
+        PutStatus write(K key) throws StoreAccessException {
+          return authoritativeTier.put(key, value);
+        }
+
+        @Override
+        V writtenValue(PutStatus status) {
+          return status == PutStatus.NOOP ? null : value;
+        }
+      });
+    }
     try {
       return authoritativeTier.put(key, value);
     } finally {
@@ -178,7 +399,20 @@ public class TieredStore<K, V> implements Store<K, V> {
   }
 
   @Override
-  public ValueHolder<V> replace(K key, V value) throws StoreAccessException {
+  public ValueHolder<V> replace(K key, final V value) throws StoreAccessException {
+    if (writePopulatesCachingTier) {
+      return populatingWrite(key, new PopulatingWrite<ValueHolder<V>>() {
+        @Override
+        ValueHolder<V> write(K key) throws StoreAccessException {
+          return authoritativeTier.replace(key, value);
+        }
+
+        @Override
+        V writtenValue(ValueHolder<V> previous) {
+          return previous == null ? null : value;
+        }
+      });
+    }
     ValueHolder<V> previous = null;
     boolean exceptionThrown = true;
     try {
@@ -193,7 +427,20 @@ public class TieredStore<K, V> implements Store<K, V> {
   }
 
   @Override
-  public ReplaceStatus replace(K key, V oldValue, V newValue) throws StoreAccessException {
+  public ReplaceStatus replace(K key, final V oldValue, final V newValue) throws StoreAccessException {
+    if (writePopulatesCachingTier) {
+      return populatingWrite(key, new PopulatingWrite<ReplaceStatus>() {
+        @Override
+        ReplaceStatus write(K key) throws StoreAccessException {
+          return authoritativeTier.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        V writtenValue(ReplaceStatus status) {
+          return status == ReplaceStatus.HIT ? newValue : null;
+        }
+      });
+    }
     ReplaceStatus replaced = null;
     try {
       replaced = authoritativeTier.replace(key, oldValue, newValue);
@@ -250,6 +497,14 @@ public class TieredStore<K, V> implements Store<K, V> {
 
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction) throws StoreAccessException {
+    if (writePopulatesCachingTier) {
+      return populatingWrite(key, new ComputingWrite() {
+        @Override
+        ValueHolder<V> write(K key) throws StoreAccessException {
+          return authoritativeTier.compute(key, mappingFunction);
+        }
+      });
+    }
     try {
       return authoritativeTier.compute(key, mappingFunction);
     } finally {
@@ -259,6 +514,14 @@ public class TieredStore<K, V> implements Store<K, V> {
 
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction, final NullaryFunction<Boolean> replaceEqual) throws StoreAccessException {
+    if (writePopulatesCachingTier) {
+      return populatingWrite(key, new ComputingWrite() {
+        @Override
+        ValueHolder<V> write(K key) throws StoreAccessException {
+          return authoritativeTier.compute(key, mappingFunction, replaceEqual);
+        }
+      });
+    }
     try {
       return authoritativeTier.compute(key, mappingFunction, replaceEqual);
     } finally {
@@ -329,6 +592,17 @@ public class TieredStore<K, V> implements Store<K, V> {
     return cachingTierRef.get();
   }
 
+  /**
+   * Returns the heap tier of this store, or {@code null} if its caching tier is not heap based.
+   */
+  OnHeapStore<K, V> heapTier() {
+    CachingTier<K, V> tier = realCachingTier;
+    if (tier instanceof CompoundCachingTier) {
+      tier = ((CompoundCachingTier<K, V>) tier).getHigherCachingTier();
+    }
+    return tier instanceof OnHeapStore ? (OnHeapStore<K, V>) tier : null;
+  }
+
   @ServiceDependencies({CompoundCachingTier.Provider.class,
       OnHeapStore.Provider.class, OffHeapStore.Provider.class, OffHeapDiskStore.Provider.class})
   public static class Provider implements Store.Provider {
@@ -345,6 +619,7 @@ public class TieredStore<K, V> implements Store<K, V> {
 
     private volatile ServiceProvider<Service> serviceProvider;
     private final ConcurrentMap<Store<?, ?>, Map.Entry<CachingTier.Provider, AuthoritativeTier.Provider>> providersMap = new ConcurrentWeakIdentityHashMap<Store<?, ?>, Map.Entry<CachingTier.Provider, AuthoritativeTier.Provider>>();
+    private final ConcurrentMap<Store<?, ?>, HeapSnapshot<?>> heapSnapshots = new ConcurrentWeakIdentityHashMap<Store<?, ?>, HeapSnapshot<?>>();
 
     @Override
     public int rank(final Set<ResourceType<?>> resourceTypes, final Collection<ServiceConfiguration<?>> serviceConfigs) {
@@ -378,11 +653,55 @@ public class TieredStore<K, V> implements Store<K, V> {
       CachingTier<K, V> cachingTier = cachingTierProvider.createCachingTier(storeConfig, configurations);
       AuthoritativeTier<K, V> authoritativeTier = authoritativeTierProvider.createAuthoritativeTier(storeConfig, configurations);
 
-      TieredStore<K, V> store = new TieredStore<K, V>(cachingTier, authoritativeTier);
+      boolean writePopulatesCachingTier = findSingletonAmongst(WritePopulatesCachingTierConfiguration.class, (Object[]) serviceConfigs) != null;
+      TieredStore<K, V> store = new TieredStore<K, V>(cachingTier, authoritativeTier,
+          Provider.<K>createPromotionPolicy(serviceConfigs), writePopulatesCachingTier);
       registerStore(store, cachingTierProvider, authoritativeTierProvider);
+      HeapSnapshot<K> heapSnapshot = createHeapSnapshot(storeConfig, serviceConfigs);
+      if (heapSnapshot != null) {
+        heapSnapshots.put(store, heapSnapshot);
+      }
       return store;
     }
 
+    private <K> HeapSnapshot<K> createHeapSnapshot(Configuration<K, ?> storeConfig, ServiceConfiguration<?>... serviceConfigs) {
+      HeapSnapshotConfiguration configuration = findSingletonAmongst(HeapSnapshotConfiguration.class, (Object[]) serviceConfigs);
+      if (configuration == null) {
+        return null;
+      }
+      ResourcePool diskPool = storeConfig.getResourcePools().getPoolForResource(DISK);
+      if (diskPool == null || !diskPool.isPersistent()) {
+        throw new IllegalArgumentException("Heap snapshots require a persistent disk tier");
+      }
+      LocalPersistenceService localPersistenceService = serviceProvider.getService(LocalPersistenceService.class);
+      if (localPersistenceService == null) {
+        throw new IllegalStateException("No LocalPersistenceService could be found - did you configure it at the CacheManager level?");
+      }
+      PersistenceSpaceIdentifier space = findSingletonAmongst(PersistenceSpaceIdentifier.class, (Object[]) serviceConfigs);
+      try {
+        FileBasedPersistenceContext persistenceContext = localPersistenceService.createPersistenceContextWithin(space, "heap-snapshot");
+        return new HeapSnapshot<K>(persistenceContext.getDirectory(), storeConfig.getKeySerializer(),
+            configuration.getMaxKeys(), configuration.getParallelism());
+      } catch (CachePersistenceException cpex) {
+        throw new RuntimeException("Unable to create persistence context in " + space, cpex);
+      }
+    }
+
+    private static <K> PromotionPolicy<K> createPromotionPolicy(ServiceConfiguration<?>... serviceConfigs) {
+      PromotionPolicyConfiguration configuration = findSingletonAmongst(PromotionPolicyConfiguration.class, (Object[]) serviceConfigs);
+      if (configuration == null) {
+        return null;
+      }
+      switch (configuration.getType()) {
+        case FREQUENCY:
+          return new FrequencyPromotionPolicy<K>(configuration.getAccesses(), configuration.getWindow());
+        case PROBABILISTIC:
+          return new ProbabilisticPromotionPolicy<K>(configuration.getProbability());
+        default:
+          throw new AssertionError("Unsupported promotion policy " + configuration.getType());
+      }
+    }
+
     /**
      * Creates a {@link TieredStoreConfiguration} and any component configurations fitting
      * the resources provided.
@@ -455,6 +774,10 @@ public class TieredStore<K, V> implements Store<K, V> {
         throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
       }
       TieredStore tieredStore = (TieredStore) resource;
+      HeapSnapshot heapSnapshot = heapSnapshots.get(resource);
+      if (heapSnapshot != null) {
+        heapSnapshot.save(tieredStore.heapTier());
+      }
       entry.getKey().releaseCachingTier(tieredStore.realCachingTier);
       entry.getValue().releaseAuthoritativeTier(tieredStore.authoritativeTier);
     }
@@ -468,6 +791,10 @@ public class TieredStore<K, V> implements Store<K, V> {
       TieredStore tieredStore = (TieredStore) resource;
       entry.getKey().initCachingTier(tieredStore.realCachingTier);
       entry.getValue().initAuthoritativeTier(tieredStore.authoritativeTier);
+      HeapSnapshot heapSnapshot = heapSnapshots.get(resource);
+      if (heapSnapshot != null) {
+        heapSnapshot.restore(tieredStore);
+      }
     }
 
     @Override
@@ -479,6 +806,7 @@ public class TieredStore<K, V> implements Store<K, V> {
     public void stop() {
       this.serviceProvider = null;
       providersMap.clear();
+      heapSnapshots.clear();
     }
 
     private static class TieredStoreConfiguration {
@@ -537,6 +865,11 @@ public class TieredStore<K, V> implements Store<K, V> {
       // noop
     }
 
+    @Override
+    public void invalidateAllWithHash(long hash) throws StoreAccessException {
+      // noop
+    }
+
     @Override
     public void clear() throws StoreAccessException {
       // noop
@@ -18,6 +18,7 @@ package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
 import org.ehcache.spi.serialization.SerializerException;
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
@@ -30,7 +31,7 @@ import java.nio.ByteBuffer;
  * byte-to-byte comparison of both byte arrays.
  * </p>
  */
-public class ByteArraySerializer implements Serializer<byte[]> {
+public class ByteArraySerializer implements CanonicalSerializer<byte[]> {
 
   /**
    * No arg constructor
@@ -24,7 +24,9 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -35,9 +37,9 @@ import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.ehcache.spi.serialization.SerializerException;
-import org.ehcache.impl.internal.util.ByteBufferInputStream;
 import org.ehcache.spi.serialization.Serializer;
 
 /**
@@ -47,11 +49,30 @@ import org.ehcache.spi.serialization.Serializer;
  * between the integer representation and the {@link ObjectStreamClass}, and the
  * {@code Class} and the integer representation are stored in a single on-heap
  * map.
+ * <p>
+ * Object streams and their buffers are pooled per serializer instance and reset
+ * between uses, so that a serialization only allocates the returned bytes and a
+ * deserialization only allocates the read object graph.
  */
 public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
 
+  private static final byte[] STREAM_HEADER = {
+      (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8), (byte) ObjectStreamConstants.STREAM_MAGIC,
+      (byte) (ObjectStreamConstants.STREAM_VERSION >>> 8), (byte) ObjectStreamConstants.STREAM_VERSION
+  };
+
+  private static final byte[] RESET_MARKERS = {ObjectStreamConstants.TC_RESET, ObjectStreamConstants.TC_NULL};
+
+  /*
+   * Writers whose buffer grew past this size served an unusually large object, they are dropped rather than pooled.
+   */
+  private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
   private final AtomicInteger nextStreamIndex = new AtomicInteger(0);
 
+  private final StreamPool<Writer> writers = new StreamPool<Writer>();
+  private final StreamPool<Reader> readers = new StreamPool<Reader>();
+
   private final ConcurrentMap<Integer, ObjectStreamClass> readLookup = new ConcurrentHashMap<Integer, ObjectStreamClass>();
   private final ConcurrentMap<SerializableDataKey, Integer> writeLookup = new ConcurrentHashMap<SerializableDataKey, Integer>();
 
@@ -90,14 +111,15 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
   @Override
   public ByteBuffer serialize(T object) throws SerializerException {
     try {
-      ByteArrayOutputStream bout = new ByteArrayOutputStream();
-      ObjectOutputStream oout = getObjectOutputStream(bout);
-      try {
-        oout.writeObject(object);
-      } finally {
-        oout.close();
+      Writer writer = writers.take();
+      if (writer == null) {
+        writer = new Writer();
       }
-      return ByteBuffer.wrap(bout.toByteArray());
+      ByteBuffer binary = writer.write(object);
+      if (writer.isPoolable()) {
+        writers.offer(writer);
+      }
+      return binary;
     } catch (IOException e) {
       throw new SerializerException(e);
     }
@@ -109,12 +131,13 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
   @Override
   public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
     try {
-      ObjectInputStream oin = getObjectInputStream(new ByteBufferInputStream(binary));
-      try {
-        return (T) oin.readObject();
-      } finally {
-        oin.close();
+      Reader reader = readers.take();
+      if (reader == null) {
+        reader = new Reader();
       }
+      T object = (T) reader.read(binary);
+      readers.offer(reader);
+      return object;
     } catch (IOException e) {
       throw new SerializerException(e);
     }
@@ -173,6 +196,191 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
   public void close() {
     readLookup.clear();
     writeLookup.clear();
+    writers.clear();
+    readers.clear();
+  }
+
+  /**
+   * A reusable object output stream writing into a reusable buffer.
+   * <p>
+   * The stream is reset after every object so that its handle table neither leaks back-references into the next
+   * object nor retains the last written graph.  The stream header is written by hand as the stream itself only writes
+   * it once, on construction.
+   * <p>
+   * Any failure leaves the stream in an unknown state, so writers are only returned to the pool after a successful
+   * write.
+   */
+  private final class Writer {
+
+    private final PooledOutputStream bytes = new PooledOutputStream();
+    private final ObjectOutputStream oout;
+
+    Writer() throws IOException {
+      this.oout = getObjectOutputStream(bytes);
+      oout.flush();
+    }
+
+    ByteBuffer write(Object object) throws IOException {
+      bytes.reset();
+      bytes.write(STREAM_HEADER, 0, STREAM_HEADER.length);
+      oout.writeObject(object);
+      oout.flush();
+      ByteBuffer binary = ByteBuffer.wrap(bytes.toByteArray());
+      oout.reset();
+      oout.flush();
+      return binary;
+    }
+
+    boolean isPoolable() {
+      return bytes.capacity() <= MAX_POOLED_BUFFER_SIZE;
+    }
+  }
+
+  /**
+   * A reusable object input stream reading from a rebindable buffer source.
+   * <p>
+   * An object input stream only clears its handle table when closed or when it reads a reset marker.  After every
+   * object the source is bound to a {@code TC_RESET} marker followed by a {@code TC_NULL}, which the stream reads as a
+   * {@code null} object after dropping its handles: a pooled reader neither resolves back-references into the next
+   * binary nor retains the last read graph.
+   * <p>
+   * As for writers, readers are only returned to the pool after a successful read.
+   */
+  private final class Reader {
+
+    private final PooledInputStream input = new PooledInputStream();
+    private final ObjectInputStream oin;
+
+    Reader() throws IOException {
+      this.oin = getObjectInputStream(input);
+    }
+
+    Object read(ByteBuffer binary) throws IOException, ClassNotFoundException {
+      input.bind(binary);
+      Object object = oin.readObject();
+      input.bindReset();
+      if (oin.readObject() != null) {
+        throw new StreamCorruptedException("Unexpected object after reset");
+      }
+      input.unbind();
+      return object;
+    }
+  }
+
+  private static final class PooledOutputStream extends ByteArrayOutputStream {
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+
+  /**
+   * Reads a binary from its position to its limit, without modifying it.
+   * <p>
+   * The stream is initially bound to a stream header, for the construction of the object input stream.
+   */
+  private static final class PooledInputStream extends InputStream {
+
+    private final ByteBuffer resetMarkers = ByteBuffer.wrap(RESET_MARKERS);
+
+    private ByteBuffer buffer = ByteBuffer.wrap(STREAM_HEADER);
+    private int position = 0;
+    private int limit = STREAM_HEADER.length;
+
+    void bind(ByteBuffer binary) throws StreamCorruptedException {
+      int start = binary.position();
+      if (binary.remaining() < STREAM_HEADER.length) {
+        throw new StreamCorruptedException("Truncated stream header");
+      }
+      for (int i = 0; i < STREAM_HEADER.length; i++) {
+        if (binary.get(start + i) != STREAM_HEADER[i]) {
+          throw new StreamCorruptedException("Invalid stream header");
+        }
+      }
+      this.buffer = binary;
+      this.position = start + STREAM_HEADER.length;
+      this.limit = binary.limit();
+    }
+
+    void bindReset() {
+      this.buffer = resetMarkers;
+      this.position = 0;
+      this.limit = RESET_MARKERS.length;
+    }
+
+    void unbind() {
+      this.buffer = null;
+      this.position = 0;
+      this.limit = 0;
+    }
+
+    @Override
+    public int read() {
+      if (position < limit) {
+        return 0xff & buffer.get(position++);
+      } else {
+        return -1;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      int count = Math.min(len, limit - position);
+      if (count <= 0) {
+        return -1;
+      }
+      if (buffer.hasArray()) {
+        System.arraycopy(buffer.array(), buffer.arrayOffset() + position, b, off, count);
+      } else {
+        for (int i = 0; i < count; i++) {
+          b[off + i] = buffer.get(position + i);
+        }
+      }
+      position += count;
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return limit - position;
+    }
+  }
+
+  /**
+   * A lock-free pool striped by thread, a thread only ever looks at its own slot.
+   * <p>
+   * Pooling is done per serializer rather than through thread locals: the pooled streams reference their serializer,
+   * and as such would otherwise keep it, and its class loader, reachable from every thread that used it.
+   */
+  private static final class StreamPool<S> {
+
+    private final AtomicReferenceArray<S> slots;
+
+    StreamPool() {
+      int size = Integer.highestOneBit(Math.max(2 * Runtime.getRuntime().availableProcessors() - 1, 1)) << 1;
+      this.slots = new AtomicReferenceArray<S>(size);
+    }
+
+    S take() {
+      return slots.getAndSet(slot(), null);
+    }
+
+    void offer(S stream) {
+      slots.compareAndSet(slot(), null, stream);
+    }
+
+    void clear() {
+      for (int i = 0; i < slots.length(); i++) {
+        slots.set(i, null);
+      }
+    }
+
+    private int slot() {
+      return (int) Thread.currentThread().getId() & (slots.length() - 1);
+    }
   }
 
   class OOS extends ObjectOutputStream {
@@ -17,15 +17,16 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
 
 /**
  * Default {@link Serializer} for {@code Double} type. Simply writes the double value
- * to a byte buffer.
+ * to a byte buffer, with all {@code NaN} values collapsed to the canonical one.
  */
-public class DoubleSerializer implements Serializer<Double> {
+public class DoubleSerializer implements CanonicalSerializer<Double> {
 
   /**
    * No arg constructor
@@ -67,7 +68,7 @@ public class DoubleSerializer implements Serializer<Double> {
   @Override
   public ByteBuffer serialize(Double object) {
     ByteBuffer byteBuffer = ByteBuffer.allocate(8);
-    byteBuffer.putDouble(object).flip();
+    byteBuffer.putLong(Double.doubleToLongBits(object)).flip();
     return byteBuffer;
   }
 
@@ -17,15 +17,16 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
 
 /**
  * Default {@link Serializer} for {@code Float} type. Simply writes the float value
- * to a byte buffer.
+ * to a byte buffer, with all {@code NaN} values collapsed to the canonical one.
  */
-public class FloatSerializer implements Serializer<Float> {
+public class FloatSerializer implements CanonicalSerializer<Float> {
 
   /**
    * No arg constructor
@@ -67,7 +68,7 @@ public class FloatSerializer implements Serializer<Float> {
   @Override
   public ByteBuffer serialize(Float object) {
     ByteBuffer byteBuffer = ByteBuffer.allocate(4);
-    byteBuffer.putFloat(object).flip();
+    byteBuffer.putInt(Float.floatToIntBits(object)).flip();
     return byteBuffer;
   }
 
@@ -17,6 +17,7 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
@@ -25,7 +26,7 @@ import java.nio.ByteBuffer;
  * Default {@link Serializer} for {@code Integer} type. Simply writes the integer value
  * to a byte buffer.
  */
-public class IntegerSerializer implements Serializer<Integer> {
+public class IntegerSerializer implements CanonicalSerializer<Integer> {
 
   /**
    * No arg constructor
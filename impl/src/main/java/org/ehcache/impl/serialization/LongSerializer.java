@@ -17,6 +17,7 @@
 package org.ehcache.impl.serialization;
 
 import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
@@ -25,7 +26,7 @@ import java.nio.ByteBuffer;
  * Default {@link Serializer} for {@code Long} type. Simply writes the long value
  * to a byte buffer.
  */
-public class LongSerializer implements Serializer<Long> {
+public class LongSerializer implements CanonicalSerializer<Long> {
 
   /**
    * No arg constructor
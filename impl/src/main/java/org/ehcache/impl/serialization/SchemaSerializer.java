@@ -0,0 +1,725 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.serialization;
+
+import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Serializer} encoding instances of a plain class field by field, following a schema derived from the class.
+ * <P>
+ *   The schema holds all non-static, non-transient fields of the class and of its superclasses, ordered by name. Fields
+ *   must be primitives, boxed primitives, {@code String}s, {@code byte[]}s or enums, and the class must declare a
+ *   no-argument constructor, of any visibility. Instances are written as a schema index followed by the field values,
+ *   without any class descriptor, using variable length encodings for integral values.
+ * </P>
+ * <P>
+ *   This serializer is opted into per type, by mapping it to the type on the
+ *   {@link org.ehcache.impl.config.serializer.DefaultSerializationProviderConfiguration} or on a cache configuration.
+ *   The serialization provider passes the serialized type to its constructor. Only instances of exactly that type can
+ *   be serialized: the schema cannot hold the state of subclasses, so their instances are rejected.
+ * </P>
+ * <P>
+ *   When persistent, the schemas are kept in the persistence context. Values written before the class changed can then
+ *   still be read: fields are matched by name and type, values of fields no longer declared are skipped, and new
+ *   fields keep the value assigned by the no-argument constructor.
+ * </P>
+ *
+ * @param <T> the type of the instances to serialize
+ */
+public class SchemaSerializer<T> implements Serializer<T> {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int STATE_MAGIC = 0x45485353;
+
+  private final Constructor<T> constructor;
+  private final List<Slot[]> schemas;
+  private final int currentSchema;
+  private final Slot[] writeSchema;
+
+  private volatile int sizeHint = 32;
+
+  /**
+   * Creates a serializer for the given type.
+   *
+   * @param type the serialized type
+   *
+   * @throws IllegalArgumentException if the type cannot be described by a schema
+   */
+  public SchemaSerializer(Class<T> type) {
+    this.constructor = noArgConstructor(type);
+    this.writeSchema = schemaOf(type);
+    this.schemas = Collections.singletonList(writeSchema);
+    this.currentSchema = 0;
+  }
+
+  /**
+   * Constructor to enable this serializer as a transient one.
+   * <P>
+   *   The class loader is ignored as the serialized type is already loaded.
+   * </P>
+   *
+   * @param type the serialized type
+   * @param classLoader the classloader to use
+   *
+   * @throws IllegalArgumentException if the type cannot be described by a schema
+   *
+   * @see Serializer
+   */
+  public SchemaSerializer(Class<T> type, ClassLoader classLoader) {
+    this(type);
+  }
+
+  /**
+   * Constructor to enable this serializer as a persistent one.
+   *
+   * @param type the serialized type
+   * @param classLoader the classloader to use
+   * @param persistenceContext the persistence context holding the schemas
+   *
+   * @throws IllegalArgumentException if the type cannot be described by a schema
+   * @throws IOException if the schemas cannot be read or written
+   *
+   * @see Serializer
+   */
+  public SchemaSerializer(Class<T> type, ClassLoader classLoader, FileBasedPersistenceContext persistenceContext) throws IOException {
+    this.constructor = noArgConstructor(type);
+    this.writeSchema = schemaOf(type);
+
+    Map<String, Field> fields = new TreeMap<String, Field>();
+    for (Slot slot : writeSchema) {
+      fields.put(slot.name, slot.field);
+    }
+    File stateFile = new File(persistenceContext.getDirectory(), "SchemaSerializer.state");
+    List<Slot[]> stored = stateFile.exists() ? readSchemas(stateFile, fields) : new ArrayList<Slot[]>();
+
+    int current = -1;
+    for (int i = 0; i < stored.size() && current < 0; i++) {
+      if (Arrays.equals(stored.get(i), writeSchema)) {
+        current = i;
+      }
+    }
+    if (current < 0) {
+      stored.add(writeSchema);
+      writeSchemas(stateFile, stored);
+      current = stored.size() - 1;
+    }
+    this.schemas = stored;
+    this.currentSchema = current;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ByteBuffer serialize(T object) throws SerializerException {
+    if (object.getClass() != constructor.getDeclaringClass()) {
+      throw new SerializerException("Cannot serialize " + object.getClass().getName() + " with the schema of "
+          + constructor.getDeclaringClass().getName() + ": subclass state would be lost");
+    }
+    Output out = new Output(sizeHint);
+    out.putVarInt(currentSchema);
+    try {
+      for (Slot slot : writeSchema) {
+        slot.type.write(out, object, slot.field);
+      }
+    } catch (IllegalAccessException e) {
+      throw new SerializerException(e);
+    }
+    sizeHint = out.size;
+    return out.toByteBuffer();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+    int index = getVarInt(binary);
+    if (index >= schemas.size()) {
+      throw new SerializerException("Unknown schema " + index + " for " + constructor.getDeclaringClass().getName());
+    }
+    try {
+      T instance = constructor.newInstance();
+      for (Slot slot : schemas.get(index)) {
+        slot.type.read(binary, instance, slot.field);
+      }
+      return instance;
+    } catch (InstantiationException e) {
+      throw new SerializerException(e);
+    } catch (IllegalAccessException e) {
+      throw new SerializerException(e);
+    } catch (InvocationTargetException e) {
+      throw new SerializerException(e.getCause());
+    } catch (IllegalArgumentException e) {
+      throw new SerializerException(e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(T object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+    return object.equals(read(binary));
+  }
+
+  private static <T> Constructor<T> noArgConstructor(Class<T> type) {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+      throw new IllegalArgumentException("Cannot build a schema for abstract type " + type.getName());
+    }
+    try {
+      Constructor<T> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return constructor;
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException("Cannot build a schema for " + type.getName() + " : it declares no no-argument constructor", e);
+    }
+  }
+
+  private static Slot[] schemaOf(Class<?> type) {
+    Map<String, Slot> slots = new TreeMap<String, Slot>();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+          continue;
+        }
+        FieldType fieldType = FieldType.of(field.getType());
+        if (fieldType == null) {
+          throw new IllegalArgumentException("Cannot build a schema for " + type.getName() + " : field " + field.getName()
+                                             + " has unsupported type " + field.getType().getName());
+        }
+        field.setAccessible(true);
+        if (slots.put(field.getName(), new Slot(field.getName(), fieldType, field)) != null) {
+          throw new IllegalArgumentException("Cannot build a schema for " + type.getName() + " : field " + field.getName()
+                                             + " is declared more than once in the class hierarchy");
+        }
+      }
+    }
+    return slots.values().toArray(new Slot[slots.size()]);
+  }
+
+  private static List<Slot[]> readSchemas(File stateFile, Map<String, Field> fields) throws IOException {
+    DataInputStream in = new DataInputStream(new FileInputStream(stateFile));
+    try {
+      if (in.readInt() != STATE_MAGIC) {
+        throw new IOException("Invalid schema file " + stateFile);
+      }
+      int count = in.readInt();
+      List<Slot[]> schemas = new ArrayList<Slot[]>(count);
+      for (int i = 0; i < count; i++) {
+        Slot[] schema = new Slot[in.readInt()];
+        for (int j = 0; j < schema.length; j++) {
+          String name = in.readUTF();
+          FieldType type = FieldType.values()[in.readByte()];
+          Field field = fields.get(name);
+          if (field != null && FieldType.of(field.getType()) != type) {
+            field = null;
+          }
+          schema[j] = new Slot(name, type, field);
+        }
+        schemas.add(schema);
+      }
+      return schemas;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeSchemas(File stateFile, List<Slot[]> schemas) throws IOException {
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(stateFile));
+    try {
+      out.writeInt(STATE_MAGIC);
+      out.writeInt(schemas.size());
+      for (Slot[] schema : schemas) {
+        out.writeInt(schema.length);
+        for (Slot slot : schema) {
+          out.writeUTF(slot.name);
+          out.writeByte(slot.type.ordinal());
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  static int getVarInt(ByteBuffer in) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new SerializerException("Malformed varint");
+  }
+
+  static long getVarLong(ByteBuffer in) {
+    long zigzag = 0;
+    for (int shift = 0; shift < 70; shift += 7) {
+      byte b = in.get();
+      zigzag |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new SerializerException("Malformed varlong");
+  }
+
+  /**
+   * A schema entry. The field is {@code null} when the value is read but no longer declared by the class.
+   */
+  private static final class Slot {
+
+    private final String name;
+    private final FieldType type;
+    private final Field field;
+
+    Slot(String name, FieldType type, Field field) {
+      this.name = name;
+      this.type = type;
+      this.field = field;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof Slot) {
+        Slot other = (Slot) o;
+        return name.equals(other.name) && type == other.type;
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return name.hashCode() * 31 + type.hashCode();
+    }
+  }
+
+  /**
+   * The encodings of the supported field types.
+   * <P>
+   *   Ordinals are persisted in the schemas: constants must only ever be appended.
+   * </P>
+   */
+  enum FieldType {
+    BOOLEAN(boolean.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.put((byte) (field.getBoolean(instance) ? 1 : 0));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        boolean value = in.get() != 0;
+        if (field != null) {
+          field.setBoolean(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.put((byte) (((Boolean) value) ? 1 : 0));
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return in.get() != 0;
+      }
+    },
+    BYTE(byte.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.put(field.getByte(instance));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        byte value = in.get();
+        if (field != null) {
+          field.setByte(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.put((Byte) value);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return in.get();
+      }
+    },
+    SHORT(short.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putVarLong(field.getShort(instance));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        short value = (short) getVarLong(in);
+        if (field != null) {
+          field.setShort(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putVarLong((Short) value);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return (short) getVarLong(in);
+      }
+    },
+    CHAR(char.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putVarInt(field.getChar(instance));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        char value = (char) getVarInt(in);
+        if (field != null) {
+          field.setChar(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putVarInt((Character) value);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return (char) getVarInt(in);
+      }
+    },
+    INT(int.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putVarLong(field.getInt(instance));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        int value = (int) getVarLong(in);
+        if (field != null) {
+          field.setInt(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putVarLong((Integer) value);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return (int) getVarLong(in);
+      }
+    },
+    LONG(long.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putVarLong(field.getLong(instance));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        long value = getVarLong(in);
+        if (field != null) {
+          field.setLong(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putVarLong((Long) value);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return getVarLong(in);
+      }
+    },
+    FLOAT(float.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putInt(Float.floatToRawIntBits(field.getFloat(instance)));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        float value = in.getFloat();
+        if (field != null) {
+          field.setFloat(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putInt(Float.floatToRawIntBits((Float) value));
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return in.getFloat();
+      }
+    },
+    DOUBLE(double.class) {
+      @Override
+      void write(Output out, Object instance, Field field) throws IllegalAccessException {
+        out.putLong(Double.doubleToRawLongBits(field.getDouble(instance)));
+      }
+
+      @Override
+      void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+        double value = in.getDouble();
+        if (field != null) {
+          field.setDouble(instance, value);
+        }
+      }
+
+      @Override
+      void encode(Output out, Object value) {
+        out.putLong(Double.doubleToRawLongBits((Double) value));
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        return in.getDouble();
+      }
+    },
+    BOOLEAN_OBJECT(Boolean.class, BOOLEAN),
+    BYTE_OBJECT(Byte.class, BYTE),
+    SHORT_OBJECT(Short.class, SHORT),
+    CHARACTER_OBJECT(Character.class, CHAR),
+    INTEGER_OBJECT(Integer.class, INT),
+    LONG_OBJECT(Long.class, LONG),
+    FLOAT_OBJECT(Float.class, FLOAT),
+    DOUBLE_OBJECT(Double.class, DOUBLE),
+    STRING(String.class) {
+      @Override
+      void encode(Output out, Object value) {
+        String string = (String) value;
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+          if (string.charAt(i) >= 0x80) {
+            byte[] bytes = string.getBytes(UTF_8);
+            out.putVarInt(bytes.length);
+            out.put(bytes);
+            return;
+          }
+        }
+        out.putVarInt(length);
+        out.putAscii(string);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        byte[] bytes = new byte[getVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+      }
+    },
+    BYTES(byte[].class) {
+      @Override
+      void encode(Output out, Object value) {
+        byte[] bytes = (byte[]) value;
+        out.putVarInt(bytes.length);
+        out.put(bytes);
+      }
+
+      @Override
+      Object decode(ByteBuffer in, Class<?> type) {
+        byte[] bytes = new byte[getVarInt(in)];
+        in.get(bytes);
+        return bytes;
+      }
+    },
+    ENUM(Enum.class) {
+      @Override
+      void encode(Output out, Object value) {
+        STRING.encode(out, ((Enum<?>) value).name());
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      Object decode(ByteBuffer in, Class<?> type) {
+        String name = (String) STRING.decode(in, String.class);
+        return type == null ? name : Enum.valueOf((Class) type, name);
+      }
+    };
+
+    private final Class<?> type;
+    private final FieldType primitive;
+
+    FieldType(Class<?> type) {
+      this(type, null);
+    }
+
+    FieldType(Class<?> type, FieldType primitive) {
+      this.type = type;
+      this.primitive = primitive;
+    }
+
+    static FieldType of(Class<?> type) {
+      if (type.isEnum()) {
+        return ENUM;
+      }
+      for (FieldType fieldType : values()) {
+        if (fieldType.type == type) {
+          return fieldType;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Writes a nullable field value: a presence byte followed by the encoded value.
+     */
+    void write(Output out, Object instance, Field field) throws IllegalAccessException {
+      Object value = field.get(instance);
+      if (value == null) {
+        out.put((byte) 0);
+      } else {
+        out.put((byte) 1);
+        encode(out, value);
+      }
+    }
+
+    /**
+     * Reads a nullable field value, setting it on the instance unless {@code field} is {@code null}.
+     */
+    void read(ByteBuffer in, Object instance, Field field) throws IllegalAccessException {
+      Object value = in.get() == 0 ? null : decode(in, field == null ? null : field.getType());
+      if (field != null) {
+        field.set(instance, value);
+      }
+    }
+
+    void encode(Output out, Object value) {
+      primitive.encode(out, value);
+    }
+
+    Object decode(ByteBuffer in, Class<?> type) {
+      return primitive.decode(in, type);
+    }
+  }
+
+  /**
+   * A growable big endian byte sink.
+   */
+  static final class Output {
+
+    private byte[] bytes;
+    private int size;
+
+    Output(int capacity) {
+      this.bytes = new byte[capacity];
+    }
+
+    void put(byte b) {
+      ensure(1);
+      bytes[size++] = b;
+    }
+
+    void put(byte[] b) {
+      ensure(b.length);
+      System.arraycopy(b, 0, bytes, size, b.length);
+      size += b.length;
+    }
+
+    void putAscii(String string) {
+      int length = string.length();
+      ensure(length);
+      for (int i = 0; i < length; i++) {
+        bytes[size++] = (byte) string.charAt(i);
+      }
+    }
+
+    void putInt(int value) {
+      ensure(4);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void putLong(long value) {
+      ensure(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[size++] = (byte) (value >>> shift);
+      }
+    }
+
+    void putVarInt(int value) {
+      ensure(5);
+      while ((value & ~0x7F) != 0) {
+        bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[size++] = (byte) value;
+    }
+
+    void putVarLong(long value) {
+      ensure(10);
+      long zigzag = (value << 1) ^ (value >> 63);
+      while ((zigzag & ~0x7FL) != 0) {
+        bytes[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+        zigzag >>>= 7;
+      }
+      bytes[size++] = (byte) zigzag;
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    private void ensure(int length) {
+      if (size + length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, size + length));
+      }
+    }
+  }
+}
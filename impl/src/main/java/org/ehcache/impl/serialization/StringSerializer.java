@@ -25,6 +25,10 @@ import java.nio.charset.Charset;
 /**
  * Default {@link Serializer} for {@code String} type. Simply writes the string bytes in UTF-8
  * to a byte buffer.
+ * <P>
+ *   This serializer is not a {@link org.ehcache.spi.serialization.CanonicalSerializer}: unpaired surrogates are
+ *   encoded as {@code '?'}, so distinct strings can share a serialized form.
+ * </P>
  */
 public class StringSerializer implements Serializer<String> {
   private static final Charset UTF_8 = Charset.forName("UTF-8");
@@ -0,0 +1,162 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.serialization;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the pooled streams of the {@link CompactJavaSerializer} against Java serialization through fresh streams
+ * for every call, as offheap and disk tiers do one serialization and one deserialization per round.
+ * <P>
+ *   Allocation is measured through the HotSpot specific {@code getThreadAllocatedBytes}, the test is skipped on virtual
+ *   machines that do not support it.
+ * </P>
+ */
+public class CompactJavaSerializerBenchmarkTest {
+
+  private static final int ITERATIONS = 200000;
+
+  @Test
+  public void testValueObject() throws Exception {
+    Order order = new Order();
+    order.id = 123456789L;
+    order.customer = "customer-4242";
+    order.quantity = 12;
+    order.price = 99.95;
+
+    compare("order", new CompactJavaSerializer<Order>(getClass().getClassLoader()), new FreshStreamSerializer<Order>(), order);
+  }
+
+  private static <T> void compare(String name, Serializer<T> pooled, Serializer<T> fresh, T value) throws Exception {
+    Method allocatedBytes = allocatedBytesMethod();
+    assumeTrue(allocatedBytes != null);
+
+    // warm up both paths before measuring either
+    time(pooled, value);
+    time(fresh, value);
+
+    long pooledAllocation = allocatedBytes(allocatedBytes);
+    long pooledNanos = time(pooled, value);
+    pooledAllocation = allocatedBytes(allocatedBytes) - pooledAllocation;
+    long freshAllocation = allocatedBytes(allocatedBytes);
+    long freshNanos = time(fresh, value);
+    freshAllocation = allocatedBytes(allocatedBytes) - freshAllocation;
+
+    System.out.println(String.format("%s : pooled %,d ops/s %d bytes/op - fresh streams %,d ops/s %d bytes/op",
+        name, opsPerSecond(pooledNanos), pooledAllocation / ITERATIONS, opsPerSecond(freshNanos), freshAllocation / ITERATIONS));
+
+    assertThat(pooledAllocation, lessThan(freshAllocation));
+  }
+
+  private static <T> long time(Serializer<T> serializer, T value) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      ByteBuffer binary = serializer.serialize(value);
+      serializer.read(binary);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long opsPerSecond(long nanos) {
+    return ITERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+  }
+
+  private static Method allocatedBytesMethod() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    try {
+      Method method = threads.getClass().getMethod("getThreadAllocatedBytes", long.class);
+      method.setAccessible(true);
+      Method supported = threads.getClass().getMethod("isThreadAllocatedMemorySupported");
+      supported.setAccessible(true);
+      return Boolean.TRUE.equals(supported.invoke(threads)) ? method : null;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  private static long allocatedBytes(Method method) throws Exception {
+    return (Long) method.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+  }
+
+  private static class FreshStreamSerializer<T> implements Serializer<T> {
+
+    @Override
+    public ByteBuffer serialize(T object) throws SerializerException {
+      try {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(bout);
+        try {
+          oout.writeObject(object);
+        } finally {
+          oout.close();
+        }
+        return ByteBuffer.wrap(bout.toByteArray());
+      } catch (IOException e) {
+        throw new SerializerException(e);
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+      byte[] bytes = new byte[binary.remaining()];
+      binary.duplicate().get(bytes);
+      try {
+        ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+          return (T) oin.readObject();
+        } finally {
+          oin.close();
+        }
+      } catch (IOException e) {
+        throw new SerializerException(e);
+      }
+    }
+
+    @Override
+    public boolean equals(T object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+      return object.equals(read(binary));
+    }
+  }
+
+  static class Order implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    long id;
+    String customer;
+    int quantity;
+    double price;
+  }
+}
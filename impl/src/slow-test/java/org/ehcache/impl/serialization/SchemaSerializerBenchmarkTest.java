@@ -0,0 +1,94 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.serialization;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the {@link SchemaSerializer} against the {@link CompactJavaSerializer} on a typical value object, as stored
+ * by offheap and disk tiers: one serialization and one deserialization per round.
+ */
+public class SchemaSerializerBenchmarkTest {
+
+  private static final int ITERATIONS = 200000;
+
+  @Test
+  public void testOrder() throws Exception {
+    Order order = new Order();
+    order.id = 123456789L;
+    order.customer = "customer-4242";
+    order.quantity = 12;
+    order.price = 99.95;
+    order.express = true;
+    order.discount = 5;
+    order.status = Order.Status.SHIPPED;
+
+    compare("order", new SchemaSerializer<Order>(Order.class),
+        new CompactJavaSerializer<Order>(getClass().getClassLoader()), order);
+  }
+
+  private static <T> void compare(String name, Serializer<T> schema, Serializer<T> compact, T value) throws Exception {
+    // warm up both paths before timing either
+    time(schema, value);
+    time(compact, value);
+
+    long schemaNanos = time(schema, value);
+    long compactNanos = time(compact, value);
+    int schemaSize = schema.serialize(value).remaining();
+    int compactSize = compact.serialize(value).remaining();
+
+    System.out.println(String.format("%s : schema %,d ops/s %d bytes - compact java %,d ops/s %d bytes",
+        name, opsPerSecond(schemaNanos), schemaSize, opsPerSecond(compactNanos), compactSize));
+
+    assertThat(schemaSize, lessThan(compactSize));
+  }
+
+  private static <T> long time(Serializer<T> serializer, T value) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      ByteBuffer binary = serializer.serialize(value);
+      serializer.read(binary);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long opsPerSecond(long nanos) {
+    return ITERATIONS * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1);
+  }
+
+  static class Order implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    enum Status { PENDING, SHIPPED }
+
+    long id;
+    String customer;
+    int quantity;
+    double price;
+    boolean express;
+    Integer discount;
+    Status status;
+  }
+}
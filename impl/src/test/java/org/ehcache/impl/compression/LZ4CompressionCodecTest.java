@@ -0,0 +1,80 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.compression;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * LZ4CompressionCodecTest
+ */
+public class LZ4CompressionCodecTest {
+
+  private final CompressionCodec codec = new LZ4CompressionCodec();
+
+  @Test
+  public void testRoundTripEmpty() {
+    assertRoundTrip(new byte[0]);
+  }
+
+  @Test
+  public void testRoundTripRandomData() {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; i++) {
+      byte[] bytes = new byte[random.nextInt(4096)];
+      int alphabet = 1 + random.nextInt(i % 2 == 0 ? 256 : 4);
+      for (int j = 0; j < bytes.length; j++) {
+        bytes[j] = (byte) random.nextInt(alphabet);
+      }
+      assertRoundTrip(bytes);
+    }
+  }
+
+  @Test
+  public void testRepetitiveDataShrinks() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("{\"id\":").append(i).append(",\"name\":\"some name\",\"tags\":[\"a\",\"b\"]}");
+    }
+    byte[] bytes = sb.toString().getBytes();
+    ByteBuffer compressed = codec.compress(ByteBuffer.wrap(bytes));
+    assertThat(compressed.remaining(), lessThan(bytes.length / 4));
+    assertRoundTrip(bytes);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecompressWithWrongLengthFails() {
+    byte[] bytes = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa".getBytes();
+    codec.decompress(codec.compress(ByteBuffer.wrap(bytes)), ByteBuffer.allocate(bytes.length + 10));
+  }
+
+  private void assertRoundTrip(byte[] bytes) {
+    ByteBuffer compressed = codec.compress(ByteBuffer.wrap(bytes));
+    ByteBuffer decompressed = ByteBuffer.allocate(bytes.length);
+    codec.decompress(compressed, decompressed);
+    assertThat(decompressed.remaining(), is(0));
+    assertThat(Arrays.equals(decompressed.array(), bytes), is(true));
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.loaderwriter.warmup;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.WarmUpConfigurationBuilder;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ehcache.config.builders.ResourcePoolsBuilder.heap;
+import static org.ehcache.config.builders.WarmUpConfigurationBuilder.newWarmUpConfiguration;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.junit.Assert.assertThat;
+
+public class CacheWarmUpTest {
+
+  private CacheManager cacheManager;
+
+  @Before
+  public void setUp() {
+    cacheManager = CacheManagerBuilder.newCacheManagerBuilder().build(true);
+  }
+
+  @After
+  public void tearDown() {
+    cacheManager.close();
+  }
+
+  @Test
+  public void testBlockingWarmUpLoadsAllKeysInBatches() throws Exception {
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    Cache<Long, String> cache = createCache(loaderWriter, newWarmUpConfiguration(keys(1L, 2L, 3L, 4L, 5L)).batchSize(2).blocking());
+
+    assertThat(loaderWriter.batches, contains(asList(1L, 2L), asList(3L, 4L), Collections.singletonList(5L)));
+    for (long key = 1L; key <= 5L; key++) {
+      assertThat(cache.get(key), is("value" + key));
+    }
+    assertThat(loaderWriter.loads.get(), is(0));
+  }
+
+  @Test
+  public void testKeysWithoutValueAreNotMapped() throws Exception {
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    loaderWriter.missing.add(2L);
+    Cache<Long, String> cache = createCache(loaderWriter, newWarmUpConfiguration(keys(1L, 2L, 3L)).blocking());
+
+    assertThat(cache.containsKey(1L), is(true));
+    assertThat(cache.containsKey(2L), is(false));
+    assertThat(cache.containsKey(3L), is(true));
+  }
+
+  @Test
+  public void testFailedBatchDoesNotStopWarmUp() throws Exception {
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    loaderWriter.failing.add(1L);
+    Cache<Long, String> cache = createCache(loaderWriter, newWarmUpConfiguration(keys(1L, 2L, 3L)).batchSize(1).blocking());
+
+    assertThat(cache.containsKey(1L), is(false));
+    assertThat(cache.containsKey(2L), is(true));
+    assertThat(cache.containsKey(3L), is(true));
+  }
+
+  @Test
+  public void testFailingKeySourceLeavesCacheUsable() throws Exception {
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    Cache<Long, String> cache = createCache(loaderWriter, newWarmUpConfiguration(new WarmUpKeySource<Long>() {
+      @Override
+      public Iterable<? extends Long> keys() throws Exception {
+        throw new Exception("no keys");
+      }
+    }).blocking());
+
+    assertThat(loaderWriter.batches.isEmpty(), is(true));
+    assertThat(cache.get(1L), is("value1"));
+  }
+
+  @Test
+  public void testBackgroundWarmUpDoesNotOverwriteMappings() throws Exception {
+    final CountDownLatch listed = new CountDownLatch(1);
+    final CountDownLatch released = new CountDownLatch(1);
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    Cache<Long, String> cache = createCache(loaderWriter, newWarmUpConfiguration(new WarmUpKeySource<Long>() {
+      @Override
+      public Iterable<? extends Long> keys() throws Exception {
+        listed.countDown();
+        released.await();
+        return asList(1L, 2L);
+      }
+    }).background());
+
+    assertThat(listed.await(10, SECONDS), is(true));
+    cache.put(1L, "newer");
+    released.countDown();
+
+    while (!cache.containsKey(2L)) {
+      Thread.sleep(10);
+    }
+    assertThat(cache.get(1L), is("newer"));
+    assertThat(cache.get(2L), is("value2"));
+    assertThat(loaderWriter.batches, contains(Collections.singletonList(2L)));
+  }
+
+  @Test
+  public void testClosingCacheCancelsBackgroundWarmUp() throws Exception {
+    final CountDownLatch listed = new CountDownLatch(1);
+    RecordingLoaderWriter loaderWriter = new RecordingLoaderWriter();
+    createCache(loaderWriter, newWarmUpConfiguration(new WarmUpKeySource<Long>() {
+      @Override
+      public Iterable<? extends Long> keys() throws Exception {
+        listed.countDown();
+        new CountDownLatch(1).await();
+        return null;
+      }
+    }).background());
+
+    assertThat(listed.await(10, SECONDS), is(true));
+    cacheManager.removeCache("warm");
+    assertThat(cacheManager.getCache("warm", Long.class, String.class), nullValue());
+    assertThat(loaderWriter.batches.isEmpty(), is(true));
+  }
+
+  private Cache<Long, String> createCache(RecordingLoaderWriter loaderWriter, WarmUpConfigurationBuilder warmUp) {
+    return cacheManager.createCache("warm", CacheConfigurationBuilder.newCacheConfigurationBuilder(Long.class, String.class, heap(10))
+        .withLoaderWriter(loaderWriter)
+        .add(warmUp));
+  }
+
+  private static WarmUpKeySource<Long> keys(final Long... keys) {
+    return new WarmUpKeySource<Long>() {
+      @Override
+      public Iterable<? extends Long> keys() {
+        return asList(keys);
+      }
+    };
+  }
+
+  static class RecordingLoaderWriter implements CacheLoaderWriter<Long, String> {
+
+    final List<List<Long>> batches = Collections.synchronizedList(new ArrayList<List<Long>>());
+    final List<Long> missing = new ArrayList<Long>();
+    final List<Long> failing = new ArrayList<Long>();
+    final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    public String load(Long key) throws Exception {
+      loads.incrementAndGet();
+      return "value" + key;
+    }
+
+    @Override
+    public Map<Long, String> loadAll(Iterable<? extends Long> keys) throws Exception {
+      List<Long> batch = new ArrayList<Long>();
+      Map<Long, String> values = new HashMap<Long, String>();
+      for (Long key : keys) {
+        if (failing.contains(key)) {
+          throw new Exception("failed to load " + key);
+        }
+        batch.add(key);
+        if (!missing.contains(key)) {
+          values.put(key, "value" + key);
+        }
+      }
+      batches.add(batch);
+      return values;
+    }
+
+    @Override
+    public void write(Long key, String value) throws Exception {
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends Long, ? extends String>> entries) throws Exception {
+    }
+
+    @Override
+    public void delete(Long key) throws Exception {
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Long> keys) throws Exception {
+    }
+  }
+}
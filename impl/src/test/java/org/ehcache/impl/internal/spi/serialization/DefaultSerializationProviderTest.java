@@ -29,6 +29,7 @@ import org.ehcache.impl.serialization.DoubleSerializer;
 import org.ehcache.impl.serialization.FloatSerializer;
 import org.ehcache.impl.serialization.IntegerSerializer;
 import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.impl.serialization.SchemaSerializer;
 import org.ehcache.impl.serialization.StringSerializer;
 import org.ehcache.spi.service.ServiceProvider;
 import org.ehcache.spi.serialization.Serializer;
@@ -133,6 +134,21 @@ public class DefaultSerializationProviderTest {
     assertThat(dsp.createKeySerializer(Integer.class, getSystemClassLoader()), instanceOf(IntegerSerializer.class));
   }
 
+  @Test
+  public void testCreateTypeAwareSerializer() throws Exception {
+    DefaultSerializationProviderConfiguration dspfConfig = new DefaultSerializationProviderConfiguration();
+    dspfConfig.addSerializerFor(Point.class, (Class) SchemaSerializer.class);
+
+    DefaultSerializationProvider dsp = new DefaultSerializationProvider(dspfConfig);
+    dsp.start(providerContaining());
+
+    Serializer<Point> serializer = dsp.createValueSerializer(Point.class, getSystemClassLoader());
+    assertThat(serializer, instanceOf(SchemaSerializer.class));
+    Point point = serializer.read(serializer.serialize(new Point(3, 4)));
+    assertThat(point.x, is(3));
+    assertThat(point.y, is(4));
+  }
+
   @Test
   public void testRemembersCreationConfigurationAfterStopStart() throws UnsupportedTypeException {
     DefaultSerializationProviderConfiguration configuration = new DefaultSerializationProviderConfiguration();
@@ -325,6 +341,19 @@ public class DefaultSerializationProviderTest {
     }
   }
 
+  public static class Point {
+    private int x;
+    private int y;
+
+    Point() {
+    }
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
   public static class CloseableSerializer<T> implements Serializer, Closeable {
 
     boolean closed = false;
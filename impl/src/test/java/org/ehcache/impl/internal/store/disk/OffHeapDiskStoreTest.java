@@ -16,6 +16,7 @@
 
 package org.ehcache.impl.internal.store.disk;
 
+import org.ehcache.Cache;
 import org.ehcache.config.EvictionAdvisor;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceType;
@@ -49,6 +50,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import static org.ehcache.expiry.Expirations.noExpiration;
 import static org.ehcache.impl.internal.spi.TestServiceProvider.providerContaining;
@@ -129,6 +131,44 @@ public class OffHeapDiskStoreTest extends AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testPhysicalOrderIteration() throws Exception {
+    SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
+    serializationProvider.start(providerContaining(persistenceService));
+    ClassLoader classLoader = getClass().getClassLoader();
+    Serializer<String> keySerializer = serializationProvider.createKeySerializer(String.class, classLoader);
+    Serializer<String> valueSerializer = serializationProvider.createValueSerializer(String.class, classLoader);
+    StoreConfigurationImpl<String, String> storeConfiguration = new StoreConfigurationImpl<String, String>(String.class, String.class,
+        null, classLoader, noExpiration(), null, 0, keySerializer, valueSerializer);
+    OffHeapDiskStore<String, String> offHeapDiskStore = new OffHeapDiskStore<String, String>(
+        getPersistenceContext(),
+        new OnDemandExecutionService(), null, 1, true,
+        storeConfiguration, SystemTimeSource.INSTANCE,
+        new TestStoreEventDispatcher<String, String>(),
+        MemoryUnit.MB.toBytes(1), null);
+    OffHeapDiskStore.Provider.init(offHeapDiskStore);
+    try {
+      Set<String> expected = new HashSet<String>();
+      for (int i = 0; i < 1000; i++) {
+        offHeapDiskStore.put("key" + i, "value" + i);
+        expected.add("key" + i);
+      }
+      offHeapDiskStore.remove("key42");
+      expected.remove("key42");
+
+      Set<String> iterated = new HashSet<String>();
+      Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>> iterator = offHeapDiskStore.iterator();
+      while (iterator.hasNext()) {
+        Cache.Entry<String, Store.ValueHolder<String>> entry = iterator.next();
+        assertThat(entry.getValue().value(), is("value" + entry.getKey().substring(3)));
+        assertThat(iterated.add(entry.getKey()), is(true));
+      }
+      assertThat(iterated, is(expected));
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
   @Override
   protected OffHeapDiskStore<String, String> createAndInitStore(final TimeSource timeSource, final Expiry<? super String, ? super String> expiry) {
     try {
@@ -303,6 +303,19 @@ public abstract class BaseOnHeapStoreTest {
     StatisticsTestUtils.validateStats(store, EnumSet.of(CachingTierOperationOutcomes.InvalidateOutcome.REMOVED));
   }
 
+  @Test
+  public void testInvalidateAllWithHash() throws Exception {
+    OnHeapStore<String, String> store = newStore();
+    assertThat("Aa".hashCode(), is("BB".hashCode()));
+    store.put("Aa", "value");
+    store.put("BB", "value");
+    store.put("key", "value");
+    store.invalidateAllWithHash("Aa".hashCode());
+    assertThat(store.get("Aa"), nullValue());
+    assertThat(store.get("BB"), nullValue());
+    assertThat(store.get("key").value(), equalTo("value"));
+  }
+
   @Test
   public void testPutIfAbsentNoValue() throws Exception {
     OnHeapStore<String, String> store = newStore();
@@ -23,6 +23,7 @@ import org.ehcache.impl.internal.store.offheap.factories.EhcacheSegmentFactory;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -533,4 +534,31 @@ public abstract class AbstractEhcacheOffHeapBackingMapTest {
       destroySegment(segment);
     }
   }
+
+  @Test
+  public void testRemoveAllWithHashRemovesOnlyCollidingKeys() throws Exception {
+    EhcacheOffHeapBackingMap<String, String> segment = createTestSegment();
+    try {
+      assertThat("Aa".hashCode(), is("BB".hashCode()));
+      segment.put("Aa", "first");
+      segment.put("BB", "second");
+      for (int i = 0; i < 100; i++) {
+        segment.put("key" + i, "value" + i);
+      }
+
+      Map<String, String> removed = segment.removeAllWithHash("Aa".hashCode());
+
+      assertThat(removed.size(), is(2));
+      assertThat(removed.get("Aa"), is("first"));
+      assertThat(removed.get("BB"), is("second"));
+      assertThat(segment.containsKey("Aa"), is(false));
+      assertThat(segment.containsKey("BB"), is(false));
+      for (int i = 0; i < 100; i++) {
+        assertThat(segment.get("key" + i), is("value" + i));
+      }
+      assertThat(segment.removeAllWithHash("Aa".hashCode()).isEmpty(), is(true));
+    } finally {
+      destroySegment(segment);
+    }
+  }
 }
@@ -16,7 +16,9 @@
 
 package org.ehcache.impl.internal.store.offheap;
 
+import org.ehcache.impl.compression.DeflateCompressionCodec;
 import org.ehcache.impl.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.impl.internal.store.offheap.portability.ValueCompressor;
 import org.ehcache.impl.internal.store.AbstractValueHolder;
 import org.ehcache.impl.internal.spi.serialization.DefaultSerializationProvider;
 import org.ehcache.spi.serialization.SerializationProvider;
@@ -39,6 +41,7 @@ import static org.mockito.Mockito.verify;
 public class OffHeapValueHolderPortabilityTest {
 
   private OffHeapValueHolderPortability<String> valueHolderPortability;
+  private OffHeapValueHolderPortability<String> compressingValueHolderPortability;
   private OffHeapValueHolder<String> originalValue;
 
   @Before
@@ -47,6 +50,8 @@ public class OffHeapValueHolderPortabilityTest {
     provider.start(providerContaining());
     valueHolderPortability = new OffHeapValueHolderPortability<String>(provider
         .createValueSerializer(String.class, getClass().getClassLoader()));
+    compressingValueHolderPortability = new OffHeapValueHolderPortability<String>(provider
+        .createValueSerializer(String.class, getClass().getClassLoader()), new ValueCompressor(new DeflateCompressionCodec(), 0));
 
     originalValue = new BasicOffHeapValueHolder<String>(-1, "aValue", 1L, 2L, 3L, 0);
 
@@ -60,6 +65,15 @@ public class OffHeapValueHolderPortabilityTest {
     assertThat(originalValue, equalTo(decoded));
   }
 
+  @Test
+  public void testEncodeDecodeWithCompression() {
+    ByteBuffer encoded = compressingValueHolderPortability.encode(originalValue);
+    OffHeapValueHolder<String> decoded = compressingValueHolderPortability.decode(encoded);
+
+    assertThat(originalValue, equalTo(decoded));
+    assertThat(decoded.value(), equalTo(originalValue.value()));
+  }
+
   @Test
   public void testWriteBackSupport() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
     ByteBuffer encoded = valueHolderPortability.encode(originalValue);
@@ -0,0 +1,65 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.spi.serialization.CanonicalSerializer;
+import org.ehcache.spi.serialization.Serializer;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * SerializerPortabilityTest
+ */
+public class SerializerPortabilityTest {
+
+  @Test
+  public void testCanonicalSerializerComparesBinaries() throws Exception {
+    CanonicalSerializer<Long> serializer = spy(new LongSerializer());
+    SerializerPortability<Long> portability = new SerializerPortability<Long>(serializer);
+    ByteBuffer stored = new LongSerializer().serialize(42L);
+
+    assertThat(portability.equals(42L, stored), is(true));
+    assertThat(portability.equals(43L, stored), is(false));
+    assertThat(stored.remaining(), is(8));
+
+    verify(serializer, never()).read(any(ByteBuffer.class));
+    verify(serializer, never()).equals(anyLong(), any(ByteBuffer.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOtherSerializersCompareInstances() throws Exception {
+    Serializer<Long> serializer = mock(Serializer.class);
+    ByteBuffer stored = ByteBuffer.allocate(8);
+    when(serializer.equals(42L, stored)).thenReturn(true);
+    SerializerPortability<Long> portability = new SerializerPortability<Long>(serializer);
+
+    assertThat(portability.equals(42L, stored), is(true));
+    verify(serializer, never()).serialize(anyLong());
+  }
+}
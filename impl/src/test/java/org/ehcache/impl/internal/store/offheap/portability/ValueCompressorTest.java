@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.impl.internal.store.offheap.portability;
+
+import org.ehcache.impl.compression.LZ4CompressionCodec;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * ValueCompressorTest
+ */
+public class ValueCompressorTest {
+
+  private final ValueCompressor compressor = new ValueCompressor(new LZ4CompressionCodec(), 32);
+
+  @Test
+  public void testSmallValueStoredUncompressed() {
+    ByteBuffer serialized = ByteBuffer.wrap("small".getBytes());
+    ByteBuffer stored = compressor.compress(serialized.duplicate());
+    assertThat(stored.remaining(), is(serialized.remaining() + 1));
+    assertThat(compressor.decompress(stored), is(serialized));
+  }
+
+  @Test
+  public void testIncompressibleValueStoredUncompressed() {
+    byte[] bytes = new byte[256];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) i;
+    }
+    ByteBuffer serialized = ByteBuffer.wrap(bytes);
+    ByteBuffer stored = compressor.compress(serialized.duplicate());
+    assertThat(stored.remaining(), is(bytes.length + 1));
+    assertThat(compressor.decompress(stored), is(serialized));
+  }
+
+  @Test
+  public void testCompressibleValueRoundTrip() {
+    ByteBuffer serialized = ByteBuffer.wrap(new byte[1024]);
+    ByteBuffer stored = compressor.compress(serialized.duplicate());
+    assertThat(stored.remaining(), lessThan(serialized.remaining()));
+    assertThat(compressor.decompress(stored), is(serialized));
+    assertThat(compressor.decompress(stored), is(serialized));
+    assertThat(compressor.compressionRatio(), greaterThan(1.0));
+  }
+
+  @Test
+  public void testRatioWithoutData() {
+    assertThat(compressor.compressionRatio(), closeTo(1.0, 0.0));
+  }
+}
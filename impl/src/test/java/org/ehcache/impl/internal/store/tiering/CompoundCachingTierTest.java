@@ -21,6 +21,7 @@ import org.ehcache.core.spi.store.Store;
 import org.ehcache.core.spi.store.tiering.CachingTier;
 import org.ehcache.core.spi.store.tiering.HigherCachingTier;
 import org.ehcache.core.spi.store.tiering.LowerCachingTier;
+import org.ehcache.core.spi.time.SystemTimeSource;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.junit.Test;
@@ -28,6 +29,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -36,9 +40,11 @@ import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -329,6 +335,145 @@ public class CompoundCachingTierTest {
     assertThat(lowerTierValueHolder.get(), is(nullValue()));
   }
 
+  @Test
+  public void testAsyncDemotionInstallsInLowerTier() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    final AtomicReference<Store.ValueHolder<String>> installed = new AtomicReference<Store.ValueHolder<String>>();
+    final List<Runnable> demotions = new ArrayList<Runnable>();
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+    when(lowerTier.installMapping(anyString(), any(Function.class))).then(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        installed.set((Store.ValueHolder<String>) ((Function) invocation.getArguments()[1]).apply(invocation.getArguments()[0]));
+        return installed.get();
+      }
+    });
+
+    new CompoundCachingTier<String, String>(higherTier, lowerTier, SystemTimeSource.INSTANCE, new ExecutorService[] { queueingExecutor(demotions) }, 16);
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+    verify(lowerTier, never()).installMapping(anyString(), any(Function.class));
+
+    assertThat(demotions.size(), is(1));
+    demotions.get(0).run();
+    assertThat(installed.get(), is(valueHolder));
+  }
+
+  @Test
+  public void testGetOrComputeIfAbsentReclaimsValueMidDemotion() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    final AtomicReference<Store.ValueHolder<String>> installed = new AtomicReference<Store.ValueHolder<String>>();
+    final List<Runnable> demotions = new ArrayList<Runnable>();
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+    final ArgumentCaptor<Function> functionArg = ArgumentCaptor.forClass(Function.class);
+    final ArgumentCaptor<String> keyArg = ArgumentCaptor.forClass(String.class);
+    when(higherTier.getOrComputeIfAbsent(keyArg.capture(), functionArg.capture())).then(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        return functionArg.getValue().apply(keyArg.getValue());
+      }
+    });
+    when(lowerTier.installMapping(anyString(), any(Function.class))).then(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        installed.set((Store.ValueHolder<String>) ((Function) invocation.getArguments()[1]).apply(invocation.getArguments()[0]));
+        return installed.get();
+      }
+    });
+
+    CompoundCachingTier<String, String> compoundCachingTier = new CompoundCachingTier<String, String>(higherTier, lowerTier,
+        SystemTimeSource.INSTANCE, new ExecutorService[] { queueingExecutor(demotions) }, 16);
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+
+    assertThat(compoundCachingTier.getOrComputeIfAbsent("1", new Function<String, Store.ValueHolder<String>>() {
+      @Override
+      public Store.ValueHolder<String> apply(String s) {
+        throw new AssertionError("value mid-demotion was not reclaimed");
+      }
+    }), is(valueHolder));
+    verify(lowerTier, never()).getAndRemove(anyString());
+
+    demotions.get(0).run();
+    verify(lowerTier, never()).installMapping(anyString(), any(Function.class));
+    assertThat(installed.get(), is(nullValue()));
+  }
+
+  @Test
+  public void testInvalidateDiscardsValueMidDemotion() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    final List<Runnable> demotions = new ArrayList<Runnable>();
+    final AtomicReference<Store.ValueHolder<String>> invalidated = new AtomicReference<Store.ValueHolder<String>>();
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        ((Function) invocation.getArguments()[1]).apply(null);
+        return null;
+      }
+    }).when(higherTier).silentInvalidate(anyString(), any(Function.class));
+
+    CompoundCachingTier<String, String> compoundCachingTier = new CompoundCachingTier<String, String>(higherTier, lowerTier,
+        SystemTimeSource.INSTANCE, new ExecutorService[] { queueingExecutor(demotions) }, 16);
+    compoundCachingTier.setInvalidationListener(new CachingTier.InvalidationListener<String, String>() {
+      @Override
+      public void onInvalidation(String key, Store.ValueHolder<String> valueHolder) {
+        invalidated.set(valueHolder);
+      }
+    });
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+    compoundCachingTier.invalidate("1");
+    assertThat(invalidated.get(), is(valueHolder));
+    verify(lowerTier, times(1)).invalidate("1");
+
+    demotions.get(0).run();
+    verify(lowerTier, never()).installMapping(anyString(), any(Function.class));
+  }
+
+  @Test
+  public void testAsyncDemotionFallsBackToSynchronousWhenQueueIsFull() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final List<Runnable> demotions = new ArrayList<Runnable>();
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+
+    new CompoundCachingTier<String, String>(higherTier, lowerTier, SystemTimeSource.INSTANCE, new ExecutorService[] { queueingExecutor(demotions) }, 1);
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", mock(Store.ValueHolder.class));
+    higherTierInvalidationListenerArg.getValue().onInvalidation("2", mock(Store.ValueHolder.class));
+
+    assertThat(demotions.size(), is(1));
+    verify(lowerTier, never()).installMapping(eq("1"), any(Function.class));
+    verify(lowerTier, times(1)).installMapping(eq("2"), any(Function.class));
+  }
+
+  private static ExecutorService queueingExecutor(final List<Runnable> queue) {
+    ExecutorService executor = mock(ExecutorService.class);
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        queue.add((Runnable) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(executor).execute(any(Runnable.class));
+    return executor;
+  }
+
   @Test
   public void testProviderPassesServiceConfigs() {
     CompoundCachingTier.Provider provider = new CompoundCachingTier.Provider();
@@ -0,0 +1,70 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * FrequencyPromotionPolicyTest
+ */
+public class FrequencyPromotionPolicyTest {
+
+  @Test
+  public void testPromotesOnNthAccess() {
+    FrequencyPromotionPolicy<String> policy = new FrequencyPromotionPolicy<String>(3, 10000);
+
+    assertThat(policy.promote("foo"), is(false));
+    assertThat(policy.promote("foo"), is(false));
+    assertThat(policy.promote("foo"), is(true));
+    assertThat(policy.promote("bar"), is(false));
+  }
+
+  @Test
+  public void testSingleAccessPromotesImmediately() {
+    FrequencyPromotionPolicy<String> policy = new FrequencyPromotionPolicy<String>(1, 10000);
+
+    assertThat(policy.promote("foo"), is(true));
+  }
+
+  @Test
+  public void testScanDoesNotPromote() {
+    FrequencyPromotionPolicy<Integer> policy = new FrequencyPromotionPolicy<Integer>(2, 100000);
+
+    int promoted = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (policy.promote(i)) {
+        promoted++;
+      }
+    }
+    assertThat(promoted < 100, is(true));
+  }
+
+  @Test
+  public void testCountsDecay() {
+    FrequencySketch sketch = new FrequencySketch(64);
+
+    for (int i = 0; i < 10; i++) {
+      sketch.incrementAndEstimate("foo");
+    }
+    for (int i = 0; i < 200; i++) {
+      sketch.incrementAndEstimate("bar" + i);
+    }
+    assertThat(sketch.incrementAndEstimate("foo") < 10, is(true));
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.internal.store.tiering;
+
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.internal.store.StoreConfigurationImpl;
+import org.ehcache.core.spi.store.Store;
+import org.ehcache.core.spi.time.SystemTimeSource;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.impl.copy.IdentityCopier;
+import org.ehcache.impl.internal.events.NullStoreEventDispatcher;
+import org.ehcache.impl.internal.sizeof.NoopSizeOfEngine;
+import org.ehcache.impl.internal.store.heap.OnHeapStore;
+import org.ehcache.impl.serialization.LongSerializer;
+import org.ehcache.spi.copy.Copier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class HeapSnapshotTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private File directory;
+  private OnHeapStore<Long, String> heapTier;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    directory = folder.newFolder();
+    ResourcePools resourcePools = newResourcePoolsBuilder().heap(100, EntryUnit.ENTRIES).build();
+    Store.Configuration<Long, String> config = new StoreConfigurationImpl<Long, String>(Long.class, String.class,
+        null, getClass().getClassLoader(), Expirations.noExpiration(), resourcePools, 0, null, null);
+    Copier copier = new IdentityCopier();
+    heapTier = new OnHeapStore<Long, String>(config, SystemTimeSource.INSTANCE, copier, copier, new NoopSizeOfEngine(),
+        NullStoreEventDispatcher.<Long, String>nullStoreEventDispatcher());
+    for (long key = 0; key < 10; key++) {
+      heapTier.put(key, "value-" + key);
+      for (int i = 0; i < key; i++) {
+        heapTier.get(key);
+      }
+    }
+  }
+
+  @Test
+  public void testHottestKeysAreMostHitFirst() {
+    assertThat(heapTier.hottestKeys(3), contains(9L, 8L, 7L));
+    assertThat(heapTier.hottestKeys(100).size(), is(10));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSnapshotIsRestoredHottestFirst() throws Exception {
+    new HeapSnapshot<Long>(directory, new LongSerializer(), 3, 1).save(heapTier);
+
+    TieredStore<Long, String> store = mock(TieredStore.class);
+    HeapSnapshot<Long> snapshot = new HeapSnapshot<Long>(directory, new LongSerializer(), 3, 1);
+    snapshot.restore(store);
+    assertThat(snapshot.awaitWarmUp(10, TimeUnit.SECONDS), is(true));
+
+    InOrder inOrder = inOrder(store);
+    inOrder.verify(store).faultingGet(9L);
+    inOrder.verify(store).faultingGet(8L);
+    inOrder.verify(store).faultingGet(7L);
+    assertThat(snapshot.getWarmedKeys(), is(3));
+    assertThat(new File(directory, HeapSnapshot.SNAPSHOT_FILE_NAME).exists(), is(false));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSnapshotIsLimitedOnRestore() throws Exception {
+    new HeapSnapshot<Long>(directory, new LongSerializer(), 10, 1).save(heapTier);
+
+    TieredStore<Long, String> store = mock(TieredStore.class);
+    HeapSnapshot<Long> snapshot = new HeapSnapshot<Long>(directory, new LongSerializer(), 2, 4);
+    snapshot.restore(store);
+    assertThat(snapshot.awaitWarmUp(10, TimeUnit.SECONDS), is(true));
+
+    verify(store).faultingGet(9L);
+    verify(store).faultingGet(8L);
+    assertThat(snapshot.getWarmedKeys(), is(2));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testUnreadableSnapshotIsDiscarded() throws Exception {
+    File file = new File(directory, HeapSnapshot.SNAPSHOT_FILE_NAME);
+    FileOutputStream output = new FileOutputStream(file);
+    try {
+      output.write(new byte[] {1, 2, 3});
+    } finally {
+      output.close();
+    }
+
+    TieredStore<Long, String> store = mock(TieredStore.class);
+    HeapSnapshot<Long> snapshot = new HeapSnapshot<Long>(directory, new LongSerializer(), 10, 1);
+    snapshot.restore(store);
+    assertThat(snapshot.awaitWarmUp(10, TimeUnit.SECONDS), is(true));
+
+    verify(store, never()).faultingGet(anyLong());
+    assertThat(file.exists(), is(false));
+  }
+}
@@ -54,6 +54,7 @@ import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.nullValue;
@@ -118,6 +119,42 @@ public class TieredStoreTest {
     verify(numberAuthoritativeTier, times(1)).getAndFault(any(Number.class));
   }
 
+  @Test
+  public void testPutPopulatesCachingTier() throws Exception {
+    final String value = "one";
+    final AtomicReference<Store.ValueHolder<CharSequence>> installed = new AtomicReference<Store.ValueHolder<CharSequence>>();
+    when(numberAuthoritativeTier.put(eq(1), eq(value))).thenReturn(Store.PutStatus.PUT);
+    when(numberAuthoritativeTier.getAndFault(eq(1))).thenReturn(newValueHolder("deserialized one"));
+    when(numberCachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).then(new Answer<Store.ValueHolder<CharSequence>>() {
+      @Override
+      public Store.ValueHolder<CharSequence> answer(InvocationOnMock invocation) throws Throwable {
+        Number key = (Number) invocation.getArguments()[0];
+        Function<Number, Store.ValueHolder<CharSequence>> function = (Function<Number, Store.ValueHolder<CharSequence>>) invocation.getArguments()[1];
+        installed.set(function.apply(key));
+        return installed.get();
+      }
+    });
+
+    TieredStore<Number, CharSequence> tieredStore = new TieredStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier, null, true);
+
+    assertThat(tieredStore.put(1, value), is(Store.PutStatus.PUT));
+    assertThat(installed.get().value(), Matchers.<CharSequence>sameInstance(value));
+    verify(numberCachingTier, times(1)).invalidate(eq(1));
+  }
+
+  @Test
+  public void testPutFallsBackToInvalidationWhenKeyIsFaulting() throws Exception {
+    when(numberAuthoritativeTier.put(eq(1), eq("one"))).thenReturn(Store.PutStatus.UPDATE);
+    when(numberCachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).thenReturn(newValueHolder("other"));
+
+    TieredStore<Number, CharSequence> tieredStore = new TieredStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier, null, true);
+
+    assertThat(tieredStore.put(1, "one"), is(Store.PutStatus.UPDATE));
+    verify(numberAuthoritativeTier, times(1)).put(eq(1), eq("one"));
+    verify(numberAuthoritativeTier, never()).getAndFault(any(Number.class));
+    verify(numberCachingTier, times(2)).invalidate(eq(1));
+  }
+
   @Test
   public void testGetMisses() throws Exception {
     when(numberAuthoritativeTier.getAndFault(eq(1))).thenReturn(null);
@@ -138,6 +175,45 @@ public class TieredStoreTest {
     verify(numberAuthoritativeTier, times(1)).getAndFault(any(Number.class));
   }
 
+  @Test
+  public void testGetDoesNotFaultUnpromotedKey() throws Exception {
+    Store.ValueHolder<CharSequence> valueHolder = newValueHolder("one");
+    when(numberAuthoritativeTier.getAndFault(eq(1))).thenReturn(valueHolder);
+    when(numberAuthoritativeTier.get(eq(1))).thenReturn(valueHolder);
+    when(numberCachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).then(new Answer<Store.ValueHolder<CharSequence>>() {
+      @Override
+      public Store.ValueHolder<CharSequence> answer(InvocationOnMock invocation) throws Throwable {
+        Number key = (Number) invocation.getArguments()[0];
+        Function<Number, Store.ValueHolder<CharSequence>> function = (Function<Number, Store.ValueHolder<CharSequence>>) invocation.getArguments()[1];
+        return function.apply(key);
+      }
+    });
+
+    TieredStore<Number, CharSequence> tieredStore = new TieredStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier,
+        new FrequencyPromotionPolicy<Number>(2, 1000));
+
+    assertThat(tieredStore.get(1).value(), Matchers.<CharSequence>equalTo("one"));
+    verify(numberAuthoritativeTier, times(1)).get(eq(1));
+    verify(numberAuthoritativeTier, never()).getAndFault(any(Number.class));
+
+    assertThat(tieredStore.get(1).value(), Matchers.<CharSequence>equalTo("one"));
+    verify(numberAuthoritativeTier, times(1)).get(eq(1));
+    verify(numberAuthoritativeTier, times(1)).getAndFault(eq(1));
+  }
+
+  @Test
+  public void testGetReadsThroughWhenConcurrentFaultWasNotPromoted() throws Exception {
+    Store.ValueHolder<CharSequence> valueHolder = newValueHolder("one");
+    when(numberAuthoritativeTier.get(eq(1))).thenReturn(valueHolder);
+    when(numberCachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).thenReturn(null);
+
+    TieredStore<Number, CharSequence> tieredStore = new TieredStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier,
+        new ProbabilisticPromotionPolicy<Number>(0.5));
+
+    assertThat(tieredStore.get(1).value(), Matchers.<CharSequence>equalTo("one"));
+    verify(numberAuthoritativeTier, never()).getAndFault(any(Number.class));
+  }
+
   @Test
   public void testPut() throws Exception {
     TieredStore<Number, CharSequence> tieredStore = new TieredStore<Number, CharSequence>(numberCachingTier, numberAuthoritativeTier);
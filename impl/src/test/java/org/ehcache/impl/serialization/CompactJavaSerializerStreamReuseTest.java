@@ -0,0 +1,202 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.serialization;
+
+import org.ehcache.spi.serialization.SerializerException;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the pooled streams of {@link CompactJavaSerializer} are properly reset between uses.
+ */
+public class CompactJavaSerializerStreamReuseTest {
+
+  @Test
+  public void testReusedStreamMatchesFreshStream() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+
+    for (int i = 0; i < 3; i++) {
+      Node node = graph("node-" + i);
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream oout = serializer.new OOS(bout);
+      try {
+        oout.writeObject(node);
+      } finally {
+        oout.close();
+      }
+
+      assertThat(bytes(serializer.serialize(node)), equalTo(bout.toByteArray()));
+    }
+  }
+
+  @Test
+  public void testSharedReferencesSurviveRepeatedRoundTrips() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+
+    for (int i = 0; i < 3; i++) {
+      Node read = (Node) serializer.read(serializer.serialize(graph("node-" + i)));
+
+      assertThat(read.name, is("node-" + i));
+      assertThat(read.children.get(0), sameInstance(read.children.get(1)));
+      assertThat(read.children.get(2), sameInstance(read));
+    }
+  }
+
+  @Test
+  public void testPooledStreamsDoNotRetainObjects() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+    Node written = graph("written");
+    ByteBuffer binary = serializer.serialize(written);
+    Serializable read = serializer.read(binary);
+
+    WeakReference<Node> writtenRef = new WeakReference<Node>(written);
+    WeakReference<Serializable> readRef = new WeakReference<Serializable>(read);
+    written = null;
+    read = null;
+
+    for (int i = 0; i < 10 && (writtenRef.get() != null || readRef.get() != null); i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(writtenRef.get(), nullValue());
+    assertThat(readRef.get(), nullValue());
+    assertThat(((Node) serializer.read(binary)).name, is("written"));
+  }
+
+  @Test
+  public void testReadLeavesBinaryUntouched() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+
+    ByteBuffer serialized = serializer.serialize("value");
+    ByteBuffer binary = ByteBuffer.allocateDirect(serialized.remaining() + 16);
+    binary.position(8);
+    binary.put(serialized);
+    binary.limit(binary.position()).position(8);
+
+    assertThat(serializer.read(binary), is((Serializable) "value"));
+    assertThat(binary.position(), is(8));
+    assertThat(serializer.read(binary), is((Serializable) "value"));
+  }
+
+  @Test
+  public void testCorruptedBinaryDoesNotPoisonLaterReads() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+    ByteBuffer binary = serializer.serialize("value");
+    serializer.read(binary.duplicate());
+
+    try {
+      serializer.read(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}));
+      fail("Expected SerializerException");
+    } catch (SerializerException e) {
+      // expected
+    }
+    ByteBuffer truncated = binary.duplicate();
+    truncated.limit(truncated.limit() - 1);
+    try {
+      serializer.read(truncated);
+      fail("Expected SerializerException");
+    } catch (SerializerException e) {
+      // expected
+    }
+
+    assertThat(serializer.read(binary), is((Serializable) "value"));
+  }
+
+  @Test
+  public void testLargeObjectRoundTrip() throws Exception {
+    CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+    byte[] large = new byte[256 * 1024];
+    large[large.length - 1] = 42;
+
+    assertThat(((byte[]) serializer.read(serializer.serialize(large)))[large.length - 1], is((byte) 42));
+    assertThat(serializer.read(serializer.serialize("value")), is((Serializable) "value"));
+  }
+
+  @Test
+  public void testConcurrentRoundTrips() throws Exception {
+    final CompactJavaSerializer<Serializable> serializer = new CompactJavaSerializer<Serializable>(null);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < 1000; i++) {
+              HashMap<Integer, String> value = new HashMap<Integer, String>();
+              value.put(thread, "value-" + i);
+              assertThat((Map<?, ?>) serializer.read(serializer.serialize(value)), equalTo((Map<?, ?>) value));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static Node graph(String name) {
+    Node node = new Node(name);
+    Node shared = new Node("shared");
+    node.children.add(shared);
+    node.children.add(shared);
+    node.children.add(node);
+    return node;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  static class Node implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final List<Node> children = new ArrayList<Node>();
+
+    Node(String name) {
+      this.name = name;
+    }
+  }
+}
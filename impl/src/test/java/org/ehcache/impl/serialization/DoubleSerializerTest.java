@@ -43,6 +43,12 @@ public class DoubleSerializerTest {
     }
   }
 
+  @Test
+  public void testNaNHasCanonicalForm() {
+    DoubleSerializer serializer = new DoubleSerializer();
+    assertThat(serializer.serialize(Double.longBitsToDouble(0x7ff8000000000001L)), is(serializer.serialize(Double.NaN)));
+  }
+
   @Test(expected = NullPointerException.class)
   public void testReadThrowsOnNullInput() throws ClassNotFoundException {
     new DoubleSerializer().read(null);
@@ -43,6 +43,12 @@ public class FloatSerializerTest {
     }
   }
 
+  @Test
+  public void testNaNHasCanonicalForm() {
+    FloatSerializer serializer = new FloatSerializer();
+    assertThat(serializer.serialize(Float.intBitsToFloat(0x7fc00001)), is(serializer.serialize(Float.NaN)));
+  }
+
   @Test(expected = NullPointerException.class)
   public void testReadThrowsOnNullInput() throws ClassNotFoundException {
     new FloatSerializer().read(null);
@@ -0,0 +1,177 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ehcache.impl.serialization;
+
+import org.ehcache.core.spi.service.FileBasedPersistenceContext;
+import org.ehcache.spi.serialization.SerializerException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SchemaSerializerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAllFieldTypesRoundTrip() throws Exception {
+    SchemaSerializer<AllTypes> serializer = new SchemaSerializer<AllTypes>(AllTypes.class);
+    AllTypes value = new AllTypes();
+    value.aBoolean = true;
+    value.aByte = -3;
+    value.aShort = Short.MIN_VALUE;
+    value.aChar = '\u00e9';
+    value.anInt = Integer.MIN_VALUE;
+    value.aLong = Long.MAX_VALUE;
+    value.aFloat = -1.5f;
+    value.aDouble = Double.NaN;
+    value.aBoxedInt = 42;
+    value.aBoxedLong = null;
+    value.aString = "caf\u00e9";
+    value.anAsciiString = "plain";
+    value.bytes = new byte[] { 1, 2, 3 };
+    value.unit = TimeUnit.HOURS;
+    value.inherited = "from super";
+
+    AllTypes read = serializer.read(serializer.serialize(value));
+
+    assertThat(read.aBoolean, is(true));
+    assertThat(read.aByte, is((byte) -3));
+    assertThat(read.aShort, is(Short.MIN_VALUE));
+    assertThat(read.aChar, is('\u00e9'));
+    assertThat(read.anInt, is(Integer.MIN_VALUE));
+    assertThat(read.aLong, is(Long.MAX_VALUE));
+    assertThat(read.aFloat, is(-1.5f));
+    assertThat(Double.isNaN(read.aDouble), is(true));
+    assertThat(read.aBoxedInt, is(42));
+    assertThat(read.aBoxedLong, nullValue());
+    assertThat(read.aString, is("caf\u00e9"));
+    assertThat(read.anAsciiString, is("plain"));
+    assertThat(read.bytes, is(new byte[] { 1, 2, 3 }));
+    assertThat(read.unit, is(TimeUnit.HOURS));
+    assertThat(read.inherited, is("from super"));
+    assertThat(read.skipped, nullValue());
+  }
+
+  @Test
+  public void testSmallValuesAreCompact() throws Exception {
+    SchemaSerializer<Evolving> serializer = new SchemaSerializer<Evolving>(Evolving.class);
+    Evolving value = new Evolving();
+    value.id = 1;
+    value.name = "a";
+
+    // schema index, varint id, presence byte, length and a single char
+    assertThat(serializer.serialize(value).remaining(), is(5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedFieldTypeIsRejected() {
+    new SchemaSerializer<Unsupported>(Unsupported.class);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingNoArgConstructorIsRejected() {
+    new SchemaSerializer<NoDefaultConstructor>(NoDefaultConstructor.class);
+  }
+
+  @Test(expected = SerializerException.class)
+  public void testSubclassInstanceIsRejected() {
+    new SchemaSerializer<Base>(Base.class).serialize(new AllTypes());
+  }
+
+  @Test
+  public void testPersistentSchemaSurvivesClassEvolution() throws Exception {
+    final File directory = folder.newFolder();
+    FileBasedPersistenceContext context = new FileBasedPersistenceContext() {
+      @Override
+      public File getDirectory() {
+        return directory;
+      }
+    };
+
+    SchemaSerializer<Evolving> before = new SchemaSerializer<Evolving>(Evolving.class, null, context);
+    Evolving value = new Evolving();
+    value.id = 7L;
+    value.name = "seven";
+    ByteBuffer binary = before.serialize(value);
+
+    SchemaSerializer<Evolved> after = new SchemaSerializer<Evolved>(Evolved.class, null, context);
+    Evolved evolved = after.read(binary.duplicate());
+    assertThat(evolved.id, is(7L));
+    assertThat(evolved.added, is("default"));
+
+    Evolved roundTrip = after.read(after.serialize(evolved));
+    assertThat(roundTrip.id, is(7L));
+    assertThat(roundTrip.added, is("default"));
+
+    SchemaSerializer<Evolving> restarted = new SchemaSerializer<Evolving>(Evolving.class, null, context);
+    assertThat(restarted.read(binary.duplicate()).name, is("seven"));
+    assertThat(restarted.serialize(value), is(binary));
+  }
+
+  static class Base {
+    String inherited;
+  }
+
+  static class AllTypes extends Base {
+    static String ignoredStatic = "static";
+    boolean aBoolean;
+    byte aByte;
+    short aShort;
+    char aChar;
+    int anInt;
+    long aLong;
+    float aFloat;
+    double aDouble;
+    Integer aBoxedInt;
+    Long aBoxedLong;
+    String aString;
+    String anAsciiString;
+    byte[] bytes;
+    TimeUnit unit;
+    transient Object skipped;
+  }
+
+  static class Evolving {
+    long id;
+    String name;
+  }
+
+  static class Evolved {
+    long id;
+    String added = "default";
+  }
+
+  static class Unsupported {
+    Object field;
+  }
+
+  static class NoDefaultConstructor {
+    int field;
+
+    NoDefaultConstructor(int field) {
+      this.field = field;
+    }
+  }
+}
@@ -16,9 +16,12 @@
 
 package org.ehcache.impl.serialization;
 
+import org.ehcache.spi.serialization.CanonicalSerializer;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -35,6 +38,14 @@ public class StringSerializerTest {
     assertThat(read, is(s));
   }
 
+  @Test
+  public void testUnpairedSurrogatesShareASerializedForm() throws ClassNotFoundException {
+    StringSerializer serializer = new StringSerializer();
+
+    assertThat(serializer.serialize("\uD800"), is(serializer.serialize("?")));
+    assertThat(serializer, not(instanceOf(CanonicalSerializer.class)));
+  }
+
   @Test(expected = NullPointerException.class)
   public void testSerializeThrowsOnNull() {
     new StringSerializer().serialize(null);
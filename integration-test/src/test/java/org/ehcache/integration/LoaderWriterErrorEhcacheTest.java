@@ -19,6 +19,9 @@ import org.ehcache.Cache;
 import org.ehcache.CacheManager;
 import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.impl.config.store.tiering.WritePopulatesCachingTierConfiguration;
 import org.ehcache.spi.loaderwriter.BulkCacheLoadingException;
 import org.ehcache.spi.loaderwriter.BulkCacheWritingException;
 import org.ehcache.spi.loaderwriter.CacheLoadingException;
@@ -40,6 +43,7 @@ import java.util.Set;
 
 import static org.ehcache.config.builders.CacheManagerBuilder.newCacheManagerBuilder;
 import static org.ehcache.config.builders.ResourcePoolsBuilder.heap;
+import static org.ehcache.config.builders.ResourcePoolsBuilder.newResourcePoolsBuilder;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
@@ -150,6 +154,32 @@ public class LoaderWriterErrorEhcacheTest {
     }
   }
 
+  @Test
+  public void testPutWithWriterExceptionWhenWritesPopulateCachingTier() throws Exception {
+    Cache<Number, CharSequence> tieredCache = cacheManager.createCache("tieredCache",
+        CacheConfigurationBuilder.newCacheConfigurationBuilder(Number.class, CharSequence.class,
+            newResourcePoolsBuilder().heap(10, EntryUnit.ENTRIES).offheap(1, MemoryUnit.MB))
+            .add(new WritePopulatesCachingTierConfiguration()).build());
+    doThrow(new Exception("Mock Exception: cannot write 1")).when(cacheLoaderWriter).write(eq(1), eq("one"));
+
+    try {
+      tieredCache.put(1, "one");
+      fail("expected CacheWritingException");
+    } catch (CacheWritingException ex) {
+      // expected
+    }
+    verify(cacheLoaderWriter, times(1)).write(eq(1), eq("one"));
+
+    tieredCache.put(1, "two");
+    try {
+      tieredCache.replace(1, "one");
+      fail("expected CacheWritingException");
+    } catch (CacheWritingException ex) {
+      // expected
+    }
+    assertThat(tieredCache.get(1), is((CharSequence) "two"));
+  }
+
   @Test
   public void testRemoveWithWriterException() throws Exception {
     doThrow(new Exception("Mock Exception: cannot write 1")).when(cacheLoaderWriter).delete(eq(1));
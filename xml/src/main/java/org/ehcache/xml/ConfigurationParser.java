@@ -365,6 +365,18 @@ class ConfigurationParser {
             return null;
           }
 
+          @Override
+          public WarmUp warmUp() {
+            for (BaseCacheType source : sources) {
+              final CacheLoaderWriterType loaderWriter = source.getLoaderWriter();
+              final CacheLoaderWriterType.WarmUp warmUp = loaderWriter != null ? loaderWriter.getWarmUp() : null;
+              if (warmUp != null) {
+                return new XmlWarmUp(warmUp);
+              }
+            }
+            return null;
+          }
+
           @Override
           public DiskStoreSettings diskStoreSettings() {
             DiskStoreSettingsType value = null;
@@ -499,6 +511,13 @@ class ConfigurationParser {
             return writebehind != null ? new XmlWriteBehind(writebehind) : null;
           }
 
+          @Override
+          public WarmUp warmUp() {
+            final CacheLoaderWriterType loaderWriter = cacheTemplate.getLoaderWriter();
+            final CacheLoaderWriterType.WarmUp warmUp = loaderWriter != null ? loaderWriter.getWarmUp() : null;
+            return warmUp != null ? new XmlWarmUp(warmUp) : null;
+          }
+
           @Override
           public DiskStoreSettings diskStoreSettings() {
             final DiskStoreSettingsType diskStoreSettings = cacheTemplate.getDiskStoreSettings();
@@ -642,6 +661,8 @@ class ConfigurationParser {
 
     WriteBehind writeBehind();
 
+    WarmUp warmUp();
+
     DiskStoreSettings diskStoreSettings();
 
     SizeOfEngineLimits heapStoreSettings();
@@ -713,11 +734,28 @@ class ConfigurationParser {
     TimeUnit maxDelayUnit();
   }
 
+  interface WarmUp {
+
+    String keySource();
+
+    int batchSize();
+
+    int parallelism();
+
+    long maxLoadsPerSecond();
+
+    String threadPool();
+
+    boolean isBlocking();
+  }
+
   interface DiskStoreSettings {
 
     int writerConcurrency();
 
     String threadPool();
+
+    boolean physicalOrderIteration();
   }
 
 
@@ -943,6 +981,46 @@ class ConfigurationParser {
 
   }
 
+  private static class XmlWarmUp implements WarmUp {
+
+    private final CacheLoaderWriterType.WarmUp warmUp;
+
+    private XmlWarmUp(CacheLoaderWriterType.WarmUp warmUp) {
+      this.warmUp = warmUp;
+    }
+
+    @Override
+    public String keySource() {
+      return this.warmUp.getKeySource();
+    }
+
+    @Override
+    public int batchSize() {
+      return this.warmUp.getBatchSize().intValue();
+    }
+
+    @Override
+    public int parallelism() {
+      return this.warmUp.getParallelism().intValue();
+    }
+
+    @Override
+    public long maxLoadsPerSecond() {
+      return this.warmUp.getMaxLoadsPerSecond().longValue();
+    }
+
+    @Override
+    public String threadPool() {
+      return this.warmUp.getThreadPool();
+    }
+
+    @Override
+    public boolean isBlocking() {
+      return this.warmUp.isBlocking();
+    }
+
+  }
+
   private static class XmlDiskStoreSettings implements DiskStoreSettings {
 
     private final DiskStoreSettingsType diskStoreSettings;
@@ -961,6 +1039,11 @@ class ConfigurationParser {
       return this.diskStoreSettings.getThreadPool();
     }
 
+    @Override
+    public boolean physicalOrderIteration() {
+      return this.diskStoreSettings.isPhysicalOrderIteration();
+    }
+
   }
 
   private static TimeUnit convertToJavaTimeUnit(org.ehcache.xml.model.TimeUnit unit) {
@@ -25,6 +25,7 @@ import org.ehcache.config.Builder;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.builders.WarmUpConfigurationBuilder;
 import org.ehcache.config.builders.WriteBehindConfigurationBuilder;
 import org.ehcache.config.builders.WriteBehindConfigurationBuilder.BatchedWriteBehindConfigurationBuilder;
 import org.ehcache.config.units.MemoryUnit;
@@ -51,10 +52,12 @@ import org.ehcache.impl.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.impl.config.store.disk.OffHeapDiskStoreProviderConfiguration;
 import org.ehcache.spi.copy.Copier;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.spi.loaderwriter.WarmUpKeySource;
 import org.ehcache.spi.serialization.Serializer;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.spi.service.ServiceCreationConfiguration;
 import org.ehcache.xml.ConfigurationParser.Batching;
+import org.ehcache.xml.ConfigurationParser.WarmUp;
 import org.ehcache.xml.ConfigurationParser.WriteBehind;
 import org.ehcache.xml.exceptions.XmlConfigurationException;
 import org.ehcache.xml.model.CopierType;
@@ -293,7 +296,7 @@ public class XmlConfiguration implements Configuration {
       }
       final ConfigurationParser.DiskStoreSettings parsedDiskStoreSettings = cacheDefinition.diskStoreSettings();
       if (parsedDiskStoreSettings != null) {
-        builder = builder.add(new OffHeapDiskStoreConfiguration(parsedDiskStoreSettings.threadPool(), parsedDiskStoreSettings.writerConcurrency()));
+        builder = builder.add(new OffHeapDiskStoreConfiguration(parsedDiskStoreSettings.threadPool(), parsedDiskStoreSettings.writerConcurrency(), parsedDiskStoreSettings.physicalOrderIteration()));
       }
       for (ServiceConfiguration<?> serviceConfig : cacheDefinition.serviceConfigs()) {
         builder = builder.add(serviceConfig);
@@ -319,6 +322,9 @@ public class XmlConfiguration implements Configuration {
                   .concurrencyLevel(writeBehind.concurrency())
                   .queueSize(writeBehind.maxQueueSize()));
         }
+        if(cacheDefinition.warmUp() != null) {
+          builder = builder.add(getWarmUp(cacheClassLoader, cacheDefinition.warmUp()));
+        }
       }
       builder = handleListenersConfig(cacheDefinition.listenersConfig(), cacheClassLoader, builder);
       final CacheConfiguration<?, ?> config = builder.build();
@@ -343,6 +349,16 @@ public class XmlConfiguration implements Configuration {
     return expiry;
   }
 
+  private static WarmUpConfigurationBuilder getWarmUp(ClassLoader classLoader, WarmUp warmUp) throws ClassNotFoundException {
+    final Class<WarmUpKeySource<?>> keySourceClass = (Class<WarmUpKeySource<?>>) getClassForName(warmUp.keySource(), classLoader);
+    WarmUpConfigurationBuilder warmUpConfigurationBuilder = WarmUpConfigurationBuilder.newWarmUpConfiguration(keySourceClass)
+        .batchSize(warmUp.batchSize())
+        .parallelism(warmUp.parallelism())
+        .maxLoadsPerSecond(warmUp.maxLoadsPerSecond())
+        .useThreadPool(warmUp.threadPool());
+    return warmUp.isBlocking() ? warmUpConfigurationBuilder.blocking() : warmUpConfigurationBuilder.background();
+  }
+
   private static <T> T getInstanceOfName(String name, ClassLoader classLoader, Class<T> type) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
     if (name == null) {
       return null;
@@ -542,6 +558,9 @@ public class XmlConfiguration implements Configuration {
                 .concurrencyLevel(writeBehind.concurrency())
                 .queueSize(writeBehind.maxQueueSize()));
       }
+      if(cacheTemplate.warmUp() != null) {
+        builder = builder.add(getWarmUp(defaultClassLoader, cacheTemplate.warmUp()));
+      }
     }
     builder = handleListenersConfig(cacheTemplate.listenersConfig(), defaultClassLoader, builder);
     for (ServiceConfiguration<?> serviceConfiguration : cacheTemplate.serviceConfigs()) {
@@ -22,11 +22,13 @@ import org.ehcache.config.ResourceType;
 import org.ehcache.config.ResourceUnit;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.units.EntryUnit;
+import org.ehcache.core.spi.loaderwriter.WarmUpConfiguration;
 import org.ehcache.impl.config.copy.DefaultCopierConfiguration;
 import org.ehcache.impl.config.copy.DefaultCopyProviderConfiguration;
 import org.ehcache.impl.config.event.DefaultCacheEventListenerConfiguration;
 import org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration;
 import org.ehcache.impl.config.executor.PooledExecutionServiceConfiguration.PoolConfiguration;
+import org.ehcache.impl.config.loaderwriter.warmup.DefaultWarmUpConfiguration;
 import org.ehcache.impl.config.persistence.DefaultPersistenceConfiguration;
 import org.ehcache.impl.config.serializer.DefaultSerializationProviderConfiguration;
 import org.ehcache.impl.config.serializer.DefaultSerializerConfiguration;
@@ -63,6 +65,7 @@ import com.pany.ehcache.copier.Description;
 import com.pany.ehcache.copier.DescriptionCopier;
 import com.pany.ehcache.copier.Person;
 import com.pany.ehcache.copier.PersonCopier;
+import com.pany.ehcache.integration.TestWarmUpKeySource;
 import com.pany.ehcache.serializer.TestSerializer;
 import com.pany.ehcache.serializer.TestSerializer2;
 import com.pany.ehcache.serializer.TestSerializer3;
@@ -523,6 +526,30 @@ public class XmlConfigurationTest {
     }
   }
 
+  @Test
+  public void testWarmUp() throws Exception {
+    final URL resource = XmlConfigurationTest.class.getResource("/configs/warmup-cache.xml");
+    XmlConfiguration xmlConfig = new XmlConfiguration(resource);
+
+    WarmUpConfiguration warmUp = findSingletonAmongst(WarmUpConfiguration.class,
+        xmlConfig.getCacheConfigurations().get("bar").getServiceConfigurations().toArray());
+    assertThat(warmUp, instanceOf(DefaultWarmUpConfiguration.class));
+    assertThat(((DefaultWarmUpConfiguration) warmUp).getClazz().getName(), is(TestWarmUpKeySource.class.getName()));
+    assertThat(warmUp.getBatchSize(), is(50));
+    assertThat(warmUp.getParallelism(), is(4));
+    assertThat(warmUp.getMaxLoadsPerSecond(), is(1000L));
+    assertThat(warmUp.getThreadPoolAlias(), is("warm-up"));
+    assertThat(warmUp.isBlocking(), is(true));
+
+    warmUp = findSingletonAmongst(WarmUpConfiguration.class,
+        xmlConfig.newCacheConfigurationBuilderFromTemplate("example", Number.class, String.class).build().getServiceConfigurations().toArray());
+    assertThat(warmUp.getBatchSize(), is(100));
+    assertThat(warmUp.getParallelism(), is(1));
+    assertThat(warmUp.getMaxLoadsPerSecond(), is(0L));
+    assertThat(warmUp.getThreadPoolAlias(), nullValue());
+    assertThat(warmUp.isBlocking(), is(false));
+  }
+
   @Test
   public void testCacheEventListener() throws Exception {
     final URL resource = XmlConfigurationTest.class.getResource("/configs/ehcache-cacheEventListener.xml");
@@ -589,6 +616,7 @@ public class XmlConfigurationTest {
 
     assertThat(diskConfig.getThreadPoolAlias(), is("some-pool"));
     assertThat(diskConfig.getWriterConcurrency(), is(2));
+    assertThat(diskConfig.isPhysicalOrderIteration(), is(true));
   }
 
   @Test